@@ -40,7 +40,6 @@ import java.util.concurrent.Future;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import cx.ring.BuildConfig;
 import cx.ring.daemon.Callback;
 import cx.ring.daemon.ConfigurationCallback;
 import cx.ring.daemon.PresenceCallback;
@@ -50,8 +49,6 @@ import cx.ring.dependencyinjection.PresenterInjectionModule;
 import cx.ring.dependencyinjection.RingInjectionComponent;
 import cx.ring.dependencyinjection.RingInjectionModule;
 import cx.ring.dependencyinjection.ServiceInjectionModule;
-import cx.ring.service.CallManagerCallBack;
-import cx.ring.service.ConfigurationManagerCallback;
 import cx.ring.service.DRingService;
 import cx.ring.services.AccountService;
 import cx.ring.services.CallService;
@@ -60,6 +57,7 @@ import cx.ring.services.ContactService;
 import cx.ring.services.DaemonService;
 import cx.ring.services.DeviceRuntimeService;
 import cx.ring.services.HardwareService;
+import cx.ring.services.HistoryService;
 import cx.ring.services.PreferencesService;
 import cx.ring.services.PresenceService;
 import cx.ring.utils.Log;
@@ -67,16 +65,11 @@ import cx.ring.utils.Log;
 public class RingApplication extends Application {
 
     private final static String TAG = RingApplication.class.getName();
-    public final static String DRING_CONNECTION_CHANGED = BuildConfig.APPLICATION_ID + ".event.DRING_CONNECTION_CHANGE";
     public static final int PERMISSIONS_REQUEST = 57;
 
     private RingInjectionComponent mRingInjectionComponent;
     private Map<String, Boolean> mPermissionsBeingAsked;
 
-    // Android Specific callbacks handlers. They rely on low level services notifications
-    private ConfigurationManagerCallback mConfigurationCallback;
-    private CallManagerCallBack mCallManagerCallBack;
-
     // true Daemon callbacks handlers. The notify the Android ones
     private Callback mCallAndConferenceCallbackHandler;
     private ConfigurationCallback mAccountAndContactCallbackHandler;
@@ -118,6 +111,9 @@ public class RingApplication extends Application {
     @Inject
     PresenceService mPresenceService;
 
+    @Inject
+    HistoryService mHistoryService;
+
     static private final IntentFilter RINGER_FILTER = new IntentFilter(AudioManager.RINGER_MODE_CHANGED_ACTION);
     private final BroadcastReceiver ringerModeListener = new BroadcastReceiver() {
         @Override
@@ -171,11 +167,6 @@ public class RingApplication extends Application {
         Future<Boolean> startResult = mExecutor.submit(new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
-                // Android specific callbacks handlers (rely on pure Java low level Services callbacks handlers as they
-                // observe them)
-                mConfigurationCallback = new ConfigurationManagerCallback(getApplicationContext());
-                mCallManagerCallBack = new CallManagerCallBack(getApplicationContext());
-
                 // mCallAndConferenceCallbackHandler is a wrapper to handle CallCallbacks and ConferenceCallbacks
                 mCallAndConferenceCallbackHandler = mDaemonService.getDaemonCallbackHandler(
                         mCallService.getCallbackHandler(),
@@ -183,13 +174,8 @@ public class RingApplication extends Application {
                 mAccountAndContactCallbackHandler = mDaemonService.getDaemonConfigurationCallbackHandler(
                         mAccountService.getCallbackHandler());
                 mHardwareCallbackHandler = mHardwareService.getCallbackHandler();
-                mPresenceCallbackHandler = mPresenceService.getCallbackHandler();
-
-                // Android specific Low level Services observers
-                mCallService.addObserver(mCallManagerCallBack);
-                mConferenceService.addObserver(mCallManagerCallBack);
-                mAccountService.addObserver(mConfigurationCallback);
-                mContactService.addObserver(mConfigurationCallback);
+                mPresenceCallbackHandler = mDaemonService.getDaemonPresenceCallbackHandler(
+                        mPresenceService.getCallbackHandler());
 
                 mDaemonService.startDaemon(
                         mCallAndConferenceCallbackHandler,
@@ -215,10 +201,6 @@ public class RingApplication extends Application {
             Log.e(TAG, "DRingService start failed", e);
         }
 
-        Intent intent = new Intent(DRING_CONNECTION_CHANGED);
-        intent.putExtra("connected", mDaemonService.isStarted());
-        sendBroadcast(intent);
-
         // load accounts from Daemon
         mAccountService.loadAccountsFromDaemon(mPreferencesService.hasNetworkConnected());
     }
@@ -229,12 +211,6 @@ public class RingApplication extends Application {
             public Boolean call() throws Exception {
                 unregisterReceiver(ringerModeListener);
                 mDaemonService.stopDaemon();
-                mConfigurationCallback = null;
-                mCallManagerCallBack = null;
-                Intent intent = new Intent(DRING_CONNECTION_CHANGED);
-                intent.putExtra("connected", mDaemonService.isStarted());
-                sendBroadcast(intent);
-
                 return true;
             }
         });
@@ -244,6 +220,9 @@ public class RingApplication extends Application {
         } catch (Exception e) {
             Log.e(TAG, "DRingService stop failed", e);
         }
+
+        // commits the history writes still queued
+        mHistoryService.flushPendingWrites();
     }
 
     @Override
@@ -278,6 +257,16 @@ public class RingApplication extends Application {
         terminateDaemon();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // the process may be killed once in the background, commits the history writes still queued
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            mHistoryService.flushPendingWritesAsync();
+        }
+    }
+
     public RingInjectionComponent getRingInjectionComponent() {
         return mRingInjectionComponent;
     }
@@ -41,6 +41,9 @@ import android.provider.ContactsContract;
 import android.util.Log;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -63,6 +66,7 @@ import cx.ring.services.ContactService;
 import cx.ring.services.DaemonService;
 import cx.ring.services.DeviceRuntimeService;
 import cx.ring.services.HardwareService;
+import cx.ring.services.HistoryService;
 import cx.ring.services.NotificationService;
 import cx.ring.services.NotificationServiceImpl;
 import cx.ring.services.PreferencesService;
@@ -83,6 +87,14 @@ public class DRingService extends Service implements Observer<ServiceEvent> {
     static public final String ACTION_CONV_READ = BuildConfig.APPLICATION_ID + ".action.CONV_READ";
     static public final String ACTION_CONV_ACCEPT = BuildConfig.APPLICATION_ID + ".action.CONV_ACCEPT";
 
+    /*
+     * Debug builds only: records the daemon callbacks to a file of the application external files directory,
+     * to replay them on the JVM. The service is not exported, the intents are sent with adb as root:
+     * adb shell am startservice -n <application id>/cx.ring.service.DRingService -a <action>
+     */
+    static public final String ACTION_CALLBACK_RECORDING_START = BuildConfig.APPLICATION_ID + ".action.CALLBACK_RECORDING_START";
+    static public final String ACTION_CALLBACK_RECORDING_STOP = BuildConfig.APPLICATION_ID + ".action.CALLBACK_RECORDING_STOP";
+
     private static final String TAG = DRingService.class.getName();
 
     @Inject
@@ -115,6 +127,9 @@ public class DRingService extends Service implements Observer<ServiceEvent> {
     @Inject
     protected ConversationFacade mConversationFacade;
 
+    @Inject
+    protected HistoryService mHistoryService;
+
     @Inject
     @Named("DaemonExecutor")
     protected ExecutorService mExecutor;
@@ -147,6 +162,10 @@ public class DRingService extends Service implements Observer<ServiceEvent> {
         mAccountService.removeObserver(this);
         mContactService.removeObserver(this);
         mConversationFacade.removeObserver(this);
+
+        // commits the history writes still queued
+        mHistoryService.flushPendingWrites();
+        mDaemonService.stopCallbackRecording();
     }
 
     @Override
@@ -175,8 +194,7 @@ public class DRingService extends Service implements Observer<ServiceEvent> {
         public void onReceive(Context context, Intent intent) {
             Log.d(TAG, "BroadcastReceiver onReceive " + intent.getAction());
             switch (intent.getAction()) {
-                case ConnectivityManager.CONNECTIVITY_ACTION:
-                case RingApplication.DRING_CONNECTION_CHANGED: {
+                case ConnectivityManager.CONNECTIVITY_ACTION: {
                     updateConnectivityState();
                     break;
                 }
@@ -605,6 +623,12 @@ public class DRingService extends Service implements Observer<ServiceEvent> {
                 }
                 break;
             }
+            case ACTION_CALLBACK_RECORDING_START:
+            case ACTION_CALLBACK_RECORDING_STOP:
+                if (BuildConfig.DEBUG) {
+                    handleCallbackRecordingAction(intent.getAction());
+                }
+                break;
             default:
                 break;
         }
@@ -631,6 +655,34 @@ public class DRingService extends Service implements Observer<ServiceEvent> {
         }
     }
 
+    private void handleCallbackRecordingAction(String action) {
+        if (ACTION_CALLBACK_RECORDING_STOP.equals(action)) {
+            mDaemonService.stopCallbackRecording();
+            Log.i(TAG, "Callback recording stopped");
+            return;
+        }
+        File directory = getExternalFilesDir(null);
+        if (directory == null) {
+            directory = getFilesDir();
+        }
+        File recording = new File(directory, "callbacks-" + System.currentTimeMillis() + ".rec");
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(recording);
+            mDaemonService.startCallbackRecording(output);
+            Log.i(TAG, "Recording the callbacks to " + recording);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to record the callbacks to " + recording, e);
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException closeError) {
+                    Log.e(TAG, "Error closing " + recording, closeError);
+                }
+            }
+        }
+    }
+
     private void handleCallAction(String action, Bundle extras) {
         String callId = extras.getString(NotificationServiceImpl.KEY_CALL_ID);
 
@@ -39,7 +39,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import cx.ring.daemon.IntVect;
-import cx.ring.daemon.StringMap;
 import cx.ring.daemon.UintVect;
 import cx.ring.model.ServiceEvent;
 import cx.ring.utils.Log;
@@ -454,7 +453,7 @@ public class HardwareServiceImpl extends HardwareService {
         currentCamera = camId;
 
         final String uri = "camera://" + camId;
-        final StringMap map = mNativeParams.get(camId).toMap(mContext.getResources().getConfiguration().orientation);
+        final Map<String, String> map = mNativeParams.get(camId).toMap(mContext.getResources().getConfiguration().orientation);
         this.switchInput(id, uri, map);
     }
 
@@ -463,13 +462,13 @@ public class HardwareServiceImpl extends HardwareService {
         stopCapture();
         setPreviewSettings();
         final String uri = "camera://" + currentCamera;
-        final StringMap map = mNativeParams.get(currentCamera).toMap(mContext.getResources().getConfiguration().orientation);
+        final Map<String, String> map = mNativeParams.get(currentCamera).toMap(mContext.getResources().getConfiguration().orientation);
         this.switchInput(id, uri, map);
     }
 
     @Override
     public void setPreviewSettings() {
-        Map<String, StringMap> camSettings = new HashMap<>();
+        Map<String, Map<String, String>> camSettings = new HashMap<>();
         for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
             if (mNativeParams.get(i) != null) {
                 camSettings.put(Integer.toString(i), mNativeParams.get(i).toMap(mContext.getResources().getConfiguration().orientation));
@@ -554,11 +553,11 @@ public class HardwareServiceImpl extends HardwareService {
         long rate;
         Camera.CameraInfo infos;
 
-        public StringMap toMap(int orientation) {
-            StringMap map = new StringMap();
+        public Map<String, String> toMap(int orientation) {
+            Map<String, String> map = new HashMap<>();
             boolean rotated = (size.x > size.y) == (orientation == Configuration.ORIENTATION_PORTRAIT);
-            map.set("size", Integer.toString(rotated ? size.y : size.x) + "x" + Integer.toString(rotated ? size.x : size.y));
-            map.set("rate", Long.toString(rate));
+            map.put("size", Integer.toString(rotated ? size.y : size.x) + "x" + Integer.toString(rotated ? size.x : size.y));
+            map.put("rate", Long.toString(rate));
             return map;
         }
     }
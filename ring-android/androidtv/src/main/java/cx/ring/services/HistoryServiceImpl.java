@@ -37,6 +37,7 @@ import javax.inject.Inject;
 
 import cx.ring.daemon.StringMap;
 import cx.ring.history.DatabaseHelper;
+import cx.ring.model.ConversationSummary;
 import cx.ring.model.HistoryCall;
 import cx.ring.model.HistoryText;
 import cx.ring.utils.ProfileChunk;
@@ -84,6 +85,16 @@ public class HistoryServiceImpl extends HistoryService {
         }
     }
 
+    @Override
+    protected Dao<ConversationSummary, Integer> getConversationSummaryDao() {
+        try {
+            return getHelper().getConversationSummaryDao();
+        } catch (SQLException e) {
+            cx.ring.utils.Log.e(TAG, "Unable to get a ConversationSummaryDao");
+            return null;
+        }
+    }
+
     /**
      * Init Helper for our DB
      */
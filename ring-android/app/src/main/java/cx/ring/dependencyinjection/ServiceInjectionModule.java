@@ -35,6 +35,7 @@ import cx.ring.services.CallService;
 import cx.ring.services.ConferenceService;
 import cx.ring.services.ContactService;
 import cx.ring.services.ContactServiceImpl;
+import cx.ring.services.DaemonBridge;
 import cx.ring.services.DaemonService;
 import cx.ring.services.DeviceRuntimeService;
 import cx.ring.services.DeviceRuntimeServiceImpl;
@@ -48,7 +49,10 @@ import cx.ring.services.NotificationService;
 import cx.ring.services.NotificationServiceImpl;
 import cx.ring.services.PreferencesService;
 import cx.ring.services.PresenceService;
+import cx.ring.services.RingserviceBridge;
 import cx.ring.services.SharedPreferencesServiceImpl;
+import cx.ring.utils.InstrumentedExecutor;
+import cx.ring.utils.KeyedDispatcher;
 import cx.ring.utils.Log;
 import dagger.Module;
 import dagger.Provides;
@@ -113,6 +117,12 @@ public class ServiceInjectionModule {
         return daemonService;
     }
 
+    @Provides
+    @Singleton
+    DaemonBridge provideDaemonBridge() {
+        return new RingserviceBridge();
+    }
+
     @Provides
     @Singleton
     CallService provideCallService(DaemonService daemonService) {
@@ -168,7 +178,8 @@ public class ServiceInjectionModule {
             HistoryService historyService,
             CallService callService,
             AccountService accountService) {
-        ConversationFacade conversationFacade = new ConversationFacade(historyService, callService, contactService, accountService);
+        ConversationFacade conversationFacade = new ConversationFacade(historyService, callService, contactService, accountService,
+                Executors.newSingleThreadExecutor());
         mRingApplication.getRingInjectionComponent().inject(conversationFacade);
         return conversationFacade;
     }
@@ -177,7 +188,15 @@ public class ServiceInjectionModule {
     @Named("DaemonExecutor")
     @Singleton
     ExecutorService provideDaemonExecutorService() {
-        return Executors.newSingleThreadExecutor();
+        // single thread executor recording the queue depth and per-operation latencies
+        return new InstrumentedExecutor();
+    }
+
+    @Provides
+    @Singleton
+    KeyedDispatcher provideCallbackDispatcher() {
+        // daemon callbacks handlers, keyed by call, conversation or account
+        return new KeyedDispatcher("DaemonCallback", 4);
     }
 
     @Provides
@@ -107,9 +107,11 @@ public class ConversationFragment extends BaseFragment<ConversationPresenter> im
             @Override
             public void run() {
                 if (mAdapter != null) {
+                    // stay in place when an older page of the history is added
+                    boolean atBottom = !mHistList.canScrollVertically(1);
                     mAdapter.updateDataset(conversation.getAggregateHistory(), 0);
 
-                    if (mAdapter.getItemCount() > 0) {
+                    if (atBottom && mAdapter.getItemCount() > 0) {
                         mHistList.smoothScrollToPosition(mAdapter.getItemCount() - 1);
                     }
                 }
@@ -140,6 +142,14 @@ public class ConversationFragment extends BaseFragment<ConversationPresenter> im
             mHistList.setLayoutManager(mLayoutManager);
             mHistList.setAdapter(mAdapter);
             mHistList.setItemAnimator(new DefaultItemAnimator());
+            mHistList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                    if (dy < 0 && !recyclerView.canScrollVertically(-1)) {
+                        presenter.loadOlderHistory();
+                    }
+                }
+            });
         }
 
         // reload delete conversation state (before rotation)
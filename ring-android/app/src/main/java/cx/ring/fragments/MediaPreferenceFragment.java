@@ -54,6 +54,7 @@ import cx.ring.model.ConfigKey;
 import cx.ring.model.ServiceEvent;
 import cx.ring.services.AccountService;
 import cx.ring.services.DeviceRuntimeService;
+import cx.ring.utils.DaemonFuture;
 import cx.ring.utils.FileUtils;
 import cx.ring.utils.Observable;
 import cx.ring.utils.Observer;
@@ -118,23 +119,27 @@ public class MediaPreferenceFragment extends PreferenceFragment
             return;
         }
         setPreferenceDetails(account.getConfig());
-        final ArrayList<Codec> audioCodec = new ArrayList<>();
-        final ArrayList<Codec> videoCodec = new ArrayList<>();
-        try {
-            final List<Codec> codecList = mAccountService.getCodecList(account.getAccountID());
-            for (Codec codec : codecList) {
-                if (codec.getType() == Codec.Type.AUDIO) {
-                    audioCodec.add(codec);
-                } else if (codec.getType() == Codec.Type.VIDEO) {
-                    videoCodec.add(codec);
+        // the codec list is fetched from the daemon without blocking the UI thread
+        mAccountService.getCodecListAsync(account.getAccountID()).addCallback(new DaemonFuture.Callback<List<Codec>>() {
+            @Override
+            public void onSuccess(final List<Codec> codecList) {
+                Activity activity = getActivity();
+                if (activity == null || codecList == null) {
+                    return;
                 }
+                activity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        setCodecs(codecList);
+                    }
+                });
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Exception in accountChanged", e);
-        }
 
-        audioCodecsPref.setCodecs(audioCodec);
-        videoCodecsPref.setCodecs(videoCodec);
+            @Override
+            public void onFailure(Throwable error) {
+                Log.e(TAG, "Exception in accountChanged", error);
+            }
+        });
 
         addPreferenceListener(account.getConfig(), changeAudioPreferenceListener);
         audioCodecsPref.setOnPreferenceChangeListener(changeCodecListener);
@@ -142,6 +147,20 @@ public class MediaPreferenceFragment extends PreferenceFragment
         mRingtoneCustom.setOnPreferenceChangeListener(changeAudioPreferenceListener);
     }
 
+    private void setCodecs(List<Codec> codecList) {
+        final ArrayList<Codec> audioCodec = new ArrayList<>();
+        final ArrayList<Codec> videoCodec = new ArrayList<>();
+        for (Codec codec : codecList) {
+            if (codec.getType() == Codec.Type.AUDIO) {
+                audioCodec.add(codec);
+            } else if (codec.getType() == Codec.Type.VIDEO) {
+                videoCodec.add(codec);
+            }
+        }
+        audioCodecsPref.setCodecs(audioCodec);
+        videoCodecsPref.setCodecs(videoCodec);
+    }
+
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -34,12 +34,15 @@ import com.j256.ormlite.table.TableUtils;
 import java.sql.SQLException;
 import java.util.ArrayList;
 
+import cx.ring.model.ConversationSummary;
 import cx.ring.model.HistoryCall;
 import cx.ring.model.HistoryText;
+import cx.ring.services.HistoryMigrations;
 
 /**
  * Database History Version
  * 7 : changing columns names. See https://gerrit-ring.savoirfairelinux.com/#/c/4297
+ * 9 and next : see {@link HistoryMigrations}
  */
 
 /**
@@ -50,10 +53,11 @@ public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
     private static final String TAG = DatabaseHelper.class.getSimpleName();
     private static final String DATABASE_NAME = "history.db";
     // any time you make changes to your database objects, you may have to increase the database version
-    private static final int DATABASE_VERSION = 8;
+    private static final int DATABASE_VERSION = HistoryMigrations.VERSION;
 
     private Dao<HistoryCall, Integer> historyDao = null;
     private Dao<HistoryText, Long> historyTextDao = null;
+    private Dao<ConversationSummary, Integer> conversationSummaryDao = null;
 
     public DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -69,6 +73,9 @@ public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
             Log.d(TAG, "onCreate");
             TableUtils.createTable(connectionSource, HistoryCall.class);
             TableUtils.createTable(connectionSource, HistoryText.class);
+            for (String statement : HistoryMigrations.getCreateStatements()) {
+                db.execSQL(statement);
+            }
         } catch (SQLException e) {
             Log.e(TAG, "Can't create database", e);
             throw new RuntimeException(e);
@@ -109,6 +116,13 @@ public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
         return historyTextDao;
     }
 
+    public Dao<ConversationSummary, Integer> getConversationSummaryDao() throws SQLException {
+        if (conversationSummaryDao == null) {
+            conversationSummaryDao = getDao(ConversationSummary.class);
+        }
+        return conversationSummaryDao;
+    }
+
     /**
      * Close the database connections and clear any cached DAOs.
      */
@@ -117,6 +131,7 @@ public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
         super.close();
         historyDao = null;
         historyTextDao = null;
+        conversationSummaryDao = null;
     }
 
     /**
@@ -136,6 +151,9 @@ public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
                     case 7:
                         updateDatabaseFrom7(db);
                         break;
+                    default:
+                        updateDatabaseFrom(fromDatabaseVersion, db);
+                        break;
                 }
                 fromDatabaseVersion++;
             }
@@ -224,6 +242,31 @@ public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
         }
     }
 
+    /**
+     * Executes the migration from the given database version to the next, from the version 8
+     *
+     * @param fromDatabaseVersion the version of the database
+     * @param db                  the SQLiteDatabase to work with
+     * @throws SQLiteException
+     */
+    private void updateDatabaseFrom(int fromDatabaseVersion, SQLiteDatabase db) throws SQLiteException {
+        if (db != null && db.isOpen()) {
+            try {
+                Log.d(TAG, "Will begin migration from database version " + fromDatabaseVersion + " to next.");
+                db.beginTransaction();
+                for (String statement : HistoryMigrations.getUpgradeStatements(fromDatabaseVersion)) {
+                    db.execSQL(statement);
+                }
+                db.setTransactionSuccessful();
+                db.endTransaction();
+                Log.d(TAG, "Migration from database version " + fromDatabaseVersion + " to next, done.");
+            } catch (SQLiteException exception) {
+                Log.e(TAG, "Migration from database version " + fromDatabaseVersion + " to next, failed.");
+                throw exception;
+            }
+        }
+    }
+
     /**
      * Removes all the data from the database, ie all the tables.
      *
@@ -245,7 +288,8 @@ public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
             try {
                 db.beginTransaction();
                 for (String tableName : tableNames) {
-                    db.execSQL("DROP TABLE " + tableName + ";");
+                    // the shadow tables of the full-text index are dropped with it
+                    db.execSQL("DROP TABLE IF EXISTS " + tableName + ";");
                 }
                 db.setTransactionSuccessful();
                 db.endTransaction();
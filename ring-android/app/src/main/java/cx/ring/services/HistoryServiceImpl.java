@@ -32,6 +32,7 @@ import java.sql.SQLException;
 import javax.inject.Inject;
 
 import cx.ring.history.DatabaseHelper;
+import cx.ring.model.ConversationSummary;
 import cx.ring.model.HistoryCall;
 import cx.ring.model.HistoryText;
 
@@ -74,6 +75,16 @@ public class HistoryServiceImpl extends HistoryService {
         }
     }
 
+    @Override
+    protected Dao<ConversationSummary, Integer> getConversationSummaryDao() {
+        try {
+            return getHelper().getConversationSummaryDao();
+        } catch (SQLException e) {
+            cx.ring.utils.Log.e(TAG, "Unable to get a ConversationSummaryDao");
+            return null;
+        }
+    }
+
     /**
      * Init Helper for our DB
      */
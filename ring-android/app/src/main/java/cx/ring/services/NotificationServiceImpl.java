@@ -56,7 +56,6 @@ import cx.ring.model.ServiceEvent;
 import cx.ring.model.SipCall;
 import cx.ring.model.TextMessage;
 import cx.ring.model.TrustRequest;
-import cx.ring.service.CallManagerCallBack;
 import cx.ring.service.DRingService;
 import cx.ring.utils.BitmapUtils;
 import cx.ring.utils.ContentUriHandler;
@@ -76,6 +75,7 @@ public class NotificationServiceImpl extends NotificationService implements Obse
 
     private static final String EXTRAS_NUMBER_TRUST_REQUEST_KEY = BuildConfig.APPLICATION_ID + "numberOfTrustRequestKey";
     private static final String EXTRAS_TRUST_REQUEST_FROM_KEY = BuildConfig.APPLICATION_ID + "trustRequestFrom";
+    private static final String EXTRA_INCOMING_CALL = "incoming-call";
 
 
     @Inject
@@ -132,7 +132,7 @@ public class NotificationServiceImpl extends NotificationService implements Obse
         } else if (conference.isRinging()) {
             if (conference.isIncoming()) {
                 Bundle extras = new Bundle();
-                extras.putBoolean(CallManagerCallBack.INCOMING_CALL, true);
+                extras.putBoolean(EXTRA_INCOMING_CALL, true);
                 messageNotificationBuilder.setContentTitle(mContext.getString(R.string.notif_incoming_call_title, contact.getRingUsername()))
                         .setPriority(NotificationCompat.PRIORITY_MAX)
                         .setContentText(mContext.getText(R.string.notif_incoming_call))
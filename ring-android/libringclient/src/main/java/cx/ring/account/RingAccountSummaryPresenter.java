@@ -19,9 +19,10 @@
 
 package cx.ring.account;
 
+import java.util.HashMap;
+
 import javax.inject.Inject;
 
-import cx.ring.daemon.StringMap;
 import cx.ring.model.Account;
 import cx.ring.model.ServiceEvent;
 import cx.ring.mvp.RootPresenter;
@@ -127,8 +128,8 @@ public class RingAccountSummaryPresenter extends RootPresenter<RingAccountSummar
         if (currentAccount == null || !mAccountID.equals(accountId) || getView() == null) {
             return;
         }
-        final StringMap devices = event.getEventInput(ServiceEvent.EventInput.DEVICES, StringMap.class);
-        getView().updateDeviceList(devices.toNative(), currentAccount.getDeviceId());
+        final HashMap<String, String> devices = event.getEventInput(ServiceEvent.EventInput.DEVICES, HashMap.class);
+        getView().updateDeviceList(devices, currentAccount.getDeviceId());
     }
 
     public void registerName(String name, String password) {
@@ -105,9 +105,9 @@ public class CallPresenter extends RootPresenter<CallView> implements Observer<S
     @Override
     public void bindView(CallView view) {
         super.bindView(view);
-        mAccountService.addObserver(this);
-        mCallService.addObserver(this);
-        mHardwareService.addObserver(this);
+        mAccountService.addObserver(this, ServiceEvent.EventType.REGISTERED_NAME_FOUND);
+        mCallService.addObserver(this, ServiceEvent.EventType.CALL_STATE_CHANGED);
+        mHardwareService.addObserver(this, ServiceEvent.EventType.VIDEO_EVENT);
     }
 
     public void initOutGoing(String accountId, Uri number, boolean hasVideo) {
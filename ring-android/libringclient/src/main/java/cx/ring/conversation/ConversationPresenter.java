@@ -20,10 +20,10 @@
 package cx.ring.conversation;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
-import cx.ring.daemon.Blob;
 import cx.ring.facades.ConversationFacade;
 import cx.ring.model.Account;
 import cx.ring.model.CallContact;
@@ -36,6 +36,7 @@ import cx.ring.mvp.RootPresenter;
 import cx.ring.services.AccountService;
 import cx.ring.services.ContactService;
 import cx.ring.services.HistoryService;
+import cx.ring.utils.CoalescingObserver;
 import cx.ring.utils.Observable;
 import cx.ring.utils.Observer;
 import cx.ring.utils.Tuple;
@@ -44,6 +45,9 @@ import ezvcard.VCard;
 
 public class ConversationPresenter extends RootPresenter<ConversationView> implements Observer<ServiceEvent> {
 
+    // a refresh of the conversation per burst instead of one per message
+    private static final long REFRESH_WINDOW_MS = 50;
+
     private ContactService mContactService;
     private AccountService mAccountService;
     private ConversationFacade mConversationFacade;
@@ -55,6 +59,12 @@ public class ConversationPresenter extends RootPresenter<ConversationView> imple
 
     private boolean hasContactRequestPopupShown = false;
 
+    private final CoalescingObserver mCoalescingObserver = new CoalescingObserver(this, REFRESH_WINDOW_MS, TimeUnit.MILLISECONDS)
+            .coalesce(ServiceEvent.EventType.INCOMING_MESSAGE,
+                    ServiceEvent.EventType.CALL_STATE_CHANGED,
+                    ServiceEvent.EventType.USERNAME_CHANGED,
+                    ServiceEvent.EventType.CONVERSATIONS_CHANGED);
+
     @Inject
     public ConversationPresenter(ContactService mContactService,
                                  AccountService mAccountService,
@@ -75,15 +85,20 @@ public class ConversationPresenter extends RootPresenter<ConversationView> imple
     public void unbindView() {
         super.unbindView();
         mAccountService.removeObserver(this);
-        mConversationFacade.removeObserver(this);
+        mConversationFacade.removeObserver(mCoalescingObserver);
+        mCoalescingObserver.cancel();
     }
 
     public void init(String conversationId, Uri number) {
         mConversationId = conversationId;
         mPreferredNumber = number;
 
-        mAccountService.addObserver(this);
-        mConversationFacade.addObserver(this);
+        mAccountService.addObserver(this, ServiceEvent.EventType.REGISTERED_NAME_FOUND);
+        mConversationFacade.addObserver(mCoalescingObserver,
+                ServiceEvent.EventType.INCOMING_MESSAGE,
+                ServiceEvent.EventType.CALL_STATE_CHANGED,
+                ServiceEvent.EventType.USERNAME_CHANGED,
+                ServiceEvent.EventType.CONVERSATIONS_CHANGED);
     }
 
     public void pause() {
@@ -105,6 +120,15 @@ public class ConversationPresenter extends RootPresenter<ConversationView> imple
         }
     }
 
+    /**
+     * Called when the beginning of the loaded history is displayed
+     */
+    public void loadOlderHistory() {
+        if (mConversation != null) {
+            mConversationFacade.loadOlderHistory(mConversation);
+        }
+    }
+
     public void prepareMenu() {
         getView().displayAddContact(mConversation != null && mConversation.getContact().getId() < 0);
     }
@@ -138,7 +162,7 @@ public class ConversationPresenter extends RootPresenter<ConversationView> imple
     }
 
     public void sendTrustRequest(String accountId, String contactId, VCard vCard) {
-        mAccountService.sendTrustRequest(accountId, contactId, Blob.fromString(VCardUtils.vcardToString(vCard)));
+        mAccountService.sendTrustRequest(accountId, contactId, VCardUtils.vcardToString(vCard));
     }
 
     public void blockContact() {
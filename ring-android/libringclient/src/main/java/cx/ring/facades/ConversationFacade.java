@@ -23,10 +23,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import javax.inject.Inject;
 
@@ -35,9 +40,11 @@ import cx.ring.model.CallContact;
 import cx.ring.model.Conference;
 import cx.ring.model.ConfigKey;
 import cx.ring.model.Conversation;
+import cx.ring.model.ConversationSummary;
 import cx.ring.model.HistoryCall;
 import cx.ring.model.HistoryEntry;
 import cx.ring.model.HistoryText;
+import cx.ring.model.Phone;
 import cx.ring.model.SecureSipCall;
 import cx.ring.model.ServiceEvent;
 import cx.ring.model.SipCall;
@@ -89,17 +96,35 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
     @Inject
     DeviceRuntimeService mDeviceRuntimeService;
 
-    private final Map<String, Conversation> mConversationMap = new HashMap<>();
+    // mutated on the application executor, read by the presenters through getConversations()
+    private final Map<String, Conversation> mConversationMap = new ConcurrentHashMap<>();
 
-    public ConversationFacade(HistoryService historyService, CallService callService, ContactService contactService, AccountService accountService) {
+    // the text messages of the conversations by id, the delivery statuses are applied without looking for the conversation
+    private final Map<Long, TextMessage> mTextMessages = new ConcurrentHashMap<>();
+
+    // conversations with a history page being loaded
+    private final Set<Conversation> mLoadingHistory = Collections.synchronizedSet(new HashSet<Conversation>());
+
+    /**
+     * @param eventExecutor single thread executor the service events are handled on, so loading
+     *                      the history or the contacts does not block the daemon nor the other observers
+     */
+    public ConversationFacade(HistoryService historyService, CallService callService, ContactService contactService, AccountService accountService, Executor eventExecutor) {
         mHistoryService = historyService;
-        mHistoryService.addObserver(this);
+        mHistoryService.addObserver(this, eventExecutor,
+                ServiceEvent.EventType.INCOMING_MESSAGE,
+                ServiceEvent.EventType.HISTORY_SUMMARIES_LOADED,
+                ServiceEvent.EventType.HISTORY_LOADED,
+                ServiceEvent.EventType.HISTORY_PAGE_LOADED,
+                ServiceEvent.EventType.HISTORY_MODIFIED);
         mCallService = callService;
-        mCallService.addObserver(this);
+        mCallService.addObserver(this, eventExecutor,
+                ServiceEvent.EventType.CALL_STATE_CHANGED,
+                ServiceEvent.EventType.INCOMING_CALL);
         mContactService = contactService;
-        mContactService.addObserver(this);
+        mContactService.addObserver(this, eventExecutor, ServiceEvent.EventType.CONTACTS_CHANGED);
         mAccountService = accountService;
-        mAccountService.addObserver(this);
+        mAccountService.addObserver(this, eventExecutor, ServiceEvent.EventType.REGISTERED_NAME_FOUND);
     }
 
     private Tuple<Conference, SipCall> getCall(String id) {
@@ -199,7 +224,7 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
      * @return the conversation from the local cache
      */
     public Conversation getConversationById(String id) {
-        return mConversationMap.get(id);
+        return id == null ? null : mConversationMap.get(id);
     }
 
     public void sendTextMessage(String account, Uri to, String txt) {
@@ -244,6 +269,23 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
         mHistoryService.getCallAndTextAsync();
     }
 
+    /**
+     * Only the newest interactions of the conversations are loaded at startup, loads the previous page
+     * of the given conversation. A CONVERSATIONS_CHANGED event is sent once it is added.
+     */
+    public void loadOlderHistory(Conversation conversation) {
+        if (conversation.isHistoryComplete() || !mLoadingHistory.add(conversation)) {
+            return;
+        }
+        ArrayList<String> numbers = new ArrayList<>();
+        for (Phone phone : conversation.getContact().getPhones()) {
+            numbers.add(phone.getNumber().getRawUriString());
+        }
+        long oldest = conversation.getOldestInteractionTime();
+        mHistoryService.getHistoryPageAsync(numbers, oldest, conversation.getCallIdsAt(oldest),
+                conversation.getTextMessageIdsAt(oldest), HistoryService.HISTORY_PAGE_SIZE);
+    }
+
     public void updateTextNotifications() {
         Log.d(TAG, "updateTextNotifications()");
 
@@ -286,7 +328,24 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
     }
 
     public void removeConversation(String id) {
-        mConversationMap.remove(id);
+        if (id == null) {
+            return;
+        }
+        Conversation conversation = mConversationMap.remove(id);
+        if (conversation != null) {
+            for (TextMessage text : conversation.getTextMessages()) {
+                mTextMessages.remove(text.getId());
+            }
+        }
+    }
+
+    /**
+     * Adds a text message to a conversation and to the index of the text messages by id
+     */
+    private void addTextMessage(Conversation conversation, TextMessage text) {
+        if (conversation.addTextMessage(text)) {
+            mTextMessages.put(text.getId(), text);
+        }
     }
 
     private void parseNewMessage(TextMessage txt) {
@@ -301,7 +360,7 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
             txt.read();
         }
 
-        conversation.addTextMessage(txt);
+        addTextMessage(conversation, txt);
     }
 
     private void parseHistoryCalls(List<HistoryCall> historyCalls, boolean acceptAllMessages) {
@@ -319,6 +378,21 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
         }
     }
 
+    private void parseSummaries(List<ConversationSummary> summaries, boolean acceptAllMessages) {
+        for (ConversationSummary summary : summaries) {
+            CallContact contact = mContactService.findContact(summary.getContactID(), summary.getContactKey(), new Uri(summary.getNumber()));
+            String key = contact.getIds().get(0);
+            String phone = contact.getPhones().get(0).getNumber().getRawUriString();
+            if (mConversationMap.containsKey(key) || mConversationMap.containsKey(phone)) {
+                mConversationMap.get(key).addSummary(summary);
+            } else if (acceptAllMessages) {
+                Conversation conversation = new Conversation(contact);
+                conversation.addSummary(summary);
+                mConversationMap.put(key, conversation);
+            }
+        }
+    }
+
     private void parseHistoryTexts(List<HistoryText> historyTexts, boolean acceptAllMessages) {
         for (HistoryText htext : historyTexts) {
             TextMessage msg = new TextMessage(htext);
@@ -326,15 +400,77 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
             String key = contact.getIds().get(0);
             String phone = contact.getPhones().get(0).getNumber().getRawUriString();
             if (mConversationMap.containsKey(key) || mConversationMap.containsKey(phone)) {
-                mConversationMap.get(key).addTextMessage(msg);
+                addTextMessage(mConversationMap.get(key), msg);
             } else if (acceptAllMessages) {
                 Conversation conversation = new Conversation(contact);
-                conversation.addTextMessage(msg);
+                addTextMessage(conversation, msg);
                 mConversationMap.put(key, conversation);
             }
         }
     }
 
+    /**
+     * @return the loaded conversation of a history row, null if none
+     */
+    private Conversation findHistoryConversation(long contactId, String contactKey, String number) {
+        CallContact contact = mContactService.findContact(contactId, contactKey, new Uri(number));
+        Conversation conversation = mConversationMap.get(contact.getIds().get(0));
+        if (conversation == null) {
+            conversation = mConversationMap.get(contact.getPhones().get(0).getNumber().getRawUriString());
+        }
+        return conversation;
+    }
+
+    /**
+     * Applies the rows carried by a HISTORY_MODIFIED event to the loaded conversations, without reloading them
+     */
+    private void applyHistoryChanges(ServiceEvent event, boolean acceptAllMessages) {
+        parseHistoryCalls((List<HistoryCall>) event.getEventInput(ServiceEvent.EventInput.HISTORY_CALLS, ArrayList.class), acceptAllMessages);
+        parseHistoryTexts((List<HistoryText>) event.getEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, ArrayList.class), acceptAllMessages);
+
+        List<HistoryText> updatedTexts = (List<HistoryText>) event.getEventInput(ServiceEvent.EventInput.HISTORY_UPDATED_TEXTS, ArrayList.class);
+        for (HistoryText htext : updatedTexts) {
+            TextMessage text = mTextMessages.get(htext.id);
+            if (text != null) {
+                text.setStatus(htext.getStatus());
+            }
+        }
+        Map<Long, TextMessage.Status> textStatuses = (Map<Long, TextMessage.Status>) event.getEventInput(ServiceEvent.EventInput.HISTORY_TEXT_STATUSES, LinkedHashMap.class);
+        for (Map.Entry<Long, TextMessage.Status> status : textStatuses.entrySet()) {
+            TextMessage text = mTextMessages.get(status.getKey());
+            if (text != null) {
+                text.setStatus(status.getValue());
+            }
+        }
+
+        // the deleted rows are removed once per conversation
+        Map<Conversation, List<HistoryCall>> deletedCalls = new HashMap<>();
+        Map<Conversation, List<TextMessage>> deletedTexts = new HashMap<>();
+        for (HistoryCall call : (List<HistoryCall>) event.getEventInput(ServiceEvent.EventInput.HISTORY_DELETED_CALLS, ArrayList.class)) {
+            Conversation conversation = findHistoryConversation(call.getContactID(), call.getContactKey(), call.getNumber());
+            if (conversation != null) {
+                if (!deletedCalls.containsKey(conversation)) {
+                    deletedCalls.put(conversation, new ArrayList<HistoryCall>());
+                    deletedTexts.put(conversation, new ArrayList<TextMessage>());
+                }
+                deletedCalls.get(conversation).add(call);
+            }
+        }
+        for (HistoryText htext : (List<HistoryText>) event.getEventInput(ServiceEvent.EventInput.HISTORY_DELETED_TEXTS, ArrayList.class)) {
+            Conversation conversation = findHistoryConversation(htext.getContactID(), htext.getContactKey(), htext.getNumber());
+            if (conversation != null) {
+                if (!deletedTexts.containsKey(conversation)) {
+                    deletedCalls.put(conversation, new ArrayList<HistoryCall>());
+                    deletedTexts.put(conversation, new ArrayList<TextMessage>());
+                }
+                deletedTexts.get(conversation).add(new TextMessage(htext));
+            }
+            mTextMessages.remove(htext.id);
+        }
+        for (Map.Entry<Conversation, List<HistoryCall>> entry : deletedCalls.entrySet()) {
+            entry.getKey().removeHistory(entry.getValue(), deletedTexts.get(entry.getKey()));
+        }
+    }
 
     private void addContacts(boolean acceptAllMessages) {
         ArrayList<CallContact> contacts;
@@ -357,6 +493,7 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
      */
     public void clearConversations() {
         mConversationMap.clear();
+        mTextMessages.clear();
     }
 
     private void aggregateHistory() {
@@ -455,15 +592,26 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
                     notifyObservers(mEvent);
                     break;
                 }
-                case ACCOUNT_MESSAGE_STATUS_CHANGED: {
-                    TextMessage newMsg = event.getEventInput(ServiceEvent.EventInput.MESSAGE, TextMessage.class);
-                    Conversation conv = getConversationByContact(mContactService.findContactByNumber(newMsg.getNumber()));
-                    if (conv != null) {
-                        conv.updateTextMessage(newMsg);
+                case HISTORY_SUMMARIES_LOADED: {
+                    // the conversations are listed from their summaries, until their history is loaded
+                    Account account = mAccountService.getCurrentAccount();
+                    if (account != null) {
+                        boolean acceptAllMessages = account.getDetailBoolean(ConfigKey.DHT_PUBLIC_IN);
+
+                        mConversationMap.clear();
+                        mTextMessages.clear();
+                        mLoadingHistory.clear();
+
+                        addContacts(acceptAllMessages);
+
+                        List<ConversationSummary> summaries = (List<ConversationSummary>) event.getEventInput(ServiceEvent.EventInput.HISTORY_SUMMARIES, ArrayList.class);
+                        parseSummaries(summaries, acceptAllMessages);
+
+                        aggregateHistory();
                     }
-                    setChanged();
 
-                    mEvent = new ServiceEvent(ServiceEvent.EventType.INCOMING_MESSAGE);
+                    setChanged();
+                    mEvent = new ServiceEvent(ServiceEvent.EventType.CONVERSATIONS_CHANGED);
                     notifyObservers(mEvent);
                     break;
                 }
@@ -473,6 +621,8 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
                         boolean acceptAllMessages = account.getDetailBoolean(ConfigKey.DHT_PUBLIC_IN);
 
                         mConversationMap.clear();
+                        mTextMessages.clear();
+                        mLoadingHistory.clear();
 
                         addContacts(acceptAllMessages);
 
@@ -491,9 +641,44 @@ public class ConversationFacade extends Observable implements Observer<ServiceEv
                     mEvent = new ServiceEvent(ServiceEvent.EventType.CONVERSATIONS_CHANGED);
                     notifyObservers(mEvent);
                     break;
-                case HISTORY_MODIFIED:
-                    refreshConversations();
+                case HISTORY_PAGE_LOADED: {
+                    List<String> numbers = (List<String>) event.getEventInput(ServiceEvent.EventInput.NUMBERS, ArrayList.class);
+                    Conversation conversation = getConversationByContact(mContactService.findContactByNumber(numbers.get(0)));
+                    if (conversation == null) {
+                        break;
+                    }
+                    mLoadingHistory.remove(conversation);
+                    if (event.getString(ServiceEvent.EventInput.ERROR) != null) {
+                        // loaded again on the next request
+                        break;
+                    }
+                    List<HistoryCall> historyCalls = (List<HistoryCall>) event.getEventInput(ServiceEvent.EventInput.HISTORY_CALLS, ArrayList.class);
+                    List<HistoryText> historyTexts = (List<HistoryText>) event.getEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, ArrayList.class);
+                    parseHistoryCalls(historyCalls, false);
+                    parseHistoryTexts(historyTexts, false);
+                    if (historyCalls.size() + historyTexts.size() < HistoryService.HISTORY_PAGE_SIZE) {
+                        conversation.setHistoryComplete(true);
+                    }
+
+                    setChanged();
+                    mEvent = new ServiceEvent(ServiceEvent.EventType.CONVERSATIONS_CHANGED);
+                    notifyObservers(mEvent);
+                    break;
+                }
+                case HISTORY_MODIFIED: {
+                    Account currentAccount = mAccountService.getCurrentAccount();
+                    if (currentAccount == null || event.getEventInput(ServiceEvent.EventInput.NUMBERS, ArrayList.class) == null) {
+                        // without rows the whole history has changed
+                        refreshConversations();
+                        break;
+                    }
+                    applyHistoryChanges(event, currentAccount.getDetailBoolean(ConfigKey.DHT_PUBLIC_IN));
+
+                    setChanged();
+                    mEvent = new ServiceEvent(ServiceEvent.EventType.CONVERSATIONS_CHANGED);
+                    notifyObservers(mEvent);
                     break;
+                }
             }
         } else if (observable instanceof CallService) {
             Conversation conversation = null;
@@ -0,0 +1,106 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package cx.ring.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable state of all the daemon accounts, collected in a single daemon thread task
+ */
+public class AccountsSnapshot {
+
+    private final List<Entry> mAccounts;
+
+    public AccountsSnapshot(List<Entry> accounts) {
+        mAccounts = Collections.unmodifiableList(new ArrayList<>(accounts));
+    }
+
+    /**
+     * @return the accounts, in the daemon order
+     */
+    public List<Entry> getAccounts() {
+        return mAccounts;
+    }
+
+    public static class Entry {
+        private final String mAccountId;
+        private final Map<String, String> mDetails;
+        private final List<Map<String, String>> mCredentials;
+        private final Map<String, String> mVolatileDetails;
+        private final Map<String, String> mDevices;
+        private final List<Map<String, String>> mContacts;
+        private final List<Map<String, String>> mTrustRequests;
+
+        /**
+         * @param devices       the known devices, null if not a Ring account
+         * @param contacts      the contacts, null if not a Ring account
+         * @param trustRequests the pending trust requests, null if not a Ring account
+         */
+        public Entry(String accountId,
+                     Map<String, String> details,
+                     List<Map<String, String>> credentials,
+                     Map<String, String> volatileDetails,
+                     Map<String, String> devices,
+                     List<Map<String, String>> contacts,
+                     List<Map<String, String>> trustRequests) {
+            mAccountId = accountId;
+            mDetails = Collections.unmodifiableMap(details);
+            mCredentials = Collections.unmodifiableList(credentials);
+            mVolatileDetails = Collections.unmodifiableMap(volatileDetails);
+            mDevices = devices == null ? null : Collections.unmodifiableMap(devices);
+            mContacts = contacts == null ? null : Collections.unmodifiableList(contacts);
+            mTrustRequests = trustRequests == null ? null : Collections.unmodifiableList(trustRequests);
+        }
+
+        public String getAccountId() {
+            return mAccountId;
+        }
+
+        public Map<String, String> getDetails() {
+            return mDetails;
+        }
+
+        public List<Map<String, String>> getCredentials() {
+            return mCredentials;
+        }
+
+        public Map<String, String> getVolatileDetails() {
+            return mVolatileDetails;
+        }
+
+        public boolean isRing() {
+            return AccountConfig.ACCOUNT_TYPE_RING.equals(mDetails.get(ConfigKey.ACCOUNT_TYPE.key()));
+        }
+
+        public Map<String, String> getDevices() {
+            return mDevices;
+        }
+
+        public List<Map<String, String>> getContacts() {
+            return mContacts;
+        }
+
+        public List<Map<String, String>> getTrustRequests() {
+            return mTrustRequests;
+        }
+    }
+}
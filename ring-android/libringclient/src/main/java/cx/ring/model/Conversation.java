@@ -26,6 +26,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -43,11 +45,15 @@ public class Conversation {
     private final Map<String, HistoryEntry> mHistory = new HashMap<>();
     private final ArrayList<Conference> mCurrentCalls;
     private final ArrayList<ConversationElement> mAggregateHistory = new ArrayList<>(32);
+    // summaries of the history per account, shown until the history itself is loaded
+    private final Map<String, ConversationSummary> mSummaries = new HashMap<>();
 
     // runtime flag set to true if the user is currently viewing this conversation
     private boolean mVisible = false;
 
     private long mLastContactRequest = 0l;
+    // true once all the older history has been loaded, see getOldestInteractionTime()
+    private boolean mHistoryComplete = false;
     public static final long PERIOD = 10l * 60l * 1000l; //10 minutes
 
     public Conversation(CallContact contact) {
@@ -162,6 +168,10 @@ public class Conversation {
                 d = nd;
             }
         }
+        ConversationSummary summary = getLastSummary();
+        if (summary != null && d.compareTo(summary.getDate()) < 0) {
+            d = summary.getDate();
+        }
         Date added = mContact.getAddedDate();
         if (added != null) {
             if (d.compareTo(added) < 0) {
@@ -186,13 +196,43 @@ public class Conversation {
         mAggregateHistory.add(new ConversationElement(call));
     }
 
-    public void addTextMessage(TextMessage txt) {
+    /**
+     * Adds the summary of the history of an account with the contact, replacing the previous one of this account
+     */
+    public void addSummary(ConversationSummary summary) {
+        mSummaries.put(summary.getAccountID(), summary);
+    }
+
+    public Collection<ConversationSummary> getSummaries() {
+        return mSummaries.values();
+    }
+
+    /**
+     * @return the summary of the account with the newest interaction, null if none
+     */
+    public ConversationSummary getLastSummary() {
+        ConversationSummary last = null;
+        for (ConversationSummary summary : mSummaries.values()) {
+            if (last == null || last.getDate().compareTo(summary.getDate()) < 0) {
+                last = summary;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * @return false if the text message was already in the conversation
+     */
+    public boolean addTextMessage(TextMessage txt) {
         if (txt.getContact() == null) {
             txt.setContact(getContact());
         }
         String accountId = txt.getAccount();
         HistoryEntry accountEntry = mHistory.get(accountId);
         if (accountEntry != null) {
+            if (accountEntry.hasTextMessage(txt)) {
+                return false;
+            }
             accountEntry.addTextMessage(txt);
         } else {
             accountEntry = new HistoryEntry(accountId, getContact());
@@ -200,12 +240,37 @@ public class Conversation {
             mHistory.put(accountId, accountEntry);
         }
         mAggregateHistory.add(new ConversationElement(txt));
-    }
-
-    public void updateTextMessage(TextMessage txt) {
-        HistoryEntry accountEntry = mHistory.get(txt.getAccount());
-        if (accountEntry != null) {
-            accountEntry.updateTextMessage(txt);
+        return true;
+    }
+
+    /**
+     * Removes the given calls and text messages, the ones not in this conversation are ignored
+     */
+    public void removeHistory(Collection<HistoryCall> calls, Collection<TextMessage> texts) {
+        Set<HistoryCall> removedCalls = new HashSet<>();
+        for (HistoryCall call : calls) {
+            HistoryEntry accountEntry = mHistory.get(call.getAccountID());
+            if (accountEntry != null && accountEntry.removeHistoryCall(call)) {
+                removedCalls.add(call);
+            }
+        }
+        // text messages are identified by id
+        Set<Long> removedTexts = new HashSet<>();
+        for (TextMessage text : texts) {
+            HistoryEntry accountEntry = mHistory.get(text.getAccount());
+            if (accountEntry != null && accountEntry.removeTextMessage(text)) {
+                removedTexts.add(text.getId());
+            }
+        }
+        if (removedCalls.isEmpty() && removedTexts.isEmpty()) {
+            return;
+        }
+        Iterator<ConversationElement> it = mAggregateHistory.iterator();
+        while (it.hasNext()) {
+            ConversationElement element = it.next();
+            if (element.call != null ? removedCalls.contains(element.call) : removedTexts.contains(element.text.getId())) {
+                it.remove();
+            }
         }
     }
 
@@ -297,6 +362,13 @@ public class Conversation {
                 return true;
             }
         }
+        if (mHistory.isEmpty()) {
+            for (ConversationSummary summary : mSummaries.values()) {
+                if (summary.getUnreadCount() > 0) {
+                    return true;
+                }
+            }
+        }
         return false;
     }
 
@@ -304,6 +376,60 @@ public class Conversation {
         return mHistory;
     }
 
+    /**
+     * @return the time of the oldest call or text message loaded from the history, Long.MAX_VALUE if none
+     */
+    public long getOldestInteractionTime() {
+        long oldest = Long.MAX_VALUE;
+        for (HistoryEntry h : mHistory.values()) {
+            // calls are sorted by end time
+            for (HistoryCall call : h.getCalls().values()) {
+                oldest = Math.min(oldest, call.call_start);
+            }
+            if (!h.getTextMessages().isEmpty()) {
+                oldest = Math.min(oldest, h.getTextMessages().firstKey());
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * @return the ids of the loaded calls started at the given time
+     */
+    public Set<String> getCallIdsAt(long time) {
+        Set<String> ids = new HashSet<>();
+        for (HistoryEntry h : mHistory.values()) {
+            for (HistoryCall call : h.getCalls().values()) {
+                if (call.call_start == time) {
+                    ids.add(String.valueOf(call.getCallId()));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return the ids of the loaded text messages sent at the given time
+     */
+    public Set<Long> getTextMessageIdsAt(long time) {
+        Set<Long> ids = new HashSet<>();
+        for (HistoryEntry h : mHistory.values()) {
+            TextMessage text = h.getTextMessages().get(time);
+            if (text != null) {
+                ids.add(text.getId());
+            }
+        }
+        return ids;
+    }
+
+    public boolean isHistoryComplete() {
+        return mHistoryComplete;
+    }
+
+    public void setHistoryComplete(boolean historyComplete) {
+        mHistoryComplete = historyComplete;
+    }
+
     public long getLastContactRequest() {
         return mLastContactRequest;
     }
@@ -0,0 +1,336 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.model;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import java.util.Date;
+
+/**
+ * Summary of the history of a conversation, by account and peer number: its last interaction and
+ * its number of unread text messages. The summaries are kept up to date by triggers on the history
+ * tables, in the transaction of each insertion, update or deletion, so the smart list can be drawn
+ * without loading the history.
+ */
+@DatabaseTable(tableName = ConversationSummary.TABLE_NAME)
+public class ConversationSummary {
+
+    public static final String TABLE_NAME = "conversationsummary";
+    public static final String COLUMN_ACCOUNT_ID_NAME = "accountID";
+    public static final String COLUMN_NUMBER_NAME = "number";
+    public static final String COLUMN_CONTACT_ID_NAME = "contactID";
+    public static final String COLUMN_CONTACT_KEY_NAME = "contactKey";
+    public static final String COLUMN_TIMESTAMP_NAME = "TIMESTAMP";
+    public static final String COLUMN_CALL_NAME = "call";
+    public static final String COLUMN_MESSAGE_NAME = "message";
+    public static final String COLUMN_DIRECTION_NAME = "direction";
+    public static final String COLUMN_CALL_START_NAME = "call_start";
+    public static final String COLUMN_MISSED_NAME = "missed";
+    public static final String COLUMN_UNREAD_NAME = "unread";
+
+    // the columns of the last interaction, in table order
+    private static final String LAST_INTERACTION_COLUMNS = "`" + COLUMN_ACCOUNT_ID_NAME + "`, `" + COLUMN_NUMBER_NAME
+            + "`, `" + COLUMN_CONTACT_ID_NAME + "`, `" + COLUMN_CONTACT_KEY_NAME + "`, `" + COLUMN_TIMESTAMP_NAME
+            + "`, `" + COLUMN_CALL_NAME + "`, `" + COLUMN_MESSAGE_NAME + "`, `" + COLUMN_DIRECTION_NAME
+            + "`, `" + COLUMN_CALL_START_NAME + "`, `" + COLUMN_MISSED_NAME + "`";
+
+    /**
+     * One row per account and peer number, the primary key is not declared through ormlite
+     * as it does not support composite keys
+     */
+    public static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS `" + TABLE_NAME + "` ("
+            + "`" + COLUMN_ACCOUNT_ID_NAME + "` VARCHAR , `" + COLUMN_NUMBER_NAME + "` VARCHAR , "
+            + "`" + COLUMN_CONTACT_ID_NAME + "` BIGINT , `" + COLUMN_CONTACT_KEY_NAME + "` VARCHAR , "
+            + "`" + COLUMN_TIMESTAMP_NAME + "` BIGINT , `" + COLUMN_CALL_NAME + "` SMALLINT , "
+            + "`" + COLUMN_MESSAGE_NAME + "` VARCHAR , `" + COLUMN_DIRECTION_NAME + "` INTEGER , "
+            + "`" + COLUMN_CALL_START_NAME + "` BIGINT , `" + COLUMN_MISSED_NAME + "` SMALLINT , "
+            + "`" + COLUMN_UNREAD_NAME + "` INTEGER NOT NULL DEFAULT 0 , "
+            + "PRIMARY KEY (`" + COLUMN_ACCOUNT_ID_NAME + "`, `" + COLUMN_NUMBER_NAME + "`) );";
+
+    /**
+     * The smart list reads the summaries by time of the last interaction
+     */
+    public static final String TIMESTAMP_INDEX_NAME = "conversationsummary_TIMESTAMP_idx";
+    public static final String CREATE_TIMESTAMP_INDEX = "CREATE INDEX IF NOT EXISTS `" + TIMESTAMP_INDEX_NAME
+            + "` ON `" + TABLE_NAME + "` ( `" + COLUMN_TIMESTAMP_NAME + "` );";
+
+    /**
+     * An inserted text or call becomes the last interaction if it is the newest. The unread count follows the
+     * read flag of the text messages. When the last interaction is deleted, the newest remaining one replaces it,
+     * and the summary is deleted with the last row of the conversation.
+     */
+    public static final String[] CREATE_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_NAME + "_text_insert` AFTER INSERT ON `" + HistoryText.TABLE_NAME
+                    + "` BEGIN "
+                    + insertSummary("new")
+                    + "UPDATE `" + TABLE_NAME + "` SET `" + COLUMN_CONTACT_ID_NAME + "` = new.`" + HistoryText.COLUMN_CONTACT_ID_NAME
+                    + "`, `" + COLUMN_CONTACT_KEY_NAME + "` = new.`" + HistoryText.COLUMN_CONTACT_KEY_NAME
+                    + "`, `" + COLUMN_TIMESTAMP_NAME + "` = new.`" + HistoryText.COLUMN_TIMESTAMP_NAME
+                    + "`, `" + COLUMN_CALL_NAME + "` = 0, `" + COLUMN_MESSAGE_NAME + "` = new.`" + HistoryText.COLUMN_MESSAGE_NAME
+                    + "`, `" + COLUMN_DIRECTION_NAME + "` = new.`" + HistoryText.COLUMN_DIRECTION_NAME
+                    + "`, `" + COLUMN_CALL_START_NAME + "` = 0, `" + COLUMN_MISSED_NAME + "` = 0 "
+                    + "WHERE " + isSummaryOf("new") + " AND `" + COLUMN_TIMESTAMP_NAME + "` <= new.`"
+                    + HistoryText.COLUMN_TIMESTAMP_NAME + "`; "
+                    + "UPDATE `" + TABLE_NAME + "` SET `" + COLUMN_UNREAD_NAME + "` = `" + COLUMN_UNREAD_NAME + "` + 1 "
+                    + "WHERE " + isSummaryOf("new") + " AND " + isUnread("new") + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_NAME + "_text_update` AFTER UPDATE OF `" + HistoryText.COLUMN_READ_NAME
+                    + "` ON `" + HistoryText.TABLE_NAME + "` WHEN " + isUnread("old") + " != " + isUnread("new") + " BEGIN "
+                    + "UPDATE `" + TABLE_NAME + "` SET `" + COLUMN_UNREAD_NAME + "` = `" + COLUMN_UNREAD_NAME + "` + "
+                    + "(CASE WHEN " + isUnread("new") + " THEN 1 ELSE -1 END) WHERE " + isSummaryOf("new") + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_NAME + "_text_delete` AFTER DELETE ON `" + HistoryText.TABLE_NAME
+                    + "` BEGIN "
+                    + "UPDATE `" + TABLE_NAME + "` SET `" + COLUMN_UNREAD_NAME + "` = `" + COLUMN_UNREAD_NAME + "` - 1 "
+                    + "WHERE " + isSummaryOf("old") + " AND " + isUnread("old") + "; "
+                    + replaceLastInteraction("old.`" + HistoryText.COLUMN_TIMESTAMP_NAME + "`")
+                    + "END;",
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_NAME + "_call_insert` AFTER INSERT ON `" + HistoryCall.TABLE_NAME
+                    + "` BEGIN "
+                    + insertSummary("new")
+                    + "UPDATE `" + TABLE_NAME + "` SET `" + COLUMN_CONTACT_ID_NAME + "` = new.`" + HistoryCall.COLUMN_CONTACT_ID_NAME
+                    + "`, `" + COLUMN_CONTACT_KEY_NAME + "` = new.`" + HistoryCall.COLUMN_CONTACT_KEY_NAME
+                    + "`, `" + COLUMN_TIMESTAMP_NAME + "` = new.`" + HistoryCall.COLUMN_TIMESTAMP_END_NAME
+                    + "`, `" + COLUMN_CALL_NAME + "` = 1, `" + COLUMN_MESSAGE_NAME + "` = NULL, `" + COLUMN_DIRECTION_NAME
+                    + "` = new.`" + HistoryCall.COLUMN_DIRECTION_NAME + "`, `" + COLUMN_CALL_START_NAME
+                    + "` = new.`" + HistoryCall.COLUMN_TIMESTAMP_START_NAME + "`, `" + COLUMN_MISSED_NAME
+                    + "` = new.`" + HistoryCall.COLUMN_MISSED_NAME + "` "
+                    + "WHERE " + isSummaryOf("new") + " AND `" + COLUMN_TIMESTAMP_NAME + "` <= new.`"
+                    + HistoryCall.COLUMN_TIMESTAMP_END_NAME + "`; END;",
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_NAME + "_call_delete` AFTER DELETE ON `" + HistoryCall.TABLE_NAME
+                    + "` BEGIN "
+                    + replaceLastInteraction("old.`" + HistoryCall.COLUMN_TIMESTAMP_END_NAME + "`")
+                    + "END;"
+    };
+
+    /**
+     * Creates the summaries of the existing history, the newest text and the newest call of each
+     * conversation then the unread counts
+     */
+    public static final String[] FILL_TABLE = {
+            "INSERT OR REPLACE INTO `" + TABLE_NAME + "` (" + LAST_INTERACTION_COLUMNS + ") "
+                    + "SELECT " + lastTextColumns("t") + " FROM (SELECT DISTINCT `" + HistoryText.COLUMN_NUMBER_NAME
+                    + "`, `" + HistoryText.COLUMN_ACCOUNT_ID_NAME + "` FROM `" + HistoryText.TABLE_NAME + "`) c "
+                    + "JOIN `" + HistoryText.TABLE_NAME + "` t ON t.rowid = (" + selectLastText("t.rowid", "c") + ");",
+            "INSERT OR REPLACE INTO `" + TABLE_NAME + "` (" + LAST_INTERACTION_COLUMNS + ") "
+                    + "SELECT " + lastCallColumns("k") + " FROM (SELECT DISTINCT `" + HistoryCall.COLUMN_NUMBER_NAME
+                    + "`, `" + HistoryCall.COLUMN_ACCOUNT_ID_NAME + "` FROM `" + HistoryCall.TABLE_NAME + "`) c "
+                    + "JOIN `" + HistoryCall.TABLE_NAME + "` k ON k.rowid = (" + selectLastCall("k.rowid", "c") + ") "
+                    + "WHERE k.`" + HistoryCall.COLUMN_TIMESTAMP_END_NAME + "` > IFNULL((SELECT `" + COLUMN_TIMESTAMP_NAME
+                    + "` FROM `" + TABLE_NAME + "` s WHERE s.`" + COLUMN_ACCOUNT_ID_NAME + "` = k.`"
+                    + HistoryCall.COLUMN_ACCOUNT_ID_NAME + "` AND s.`" + COLUMN_NUMBER_NAME + "` = k.`"
+                    + HistoryCall.COLUMN_NUMBER_NAME + "`), -1);",
+            "UPDATE `" + TABLE_NAME + "` SET `" + COLUMN_UNREAD_NAME + "` = (SELECT COUNT(*) FROM `"
+                    + HistoryText.TABLE_NAME + "` t WHERE t.`" + HistoryText.COLUMN_NUMBER_NAME + "` = `" + TABLE_NAME
+                    + "`.`" + COLUMN_NUMBER_NAME + "` AND t.`" + HistoryText.COLUMN_ACCOUNT_ID_NAME + "` = `" + TABLE_NAME
+                    + "`.`" + COLUMN_ACCOUNT_ID_NAME + "` AND " + isUnread("t") + ");"
+    };
+
+    private static String isSummaryOf(String row) {
+        return "`" + COLUMN_ACCOUNT_ID_NAME + "` = " + row + ".`" + HistoryText.COLUMN_ACCOUNT_ID_NAME + "` AND `"
+                + COLUMN_NUMBER_NAME + "` = " + row + ".`" + HistoryText.COLUMN_NUMBER_NAME + "`";
+    }
+
+    private static String isUnread(String row) {
+        return "(IFNULL(" + row + ".`" + HistoryText.COLUMN_READ_NAME + "`, 0) = 0)";
+    }
+
+    /**
+     * Inserts an empty summary, older than any interaction, if the conversation of the given row has none.
+     * It does not rely on a conflict clause as the clause of the statement firing the trigger would override it.
+     */
+    private static String insertSummary(String row) {
+        return "INSERT INTO `" + TABLE_NAME + "` (`" + COLUMN_ACCOUNT_ID_NAME + "`, `" + COLUMN_NUMBER_NAME
+                + "`, `" + COLUMN_TIMESTAMP_NAME + "`) SELECT " + row + ".`" + HistoryText.COLUMN_ACCOUNT_ID_NAME + "`, "
+                + row + ".`" + HistoryText.COLUMN_NUMBER_NAME + "`, -1 WHERE NOT EXISTS (SELECT 1 FROM `" + TABLE_NAME
+                + "` WHERE " + isSummaryOf(row) + "); ";
+    }
+
+    private static String lastTextColumns(String text) {
+        return text + ".`" + HistoryText.COLUMN_ACCOUNT_ID_NAME + "`, " + text + ".`" + HistoryText.COLUMN_NUMBER_NAME
+                + "`, " + text + ".`" + HistoryText.COLUMN_CONTACT_ID_NAME + "`, " + text + ".`"
+                + HistoryText.COLUMN_CONTACT_KEY_NAME + "`, " + text + ".`" + HistoryText.COLUMN_TIMESTAMP_NAME
+                + "`, 0, " + text + ".`" + HistoryText.COLUMN_MESSAGE_NAME + "`, " + text + ".`"
+                + HistoryText.COLUMN_DIRECTION_NAME + "`, 0, 0";
+    }
+
+    private static String lastCallColumns(String call) {
+        return call + ".`" + HistoryCall.COLUMN_ACCOUNT_ID_NAME + "`, " + call + ".`" + HistoryCall.COLUMN_NUMBER_NAME
+                + "`, " + call + ".`" + HistoryCall.COLUMN_CONTACT_ID_NAME + "`, " + call + ".`"
+                + HistoryCall.COLUMN_CONTACT_KEY_NAME + "`, " + call + ".`" + HistoryCall.COLUMN_TIMESTAMP_END_NAME
+                + "`, 1, NULL, " + call + ".`" + HistoryCall.COLUMN_DIRECTION_NAME + "`, " + call + ".`"
+                + HistoryCall.COLUMN_TIMESTAMP_START_NAME + "`, " + call + ".`" + HistoryCall.COLUMN_MISSED_NAME + "`";
+    }
+
+    /**
+     * @return the query of the newest text of the conversation of the given row, read from the conversation index,
+     * the text table is aliased t
+     */
+    private static String selectLastText(String columns, String row) {
+        return "SELECT " + columns + " FROM `" + HistoryText.TABLE_NAME + "` t WHERE t.`" + HistoryText.COLUMN_NUMBER_NAME
+                + "` = " + row + ".`" + HistoryText.COLUMN_NUMBER_NAME + "` AND t.`" + HistoryText.COLUMN_ACCOUNT_ID_NAME
+                + "` = " + row + ".`" + HistoryText.COLUMN_ACCOUNT_ID_NAME + "` ORDER BY t.`"
+                + HistoryText.COLUMN_TIMESTAMP_NAME + "` DESC LIMIT 1";
+    }
+
+    /**
+     * @return the query of the newest call of the conversation of the given row, read from the conversation index,
+     * the call table is aliased k
+     */
+    private static String selectLastCall(String columns, String row) {
+        return "SELECT " + columns + " FROM `" + HistoryCall.TABLE_NAME + "` k WHERE k.`" + HistoryCall.COLUMN_NUMBER_NAME
+                + "` = " + row + ".`" + HistoryCall.COLUMN_NUMBER_NAME + "` AND k.`" + HistoryCall.COLUMN_ACCOUNT_ID_NAME
+                + "` = " + row + ".`" + HistoryCall.COLUMN_ACCOUNT_ID_NAME + "` ORDER BY k.`"
+                + HistoryCall.COLUMN_TIMESTAMP_START_NAME + "` DESC LIMIT 1";
+    }
+
+    /**
+     * @param time the time of the deleted row, as a last interaction
+     * @return the statements replacing the last interaction of the conversation of the deleted row,
+     * if it was this row, and deleting the summary once the conversation has no row left
+     */
+    private static String replaceLastInteraction(String time) {
+        return "INSERT OR REPLACE INTO `" + TABLE_NAME + "` (" + LAST_INTERACTION_COLUMNS + ", `" + COLUMN_UNREAD_NAME + "`) "
+                + "SELECT l.*, s.`" + COLUMN_UNREAD_NAME + "` FROM `" + TABLE_NAME + "` s, ("
+                + "SELECT * FROM (" + selectLastText(lastTextColumns("t"), "old") + ") UNION ALL "
+                + "SELECT * FROM (" + selectLastCall(lastCallColumns("k"), "old") + ") ORDER BY 5 DESC LIMIT 1) l "
+                + "WHERE s.`" + COLUMN_ACCOUNT_ID_NAME + "` = old.`" + HistoryText.COLUMN_ACCOUNT_ID_NAME + "` AND s.`"
+                + COLUMN_NUMBER_NAME + "` = old.`" + HistoryText.COLUMN_NUMBER_NAME + "` AND s.`" + COLUMN_TIMESTAMP_NAME
+                + "` = " + time + "; "
+                + "DELETE FROM `" + TABLE_NAME + "` WHERE " + isSummaryOf("old") + " AND NOT EXISTS ("
+                + selectLastText("1", "old") + ") AND NOT EXISTS (" + selectLastCall("1", "old") + "); ";
+    }
+
+    @DatabaseField(columnName = COLUMN_ACCOUNT_ID_NAME)
+    String accountID;
+    @DatabaseField(columnName = COLUMN_NUMBER_NAME)
+    String number;
+    @DatabaseField(columnName = COLUMN_CONTACT_ID_NAME)
+    long contactID;
+    @DatabaseField(columnName = COLUMN_CONTACT_KEY_NAME)
+    String contactKey;
+    @DatabaseField(columnName = COLUMN_TIMESTAMP_NAME)
+    long time;
+    @DatabaseField(columnName = COLUMN_CALL_NAME)
+    boolean call;
+    @DatabaseField(columnName = COLUMN_MESSAGE_NAME)
+    String message;
+    @DatabaseField(columnName = COLUMN_DIRECTION_NAME)
+    int direction;
+    @DatabaseField(columnName = COLUMN_CALL_START_NAME)
+    long callStart;
+    @DatabaseField(columnName = COLUMN_MISSED_NAME)
+    boolean missed;
+    @DatabaseField(columnName = COLUMN_UNREAD_NAME)
+    int unread;
+
+    /* Needed by ORMLite */
+    public ConversationSummary() {
+    }
+
+    /**
+     * @param time the time of the last interaction, the end of a call
+     */
+    public ConversationSummary(String accountId, String number, long contactId, String contactKey, long time) {
+        this.accountID = accountId;
+        this.number = number;
+        this.contactID = contactId;
+        this.contactKey = contactKey;
+        this.time = time;
+    }
+
+    /**
+     * Sets the last interaction to a text message
+     */
+    public void setLastText(TextMessage text) {
+        time = text.getTimestamp();
+        call = false;
+        message = text.getMessage();
+        direction = text.getCallType();
+        callStart = 0;
+        missed = false;
+    }
+
+    /**
+     * Sets the last interaction to a call
+     */
+    public void setLastCall(HistoryCall historyCall) {
+        time = historyCall.call_end;
+        call = true;
+        message = null;
+        direction = historyCall.direction;
+        callStart = historyCall.call_start;
+        missed = historyCall.isMissed();
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        unread = unreadCount;
+    }
+
+    public String getAccountID() {
+        return accountID;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public long getContactID() {
+        return contactID;
+    }
+
+    public String getContactKey() {
+        return contactKey;
+    }
+
+    public Date getDate() {
+        return new Date(time);
+    }
+
+    /**
+     * @return true if the last interaction is a call, false if it is a text message
+     */
+    public boolean isCall() {
+        return call;
+    }
+
+    /**
+     * @return the body of the last text message, null if the last interaction is a call
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isIncoming() {
+        return call ? direction == SipCall.Direction.INCOMING : direction == TextMessage.direction.INCOMING;
+    }
+
+    public boolean isMissed() {
+        return missed;
+    }
+
+    /**
+     * @return the duration of the last call, in ms
+     */
+    public long getDuration() {
+        return time - callStart;
+    }
+
+    public int getUnreadCount() {
+        return unread;
+    }
+}
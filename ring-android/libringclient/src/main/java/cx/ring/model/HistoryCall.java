@@ -47,6 +47,28 @@ public class HistoryCall implements Serializable {
     public static final String COLUMN_CONTACT_KEY_NAME = "contactKey";
     public static final String COLUMN_CALL_ID_NAME = "callID";
 
+    /**
+     * The calls of a conversation are read by number and account, in time order
+     */
+    public static final String CONVERSATION_INDEX_NAME = "historycall_conversation_idx";
+    public static final String CREATE_CONVERSATION_INDEX = "CREATE INDEX IF NOT EXISTS `" + CONVERSATION_INDEX_NAME
+            + "` ON `" + TABLE_NAME + "` ( `" + COLUMN_NUMBER_NAME + "`, `" + COLUMN_ACCOUNT_ID_NAME + "`, `"
+            + COLUMN_TIMESTAMP_START_NAME + "` );";
+
+    /**
+     * The call id index created by the database version 9, no query reads the calls by call id
+     */
+    public static final String CALL_ID_INDEX_NAME = "historycall_callID_idx";
+    public static final String DROP_CALL_ID_INDEX = "DROP INDEX IF EXISTS `" + CALL_ID_INDEX_NAME + "`;";
+
+    /**
+     * Deletes the oldest calls of a conversation started at or before a time, read from the conversation index.
+     * Arguments: the number, the account, the time and the maximum number of calls.
+     */
+    public static final String DELETE_OLDEST_QUERY = "DELETE FROM `" + TABLE_NAME + "` WHERE rowid IN (SELECT rowid FROM `"
+            + TABLE_NAME + "` WHERE `" + COLUMN_NUMBER_NAME + "` = ? AND `" + COLUMN_ACCOUNT_ID_NAME + "` = ? "
+            + "AND `" + COLUMN_TIMESTAMP_START_NAME + "` <= ? ORDER BY `" + COLUMN_TIMESTAMP_START_NAME + "` LIMIT ?)";
+
     @DatabaseField(index = true, columnName = COLUMN_TIMESTAMP_START_NAME)
     public long call_start;
     @DatabaseField(columnName = COLUMN_TIMESTAMP_END_NAME)
@@ -129,7 +151,14 @@ public class HistoryCall implements Serializable {
     }
 
     public String getDurationString() {
-        long duration = (call_end - call_start) / 1000;
+        return getDurationString(call_end - call_start);
+    }
+
+    /**
+     * @param durationMs the duration of a call, in ms
+     */
+    public static String getDurationString(long durationMs) {
+        long duration = durationMs / 1000;
         if (duration < 60) {
             return String.format(Locale.getDefault(), "%02d secs", duration);
         }
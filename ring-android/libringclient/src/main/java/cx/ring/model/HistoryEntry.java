@@ -102,15 +102,41 @@ public class HistoryEntry {
         }
     }
 
-    public void updateTextMessage(TextMessage text) {
-        long time = text.getTimestamp();
-        NavigableMap<Long, TextMessage> msgs = mTextMessages.subMap(time, true, time, true);
-        for (TextMessage txt : msgs.values()) {
-            if (txt.equals(text)) {
-                txt.setStatus(text.getStatus());
-                break;
-            }
+    /**
+     * @return true if the call was in this entry and has been removed
+     */
+    public boolean removeHistoryCall(HistoryCall historyCall) {
+        if (!historyCall.equals(mCalls.get(historyCall.call_end))) {
+            return false;
+        }
+        mCalls.remove(historyCall.call_end);
+        if (historyCall.isIncoming()) {
+            --mIncomingCount;
+        } else {
+            --mOutgoingCount;
+        }
+        if (historyCall.isMissed()) {
+            mMissedCount--;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the text message is in this entry
+     */
+    public boolean hasTextMessage(TextMessage text) {
+        return text.equals(mTextMessages.get(text.getTimestamp()));
+    }
+
+    /**
+     * @return true if the text message was in this entry and has been removed
+     */
+    public boolean removeTextMessage(TextMessage text) {
+        if (!hasTextMessage(text)) {
+            return false;
         }
+        mTextMessages.remove(text.getTimestamp());
+        return true;
     }
 
     public String getNumber() {
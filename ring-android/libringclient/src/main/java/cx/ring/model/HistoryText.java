@@ -43,6 +43,54 @@ public class HistoryText
     public static final String COLUMN_READ_NAME = "read";
     public static final String COLUMN_STATE_NAME = "state";
 
+    /**
+     * The messages of a conversation are read by number and account, in time order
+     */
+    public static final String CONVERSATION_INDEX_NAME = "historytext_conversation_idx";
+    public static final String CREATE_CONVERSATION_INDEX = "CREATE INDEX IF NOT EXISTS `" + CONVERSATION_INDEX_NAME
+            + "` ON `" + TABLE_NAME + "` ( `" + COLUMN_NUMBER_NAME + "`, `" + COLUMN_ACCOUNT_ID_NAME + "`, `"
+            + COLUMN_TIMESTAMP_NAME + "` );";
+
+    /**
+     * Full-text index of the messages, the docid of an indexed message is its id. It is kept
+     * in sync by triggers, a message is only indexed again when its body changes.
+     */
+    public static final String FTS_TABLE_NAME = "historytext_fts";
+    public static final String CREATE_FTS_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS `" + FTS_TABLE_NAME
+            + "` USING fts4(`" + COLUMN_MESSAGE_NAME + "`);";
+    public static final String[] CREATE_FTS_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS `" + FTS_TABLE_NAME + "_insert` AFTER INSERT ON `" + TABLE_NAME + "` BEGIN "
+                    + "INSERT INTO `" + FTS_TABLE_NAME + "` (docid, `" + COLUMN_MESSAGE_NAME + "`) "
+                    + "VALUES (new.`" + COLUMN_ID_NAME + "`, new.`" + COLUMN_MESSAGE_NAME + "`); END;",
+            "CREATE TRIGGER IF NOT EXISTS `" + FTS_TABLE_NAME + "_update` AFTER UPDATE ON `" + TABLE_NAME + "` "
+                    + "WHEN old.`" + COLUMN_ID_NAME + "` != new.`" + COLUMN_ID_NAME + "` "
+                    + "OR old.`" + COLUMN_MESSAGE_NAME + "` IS NOT new.`" + COLUMN_MESSAGE_NAME + "` BEGIN "
+                    + "DELETE FROM `" + FTS_TABLE_NAME + "` WHERE docid = old.`" + COLUMN_ID_NAME + "`; "
+                    + "INSERT INTO `" + FTS_TABLE_NAME + "` (docid, `" + COLUMN_MESSAGE_NAME + "`) "
+                    + "VALUES (new.`" + COLUMN_ID_NAME + "`, new.`" + COLUMN_MESSAGE_NAME + "`); END;",
+            "CREATE TRIGGER IF NOT EXISTS `" + FTS_TABLE_NAME + "_delete` AFTER DELETE ON `" + TABLE_NAME + "` BEGIN "
+                    + "DELETE FROM `" + FTS_TABLE_NAME + "` WHERE docid = old.`" + COLUMN_ID_NAME + "`; END;"
+    };
+    public static final String FILL_FTS_TABLE = "INSERT INTO `" + FTS_TABLE_NAME + "` (docid, `" + COLUMN_MESSAGE_NAME
+            + "`) SELECT `" + COLUMN_ID_NAME + "`, `" + COLUMN_MESSAGE_NAME + "` FROM `" + TABLE_NAME + "`;";
+
+    /**
+     * The messages matching a full-text query sent at or before a time, newest first.
+     * Arguments: the MATCH expression, the time and the maximum number of messages.
+     */
+    public static final String SEARCH_QUERY = "SELECT `" + TABLE_NAME + "`.* FROM `" + FTS_TABLE_NAME + "` JOIN `"
+            + TABLE_NAME + "` ON `" + TABLE_NAME + "`.`" + COLUMN_ID_NAME + "` = `" + FTS_TABLE_NAME + "`.docid "
+            + "WHERE `" + FTS_TABLE_NAME + "` MATCH ? AND `" + TABLE_NAME + "`.`" + COLUMN_TIMESTAMP_NAME + "` <= ? "
+            + "ORDER BY `" + TABLE_NAME + "`.`" + COLUMN_TIMESTAMP_NAME + "` DESC LIMIT ?";
+
+    /**
+     * Deletes the oldest messages of a conversation sent at or before a time, read from the conversation index.
+     * Arguments: the number, the account, the time and the maximum number of messages.
+     */
+    public static final String DELETE_OLDEST_QUERY = "DELETE FROM `" + TABLE_NAME + "` WHERE rowid IN (SELECT rowid FROM `"
+            + TABLE_NAME + "` WHERE `" + COLUMN_NUMBER_NAME + "` = ? AND `" + COLUMN_ACCOUNT_ID_NAME + "` = ? "
+            + "AND `" + COLUMN_TIMESTAMP_NAME + "` <= ? ORDER BY `" + COLUMN_TIMESTAMP_NAME + "` LIMIT ?)";
+
     @DatabaseField(index = true, columnName=COLUMN_ID_NAME, id = true)
     public long id;
     @DatabaseField(index = true, columnName=COLUMN_TIMESTAMP_NAME)
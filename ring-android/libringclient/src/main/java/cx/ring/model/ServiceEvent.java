@@ -19,8 +19,7 @@
  */
 package cx.ring.model;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class ServiceEvent {
 
@@ -58,8 +57,12 @@ public class ServiceEvent {
         CONTACT_ADDED,
         CONTACT_REMOVED,
         CONVERSATIONS_CHANGED,
+        HISTORY_SUMMARIES_LOADED,
         HISTORY_LOADED,
+        HISTORY_PAGE_LOADED,
         HISTORY_MODIFIED,
+        HISTORY_SEARCH_RESULTS,
+        HISTORY_CLEAR_PROGRESS,
         NEW_SERVER_SUBSCRIPTION_REQUEST,
         SERVER_ERROR,
         NEW_BUDDY_NOTIFICATION,
@@ -105,6 +108,14 @@ public class ServiceEvent {
         BANNED,
         HISTORY_CALLS,
         HISTORY_TEXTS,
+        HISTORY_UPDATED_TEXTS,
+        HISTORY_DELETED_CALLS,
+        HISTORY_DELETED_TEXTS,
+        HISTORY_TEXT_STATUSES,
+        HISTORY_SUMMARIES,
+        HISTORY_CLEAR_JOB,
+        NUMBERS,
+        QUERY,
         REMOTE,
         ERROR,
         BUDDY_URI,
@@ -114,37 +125,143 @@ public class ServiceEvent {
         VIDEO_STARTED,
         VIDEO_WIDTH,
         VIDEO_HEIGHT,
-        VIDEO_CALL
+        VIDEO_CALL,
+        IDS
+    }
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Marks an input stored in mPrimitives instead of mValues
+     */
+    private enum Primitive {
+        INT(Integer.class),
+        LONG(Long.class),
+        BOOLEAN(Boolean.class);
+
+        private final Class<?> mBoxedClass;
+
+        Primitive(Class<?> boxedClass) {
+            mBoxedClass = boxedClass;
+        }
     }
 
     private EventType mType;
-    private Map<EventInput, Object> mInputs = new HashMap<>();
+    // inputs are few, a linear scan of small arrays is cheaper than a map
+    private int mSize;
+    private EventInput[] mInputs = new EventInput[INITIAL_CAPACITY];
+    private Object[] mValues = new Object[INITIAL_CAPACITY];
+    // allocated on the first primitive input
+    private long[] mPrimitives;
 
     public ServiceEvent(EventType type) {
         mType = type;
     }
 
+    /**
+     * Copies the type and the inputs of the given event, the input values themselves are shared
+     */
+    public ServiceEvent(ServiceEvent event) {
+        mType = event.mType;
+        mSize = event.mSize;
+        mInputs = event.mInputs.clone();
+        mValues = event.mValues.clone();
+        if (event.mPrimitives != null) {
+            mPrimitives = event.mPrimitives.clone();
+        }
+    }
+
     public EventType getEventType() {
         return mType;
     }
 
+    private int indexOf(EventInput input) {
+        for (int i = 0; i < mSize; i++) {
+            if (mInputs[i] == input) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int slotOf(EventInput input) {
+        int index = indexOf(input);
+        if (index >= 0) {
+            return index;
+        }
+        if (mSize == mInputs.length) {
+            mInputs = Arrays.copyOf(mInputs, mSize * 2);
+            mValues = Arrays.copyOf(mValues, mSize * 2);
+            if (mPrimitives != null) {
+                mPrimitives = Arrays.copyOf(mPrimitives, mSize * 2);
+            }
+        }
+        mInputs[mSize] = input;
+        return mSize++;
+    }
+
+    private void putPrimitive(EventInput input, Primitive kind, long value) {
+        int index = slotOf(input);
+        if (mPrimitives == null) {
+            mPrimitives = new long[mInputs.length];
+        }
+        mValues[index] = kind;
+        mPrimitives[index] = value;
+    }
+
     public void addEventInput(EventInput input, Object value) {
-        mInputs.put(input, value);
+        // slotOf() may grow mValues, it must run before mValues is read
+        int index = slotOf(input);
+        mValues[index] = value;
     }
 
-    public <T> T getEventInput(EventInput input, Class<T> clazz) {
-        Object value = mInputs.get(input);
+    public void addEventInput(EventInput input, int value) {
+        putPrimitive(input, Primitive.INT, value);
+    }
+
+    public void addEventInput(EventInput input, long value) {
+        putPrimitive(input, Primitive.LONG, value);
+    }
+
+    public void addEventInput(EventInput input, boolean value) {
+        putPrimitive(input, Primitive.BOOLEAN, value ? 1 : 0);
+    }
+
+    private Object getValue(EventInput input, Class<?> clazz) {
+        int index = indexOf(input);
+        if (index < 0) {
+            return null;
+        }
+        Object value = mValues[index];
+        if (value instanceof Primitive) {
+            Primitive kind = (Primitive) value;
+            if (!kind.mBoxedClass.isAssignableFrom(clazz)) {
+                return null;
+            }
+            long primitive = mPrimitives[index];
+            switch (kind) {
+                case INT:
+                    return (int) primitive;
+                case LONG:
+                    return primitive;
+                default:
+                    return primitive != 0;
+            }
+        }
         if (value != null && value.getClass().isAssignableFrom(clazz)) {
-            return (T) mInputs.get(input);
+            return value;
         }
-
         return null;
     }
 
+    public <T> T getEventInput(EventInput input, Class<T> clazz) {
+        return (T) getValue(input, clazz);
+    }
+
     public <T> T getEventInput(EventInput input, Class<T> clazz, T defaultValue) {
-        Object value = mInputs.get(input);
-        if (value != null && value.getClass().isAssignableFrom(clazz)) {
-            return (T) mInputs.get(input);
+        Object value = getValue(input, clazz);
+        if (value != null) {
+            return (T) value;
         }
 
         return defaultValue;
@@ -155,7 +272,27 @@ public class ServiceEvent {
     }
 
     public int getInt(EventInput input) {
+        int index = indexOf(input);
+        if (index >= 0 && mValues[index] == Primitive.INT) {
+            return (int) mPrimitives[index];
+        }
         return getEventInput(input, Integer.class);
     }
 
+    public long getLong(EventInput input, long defaultValue) {
+        int index = indexOf(input);
+        if (index >= 0 && mValues[index] == Primitive.LONG) {
+            return mPrimitives[index];
+        }
+        return getEventInput(input, Long.class, defaultValue);
+    }
+
+    public boolean getBoolean(EventInput input, boolean defaultValue) {
+        int index = indexOf(input);
+        if (index >= 0 && mValues[index] == Primitive.BOOLEAN) {
+            return mPrimitives[index] != 0;
+        }
+        return getEventInput(input, Boolean.class, defaultValue);
+    }
+
 }
@@ -24,8 +24,6 @@ package cx.ring.model;
 import java.util.HashMap;
 import java.util.Map;
 
-import cx.ring.daemon.StringMap;
-import cx.ring.daemon.StringVect;
 import cx.ring.utils.Log;
 import cx.ring.utils.ProfileChunk;
 import cx.ring.utils.VCardUtils;
@@ -317,10 +315,9 @@ public class SipCall {
         return mCallState == State.CURRENT;
     }
 
-    public boolean appendToVCard(String from, StringMap messages) {
-        StringVect keys = messages.keys();
-        for (int i=0, n=keys.size(); i<n; i++) {
-            String key = keys.get(i);
+    public boolean appendToVCard(String from, Map<String, String> messages) {
+        for (Map.Entry<String, String> message : messages.entrySet()) {
+            String key = message.getKey();
             HashMap<String, String> messageKeyValue = VCardUtils.parseMimeAttributes(key);
             String mimeType = messageKeyValue.get(VCardUtils.VCARD_KEY_MIME_TYPE);
             if (!VCardUtils.MIME_RING_PROFILE_VCARD.equals(mimeType)) {
@@ -331,7 +328,7 @@ public class SipCall {
             if (null == mProfileChunk) {
                 mProfileChunk = new ProfileChunk(nbPart);
             }
-            String content = messages.getRaw(keys.get(i)).toJavaString();
+            String content = message.getValue();
             mProfileChunk.addPartAtIndex(content, part);
             if (mProfileChunk.isProfileComplete()) {
                 if (mContact != null) {
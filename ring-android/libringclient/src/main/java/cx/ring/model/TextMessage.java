@@ -71,7 +71,7 @@ public class TextMessage {
             }
         }
 
-        static Status fromInt(int n) {
+        public static Status fromInt(int n) {
             return values[n];
         }
 
@@ -26,19 +26,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import cx.ring.daemon.Blob;
-import cx.ring.daemon.ConfigurationCallback;
-import cx.ring.daemon.Ringservice;
-import cx.ring.daemon.StringMap;
-import cx.ring.daemon.StringVect;
-import cx.ring.daemon.UintVect;
 import cx.ring.model.Account;
 import cx.ring.model.AccountConfig;
+import cx.ring.model.AccountsSnapshot;
 import cx.ring.model.CallContact;
 import cx.ring.model.Codec;
 import cx.ring.model.ConfigKey;
@@ -46,10 +43,12 @@ import cx.ring.model.ServiceEvent;
 import cx.ring.model.TextMessage;
 import cx.ring.model.TrustRequest;
 import cx.ring.model.Uri;
+import cx.ring.utils.DaemonFuture;
 import cx.ring.utils.FutureUtils;
+import cx.ring.utils.InstrumentedExecutor;
 import cx.ring.utils.Log;
 import cx.ring.utils.Observable;
-import cx.ring.utils.SwigNativeConverter;
+import cx.ring.utils.Tuple;
 import cx.ring.utils.VCardUtils;
 import ezvcard.VCard;
 
@@ -95,15 +94,19 @@ public class AccountService extends Observable {
     @Inject
     DeviceRuntimeService mDeviceRuntimeService;
 
+    @Inject
+    DaemonBridge mDaemonBridge;
+
     private Account mCurrentAccount;
-    private List<Account> mAccountList;
+    // replaced as a whole by the callback workers, read from any thread
+    private volatile List<Account> mAccountList;
     private ConfigurationCallbackHandler mCallbackHandler;
     private boolean mHasSipAccount;
     private boolean mHasRingAccount;
 
     public AccountService() {
         mCallbackHandler = new ConfigurationCallbackHandler();
-        mAccountList = new ArrayList<>();
+        mAccountList = new CopyOnWriteArrayList<>();
     }
 
     public ConfigurationCallbackHandler getCallbackHandler() {
@@ -136,12 +139,13 @@ public class AccountService extends Observable {
             public void run() {
                 refreshAccountsCacheFromDaemon();
 
-                if (!mAccountList.isEmpty()) {
-                    setCurrentAccount(mAccountList.get(0));
+                List<Account> accounts = mAccountList;
+                if (!accounts.isEmpty()) {
+                    setCurrentAccount(accounts.get(0));
                 }
 
                 setAccountsActive(isConnected);
-                Ringservice.connectivityChanged();
+                mDaemonBridge.connectivityChanged();
 
                 setChanged();
                 ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.ACCOUNTS_CHANGED);
@@ -151,34 +155,98 @@ public class AccountService extends Observable {
     }
 
     private void refreshAccountsCacheFromDaemon() {
-        mAccountList.clear();
-        List<String> accountIds = getAccountList();
-        for (String accountId : accountIds) {
-            Map<String, String> details = getAccountDetails(accountId);
-            List<Map<String, String>> credentials = getCredentials(accountId);
-            Map<String, String> volatileAccountDetails = getVolatileAccountDetails(accountId);
-            Account account = new Account(accountId, details, credentials, volatileAccountDetails);
-            mAccountList.add(account);
+        // waits without a deadline: a slow daemon at startup must not leave the application without accounts
+        AccountsSnapshot snapshot;
+        try {
+            snapshot = getAccountsSnapshotAsync().get();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Interrupted while loading the accounts, keeping the previous ones", e);
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Unable to load the accounts from the daemon, keeping the previous ones", e.getCause());
+            return;
+        }
+        List<Account> accounts = new ArrayList<>(snapshot.getAccounts().size());
+        // the account and address of each name to look up
+        List<Tuple<String, String>> lookups = new ArrayList<>();
+        for (AccountsSnapshot.Entry entry : snapshot.getAccounts()) {
+            String accountId = entry.getAccountId();
+            Account account = new Account(accountId, entry.getDetails(), entry.getCredentials(), entry.getVolatileDetails());
+            accounts.add(account);
 
             if (account.isSip()) {
                 mHasSipAccount = true;
             } else if (account.isRing()) {
                 mHasRingAccount = true;
 
-                account.setDevices(getKnownRingDevices(accountId));
-                account.setContacts(getContacts(accountId));
-                List<Map<String, String>> requests = getTrustRequests(accountId);
-                for (Map<String, String> requestInfo : requests) {
+                account.setDevices(entry.getDevices());
+                account.setContacts(entry.getContacts());
+                for (Map<String, String> requestInfo : entry.getTrustRequests()) {
                     TrustRequest request = new TrustRequest(accountId, requestInfo);
                     account.addRequest(request);
-                    // If name is in cache this can be synchronous
-                    lookupAddress(accountId, "", request.getContactId());
+                    lookups.add(new Tuple<>(accountId, request.getContactId()));
                 }
                 for (CallContact contact : account.getContacts().values()) {
-                    lookupAddress(accountId, "", contact.getPhones().get(0).getNumber().getRawRingId());
+                    lookups.add(new Tuple<>(accountId, contact.getPhones().get(0).getNumber().getRawRingId()));
                 }
             }
         }
+        mAccountList = new CopyOnWriteArrayList<>(accounts);
+
+        // looked up once the new accounts are visible, the names found are set on them
+        for (Tuple<String, String> lookup : lookups) {
+            // If name is in cache this can be synchronous
+            lookupAddress(lookup.first, "", lookup.second);
+        }
+    }
+
+    /**
+     * Collects the details, credentials and volatile details of all the accounts, and the devices, contacts
+     * and trust requests of the Ring accounts, in a single daemon thread task
+     *
+     * @return the accounts snapshot, null if the daemon did not answer before the deadline
+     */
+    public AccountsSnapshot getAccountsSnapshot() {
+        return FutureUtils.getFutureResult(getAccountsSnapshotAsync(), "getAccountsSnapshot");
+    }
+
+    /**
+     * @return the accounts snapshot, without blocking the caller
+     */
+    public DaemonFuture<AccountsSnapshot> getAccountsSnapshotAsync() {
+        return FutureUtils.executeDaemonThreadCallableAsync(
+                mExecutor,
+                mDeviceRuntimeService.provideDaemonThreadId(),
+                "getAccountsSnapshot",
+                new Callable<AccountsSnapshot>() {
+                    @Override
+                    public AccountsSnapshot call() throws Exception {
+                        Log.i(TAG, "getAccountsSnapshot() thread running...");
+                        List<String> accountIds = mDaemonBridge.getAccountList();
+                        List<AccountsSnapshot.Entry> accounts = new ArrayList<>(accountIds.size());
+                        for (String accountId : accountIds) {
+                            Map<String, String> details = mDaemonBridge.getAccountDetails(accountId);
+                            Map<String, String> devices = null;
+                            List<Map<String, String>> contacts = null;
+                            List<Map<String, String>> requests = null;
+                            if (AccountConfig.ACCOUNT_TYPE_RING.equals(details.get(ConfigKey.ACCOUNT_TYPE.key()))) {
+                                devices = mDaemonBridge.getKnownRingDevices(accountId);
+                                contacts = mDaemonBridge.getContacts(accountId);
+                                requests = mDaemonBridge.getTrustRequests(accountId);
+                            }
+                            accounts.add(new AccountsSnapshot.Entry(accountId,
+                                    details,
+                                    mDaemonBridge.getCredentials(accountId),
+                                    mDaemonBridge.getVolatileAccountDetails(accountId),
+                                    devices,
+                                    contacts,
+                                    requests));
+                        }
+                        return new AccountsSnapshot(accounts);
+                    }
+                }
+        );
     }
 
     private Account getAccountByName(final String name) {
@@ -217,11 +285,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "addAccount",
                 new Callable<String>() {
                     @Override
                     public String call() throws Exception {
                         Log.i(TAG, "addAccount() thread running...");
-                        return Ringservice.addAccount(StringMap.toSwig(map));
+                        return mDaemonBridge.addAccount(map);
                     }
                 }
         );
@@ -314,7 +383,7 @@ public class AccountService extends Observable {
      * @param accountId
      */
     public void sendProfile(final String callId, final String accountId) {
-        mExecutor.submit(new Runnable() {
+        mExecutor.submit(InstrumentedExecutor.named("sendProfile", new Runnable() {
             @Override
             public void run() {
                 VCard vcard = VCardUtils.loadLocalProfileFromDisk(
@@ -339,26 +408,32 @@ public class AccountService extends Observable {
                         stringVCard = stringVCard.substring(VCARD_CHUNK_SIZE);
                     }
                     i++;
-                    Ringservice.sendTextMessage(callId, StringMap.toSwig(chunk), "Me", false);
+                    mDaemonBridge.sendTextMessage(callId, chunk, "Me", false);
                 }
             }
-        });
+        }));
     }
 
     /**
      * @return Account Ids list from Daemon
      */
     public List<String> getAccountList() {
+        return FutureUtils.getFutureResult(getAccountListAsync(), "getAccountList");
+    }
 
-        return FutureUtils.executeDaemonThreadCallable(
+    /**
+     * @return Account Ids list from Daemon, without blocking the caller
+     */
+    public DaemonFuture<List<String>> getAccountListAsync() {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getAccountList",
                 new Callable<List<String>>() {
                     @Override
                     public List<String> call() throws Exception {
                         Log.i(TAG, "getAccountList() thread running...");
-                        return new ArrayList<>(Ringservice.getAccountList());
+                        return new ArrayList<>(mDaemonBridge.getAccountList());
                     }
                 }
         );
@@ -381,11 +456,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setAccountsOrder",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setAccountsOrder() " + orderForDaemon + " thread running...");
-                        Ringservice.setAccountsOrder(orderForDaemon);
+                        mDaemonBridge.setAccountsOrder(orderForDaemon);
                         return true;
                     }
                 }
@@ -426,16 +502,23 @@ public class AccountService extends Observable {
      * @return the account details from the Daemon
      */
     public Map<String, String> getAccountDetails(final String accountId) {
+        return FutureUtils.getFutureResult(getAccountDetailsAsync(accountId), "getAccountDetails");
+    }
 
-        return FutureUtils.executeDaemonThreadCallable(
+    /**
+     * @param accountId
+     * @return the account details from the Daemon, without blocking the caller
+     */
+    public DaemonFuture<Map<String, String>> getAccountDetailsAsync(final String accountId) {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getAccountDetails",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "getAccountDetails() thread running...");
-                        return Ringservice.getAccountDetails(accountId).toNative();
+                        return mDaemonBridge.getAccountDetails(accountId);
                     }
                 }
         );
@@ -451,17 +534,18 @@ public class AccountService extends Observable {
     // Hashmap runtime cast
     public void setAccountDetails(final String accountId, final Map map) {
         Log.i(TAG, "setAccountDetails() " + map.get("Account.hostname"));
-        final StringMap swigmap = StringMap.toSwig(map);
+        final Map<String, String> details = new HashMap<>(map);
 
         FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setAccountDetails",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
-                        Ringservice.setAccountDetails(accountId, swigmap);
-                        Log.i(TAG, "setAccountDetails() thread running... " + swigmap.get("Account.hostname"));
+                        mDaemonBridge.setAccountDetails(accountId, details);
+                        Log.i(TAG, "setAccountDetails() thread running... " + details.get("Account.hostname"));
                         return true;
                     }
                 }
@@ -481,11 +565,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setAccountActive",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setAccountActive() thread running... " + accountId + " -> " + active);
-                        Ringservice.setAccountActive(accountId, active);
+                        mDaemonBridge.setAccountActive(accountId, active);
                         return true;
                     }
                 }
@@ -503,13 +588,13 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setAccountActive",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setAccountsActive() thread running... " + active);
-                        StringVect list = Ringservice.getAccountList();
-                        for (int i = 0, n = list.size(); i < n; i++) {
-                            Ringservice.setAccountActive(list.get(i), active);
+                        for (String accountId : mDaemonBridge.getAccountList()) {
+                            mDaemonBridge.setAccountActive(accountId, active);
                         }
                         return true;
                     }
@@ -537,16 +622,23 @@ public class AccountService extends Observable {
      * @return the account volatile details from the Daemon
      */
     public Map<String, String> getVolatileAccountDetails(final String accountId) {
+        return FutureUtils.getFutureResult(getVolatileAccountDetailsAsync(accountId), "getVolatileAccountDetails");
+    }
 
-        return FutureUtils.executeDaemonThreadCallable(
+    /**
+     * @param accountId
+     * @return the account volatile details from the Daemon, without blocking the caller
+     */
+    public DaemonFuture<Map<String, String>> getVolatileAccountDetailsAsync(final String accountId) {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getVolatileAccountDetails",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "getVolatileAccountDetails() thread running...");
-                        return Ringservice.getVolatileAccountDetails(accountId).toNative();
+                        return mDaemonBridge.getVolatileAccountDetails(accountId);
                     }
                 }
         );
@@ -558,7 +650,7 @@ public class AccountService extends Observable {
      */
     public Map<String, String> getAccountTemplate(final String accountType) {
         Log.i(TAG, "getAccountTemplate() " + accountType);
-        return Ringservice.getAccountTemplate(accountType).toNative();
+        return mDaemonBridge.getAccountTemplate(accountType);
     }
 
     /**
@@ -572,11 +664,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "removeAccount",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "removeAccount() thread running...");
-                        Ringservice.removeAccount(accountId);
+                        mDaemonBridge.removeAccount(accountId);
                         return true;
                     }
                 }
@@ -596,11 +689,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "exportOnRing",
                 new Callable<String>() {
                     @Override
                     public String call() throws Exception {
                         Log.i(TAG, "exportOnRing() thread running...");
-                        return Ringservice.exportOnRing(accountId, password);
+                        return mDaemonBridge.exportOnRing(accountId, password);
                     }
                 }
         );
@@ -611,16 +705,23 @@ public class AccountService extends Observable {
      * @return the list of the account's devices from the Daemon
      */
     public Map<String, String> getKnownRingDevices(final String accountId) {
+        return FutureUtils.getFutureResult(getKnownRingDevicesAsync(accountId), "getKnownRingDevices");
+    }
 
-        return FutureUtils.executeDaemonThreadCallable(
+    /**
+     * @param accountId
+     * @return the list of the account's devices from the Daemon, without blocking the caller
+     */
+    public DaemonFuture<Map<String, String>> getKnownRingDevicesAsync(final String accountId) {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getKnownRingDevices",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "getKnownRingDevices() thread running...");
-                        return Ringservice.getKnownRingDevices(accountId).toNative();
+                        return mDaemonBridge.getKnownRingDevices(accountId);
                     }
                 }
         );
@@ -636,11 +737,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "revokeDevice",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "revokeDevice() thread running...");
-                        return Ringservice.revokeDevice(accountId, password, deviceId);
+                        return mDaemonBridge.revokeDevice(accountId, password, deviceId);
                     }
                 }
         );
@@ -656,14 +758,15 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "setAccountDetails",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "renameDevice() thread running... " + newName);
-                        StringMap details = Ringservice.getAccountDetails(accountId);
-                        details.set(ConfigKey.ACCOUNT_DEVICE_NAME.key(), newName);
-                        Ringservice.setAccountDetails(accountId, details);
-                        return Ringservice.getKnownRingDevices(accountId).toNative();
+                        Map<String, String> details = mDaemonBridge.getAccountDetails(accountId);
+                        details.put(ConfigKey.ACCOUNT_DEVICE_NAME.key(), newName);
+                        mDaemonBridge.setAccountDetails(accountId, details);
+                        return mDaemonBridge.getKnownRingDevices(accountId);
                     }
                 }
         ));
@@ -682,15 +785,16 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setActiveCodecList",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setActiveCodecList() thread running...");
-                        UintVect list = new UintVect(codecs.size());
+                        List<Long> list = new ArrayList<>(codecs.size());
                         for (Object codec : codecs) {
                             list.add((Long) codec);
                         }
-                        Ringservice.setActiveCodecList(accountId, list);
+                        mDaemonBridge.setActiveCodecList(accountId, list);
 
                         return true;
                     }
@@ -703,35 +807,42 @@ public class AccountService extends Observable {
      * @return The account's codecs list from the Daemon
      */
     public List<Codec> getCodecList(final String accountId) {
+        return FutureUtils.getFutureResult(getCodecListAsync(accountId), "getActiveCodecList");
+    }
 
-        return FutureUtils.executeDaemonThreadCallable(
+    /**
+     * @param accountId
+     * @return The account's codecs list from the Daemon, without blocking the caller
+     */
+    public DaemonFuture<List<Codec>> getCodecListAsync(final String accountId) {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getActiveCodecList",
                 new Callable<List<Codec>>() {
                     @Override
                     public List<Codec> call() throws Exception {
                         Log.i(TAG, "getCodecList() thread running...");
                         ArrayList<Codec> results = new ArrayList<>();
 
-                        UintVect activePayloads = Ringservice.getActiveCodecList(accountId);
+                        List<Long> activePayloads = mDaemonBridge.getActiveCodecList(accountId);
                         for (int i = 0; i < activePayloads.size(); ++i) {
                             Log.i(TAG, "getCodecDetails(" + accountId + ", " + activePayloads.get(i) + ")");
-                            StringMap codecsDetails = Ringservice.getCodecDetails(accountId, activePayloads.get(i));
-                            results.add(new Codec(activePayloads.get(i), codecsDetails.toNative(), true));
+                            Map<String, String> codecsDetails = mDaemonBridge.getCodecDetails(accountId, activePayloads.get(i));
+                            results.add(new Codec(activePayloads.get(i), codecsDetails, true));
                         }
-                        UintVect payloads = Ringservice.getCodecList();
+                        List<Long> payloads = mDaemonBridge.getCodecList();
 
                         cl:
                         for (int i = 0; i < payloads.size(); ++i) {
                             for (Codec co : results) {
-                                if (co.getPayload() == payloads.get(i)) {
+                                if (co.getPayload().equals(payloads.get(i))) {
                                     continue cl;
                                 }
                             }
-                            StringMap details = Ringservice.getCodecDetails(accountId, payloads.get(i));
+                            Map<String, String> details = mDaemonBridge.getCodecDetails(accountId, payloads.get(i));
                             if (details.size() > 1) {
-                                results.add(new Codec(payloads.get(i), details.toNative(), false));
+                                results.add(new Codec(payloads.get(i), details, false));
                             } else {
                                 Log.i(TAG, "Error loading codec " + i);
                             }
@@ -755,11 +866,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "validateCertificatePath",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "validateCertificatePath() thread running...");
-                        return Ringservice.validateCertificatePath(accountID, certificatePath, privateKeyPath, "", "").toNative();
+                        return mDaemonBridge.validateCertificatePath(accountID, certificatePath, privateKeyPath, "", "");
                     }
                 }
         );
@@ -776,11 +888,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "validateCertificate",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "validateCertificate() thread running...");
-                        return Ringservice.validateCertificate(accountId, certificate).toNative();
+                        return mDaemonBridge.validateCertificate(accountId, certificate);
                     }
                 }
         );
@@ -796,11 +909,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "getCertificateDetailsPath",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "getCertificateDetailsPath() thread running...");
-                        return Ringservice.getCertificateDetails(certificatePath).toNative();
+                        return mDaemonBridge.getCertificateDetails(certificatePath);
                     }
                 }
         );
@@ -816,11 +930,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "getCertificateDetails",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "getCertificateDetails() thread running...");
-                        return Ringservice.getCertificateDetails(certificateRaw).toNative();
+                        return mDaemonBridge.getCertificateDetails(certificateRaw);
                     }
                 }
         );
@@ -831,7 +946,7 @@ public class AccountService extends Observable {
      */
     public List<String> getTlsSupportedMethods() {
         Log.i(TAG, "getTlsSupportedMethods()");
-        return SwigNativeConverter.convertSwigToNative(Ringservice.getSupportedTlsMethod());
+        return mDaemonBridge.getSupportedTlsMethod();
     }
 
     /**
@@ -839,16 +954,23 @@ public class AccountService extends Observable {
      * @return the account's credentials from the Daemon
      */
     public List<Map<String, String>> getCredentials(final String accountId) {
+        return FutureUtils.getFutureResult(getCredentialsAsync(accountId), "getCredentials");
+    }
 
-        return FutureUtils.executeDaemonThreadCallable(
+    /**
+     * @param accountId
+     * @return the account's credentials from the Daemon, without blocking the caller
+     */
+    public DaemonFuture<List<Map<String, String>>> getCredentialsAsync(final String accountId) {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getCredentials",
                 new Callable<List<Map<String, String>>>() {
                     @Override
                     public List<Map<String, String>> call() throws Exception {
                         Log.i(TAG, "getCredentials() thread running...");
-                        return Ringservice.getCredentials(accountId).toNative();
+                        return mDaemonBridge.getCredentials(accountId);
                     }
                 }
         );
@@ -860,17 +982,20 @@ public class AccountService extends Observable {
      * @param accountId
      * @param creds
      */
+    @SuppressWarnings("unchecked")
+    // Hashmap runtime cast
     public void setCredentials(final String accountId, final List creds) {
 
         FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setCredentials",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setCredentials() thread running...");
-                        Ringservice.setCredentials(accountId, SwigNativeConverter.convertFromNativeToSwig(creds));
+                        mDaemonBridge.setCredentials(accountId, (List<Map<String, String>>) creds);
                         return true;
                     }
                 }
@@ -886,11 +1011,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "registerAllAccounts",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "registerAllAccounts() thread running...");
-                        Ringservice.registerAllAccounts();
+                        mDaemonBridge.registerAllAccounts();
                         return true;
                     }
                 }
@@ -903,26 +1029,27 @@ public class AccountService extends Observable {
      * @param accountIds
      * @param toDir
      * @param password
-     * @return
+     * @return the daemon error code, -1 if the daemon did not answer before the deadline
      */
     public int backupAccounts(final List accountIds, final String toDir, final String password) {
 
-        //noinspection ConstantConditions
-        return FutureUtils.executeDaemonThreadCallable(
+        Integer error = FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "exportAccounts",
                 new Callable<Integer>() {
                     @Override
                     public Integer call() throws Exception {
-                        StringVect ids = new StringVect();
+                        List<String> ids = new ArrayList<>(accountIds.size());
                         for (Object s : accountIds) {
                             ids.add((String) s);
                         }
-                        return Ringservice.exportAccounts(ids, toDir, password);
+                        return mDaemonBridge.exportAccounts(ids, toDir, password);
                     }
                 }
         );
+        return error == null ? -1 : error;
     }
 
     /**
@@ -930,22 +1057,23 @@ public class AccountService extends Observable {
      *
      * @param archivePath
      * @param password
-     * @return
+     * @return the daemon error code, -1 if the daemon did not answer before the deadline
      */
     public int restoreAccounts(final String archivePath, final String password) {
 
-        //noinspection ConstantConditions
-        return FutureUtils.executeDaemonThreadCallable(
+        Integer error = FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "importAccounts",
                 new Callable<Integer>() {
                     @Override
                     public Integer call() throws Exception {
-                        return Ringservice.importAccounts(archivePath, password);
+                        return mDaemonBridge.importAccounts(archivePath, password);
                     }
                 }
         );
+        return error == null ? -1 : error;
     }
 
     /**
@@ -978,11 +1106,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "registerName",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "registerName() thread running...");
-                        Ringservice.registerName(account, password, name);
+                        mDaemonBridge.registerName(account, password, name);
                         return true;
                     }
                 }
@@ -996,16 +1125,23 @@ public class AccountService extends Observable {
      * @return all trust requests from the daemon for the account Id
      */
     public List<Map<String, String>> getTrustRequests(final String accountId) {
+        return FutureUtils.getFutureResult(getTrustRequestsAsync(accountId), "getTrustRequests");
+    }
 
-        return FutureUtils.executeDaemonThreadCallable(
+    /**
+     * @param accountId
+     * @return all trust requests from the daemon for the account Id, without blocking the caller
+     */
+    public DaemonFuture<List<Map<String, String>>> getTrustRequestsAsync(final String accountId) {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getTrustRequests",
                 new Callable<List<Map<String, String>>>() {
                     @Override
                     public List<Map<String, String>> call() throws Exception {
                         Log.i(TAG, "getTrustRequests() thread running...");
-                        return Ringservice.getTrustRequests(accountId).toNative();
+                        return mDaemonBridge.getTrustRequests(accountId);
                     }
                 }
         );
@@ -1025,12 +1161,14 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "acceptTrustRequest",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "acceptTrustRequest() thread running...");
-                        boolean ok = Ringservice.acceptTrustRequest(accountId, from);
+                        boolean ok = mDaemonBridge.acceptTrustRequest(accountId, from);
                         if (ok) {
+                            setChanged();
                             ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.INCOMING_TRUST_REQUEST);
                             event.addEventInput(ServiceEvent.EventInput.ACCOUNT_ID, accountId);
                             notifyObservers(event);
@@ -1055,11 +1193,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "discardTrustRequest",
                 new Callable<Void>() {
                     @Override
                     public Void call() throws Exception {
                         Log.i(TAG, "discardTrustRequest() " + accountId + " " + from);
-                        boolean ok = Ringservice.discardTrustRequest(accountId, from);
+                        boolean ok = mDaemonBridge.discardTrustRequest(accountId, from);
                         if (ok) {
                             setChanged();
                             ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.INCOMING_TRUST_REQUEST);
@@ -1079,17 +1218,18 @@ public class AccountService extends Observable {
      * @param to
      * @param message
      */
-    public void sendTrustRequest(final String accountId, final String to, final Blob message) {
+    public void sendTrustRequest(final String accountId, final String to, final String message) {
 
         FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "sendTrustRequest",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "sendTrustRequest() thread running...");
-                        Ringservice.sendTrustRequest(accountId, to, message);
+                        mDaemonBridge.sendTrustRequest(accountId, to, message);
                         return true;
                     }
                 }
@@ -1109,11 +1249,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "addContact",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "addContact() thread running...");
-                        Ringservice.addContact(accountId, uri);
+                        mDaemonBridge.addContact(accountId, uri);
                         return true;
                     }
                 }
@@ -1132,11 +1273,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "removeContact",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "removeContact() thread running...");
-                        Ringservice.removeContact(accountId, uri, ban);
+                        mDaemonBridge.removeContact(accountId, uri, ban);
                         return true;
                     }
                 }
@@ -1148,16 +1290,23 @@ public class AccountService extends Observable {
      * @return the contacts list from the daemon
      */
     public List<Map<String, String>> getContacts(final String accountId) {
+        return FutureUtils.getFutureResult(getContactsAsync(accountId), "getContacts");
+    }
 
-        return FutureUtils.executeDaemonThreadCallable(
+    /**
+     * @param accountId
+     * @return the contacts list from the daemon, without blocking the caller
+     */
+    public DaemonFuture<List<Map<String, String>>> getContactsAsync(final String accountId) {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getContacts",
                 new Callable<List<Map<String, String>>>() {
                     @Override
                     public List<Map<String, String>> call() throws Exception {
                         Log.i(TAG, "getContacts() thread running...");
-                        return Ringservice.getContacts(accountId).toNative();
+                        return mDaemonBridge.getContacts(accountId);
                     }
                 }
         );
@@ -1176,11 +1325,12 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "lookupName",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "lookupName() thread running...");
-                        Ringservice.lookupName(account, nameserver, name);
+                        mDaemonBridge.lookupName(account, nameserver, name);
                         return true;
                     }
                 }
@@ -1200,23 +1350,22 @@ public class AccountService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "lookupAddress",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "lookupAddress() " + address);
-                        Ringservice.lookupAddress(account, nameserver, address);
+                        mDaemonBridge.lookupAddress(account, nameserver, address);
                         return true;
                     }
                 }
         );
     }
 
-    class ConfigurationCallbackHandler extends ConfigurationCallback {
+    class ConfigurationCallbackHandler {
 
-        @Override
         public void volumeChanged(String device, int value) {
             Log.d(TAG, "volume changed");
-            super.volumeChanged(device, value);
 
             setChanged();
             ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.VOLUME_CHANGED);
@@ -1225,9 +1374,7 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void accountsChanged() {
-            super.accountsChanged();
             Log.d(TAG, "accounts changed");
             String currentAccountId = "";
 
@@ -1240,11 +1387,12 @@ public class AccountService extends Observable {
 
             // if there was a current account we restore it according to the new list
             Account currentAccount = getAccount(currentAccountId);
+            List<Account> accounts = mAccountList;
             if (currentAccount != null) {
                 mCurrentAccount = currentAccount;
-            } else if (!mAccountList.isEmpty()) {
+            } else if (!accounts.isEmpty()) {
                 // no current account, by default it will be the first one
-                mCurrentAccount = mAccountList.get(0);
+                mCurrentAccount = accounts.get(0);
             } else {
                 mCurrentAccount = null;
             }
@@ -1254,7 +1402,6 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void stunStatusFailure(String accountId) {
             Log.d(TAG, "stun status failure: " + accountId);
 
@@ -1264,7 +1411,6 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void registrationStateChanged(String accountId, String newState, int code, String detailString) {
             Log.d(TAG, "stun status registrationStateChanged: " + accountId + ", " + newState + ", " + code + ", " + detailString);
 
@@ -1294,13 +1440,12 @@ public class AccountService extends Observable {
             }
         }
 
-        @Override
-        public void incomingAccountMessage(String accountId, String from, StringMap messages) {
+        public void incomingAccountMessage(String accountId, String from, Map<String, String> messages) {
 
             String msg = null;
             final String textPlainMime = "text/plain";
-            if (null != messages && messages.has_key(textPlainMime)) {
-                msg = messages.getRaw(textPlainMime).toJavaString();
+            if (null != messages) {
+                msg = messages.get(textPlainMime);
             }
             if (msg == null) {
                 return;
@@ -1311,7 +1456,6 @@ public class AccountService extends Observable {
             mHistoryService.incomingMessage(txt);
         }
 
-        @Override
         public void accountMessageStatusChanged(String accountId, long messageId, String to, int status) {
             Log.d(TAG, "accountMessageStatusChanged: " + accountId + ", " + messageId + ", " + to + ", " + status);
 
@@ -1324,7 +1468,6 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void errorAlert(int alert) {
             Log.d(TAG, "errorAlert : " + alert);
 
@@ -1334,22 +1477,20 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
-        public void knownDevicesChanged(String accountId, StringMap devices) {
+        public void knownDevicesChanged(String accountId, Map<String, String> devices) {
             Log.d(TAG, "knownDevicesChanged: " + accountId + ", " + devices);
 
             Account accountChanged = getAccount(accountId);
             if (accountChanged != null) {
-                accountChanged.setDevices(devices.toNative());
+                accountChanged.setDevices(devices);
                 setChanged();
                 ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.KNOWN_DEVICES_CHANGED);
                 event.addEventInput(ServiceEvent.EventInput.ACCOUNT_ID, accountId);
-                event.addEventInput(ServiceEvent.EventInput.DEVICES, devices);
+                event.addEventInput(ServiceEvent.EventInput.DEVICES, new HashMap<>(devices));
                 notifyObservers(event);
             }
         }
 
-        @Override
         public void exportOnRingEnded(String accountId, int code, String pin) {
             Log.d(TAG, "exportOnRingEnded: " + accountId + ", " + code + ", " + pin);
 
@@ -1361,7 +1502,6 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void nameRegistrationEnded(String accountId, int state, String name) {
             Log.d(TAG, "nameRegistrationEnded: " + accountId + ", " + state + ", " + name);
 
@@ -1383,7 +1523,6 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void migrationEnded(String accountId, String state) {
             Log.d(TAG, "migrationEnded: " + accountId + ", " + state);
 
@@ -1394,7 +1533,6 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void deviceRevocationEnded(String accountId, String device, int state) {
             Log.d(TAG, "deviceRevocationEnded: " + accountId + ", " + device + ", " + state);
 
@@ -1406,20 +1544,18 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
-        public void incomingTrustRequest(String accountId, String from, Blob message, long received) {
+        public void incomingTrustRequest(String accountId, String from, String message, long received) {
             Log.d(TAG, "incomingTrustRequest: " + accountId + ", " + from + ", " + message + ", " + received);
 
             Account account = getAccount(accountId);
             if (account != null) {
-                TrustRequest request = new TrustRequest(accountId, from, received, message.toJavaString());
+                TrustRequest request = new TrustRequest(accountId, from, received, message);
                 account.addRequest(request);
                 lookupAddress(accountId, "", from);
             }
         }
 
 
-        @Override
         public void contactAdded(String accountId, String uri, boolean confirmed) {
             Log.d(TAG, "contactAdded: " + accountId + ", " + uri + ", " + confirmed);
 
@@ -1437,7 +1573,6 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void contactRemoved(String accountId, String uri, boolean banned) {
             Log.d(TAG, "contactRemoved: " + accountId + ", " + uri + ", " + banned);
 
@@ -1455,7 +1590,6 @@ public class AccountService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void registeredNameFound(String accountId, int state, String address, String name) {
             Log.d(TAG, "registeredNameFound: " + accountId + ", " + state + ", " + name + ", " + address);
 
@@ -22,20 +22,18 @@ package cx.ring.services;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import cx.ring.daemon.Blob;
-import cx.ring.daemon.IntegerMap;
-import cx.ring.daemon.Ringservice;
-import cx.ring.daemon.StringMap;
 import cx.ring.model.CallContact;
 import cx.ring.model.ServiceEvent;
 import cx.ring.model.SipCall;
 import cx.ring.model.TextMessage;
 import cx.ring.model.Uri;
+import cx.ring.utils.DaemonFuture;
 import cx.ring.utils.FutureUtils;
 import cx.ring.utils.Log;
 import cx.ring.utils.Observable;
@@ -59,9 +57,13 @@ public class CallService extends Observable {
     @Inject
     DeviceRuntimeService mDeviceRuntimeService;
 
+    @Inject
+    DaemonBridge mDaemonBridge;
+
     private CallbackHandler mCallbackHandler;
 
-    private Map<String, SipCall> currentCalls = new HashMap<>();
+    // the callbacks of different calls are handled concurrently
+    private final ConcurrentHashMap<String, SipCall> currentCalls = new ConcurrentHashMap<>();
 
     public CallService() {
         mCallbackHandler = new CallbackHandler();
@@ -76,15 +78,16 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "placeCall",
                 new Callable<SipCall>() {
                     @Override
                     public SipCall call() throws Exception {
                         Log.i(TAG, "placeCall() thread running... " + number + " video: " + video);
-                        String callId = Ringservice.placeCall(account, number);
+                        String callId = mDaemonBridge.placeCall(account, number);
                         if (callId == null || callId.isEmpty())
                             return null;
                         if (!video) {
-                            Ringservice.muteLocalMedia(callId, "MEDIA_TYPE_VIDEO", true);
+                            mDaemonBridge.muteLocalMedia(callId, "MEDIA_TYPE_VIDEO", true);
                         }
                         CallContact contact = mContactService.findContactByNumber(number);
                         SipCall call = addCall(account, callId, number, SipCall.Direction.OUTGOING);
@@ -101,12 +104,13 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "refuse",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "refuse() thread running...");
-                        Ringservice.refuse(callId);
-                        Ringservice.hangUp(callId);
+                        mDaemonBridge.refuse(callId);
+                        mDaemonBridge.hangUp(callId);
                         return true;
                     }
                 }
@@ -118,11 +122,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "accept",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "accept() thread running...");
-                        Ringservice.accept(callId);
+                        mDaemonBridge.accept(callId);
                         return true;
                     }
                 }
@@ -134,11 +139,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "hangUp",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "hangUp() thread running...");
-                        Ringservice.hangUp(callId);
+                        mDaemonBridge.hangUp(callId);
                         return true;
                     }
                 }
@@ -150,11 +156,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "hold",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "hold() thread running...");
-                        Ringservice.hold(callId);
+                        mDaemonBridge.hold(callId);
                         return true;
                     }
                 }
@@ -166,11 +173,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "unhold",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "unhold() thread running...");
-                        Ringservice.unhold(callId);
+                        mDaemonBridge.unhold(callId);
                         return true;
                     }
                 }
@@ -178,15 +186,23 @@ public class CallService extends Observable {
     }
 
     public Map<String, String> getCallDetails(final String callId) {
-        return FutureUtils.executeDaemonThreadCallable(
+        return FutureUtils.getFutureResult(getCallDetailsAsync(callId), "getCallDetails");
+    }
+
+    /**
+     * @param callId
+     * @return the call details from the Daemon, without blocking the caller
+     */
+    public DaemonFuture<Map<String, String>> getCallDetailsAsync(final String callId) {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getCallDetails",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "getCallDetails() thread running...");
-                        return Ringservice.getCallDetails(callId).toNative();
+                        return mDaemonBridge.getCallDetails(callId);
                     }
                 }
         );
@@ -194,7 +210,7 @@ public class CallService extends Observable {
 
     public void muteRingTone(boolean mute) {
         Log.d(TAG, (mute ? "Muting." : "Unmuting.") + " ringtone.");
-        Ringservice.muteRingtone(mute);
+        mDaemonBridge.muteRingtone(mute);
     }
 
     public void setAudioPlugin(final String audioPlugin) {
@@ -202,11 +218,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setAudioPlugin",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setAudioPlugin() thread running...");
-                        Ringservice.setAudioPlugin(audioPlugin);
+                        mDaemonBridge.setAudioPlugin(audioPlugin);
                         return true;
                     }
                 }
@@ -218,11 +235,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "getCurrentAudioOutputPlugin",
                 new Callable<String>() {
                     @Override
                     public String call() throws Exception {
                         Log.i(TAG, "getCurrentAudioOutputPlugin() thread running...");
-                        return Ringservice.getCurrentAudioOutputPlugin();
+                        return mDaemonBridge.getCurrentAudioOutputPlugin();
                     }
                 }
         );
@@ -233,11 +251,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "playDTMF",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "playDtmf() thread running...");
-                        Ringservice.playDTMF(key);
+                        mDaemonBridge.playDTMF(key);
                         return true;
                     }
                 }
@@ -249,31 +268,33 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "muteCapture",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setMuted() thread running...");
-                        Ringservice.muteCapture(mute);
+                        mDaemonBridge.muteCapture(mute);
                         return true;
                     }
                 }
         );
     }
 
-    @SuppressWarnings("ConstantConditions")
     public boolean isCaptureMuted() {
-        return FutureUtils.executeDaemonThreadCallable(
+        Boolean muted = FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "isCaptureMuted",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "isCaptureMuted() thread running...");
-                        return Ringservice.isCaptureMuted();
+                        return mDaemonBridge.isCaptureMuted();
                     }
                 }
         );
+        return muted != null && muted;
     }
 
     public void transfer(final String callId, final String to) {
@@ -281,11 +302,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "transfer",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "transfer() thread running...");
-                        if (Ringservice.transfer(callId, to)) {
+                        if (mDaemonBridge.transfer(callId, to)) {
                             Log.i(TAG, "OK");
                         } else {
                             Log.i(TAG, "NOT OK");
@@ -301,11 +323,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "attendedTransfer",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "attendedTransfer() thread running...");
-                        if (Ringservice.attendedTransfer(transferId, targetID)) {
+                        if (mDaemonBridge.attendedTransfer(transferId, targetID)) {
                             Log.i(TAG, "OK");
                         } else {
                             Log.i(TAG, "NOT OK");
@@ -321,30 +344,32 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "getRecordPath",
                 new Callable<String>() {
                     @Override
                     public String call() throws Exception {
                         Log.i(TAG, "getRecordPath() thread running...");
-                        return Ringservice.getRecordPath();
+                        return mDaemonBridge.getRecordPath();
                     }
                 }
         );
     }
 
-    @SuppressWarnings("ConstantConditions")
     public boolean toggleRecordingCall(final String id) {
-        return FutureUtils.executeDaemonThreadCallable(
+        Boolean recording = FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "toggleRecording",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "toggleRecordingCall() thread running...");
-                        return Ringservice.toggleRecording(id);
+                        return mDaemonBridge.toggleRecording(id);
                     }
                 }
         );
+        return recording != null && recording;
     }
 
     public boolean startRecordedFilePlayback(final String filepath) {
@@ -352,11 +377,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "startRecordedFilePlayback",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setRecordingCall() thread running...");
-                        Ringservice.startRecordedFilePlayback(filepath);
+                        mDaemonBridge.startRecordedFilePlayback(filepath);
                         return true;
                     }
                 }
@@ -369,11 +395,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "stopRecordedFilePlayback",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "stopRecordedFilePlayback() thread running...");
-                        Ringservice.stopRecordedFilePlayback(filepath);
+                        mDaemonBridge.stopRecordedFilePlayback(filepath);
                         return true;
                     }
                 }
@@ -385,11 +412,12 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setRecordPath",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "setRecordPath() " + path + " thread running...");
-                        Ringservice.setRecordPath(path);
+                        mDaemonBridge.setRecordPath(path);
                         return true;
                     }
                 }
@@ -401,35 +429,37 @@ public class CallService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "sendTextMessage",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "DsendTextMessage() thread running...");
-                        StringMap messages = new StringMap();
-                        messages.setRaw("text/plain", Blob.fromString(msg));
-                        Ringservice.sendTextMessage(callId, messages, "", false);
+                        Map<String, String> messages = new HashMap<>();
+                        messages.put(MIME_TEXT_PLAIN, msg);
+                        mDaemonBridge.sendTextMessage(callId, messages, "", false);
                         return true;
                     }
                 }
         );
     }
 
-    @SuppressWarnings("ConstantConditions")
     public long sendAccountTextMessage(final String accountId, final String to, final String msg) {
-        return FutureUtils.executeDaemonThreadCallable(
+        Long messageId = FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "sendAccountTextMessage",
                 new Callable<Long>() {
                     @Override
                     public Long call() throws Exception {
                         Log.i(TAG, "sendAccountTextMessage() thread running... " + accountId + " " + to + " " + msg);
-                        StringMap msgs = new StringMap();
-                        msgs.setRaw("text/plain", Blob.fromString(msg));
-                        return Ringservice.sendAccountTextMessage(accountId, to, msgs);
+                        Map<String, String> msgs = new HashMap<>();
+                        msgs.put(MIME_TEXT_PLAIN, msg);
+                        return mDaemonBridge.sendAccountTextMessage(accountId, to, msgs);
                     }
                 }
         );
+        return messageId == null ? 0 : messageId;
     }
 
     public SipCall getCurrentCallForId(String callId) {
@@ -441,12 +471,11 @@ public class CallService extends Observable {
     }
 
     private SipCall addCall(String accountId, String callId, String from, int direction) {
-        SipCall call = currentCalls.get(callId);
-        if (call == null) {
-            call = new SipCall(callId, accountId, new Uri(from), direction);
-            currentCalls.put(callId, call);
-        } else {
+        SipCall call = new SipCall(callId, accountId, new Uri(from), direction);
+        SipCall existing = currentCalls.putIfAbsent(callId, call);
+        if (existing != null) {
             Log.w(TAG, "Call already existed ! " + callId + " " + from);
+            return existing;
         }
         return call;
     }
@@ -456,9 +485,16 @@ public class CallService extends Observable {
         SipCall sipCall = currentCalls.get(callId);
         if (sipCall != null) {
             sipCall.setCallState(callState);
-            sipCall.setDetails(Ringservice.getCallDetails(callId).toNative());
+            Map<String, String> callDetails = getCallDetails(callId);
+            if (callDetails != null) {
+                sipCall.setDetails(callDetails);
+            }
         } else if (callState != SipCall.State.OVER) {
-            Map<String, String> callDetails = Ringservice.getCallDetails(callId).toNative();
+            Map<String, String> callDetails = getCallDetails(callId);
+            if (callDetails == null) {
+                Log.w(TAG, "parseCallState: no details for " + callId);
+                return null;
+            }
             sipCall = new SipCall(callId, callDetails);
             sipCall.setCallState(callState);
             CallContact contact = mContactService.findContact(sipCall.getNumberUri());
@@ -467,13 +503,24 @@ public class CallService extends Observable {
                 contact.setUsername(registeredName);
             }
             sipCall.setContact(contact);
-            currentCalls.put(callId, sipCall);
+            SipCall existing = currentCalls.putIfAbsent(callId, sipCall);
+            if (existing != null) {
+                existing.setCallState(callState);
+                sipCall = existing;
+            }
         }
         return sipCall;
     }
 
     class CallbackHandler {
 
+        /**
+         * @return the call, null if it is not known yet or already over
+         */
+        SipCall getCall(String callId) {
+            return currentCalls.get(callId);
+        }
+
         void callStateChanged(String callId, String newState, int detailCode) {
             Log.d(TAG, "call state changed: " + callId + ", " + newState + ", " + detailCode);
             try {
@@ -508,17 +555,29 @@ public class CallService extends Observable {
             notifyObservers(event);
         }
 
-        public void incomingMessage(String callId, String from, StringMap messages) {
+        public void incomingMessage(String callId, String from, Map<String, String> messages) {
             SipCall sipCall = currentCalls.get(callId);
-            if (sipCall == null || messages == null) {
-                Log.w(TAG, "incomingMessage: unknown call or no message: " + callId + " " + from);
+            if (sipCall == null) {
+                Log.w(TAG, "incomingMessage: unknown call: " + callId + " " + from);
+                return;
+            }
+            incomingMessage(sipCall, from, messages);
+        }
+
+        /**
+         * Handles a message of a call resolved when the message was received, which may be over since
+         */
+        void incomingMessage(SipCall sipCall, String from, Map<String, String> messages) {
+            String callId = sipCall.getCallId();
+            if (messages == null) {
+                Log.w(TAG, "incomingMessage: no message: " + callId + " " + from);
                 return;
             }
             if (sipCall.appendToVCard(from, messages)) {
                 mContactService.saveVCardContactData(sipCall.getContact());
             }
-            if (messages.has_key(MIME_TEXT_PLAIN)) {
-                String msg = messages.getRaw(MIME_TEXT_PLAIN).toJavaString();
+            String msg = messages.get(MIME_TEXT_PLAIN);
+            if (msg != null) {
                 TextMessage txt = new TextMessage(true, msg, new Uri(from), callId, sipCall.getAccount());
                 Log.w(TAG, "New text messsage " + txt.getAccount() + " " + txt.getCallId() + " " + txt.getMessage());
                 mHistoryService.incomingMessage(txt);
@@ -530,7 +589,7 @@ public class CallService extends Observable {
             // todo needs more explainations on that
         }
 
-        void onRtcpReportReceived(String callId, IntegerMap stats) {
+        void onRtcpReportReceived(String callId, Map<String, Integer> stats) {
             Log.i(TAG, "on RTCP report received: " + callId);
             setChanged();
             ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.CONFERENCE_CHANGED);
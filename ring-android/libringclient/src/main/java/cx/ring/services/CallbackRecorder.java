@@ -0,0 +1,267 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.utils.Log;
+
+/**
+ * Records the daemon callbacks, with their arguments once converted to Java types and the time
+ * they were received, so a stream seen on a device can be replayed on the JVM.
+ * <p>
+ * Binary format: a header (magic, version) then, for each callback, the time in ns since the start
+ * of the recording, the callback name, the argument count and the tagged arguments.
+ */
+public class CallbackRecorder implements Closeable {
+
+    private static final String TAG = CallbackRecorder.class.getName();
+
+    private static final int MAGIC = 0x52434252;
+    private static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte TAG_NULL = 'N';
+    private static final byte TAG_STRING = 'S';
+    private static final byte TAG_INT = 'I';
+    private static final byte TAG_LONG = 'J';
+    private static final byte TAG_BOOLEAN = 'Z';
+    private static final byte TAG_STRING_MAP = 'M';
+    private static final byte TAG_INTEGER_MAP = 'R';
+
+    private final DataOutputStream mOutput;
+    private final long mStart;
+    private boolean mFailed = false;
+
+    public CallbackRecorder(OutputStream output) throws IOException {
+        mOutput = new DataOutputStream(new BufferedOutputStream(output));
+        mOutput.writeInt(MAGIC);
+        mOutput.writeShort(VERSION);
+        mStart = System.nanoTime();
+    }
+
+    /**
+     * Appends a callback. Stops recording after the first write error instead of failing the callback.
+     */
+    public synchronized void record(String name, Object... args) {
+        if (mFailed) {
+            return;
+        }
+        try {
+            mOutput.writeLong(System.nanoTime() - mStart);
+            mOutput.writeUTF(name);
+            mOutput.writeByte(args.length);
+            for (Object arg : args) {
+                writeArgument(arg);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error recording " + name + ", recording stopped", e);
+            mFailed = true;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mOutput.close();
+    }
+
+    private void writeArgument(Object arg) throws IOException {
+        if (arg == null) {
+            mOutput.writeByte(TAG_NULL);
+        } else if (arg instanceof Integer) {
+            mOutput.writeByte(TAG_INT);
+            mOutput.writeInt((Integer) arg);
+        } else if (arg instanceof Long) {
+            mOutput.writeByte(TAG_LONG);
+            mOutput.writeLong((Long) arg);
+        } else if (arg instanceof Boolean) {
+            mOutput.writeByte(TAG_BOOLEAN);
+            mOutput.writeBoolean((Boolean) arg);
+        } else if (arg instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) arg;
+            boolean integers = !map.isEmpty() && map.values().iterator().next() instanceof Integer;
+            mOutput.writeByte(integers ? TAG_INTEGER_MAP : TAG_STRING_MAP);
+            mOutput.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(String.valueOf(entry.getKey()));
+                if (integers) {
+                    mOutput.writeInt((Integer) entry.getValue());
+                } else {
+                    writeString(String.valueOf(entry.getValue()));
+                }
+            }
+        } else {
+            mOutput.writeByte(TAG_STRING);
+            writeString(arg.toString());
+        }
+    }
+
+    private void writeString(String string) throws IOException {
+        // not writeUTF(), which is limited to 64KB
+        byte[] bytes = string.getBytes(UTF8);
+        mOutput.writeInt(bytes.length);
+        mOutput.write(bytes);
+    }
+
+    /**
+     * Reads a whole recording. A record truncated by a crash at the end of the stream is ignored.
+     */
+    public static List<Record> read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a callback recording");
+        }
+        int version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported callback recording version " + version);
+        }
+        List<Record> records = new ArrayList<>();
+        while (true) {
+            long time;
+            try {
+                time = data.readLong();
+            } catch (EOFException e) {
+                break;
+            }
+            try {
+                String name = data.readUTF();
+                Object[] args = new Object[data.readByte()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readArgument(data);
+                }
+                records.add(new Record(time, name, args));
+            } catch (EOFException e) {
+                Log.w(TAG, "Truncated callback recording after " + records.size() + " records");
+                break;
+            }
+        }
+        return records;
+    }
+
+    private static Object readArgument(DataInputStream data) throws IOException {
+        byte tag = data.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(data);
+            case TAG_INT:
+                return data.readInt();
+            case TAG_LONG:
+                return data.readLong();
+            case TAG_BOOLEAN:
+                return data.readBoolean();
+            case TAG_STRING_MAP: {
+                int size = data.readInt();
+                HashMap<String, String> map = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    String key = readString(data);
+                    map.put(key, readString(data));
+                }
+                return map;
+            }
+            case TAG_INTEGER_MAP: {
+                int size = data.readInt();
+                HashMap<String, Integer> map = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    String key = readString(data);
+                    map.put(key, data.readInt());
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown argument tag " + tag);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * A recorded callback
+     */
+    public static class Record {
+        private final long mTime;
+        private final String mName;
+        private final Object[] mArgs;
+
+        Record(long time, String name, Object[] args) {
+            mTime = time;
+            mName = name;
+            mArgs = args;
+        }
+
+        /**
+         * @return the time the callback was received, since the start of the recording
+         */
+        public long getTime(TimeUnit unit) {
+            return unit.convert(mTime, TimeUnit.NANOSECONDS);
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public Object[] getArgs() {
+            return mArgs;
+        }
+
+        public String getString(int index) {
+            return (String) mArgs[index];
+        }
+
+        public int getInt(int index) {
+            return (Integer) mArgs[index];
+        }
+
+        public long getLong(int index) {
+            return (Long) mArgs[index];
+        }
+
+        public boolean getBoolean(int index) {
+            return (Boolean) mArgs[index];
+        }
+
+        public <T> T get(int index) {
+            return (T) mArgs[index];
+        }
+
+        @Override
+        public String toString() {
+            return mName + "@" + getTime(TimeUnit.MICROSECONDS) + "µs";
+        }
+    }
+}
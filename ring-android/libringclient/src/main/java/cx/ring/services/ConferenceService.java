@@ -29,9 +29,8 @@ import java.util.concurrent.ExecutorService;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import cx.ring.daemon.Ringservice;
-import cx.ring.daemon.StringVect;
 import cx.ring.model.ServiceEvent;
+import cx.ring.utils.DaemonFuture;
 import cx.ring.utils.FutureUtils;
 import cx.ring.utils.Log;
 import cx.ring.utils.Observable;
@@ -47,6 +46,9 @@ public class ConferenceService extends Observable {
     @Inject
     DeviceRuntimeService mDeviceRuntimeService;
 
+    @Inject
+    DaemonBridge mDaemonBridge;
+
     private ConferenceCallbackHandler mCallbackHandler;
 
     public ConferenceService() {
@@ -62,11 +64,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "removeConference",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "removeConference() thread running...");
-                        Ringservice.removeConference(confId);
+                        mDaemonBridge.removeConference(confId);
                         return true;
                     }
                 }
@@ -78,11 +81,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "joinParticipant",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "joinParticipant() thread running...");
-                        Ringservice.joinParticipant(selCallId, dragCallId);
+                        mDaemonBridge.joinParticipant(selCallId, dragCallId);
                         // Generate a CONF_CREATED callback
                         return true;
                     }
@@ -95,11 +99,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "addParticipant",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "addParticipant() thread running...");
-                        Ringservice.addParticipant(callId, confId);
+                        mDaemonBridge.addParticipant(callId, confId);
                         return true;
                     }
                 }
@@ -111,11 +116,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "addMainParticipant",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "addMainParticipant() thread running...");
-                        Ringservice.addMainParticipant(confId);
+                        mDaemonBridge.addMainParticipant(confId);
                         return true;
                     }
                 }
@@ -127,11 +133,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "detachParticipant",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "detachParticipant() thread running... " + callId);
-                        Ringservice.detachParticipant(callId);
+                        mDaemonBridge.detachParticipant(callId);
                         return true;
                     }
                 }
@@ -143,11 +150,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "joinConference",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "joinConference() thread running...");
-                        Ringservice.joinConference(selConfId, dragConfId);
+                        mDaemonBridge.joinConference(selConfId, dragConfId);
                         return true;
                     }
                 }
@@ -159,11 +167,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "hangUpConference",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "hangUpConference() thread running...");
-                        Ringservice.hangUpConference(confId);
+                        mDaemonBridge.hangUpConference(confId);
                         return true;
                     }
                 }
@@ -175,11 +184,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "holdConference",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "holdConference() thread running...");
-                        Ringservice.holdConference(confId);
+                        mDaemonBridge.holdConference(confId);
                         return true;
                     }
                 }
@@ -191,49 +201,57 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "unholdConference",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "unholdConference() thread running...");
-                        Ringservice.unholdConference(confId);
+                        mDaemonBridge.unholdConference(confId);
                         return true;
                     }
                 }
         );
     }
 
-    @SuppressWarnings("ConstantConditions")
     public boolean isConferenceParticipant(final String callId) {
-        return FutureUtils.executeDaemonThreadCallable(
+        Boolean isParticipant = FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "isConferenceParticipant",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "isConferenceParticipant() thread running...");
-                        return Ringservice.isConferenceParticipant(callId);
+                        return mDaemonBridge.isConferenceParticipant(callId);
                     }
                 }
         );
+        return isParticipant != null && isParticipant;
     }
 
     public Map<String, ArrayList<String>> getConferenceList() {
-        return FutureUtils.executeDaemonThreadCallable(
+        return FutureUtils.getFutureResult(getConferenceListAsync(), "getCallList");
+    }
+
+    /**
+     * @return the conferences and their participating calls, without blocking the caller
+     */
+    public DaemonFuture<Map<String, ArrayList<String>>> getConferenceListAsync() {
+        return FutureUtils.executeDaemonThreadCallableAsync(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
-                true,
+                "getCallList",
                 new Callable<Map<String, ArrayList<String>>>() {
                     @Override
                     public Map<String, ArrayList<String>> call() throws Exception {
                         Log.i(TAG, "getConferenceList() thread running...");
-                        StringVect callIds = Ringservice.getCallList();
+                        List<String> callIds = mDaemonBridge.getCallList();
                         HashMap<String, ArrayList<String>> confs = new HashMap<>(callIds.size());
-                        for (int i = 0; i < callIds.size(); i++) {
-                            String callId = callIds.get(i);
-                            String confId = Ringservice.getConferenceId(callId);
+                        for (String callId : callIds) {
+                            String confId = mDaemonBridge.getConferenceId(callId);
 
-                            Map<String, String> callDetails = Ringservice.getCallDetails(callId).toNative();
+                            Map<String, String> callDetails = mDaemonBridge.getCallDetails(callId);
 
                             //todo remove condition when callDetails does not contains sips ids anymore
                             if(!callDetails.get("PEER_NUMBER").contains("sips")) {
@@ -259,18 +277,19 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "getParticipantList",
                 new Callable<List<String>>() {
                     @Override
                     public List<String> call() throws Exception {
                         Log.i(TAG, "getParticipantList() thread running...");
-                        return new ArrayList<>(Ringservice.getParticipantList(confId));
+                        return new ArrayList<>(mDaemonBridge.getParticipantList(confId));
                     }
                 }
         );
     }
 
     public String getConferenceId(String callId) {
-        return Ringservice.getConferenceId(callId);
+        return mDaemonBridge.getConferenceId(callId);
     }
 
     public String getConferenceDetails(final String callId) {
@@ -278,11 +297,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "getConferenceDetails",
                 new Callable<String>() {
                     @Override
                     public String call() throws Exception {
                         Log.i(TAG, "getConferenceDetails() thread running...");
-                        return Ringservice.getConferenceDetails(callId).get("CONF_STATE");
+                        return mDaemonBridge.getConferenceDetails(callId).get("CONF_STATE");
                     }
                 }
         );
@@ -293,11 +313,12 @@ public class ConferenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
+                "getConferenceDetails",
                 new Callable<Map<String, String>>() {
                     @Override
                     public Map<String, String> call() throws Exception {
                         Log.i(TAG, "getCredentials() thread running...");
-                        return Ringservice.getConferenceDetails(id).toNative();
+                        return mDaemonBridge.getConferenceDetails(id);
                     }
                 }
         );
@@ -21,10 +21,10 @@ package cx.ring.services;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 import javax.inject.Inject;
@@ -82,8 +82,9 @@ public abstract class ContactService extends Observable {
     public abstract void loadVCardContactData(CallContact contact);
 
     public ContactService() {
-        mContactList = new HashMap<>();
-        mContactsRing = new HashMap<>();
+        // the caches are also updated from the daemon callback workers
+        mContactList = new ConcurrentHashMap<>();
+        mContactsRing = new ConcurrentHashMap<>();
     }
 
     /**
@@ -98,7 +99,7 @@ public abstract class ContactService extends Observable {
             public void run() {
                 Settings settings = mPreferencesService.loadSettings();
                 if (settings.isAllowSystemContacts() && mDeviceRuntimeService.hasContactPermission()) {
-                    mContactList = loadContactsFromSystem(loadRingContacts, loadSipContacts);
+                    mContactList = new ConcurrentHashMap<>(loadContactsFromSystem(loadRingContacts, loadSipContacts));
                 }
                 mContactsRing.clear();
                 mAccountId = account.getAccountID();
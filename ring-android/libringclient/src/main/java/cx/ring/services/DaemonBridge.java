@@ -0,0 +1,208 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.services;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Daemon API used by the services, expressed with plain Java types.
+ * <p>
+ * {@link RingserviceBridge} forwards the calls to the native daemon through SWIG.
+ * Other implementations (e.g. an in-memory daemon) allow to run the service layer on a plain JVM.
+ * Every method is called from the daemon executor thread.
+ */
+public interface DaemonBridge {
+
+    // Accounts
+
+    List<String> getAccountList();
+
+    Map<String, String> getAccountDetails(String accountId);
+
+    Map<String, String> getVolatileAccountDetails(String accountId);
+
+    Map<String, String> getAccountTemplate(String accountType);
+
+    String addAccount(Map<String, String> details);
+
+    void removeAccount(String accountId);
+
+    void setAccountDetails(String accountId, Map<String, String> details);
+
+    void setAccountActive(String accountId, boolean active);
+
+    void setAccountsOrder(String order);
+
+    void registerAllAccounts();
+
+    void connectivityChanged();
+
+    List<Map<String, String>> getCredentials(String accountId);
+
+    void setCredentials(String accountId, List<Map<String, String>> credentials);
+
+    Map<String, String> getKnownRingDevices(String accountId);
+
+    boolean revokeDevice(String accountId, String password, String deviceId);
+
+    String exportOnRing(String accountId, String password);
+
+    int exportAccounts(List<String> accountIds, String toDir, String password);
+
+    int importAccounts(String archivePath, String password);
+
+    List<Long> getCodecList();
+
+    List<Long> getActiveCodecList(String accountId);
+
+    Map<String, String> getCodecDetails(String accountId, long codecId);
+
+    void setActiveCodecList(String accountId, List<Long> codecIds);
+
+    Map<String, String> validateCertificatePath(String accountId, String certificatePath, String privateKeyPath,
+                                                String privateKeyPassword, String caList);
+
+    Map<String, String> validateCertificate(String accountId, String certificate);
+
+    Map<String, String> getCertificateDetails(String certificate);
+
+    List<String> getSupportedTlsMethod();
+
+    // Names
+
+    boolean registerName(String accountId, String password, String name);
+
+    boolean lookupName(String accountId, String nameserver, String name);
+
+    boolean lookupAddress(String accountId, String nameserver, String address);
+
+    // Contacts and trust requests
+
+    List<Map<String, String>> getContacts(String accountId);
+
+    void addContact(String accountId, String uri);
+
+    void removeContact(String accountId, String uri, boolean ban);
+
+    List<Map<String, String>> getTrustRequests(String accountId);
+
+    boolean acceptTrustRequest(String accountId, String from);
+
+    boolean discardTrustRequest(String accountId, String from);
+
+    void sendTrustRequest(String accountId, String to, String payload);
+
+    // Messages, keyed by mime type
+
+    void sendTextMessage(String callId, Map<String, String> messages, String from, boolean isMixed);
+
+    long sendAccountTextMessage(String accountId, String to, Map<String, String> messages);
+
+    // Calls
+
+    String placeCall(String accountId, String to);
+
+    boolean accept(String callId);
+
+    boolean refuse(String callId);
+
+    boolean hangUp(String callId);
+
+    boolean hold(String callId);
+
+    boolean unhold(String callId);
+
+    boolean transfer(String callId, String to);
+
+    boolean attendedTransfer(String transferId, String targetId);
+
+    Map<String, String> getCallDetails(String callId);
+
+    List<String> getCallList();
+
+    boolean muteLocalMedia(String callId, String mediaType, boolean mute);
+
+    void muteRingtone(boolean mute);
+
+    void muteCapture(boolean mute);
+
+    boolean isCaptureMuted();
+
+    void playDTMF(String key);
+
+    void setAudioPlugin(String audioPlugin);
+
+    String getCurrentAudioOutputPlugin();
+
+    String getRecordPath();
+
+    void setRecordPath(String path);
+
+    boolean toggleRecording(String callId);
+
+    boolean startRecordedFilePlayback(String filepath);
+
+    void stopRecordedFilePlayback(String filepath);
+
+    // Conferences
+
+    void removeConference(String confId);
+
+    boolean joinParticipant(String selCallId, String dragCallId);
+
+    boolean addParticipant(String callId, String confId);
+
+    boolean addMainParticipant(String confId);
+
+    boolean detachParticipant(String callId);
+
+    boolean joinConference(String selConfId, String dragConfId);
+
+    boolean hangUpConference(String confId);
+
+    boolean holdConference(String confId);
+
+    boolean unholdConference(String confId);
+
+    boolean isConferenceParticipant(String callId);
+
+    List<String> getParticipantList(String confId);
+
+    String getConferenceId(String callId);
+
+    Map<String, String> getConferenceDetails(String confId);
+
+    // Presence
+
+    void publish(String accountId, boolean status, String note);
+
+    void answerServerRequest(String uri, boolean flag);
+
+    void subscribeBuddy(String accountId, String uri, boolean flag);
+
+    List<Map<String, String>> getSubscriptions(String accountId);
+
+    void setSubscriptions(String accountId, List<String> uris);
+
+    // Video
+
+    void applySettings(String deviceId, Map<String, String> settings);
+
+    boolean switchInput(String callId, String resource);
+}
@@ -19,9 +19,20 @@
  */
 package cx.ring.services;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -36,13 +47,24 @@ import cx.ring.daemon.Ringservice;
 import cx.ring.daemon.StringMap;
 import cx.ring.daemon.StringVect;
 import cx.ring.daemon.VideoCallback;
+import cx.ring.model.SipCall;
+import cx.ring.model.Uri;
+import cx.ring.utils.InstrumentedExecutor;
+import cx.ring.utils.KeyedDispatcher;
 import cx.ring.utils.Log;
 
 public class DaemonService {
 
     private static final String TAG = DaemonService.class.getName();
 
+    // polling interval while a call is ringing/active or right after daemon activity
     private static final int POLLING_TIMEOUT = 50;
+    // upper bound of the polling interval when the daemon is idle
+    private static final int POLLING_TIMEOUT_IDLE = 500;
+    // dispatch key of the callbacks updating the accounts cache
+    private static final String ACCOUNTS_KEY = "accounts";
+    // dispatch key of the call and conference callbacks, a conference is made of calls
+    private static final String CALLS_KEY = "calls";
 
     @Inject
     @Named("DaemonExecutor")
@@ -54,10 +76,32 @@ public class DaemonService {
     @Inject
     HistoryService mHistoryService;
 
+    // callbacks are handled there, the daemon thread only copies their arguments
+    @Inject
+    KeyedDispatcher mCallbackDispatcher;
+
     private final SystemInfoCallbacks mSystemInfoCallbacks;
 
+    // set while the callbacks are recorded for a replay
+    private volatile CallbackRecorder mCallbackRecorder;
+
     private boolean mDaemonStarted = false;
 
+    // poll scheduling state, see scheduleNextPoll()
+    private final AtomicBoolean mPollInFlight = new AtomicBoolean(false);
+    private final AtomicBoolean mDaemonActivity = new AtomicBoolean(false);
+    private final Set<String> mActiveCalls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ScheduledFuture<?> mPollingTask;
+    private long mPollingInterval = POLLING_TIMEOUT;
+
+    private final AtomicLong mPollCount = new AtomicLong();
+    private final AtomicLong mSkippedPollCount = new AtomicLong();
+    private volatile int mLastPollQueueDepth;
+    private volatile int mMaxPollQueueDepth;
+    private volatile float mPollsPerSecond;
+    private long mPollRateWindowStart;
+    private long mPollRateWindowCount;
+
     public DaemonService(SystemInfoCallbacks systemInfoCallbacks) {
         mSystemInfoCallbacks = systemInfoCallbacks;
     }
@@ -82,8 +126,9 @@ public class DaemonService {
         return callbackHandler;
     }
 
-    public PresenceCallback getDaemonPresenceCallbackHandler() {
+    public PresenceCallback getDaemonPresenceCallbackHandler(PresenceService.PresenceCallbackHandler presenceCallbackHandler) {
         DaemonPresenceCallback callbackHandler = new DaemonPresenceCallback();
+        callbackHandler.setPresenceCallbackHandler(presenceCallbackHandler);
         return callbackHandler;
     }
 
@@ -106,20 +151,179 @@ public class DaemonService {
     }
 
     private void startRingServicePolling() {
-        mScheduledExecutor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                mExecutor.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        Ringservice.pollEvents();
-                    }
-                });
+        mPollRateWindowStart = System.currentTimeMillis();
+        mPollingInterval = POLLING_TIMEOUT;
+        scheduleNextPoll(0);
+    }
+
+    /**
+     * Schedules the next poll tick.
+     * A tick never submits a new pollEvents() to the daemon executor while the previous one
+     * is still queued or running: such ticks are counted as skipped.
+     */
+    private synchronized void scheduleNextPoll(long delay) {
+        if (mScheduledExecutor.isShutdown()) {
+            return;
+        }
+        try {
+            mPollingTask = mScheduledExecutor.schedule(mPollTick, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Unable to schedule daemon polling", e);
+        }
+    }
+
+    private final Runnable mPollTick = new Runnable() {
+        @Override
+        public void run() {
+            updatePollRate();
+
+            if (mPollInFlight.compareAndSet(false, true)) {
+                int queueDepth = getDaemonQueueDepth();
+                mLastPollQueueDepth = queueDepth;
+                if (queueDepth > mMaxPollQueueDepth) {
+                    mMaxPollQueueDepth = queueDepth;
+                }
+                try {
+                    mExecutor.submit(InstrumentedExecutor.named("pollEvents", mPollEvents));
+                } catch (RejectedExecutionException e) {
+                    mPollInFlight.set(false);
+                    Log.w(TAG, "Daemon executor rejected pollEvents", e);
+                }
+            } else {
+                mSkippedPollCount.incrementAndGet();
+            }
+
+            scheduleNextPoll(computePollingInterval());
+        }
+    };
+
+    private final Runnable mPollEvents = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                Ringservice.pollEvents();
+            } finally {
+                mPollCount.incrementAndGet();
+                mPollInFlight.set(false);
             }
-        }, 0, POLLING_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    };
+
+    /**
+     * Polls tightly while a call is in progress or when the daemon just emitted a callback,
+     * otherwise doubles the interval up to POLLING_TIMEOUT_IDLE.
+     */
+    private long computePollingInterval() {
+        if (!mActiveCalls.isEmpty() || mDaemonActivity.getAndSet(false)) {
+            mPollingInterval = POLLING_TIMEOUT;
+        } else {
+            mPollingInterval = Math.min(mPollingInterval * 2, POLLING_TIMEOUT_IDLE);
+        }
+        return mPollingInterval;
+    }
+
+    private void updatePollRate() {
+        long now = System.currentTimeMillis();
+        long elapsed = now - mPollRateWindowStart;
+        if (elapsed >= 1000) {
+            long polls = mPollCount.get();
+            mPollsPerSecond = (polls - mPollRateWindowCount) * 1000f / elapsed;
+            mPollRateWindowCount = polls;
+            mPollRateWindowStart = now;
+        }
+    }
+
+    private int getDaemonQueueDepth() {
+        if (mExecutor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) mExecutor).getQueue().size();
+        }
+        return -1;
+    }
+
+    /**
+     * Resets the polling interval to its minimum, to be called whenever the daemon shows some activity
+     */
+    void onDaemonActivity() {
+        mDaemonActivity.set(true);
+    }
+
+    private void onCallStateChanged(String callId, String newState) {
+        int state = SipCall.stateFromString(newState);
+        if (state == SipCall.State.OVER || state == SipCall.State.HUNGUP
+                || state == SipCall.State.FAILURE || state == SipCall.State.BUSY
+                || state == SipCall.State.INACTIVE) {
+            mActiveCalls.remove(callId);
+        } else {
+            mActiveCalls.add(callId);
+        }
+        onDaemonActivity();
+    }
+
+    /**
+     * @return a snapshot of the per-operation latencies and queue depth of the daemon executor,
+     * null if the executor is not instrumented
+     */
+    public InstrumentedExecutor.Snapshot getExecutorStatistics() {
+        if (mExecutor instanceof InstrumentedExecutor) {
+            return ((InstrumentedExecutor) mExecutor).getSnapshot();
+        }
+        return null;
+    }
+
+    /**
+     * @return a snapshot of the latencies between the daemon callbacks and the end of their handling
+     */
+    public KeyedDispatcher.Snapshot getCallbackStatistics() {
+        return mCallbackDispatcher.getSnapshot();
+    }
+
+    /**
+     * @return a snapshot of the daemon polling counters
+     */
+    public PollingStatistics getPollingStatistics() {
+        return new PollingStatistics(mPollCount.get(),
+                mSkippedPollCount.get(),
+                mPollsPerSecond,
+                mLastPollQueueDepth,
+                mMaxPollQueueDepth,
+                mPollingInterval,
+                mActiveCalls.size());
+    }
+
+    /**
+     * Records the callbacks received from now on, until {@link #stopCallbackRecording()}
+     */
+    public void startCallbackRecording(OutputStream output) throws IOException {
+        stopCallbackRecording();
+        mCallbackRecorder = new CallbackRecorder(output);
+    }
+
+    public void stopCallbackRecording() {
+        CallbackRecorder recorder = mCallbackRecorder;
+        mCallbackRecorder = null;
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing the callback recording", e);
+            }
+        }
+    }
+
+    private void record(String name, Object... args) {
+        CallbackRecorder recorder = mCallbackRecorder;
+        if (recorder != null) {
+            recorder.record(name, args);
+        }
     }
 
     public void stopDaemon() {
+        synchronized (this) {
+            if (mPollingTask != null) {
+                mPollingTask.cancel(false);
+                mPollingTask = null;
+            }
+        }
         mScheduledExecutor.shutdown();
 
         if (mDaemonStarted) {
@@ -130,6 +334,82 @@ public class DaemonService {
         }
     }
 
+    public static class PollingStatistics {
+        private final long mPollCount;
+        private final long mSkippedPollCount;
+        private final float mPollsPerSecond;
+        private final int mLastQueueDepth;
+        private final int mMaxQueueDepth;
+        private final long mPollingInterval;
+        private final int mActiveCallCount;
+
+        PollingStatistics(long pollCount, long skippedPollCount, float pollsPerSecond,
+                          int lastQueueDepth, int maxQueueDepth, long pollingInterval, int activeCallCount) {
+            mPollCount = pollCount;
+            mSkippedPollCount = skippedPollCount;
+            mPollsPerSecond = pollsPerSecond;
+            mLastQueueDepth = lastQueueDepth;
+            mMaxQueueDepth = maxQueueDepth;
+            mPollingInterval = pollingInterval;
+            mActiveCallCount = activeCallCount;
+        }
+
+        /**
+         * @return the number of pollEvents() executed on the daemon thread
+         */
+        public long getPollCount() {
+            return mPollCount;
+        }
+
+        /**
+         * @return the number of ticks that did not submit a poll because the previous one was still pending
+         */
+        public long getSkippedPollCount() {
+            return mSkippedPollCount;
+        }
+
+        public float getPollsPerSecond() {
+            return mPollsPerSecond;
+        }
+
+        /**
+         * @return the daemon executor queue depth when the last poll was submitted, -1 if unknown
+         */
+        public int getLastQueueDepth() {
+            return mLastQueueDepth;
+        }
+
+        public int getMaxQueueDepth() {
+            return mMaxQueueDepth;
+        }
+
+        public long getPollingInterval() {
+            return mPollingInterval;
+        }
+
+        public int getActiveCallCount() {
+            return mActiveCallCount;
+        }
+
+        @Override
+        public String toString() {
+            return "polls=" + mPollCount + " skipped=" + mSkippedPollCount + " polls/s=" + mPollsPerSecond
+                    + " queueDepth=" + mLastQueueDepth + " maxQueueDepth=" + mMaxQueueDepth
+                    + " interval=" + mPollingInterval + "ms activeCalls=" + mActiveCallCount;
+        }
+    }
+
+    /**
+     * @return the dispatch key of the messages exchanged between the account and the peer, in or out of a call
+     */
+    private static String messageKey(String accountId, String peer) {
+        return KeyedDispatcher.key(accountId, new Uri(peer).getRawUriString());
+    }
+
+    /**
+     * Callbacks mutating the accounts cache are serialized under ACCOUNTS_KEY,
+     * messages are dispatched per account and peer, see {@link #messageKey(String, String)}.
+     */
     class DaemonConfigurationCallback extends ConfigurationCallback {
         private AccountService.ConfigurationCallbackHandler mAccountCallbackHandler;
 
@@ -138,38 +418,88 @@ public class DaemonService {
         }
 
         @Override
-        public void volumeChanged(String device, int value) {
-            mAccountCallbackHandler.volumeChanged(device, value);
+        public void volumeChanged(final String device, final int value) {
+            onDaemonActivity();
+            record("volumeChanged", device, value);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "volumeChanged", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.volumeChanged(device, value);
+                }
+            });
         }
 
         @Override
         public void accountsChanged() {
-            mAccountCallbackHandler.accountsChanged();
+            onDaemonActivity();
+            record("accountsChanged");
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "accountsChanged", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.accountsChanged();
+                }
+            });
         }
 
         @Override
-        public void stunStatusFailure(String accountId) {
-            mAccountCallbackHandler.stunStatusFailure(accountId);
+        public void stunStatusFailure(final String accountId) {
+            onDaemonActivity();
+            record("stunStatusFailure", accountId);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "stunStatusFailure", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.stunStatusFailure(accountId);
+                }
+            });
         }
 
         @Override
-        public void registrationStateChanged(String accountId, String newState, int code, String detailString) {
-            mAccountCallbackHandler.registrationStateChanged(accountId, newState, code, detailString);
+        public void registrationStateChanged(final String accountId, final String newState, final int code, final String detailString) {
+            onDaemonActivity();
+            record("registrationStateChanged", accountId, newState, code, detailString);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "registrationStateChanged", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.registrationStateChanged(accountId, newState, code, detailString);
+                }
+            });
         }
 
         @Override
-        public void incomingAccountMessage(String accountId, String from, StringMap messages) {
-            mAccountCallbackHandler.incomingAccountMessage(accountId, from, messages);
+        public void incomingAccountMessage(final String accountId, final String from, StringMap messages) {
+            onDaemonActivity();
+            final Map<String, String> nativeMessages = messages.toNativeFromUtf8();
+            record("incomingAccountMessage", accountId, from, nativeMessages);
+            mCallbackDispatcher.dispatch(messageKey(accountId, from), "incomingAccountMessage", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.incomingAccountMessage(accountId, from, nativeMessages);
+                }
+            });
         }
 
         @Override
-        public void accountMessageStatusChanged(String accountId, long messageId, String to, int status) {
-            mHistoryService.accountMessageStatusChanged(accountId, messageId, to, status);
+        public void accountMessageStatusChanged(final String accountId, final long messageId, final String to, final int status) {
+            onDaemonActivity();
+            record("accountMessageStatusChanged", accountId, messageId, to, status);
+            mCallbackDispatcher.dispatch(messageKey(accountId, to), "accountMessageStatusChanged", new Runnable() {
+                @Override
+                public void run() {
+                    mHistoryService.accountMessageStatusChanged(accountId, messageId, to, status);
+                }
+            });
         }
 
         @Override
-        public void errorAlert(int alert) {
-            mAccountCallbackHandler.errorAlert(alert);
+        public void errorAlert(final int alert) {
+            onDaemonActivity();
+            record("errorAlert", alert);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "errorAlert", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.errorAlert(alert);
+                }
+            });
         }
 
         @Override
@@ -188,51 +518,120 @@ public class DaemonService {
         }
 
         @Override
-        public void knownDevicesChanged(String accountId, StringMap devices) {
-            mAccountCallbackHandler.knownDevicesChanged(accountId, devices);
+        public void knownDevicesChanged(final String accountId, StringMap devices) {
+            onDaemonActivity();
+            final Map<String, String> nativeDevices = devices.toNative();
+            record("knownDevicesChanged", accountId, nativeDevices);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "knownDevicesChanged", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.knownDevicesChanged(accountId, nativeDevices);
+                }
+            });
         }
 
         @Override
-        public void exportOnRingEnded(String accountId, int code, String pin) {
-            mAccountCallbackHandler.exportOnRingEnded(accountId, code, pin);
+        public void exportOnRingEnded(final String accountId, final int code, final String pin) {
+            onDaemonActivity();
+            record("exportOnRingEnded", accountId, code, pin);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "exportOnRingEnded", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.exportOnRingEnded(accountId, code, pin);
+                }
+            });
         }
 
         @Override
-        public void nameRegistrationEnded(String accountId, int state, String name) {
-            mAccountCallbackHandler.nameRegistrationEnded(accountId, state, name);
+        public void nameRegistrationEnded(final String accountId, final int state, final String name) {
+            onDaemonActivity();
+            record("nameRegistrationEnded", accountId, state, name);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "nameRegistrationEnded", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.nameRegistrationEnded(accountId, state, name);
+                }
+            });
         }
 
         @Override
-        public void registeredNameFound(String accountId, int state, String address, String name) {
-            mAccountCallbackHandler.registeredNameFound(accountId, state, address, name);
+        public void registeredNameFound(final String accountId, final int state, final String address, final String name) {
+            onDaemonActivity();
+            record("registeredNameFound", accountId, state, address, name);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "registeredNameFound", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.registeredNameFound(accountId, state, address, name);
+                }
+            });
         }
 
         @Override
-        public void migrationEnded(String accountId, String state) {
-            mAccountCallbackHandler.migrationEnded(accountId, state);
+        public void migrationEnded(final String accountId, final String state) {
+            onDaemonActivity();
+            record("migrationEnded", accountId, state);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "migrationEnded", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.migrationEnded(accountId, state);
+                }
+            });
         }
 
         @Override
-        public void deviceRevocationEnded(String accountId, String device, int state) {
-            mAccountCallbackHandler.deviceRevocationEnded(accountId, device, state);
+        public void deviceRevocationEnded(final String accountId, final String device, final int state) {
+            onDaemonActivity();
+            record("deviceRevocationEnded", accountId, device, state);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "deviceRevocationEnded", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.deviceRevocationEnded(accountId, device, state);
+                }
+            });
         }
 
         @Override
-        public void incomingTrustRequest(String accountId, String from, Blob message, long received) {
-            mAccountCallbackHandler.incomingTrustRequest(accountId, from, message, received);
+        public void incomingTrustRequest(final String accountId, final String from, Blob message, final long received) {
+            onDaemonActivity();
+            final String payload = message.toJavaString();
+            record("incomingTrustRequest", accountId, from, payload, received);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "incomingTrustRequest", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.incomingTrustRequest(accountId, from, payload, received);
+                }
+            });
         }
 
         @Override
-        public void contactAdded(String accountId, String uri, boolean confirmed) {
-            mAccountCallbackHandler.contactAdded(accountId, uri, confirmed);
+        public void contactAdded(final String accountId, final String uri, final boolean confirmed) {
+            onDaemonActivity();
+            record("contactAdded", accountId, uri, confirmed);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "contactAdded", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.contactAdded(accountId, uri, confirmed);
+                }
+            });
         }
 
         @Override
-        public void contactRemoved(String accountId, String uri, boolean banned) {
-            mAccountCallbackHandler.contactRemoved(accountId, uri, banned);
+        public void contactRemoved(final String accountId, final String uri, final boolean banned) {
+            onDaemonActivity();
+            record("contactRemoved", accountId, uri, banned);
+            mCallbackDispatcher.dispatch(ACCOUNTS_KEY, "contactRemoved", new Runnable() {
+                @Override
+                public void run() {
+                    mAccountCallbackHandler.contactRemoved(accountId, uri, banned);
+                }
+            });
         }
     }
 
+    /**
+     * Call and conference callbacks are serialized under CALLS_KEY, so that a conference change is handled
+     * after the changes of its calls. In-call messages are dispatched with the other messages of the peer.
+     */
     class DaemonCallback extends Callback {
 
         private CallService.CallbackHandler mCallbackHandler;
@@ -247,68 +646,174 @@ public class DaemonService {
         }
 
         @Override
-        public void callStateChanged(String callId, String newState, int detailCode) {
-            mCallbackHandler.callStateChanged(callId, newState, detailCode);
+        public void callStateChanged(final String callId, final String newState, final int detailCode) {
+            onCallStateChanged(callId, newState);
+            record("callStateChanged", callId, newState, detailCode);
+            mCallbackDispatcher.dispatch(CALLS_KEY, "callStateChanged", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.callStateChanged(callId, newState, detailCode);
+                }
+            });
         }
 
         @Override
-        public void incomingCall(String accountId, String callId, String from) {
-            mCallbackHandler.incomingCall(accountId, callId, from);
+        public void incomingCall(final String accountId, final String callId, final String from) {
+            onDaemonActivity();
+            record("incomingCall", accountId, callId, from);
+            mCallbackDispatcher.dispatch(CALLS_KEY, "incomingCall", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.incomingCall(accountId, callId, from);
+                }
+            });
         }
 
         @Override
-        public void incomingMessage(String callId, String from, StringMap messages) {
-            mCallbackHandler.incomingMessage(callId, from, messages);
+        public void incomingMessage(final String callId, final String from, StringMap messages) {
+            onDaemonActivity();
+            final Map<String, String> nativeMessages = messages.toNativeFromUtf8();
+            record("incomingMessage", callId, from, nativeMessages);
+            // the call is resolved here, so that the message is still handled once the call is over and removed
+            final SipCall call = mCallbackHandler.getCall(callId);
+            if (call == null) {
+                // not known yet, ordered after its creation
+                mCallbackDispatcher.dispatch(CALLS_KEY, "incomingMessage", new Runnable() {
+                    @Override
+                    public void run() {
+                        mCallbackHandler.incomingMessage(callId, from, nativeMessages);
+                    }
+                });
+                return;
+            }
+            // ordered with the messages exchanged with the peer outside of the call
+            mCallbackDispatcher.dispatch(messageKey(call.getAccount(), from), "incomingMessage", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.incomingMessage(call, from, nativeMessages);
+                }
+            });
         }
 
         @Override
         public void conferenceCreated(final String confId) {
-            mConferenceCallbackHandler.conferenceCreated(confId);
+            onDaemonActivity();
+            record("conferenceCreated", confId);
+            mCallbackDispatcher.dispatch(CALLS_KEY, "conferenceCreated", new Runnable() {
+                @Override
+                public void run() {
+                    mConferenceCallbackHandler.conferenceCreated(confId);
+                }
+            });
         }
 
         @Override
-        public void conferenceRemoved(String confId) {
-            mConferenceCallbackHandler.conferenceRemoved(confId);
+        public void conferenceRemoved(final String confId) {
+            onDaemonActivity();
+            record("conferenceRemoved", confId);
+            mCallbackDispatcher.dispatch(CALLS_KEY, "conferenceRemoved", new Runnable() {
+                @Override
+                public void run() {
+                    mConferenceCallbackHandler.conferenceRemoved(confId);
+                }
+            });
         }
 
         @Override
-        public void conferenceChanged(String confId, String state) {
-            mConferenceCallbackHandler.conferenceChanged(confId, state);
+        public void conferenceChanged(final String confId, final String state) {
+            onDaemonActivity();
+            record("conferenceChanged", confId, state);
+            mCallbackDispatcher.dispatch(CALLS_KEY, "conferenceChanged", new Runnable() {
+                @Override
+                public void run() {
+                    mConferenceCallbackHandler.conferenceChanged(confId, state);
+                }
+            });
         }
 
         @Override
-        public void recordPlaybackFilepath(String id, String filename) {
-            mCallbackHandler.recordPlaybackFilepath(id, filename);
+        public void recordPlaybackFilepath(final String id, final String filename) {
+            onDaemonActivity();
+            record("recordPlaybackFilepath", id, filename);
+            mCallbackDispatcher.dispatch(CALLS_KEY, "recordPlaybackFilepath", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.recordPlaybackFilepath(id, filename);
+                }
+            });
         }
 
         @Override
-        public void onRtcpReportReceived(String callId, IntegerMap stats) {
-            mCallbackHandler.onRtcpReportReceived(callId, stats);
+        public void onRtcpReportReceived(final String callId, IntegerMap stats) {
+            onDaemonActivity();
+            final Map<String, Integer> nativeStats = stats.toNative();
+            record("onRtcpReportReceived", callId, nativeStats);
+            mCallbackDispatcher.dispatch(CALLS_KEY, "onRtcpReportReceived", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.onRtcpReportReceived(callId, nativeStats);
+                }
+            });
         }
 
     }
 
+    /**
+     * Presence callbacks are dispatched per account and buddy
+     */
     class DaemonPresenceCallback extends PresenceCallback {
         private PresenceService.PresenceCallbackHandler mCallbackHandler;
 
+        void setPresenceCallbackHandler(PresenceService.PresenceCallbackHandler callbackHandler) {
+            mCallbackHandler = callbackHandler;
+        }
+
         @Override
-        public void newServerSubscriptionRequest(String remote) {
-            mCallbackHandler.newServerSubscriptionRequest(remote);
+        public void newServerSubscriptionRequest(final String remote) {
+            onDaemonActivity();
+            record("newServerSubscriptionRequest", remote);
+            mCallbackDispatcher.dispatch(remote, "newServerSubscriptionRequest", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.newServerSubscriptionRequest(remote);
+                }
+            });
         }
 
         @Override
-        public void serverError(String accountId, String error, String message) {
-            mCallbackHandler.serverError(accountId, error, message);
+        public void serverError(final String accountId, final String error, final String message) {
+            onDaemonActivity();
+            record("serverError", accountId, error, message);
+            mCallbackDispatcher.dispatch(accountId, "serverError", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.serverError(accountId, error, message);
+                }
+            });
         }
 
         @Override
-        public void newBuddyNotification(String accountId, String buddyUri, int status, String lineStatus) {
-            mCallbackHandler.newBuddyNotification(accountId, buddyUri, status, lineStatus);
+        public void newBuddyNotification(final String accountId, final String buddyUri, final int status, final String lineStatus) {
+            onDaemonActivity();
+            record("newBuddyNotification", accountId, buddyUri, status, lineStatus);
+            mCallbackDispatcher.dispatch(KeyedDispatcher.key(accountId, buddyUri), "newBuddyNotification", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.newBuddyNotification(accountId, buddyUri, status, lineStatus);
+                }
+            });
         }
 
         @Override
-        public void subscriptionStateChanged(String accountId, String buddyUri, int state) {
-            mCallbackHandler.subscriptionStateChanged(accountId, buddyUri, state);
+        public void subscriptionStateChanged(final String accountId, final String buddyUri, final int state) {
+            onDaemonActivity();
+            record("subscriptionStateChanged", accountId, buddyUri, state);
+            mCallbackDispatcher.dispatch(KeyedDispatcher.key(accountId, buddyUri), "subscriptionStateChanged", new Runnable() {
+                @Override
+                public void run() {
+                    mCallbackHandler.subscriptionStateChanged(accountId, buddyUri, state);
+                }
+            });
         }
     }
 }
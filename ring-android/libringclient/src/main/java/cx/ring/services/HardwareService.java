@@ -27,9 +27,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import cx.ring.daemon.IntVect;
-import cx.ring.daemon.Ringservice;
 import cx.ring.daemon.RingserviceJNI;
-import cx.ring.daemon.StringMap;
 import cx.ring.daemon.UintVect;
 import cx.ring.daemon.VideoCallback;
 import cx.ring.utils.FutureUtils;
@@ -47,6 +45,9 @@ public abstract class HardwareService extends Observable {
     @Inject
     DeviceRuntimeService mDeviceRuntimeService;
 
+    @Inject
+    DaemonBridge mDaemonBridge;
+
     private VideoCallback mVideoCallback;
 
     public abstract void initVideo();
@@ -98,45 +99,48 @@ public abstract class HardwareService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "connectivityChanged",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "connectivityChange() thread running...");
-                        Ringservice.connectivityChanged();
+                        mDaemonBridge.connectivityChanged();
                         return true;
                     }
                 }
         );
     }
 
-    public void switchInput(final String id, final String uri, final StringMap map) {
+    public void switchInput(final String id, final String uri, final Map<String, String> map) {
         FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "switchInput",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "switchInput() thread running..." + uri);
-                        Ringservice.applySettings(id, map);
-                        Ringservice.switchInput(id, uri);
+                        mDaemonBridge.applySettings(id, map);
+                        mDaemonBridge.switchInput(id, uri);
                         return true;
                     }
                 }
         );
     }
 
-    public void setPreviewSettings(final Map<String, StringMap> cameraMaps) {
+    public void setPreviewSettings(final Map<String, Map<String, String>> cameraMaps) {
         FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "applySettings",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
                         Log.i(TAG, "applySettings() thread running...");
-                        for (Map.Entry<String, StringMap> entry : cameraMaps.entrySet()) {
-                            Ringservice.applySettings(entry.getKey(), entry.getValue());
+                        for (Map.Entry<String, Map<String, String>> entry : cameraMaps.entrySet()) {
+                            mDaemonBridge.applySettings(entry.getKey(), entry.getValue());
                         }
                         return true;
                     }
@@ -169,6 +173,7 @@ public abstract class HardwareService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "obtainFrame",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
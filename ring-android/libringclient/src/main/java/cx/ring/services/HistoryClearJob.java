@@ -0,0 +1,83 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.services;
+
+/**
+ * Progress of a history clearing running in the background, see {@link HistoryService#clearHistory()}.
+ * The rows are deleted by chunks, the job stops after the current chunk once cancelled.
+ * Only the interactions up to the time the clearing was requested are deleted.
+ */
+public class HistoryClearJob {
+
+    private final long mTime = System.currentTimeMillis();
+    private volatile boolean mCancelled = false;
+    private volatile boolean mDone = false;
+    private volatile long mTotalRows = 0;
+    private volatile long mClearedRows = 0;
+
+    HistoryClearJob() {
+    }
+
+    /**
+     * @return the time the clearing was requested, the interactions after it are kept
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    /**
+     * Stops the clearing after the chunk being deleted, the rows already deleted are not restored
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * @return true once the job has ended, completed, cancelled or failed
+     */
+    public boolean isDone() {
+        return mDone;
+    }
+
+    /**
+     * @return the number of calls and text messages to delete, known once the job has started
+     */
+    public long getTotalRows() {
+        return mTotalRows;
+    }
+
+    public long getClearedRows() {
+        return mClearedRows;
+    }
+
+    void start(long totalRows) {
+        mTotalRows = totalRows;
+    }
+
+    void addClearedRows(long rows) {
+        mClearedRows += rows;
+    }
+
+    void finish() {
+        mDone = true;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cx.ring.model.ConversationSummary;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+
+/**
+ * The SQL statements of the history database not generated by ormlite, shared by the database helpers
+ * of the applications and the JVM tests.
+ * <p>
+ * Versions of the database:
+ * 9 : per conversation indexes
+ * 10 : full-text index of the text messages
+ * 11 : per conversation summaries, kept by triggers
+ * 12 : drop of the unused call id index
+ */
+public class HistoryMigrations {
+
+    /**
+     * The current version of the history database
+     */
+    public static final int VERSION = 12;
+
+    /**
+     * @return the statements to run on a new database, once ormlite created the tables
+     */
+    public static List<String> getCreateStatements() {
+        List<String> statements = new ArrayList<>();
+        statements.add(HistoryCall.CREATE_CONVERSATION_INDEX);
+        statements.add(HistoryText.CREATE_CONVERSATION_INDEX);
+        statements.add(HistoryText.CREATE_FTS_TABLE);
+        Collections.addAll(statements, HistoryText.CREATE_FTS_TRIGGERS);
+        statements.add(ConversationSummary.CREATE_TABLE);
+        statements.add(ConversationSummary.CREATE_TIMESTAMP_INDEX);
+        Collections.addAll(statements, ConversationSummary.CREATE_TRIGGERS);
+        return statements;
+    }
+
+    /**
+     * @param fromVersion a database version, from the version 8
+     * @return the statements migrating the database from the given version to the next one
+     */
+    public static List<String> getUpgradeStatements(int fromVersion) {
+        List<String> statements = new ArrayList<>();
+        switch (fromVersion) {
+            case 8:
+                statements.add(HistoryCall.CREATE_CONVERSATION_INDEX);
+                statements.add(HistoryText.CREATE_CONVERSATION_INDEX);
+                break;
+            case 9:
+                statements.add(HistoryText.CREATE_FTS_TABLE);
+                Collections.addAll(statements, HistoryText.CREATE_FTS_TRIGGERS);
+                statements.add(HistoryText.FILL_FTS_TABLE);
+                break;
+            case 10:
+                statements.add(ConversationSummary.CREATE_TABLE);
+                statements.add(ConversationSummary.CREATE_TIMESTAMP_INDEX);
+                Collections.addAll(statements, ConversationSummary.CREATE_TRIGGERS);
+                Collections.addAll(statements, ConversationSummary.FILL_TABLE);
+                break;
+            case 11:
+                statements.add(HistoryCall.DROP_CALL_ID_INDEX);
+                break;
+        }
+        return statements;
+    }
+}
@@ -20,22 +20,32 @@
 package cx.ring.services;
 
 import com.j256.ormlite.dao.Dao;
-import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.UpdateBuilder;
 import com.j256.ormlite.support.ConnectionSource;
-import com.j256.ormlite.table.TableUtils;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import cx.ring.model.Conference;
 import cx.ring.model.Conversation;
+import cx.ring.model.ConversationSummary;
 import cx.ring.model.HistoryCall;
 import cx.ring.model.HistoryEntry;
 import cx.ring.model.HistoryText;
@@ -56,6 +66,26 @@ public abstract class HistoryService extends Observable {
 
     private static final String TAG = HistoryService.class.getSimpleName();
 
+    /**
+     * Number of interactions loaded per conversation at startup and then per page
+     */
+    public static final int HISTORY_PAGE_SIZE = 50;
+
+    /**
+     * Maximum number of history writes committed in one transaction
+     */
+    static final int WRITE_BATCH_SIZE = 100;
+
+    /**
+     * Maximum time a history write stays queued before being committed, in ms
+     */
+    static final long WRITE_DELAY_MS = 5;
+
+    /**
+     * Maximum number of rows deleted per statement when clearing the history
+     */
+    static final int CLEAR_CHUNK_SIZE = 50;
+
     @Inject
     @Named("ApplicationExecutor")
     protected ExecutorService mApplicationExecutor;
@@ -66,45 +96,235 @@ public abstract class HistoryService extends Observable {
 
     protected abstract Dao<HistoryText, Long> getTextHistoryDao();
 
-    public boolean insertNewEntry(Conference toInsert) {
+    protected abstract Dao<ConversationSummary, Integer> getConversationSummaryDao();
 
-        for (SipCall call : toInsert.getParticipants()) {
-            call.setTimestampEnd(System.currentTimeMillis());
+    private final HistoryWriteQueue mWriteQueue = new HistoryWriteQueue(new HistoryWriteQueue.BatchWriter() {
+        @Override
+        public void write(List<HistoryWriteQueue.Write> batch) throws SQLException {
+            writeBatch(batch);
+        }
+    }, WRITE_BATCH_SIZE, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+
+    /**
+     * Commits a batch of queued writes in one transaction, then sends a single HISTORY_MODIFIED event
+     * carrying the rows of the whole batch. If the batch fails, its writes are committed one by one,
+     * so a failing write does not lose the others, and only the committed ones are sent.
+     */
+    private void writeBatch(final List<HistoryWriteQueue.Write> batch) {
+        List<HistoryWriteQueue.Write> written = batch;
+        try {
+            callInTransaction(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (HistoryWriteQueue.Write write : batch) {
+                        write.apply();
+                    }
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            Log.e(TAG, "Error while writing " + batch.size() + " history entries, writing them one by one", e);
+            written = new ArrayList<>();
+            for (final HistoryWriteQueue.Write write : batch) {
+                try {
+                    callInTransaction(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            write.apply();
+                            return null;
+                        }
+                    });
+                    written.add(write);
+                } catch (SQLException writeError) {
+                    Log.e(TAG, "Error while writing a history entry, dropped", writeError);
+                }
+            }
+        }
 
-            HistoryCall persistent = new HistoryCall(call);
-            try {
-                Log.d(TAG, "HistoryDao().create() " + persistent.getNumber() + " " + persistent.getStartDate().toString() + " " + persistent.getEndDate());
-                getCallHistoryDao().create(persistent);
-            } catch (SQLException e) {
-                Log.e(TAG, "Error while inserting text conference entry", e);
-                return false;
+        ArrayList<HistoryCall> insertedCalls = new ArrayList<>();
+        ArrayList<HistoryText> insertedTexts = new ArrayList<>();
+        ArrayList<HistoryText> updatedTexts = new ArrayList<>();
+        // the last status of each message in the batch
+        LinkedHashMap<Long, TextMessage.Status> textStatuses = new LinkedHashMap<>();
+        Set<String> numbers = new LinkedHashSet<>();
+        for (HistoryWriteQueue.Write write : written) {
+            if (write instanceof CallInsert) {
+                HistoryCall call = ((CallInsert) write).mCall;
+                insertedCalls.add(call);
+                numbers.add(call.getNumber());
+            } else if (write instanceof TextInsert) {
+                HistoryText text = ((TextInsert) write).mText;
+                insertedTexts.add(text);
+                numbers.add(text.getNumber());
+            } else if (write instanceof TextUpdate) {
+                HistoryText text = ((TextUpdate) write).mText;
+                updatedTexts.add(text);
+                numbers.add(text.getNumber());
+            } else if (write instanceof TextStatusUpdate) {
+                TextStatusUpdate update = (TextStatusUpdate) write;
+                if (update.mApplied) {
+                    textStatuses.put(update.mMessageId, update.mStatus);
+                    numbers.add(update.mNumber);
+                }
             }
         }
+        notifyHistoryModified(new ArrayList<>(numbers), insertedCalls, insertedTexts, updatedTexts, textStatuses,
+                new ArrayList<HistoryCall>(), new ArrayList<HistoryText>());
+    }
 
-        // notify the observers
+    /**
+     * Sends a HISTORY_MODIFIED event carrying the changed rows, so the observers only apply the changes
+     *
+     * @param numbers the peer numbers of the conversations affected
+     */
+    private void notifyHistoryModified(ArrayList<String> numbers,
+                                       ArrayList<HistoryCall> insertedCalls, ArrayList<HistoryText> insertedTexts,
+                                       ArrayList<HistoryText> updatedTexts, LinkedHashMap<Long, TextMessage.Status> textStatuses,
+                                       ArrayList<HistoryCall> deletedCalls, ArrayList<HistoryText> deletedTexts) {
+        ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.HISTORY_MODIFIED);
+        event.addEventInput(ServiceEvent.EventInput.NUMBERS, numbers);
+        event.addEventInput(ServiceEvent.EventInput.HISTORY_CALLS, insertedCalls);
+        event.addEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, insertedTexts);
+        event.addEventInput(ServiceEvent.EventInput.HISTORY_UPDATED_TEXTS, updatedTexts);
+        event.addEventInput(ServiceEvent.EventInput.HISTORY_TEXT_STATUSES, textStatuses);
+        event.addEventInput(ServiceEvent.EventInput.HISTORY_DELETED_CALLS, deletedCalls);
+        event.addEventInput(ServiceEvent.EventInput.HISTORY_DELETED_TEXTS, deletedTexts);
         setChanged();
-        notifyObservers();
+        notifyObservers(event);
+    }
 
-        return true;
+    /**
+     * Runs the given writes in a database transaction
+     */
+    protected <T> T callInTransaction(Callable<T> writes) throws SQLException {
+        return TransactionManager.callInTransaction(getConnectionSource(), writes);
     }
 
-    private boolean insertNewTextMessage(HistoryText txt) {
-        try {
-            Log.d(TAG, "HistoryDao().create() id:" + txt.id + " acc:" + txt.getAccountID() + " num:" + txt.getNumber() + " date:" + txt.getDate().toString() + " msg:" + txt.getMessage());
-            getTextHistoryDao().create(txt);
-        } catch (SQLException e) {
-            Log.e(TAG, "Error while inserting text message", e);
-            return false;
+    protected void insertCall(HistoryCall call) throws SQLException {
+        Log.d(TAG, "HistoryDao().create() " + call.getNumber() + " " + call.getStartDate().toString() + " " + call.getEndDate());
+        getCallHistoryDao().create(call);
+    }
+
+    protected void insertText(HistoryText txt) throws SQLException {
+        Log.d(TAG, "HistoryDao().create() id:" + txt.id + " acc:" + txt.getAccountID() + " num:" + txt.getNumber() + " date:" + txt.getDate().toString() + " msg:" + txt.getMessage());
+        getTextHistoryDao().create(txt);
+    }
+
+    protected void updateText(HistoryText txt) throws SQLException {
+        Log.d(TAG, "HistoryDao().update() id:" + txt.id + " acc:" + txt.getAccountID() + " num:"
+                + txt.getNumber() + " date:" + txt.getDate().toString() + " msg:" + txt.getMessage() + " status:" + txt.getStatus());
+        getTextHistoryDao().update(txt);
+    }
+
+    /**
+     * Updates the status of a text message by id, without reading the row
+     *
+     * @return false if the account has no such message
+     */
+    protected boolean updateTextStatus(String accountId, long messageId, TextMessage.Status status) throws SQLException {
+        UpdateBuilder<HistoryText, Long> updateBuilder = getTextHistoryDao().updateBuilder();
+        updateBuilder.updateColumnValue(HistoryText.COLUMN_STATE_NAME, status.toString());
+        updateBuilder.where().eq(HistoryText.COLUMN_ID_NAME, messageId)
+                .and().eq(HistoryText.COLUMN_ACCOUNT_ID_NAME, accountId);
+        return updateBuilder.update() > 0;
+    }
+
+    private class CallInsert implements HistoryWriteQueue.Write {
+        private final HistoryCall mCall;
+
+        CallInsert(HistoryCall call) {
+            mCall = call;
         }
 
-        // notify the observers
-        setChanged();
-        ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.HISTORY_MODIFIED);
-        notifyObservers(event);
+        @Override
+        public void apply() throws SQLException {
+            insertCall(mCall);
+        }
+    }
+
+    private class TextInsert implements HistoryWriteQueue.Write {
+        private final HistoryText mText;
+
+        TextInsert(HistoryText text) {
+            mText = text;
+        }
+
+        @Override
+        public void apply() throws SQLException {
+            insertText(mText);
+        }
+    }
+
+    private class TextUpdate implements HistoryWriteQueue.Write {
+        private final HistoryText mText;
+
+        TextUpdate(HistoryText text) {
+            mText = text;
+        }
+
+        @Override
+        public void apply() throws SQLException {
+            updateText(mText);
+        }
+    }
+
+    private class TextStatusUpdate implements HistoryWriteQueue.Write {
+        private final String mAccountId;
+        private final long mMessageId;
+        private final String mNumber;
+        private final TextMessage.Status mStatus;
+        private boolean mApplied = false;
+
+        TextStatusUpdate(String accountId, long messageId, String number, TextMessage.Status status) {
+            mAccountId = accountId;
+            mMessageId = messageId;
+            mNumber = number;
+            mStatus = status;
+        }
+
+        @Override
+        public void apply() throws SQLException {
+            mApplied = updateTextStatus(mAccountId, mMessageId, mStatus);
+            if (!mApplied) {
+                Log.w(TAG, "No text message " + mMessageId + " for the account " + mAccountId);
+            }
+        }
+    }
+
+    /**
+     * Commits the queued history writes on the calling thread. Called before reading the history
+     * so the reads see the previous writes, and before the application stops.
+     */
+    public void flushPendingWrites() {
+        mWriteQueue.flush();
+    }
+
+    /**
+     * Commits the queued history writes on the writer thread without waiting for the delay,
+     * when the application may be stopped soon
+     */
+    public void flushPendingWritesAsync() {
+        mWriteQueue.flushAsync();
+    }
+
+    /**
+     * Queues the calls of the conference, they are committed with the next batch of history writes
+     */
+    public boolean insertNewEntry(Conference toInsert) {
+
+        for (SipCall call : toInsert.getParticipants()) {
+            call.setTimestampEnd(System.currentTimeMillis());
+            mWriteQueue.add(new CallInsert(new HistoryCall(call)));
+        }
 
         return true;
     }
 
+    private boolean insertNewTextMessage(HistoryText txt) {
+        mWriteQueue.add(new TextInsert(txt));
+        return true;
+    }
+
     public boolean insertNewTextMessage(TextMessage txt) {
         HistoryText historyTxt = new HistoryText(txt);
         if (!insertNewTextMessage(historyTxt)) {
@@ -116,30 +336,53 @@ public abstract class HistoryService extends Observable {
     }
 
     public boolean updateTextMessage(HistoryText txt) {
-        try {
-            Log.d(TAG, "HistoryDao().update() id:" + txt.id + " acc:" + txt.getAccountID() + " num:"
-                    + txt.getNumber() + " date:" + txt.getDate().toString() + " msg:" + txt.getMessage() + " status:" + txt.getStatus());
-            getTextHistoryDao().update(txt);
-        } catch (SQLException e) {
-            Log.e(TAG, "Error while updating text message", e);
-            return false;
-        }
-
-        // notify the observers
-        setChanged();
-        notifyObservers();
-
+        mWriteQueue.add(new TextUpdate(txt));
         return true;
     }
 
+    /**
+     * Loads the newest interactions of every conversation, see {@link #getCallAndTextAsync(int)}
+     */
     public void getCallAndTextAsync() {
+        getCallAndTextAsync(HISTORY_PAGE_SIZE);
+    }
+
+    /**
+     * Loads the summaries of the conversations, sent first with a HISTORY_SUMMARIES_LOADED event, then the newest
+     * interactions (calls and text messages) of every conversation, sent with a HISTORY_LOADED event.
+     * The older ones are fetched on demand with {@link #getHistoryPageAsync(List, long, Set, Set, int)}.
+     *
+     * @param pageSize the number of interactions loaded per conversation
+     */
+    public void getCallAndTextAsync(final int pageSize) {
 
         mApplicationExecutor.submit(new Runnable() {
             @Override
             public void run() {
                 try {
-                    List<HistoryCall> historyCalls = getAll();
-                    List<HistoryText> historyTexts = getAllTextMessages();
+                    flushPendingWrites();
+                    List<ConversationSummary> summaries = getConversationSummaries();
+                    ServiceEvent summariesEvent = new ServiceEvent(ServiceEvent.EventType.HISTORY_SUMMARIES_LOADED);
+                    summariesEvent.addEventInput(ServiceEvent.EventInput.HISTORY_SUMMARIES, summaries);
+                    setChanged();
+                    notifyObservers(summariesEvent);
+
+                    // the summaries give the accounts of each conversation, newest conversation first
+                    Map<String, List<String>> accountsByNumber = new LinkedHashMap<>();
+                    for (ConversationSummary summary : summaries) {
+                        List<String> accounts = accountsByNumber.get(summary.getNumber());
+                        if (accounts == null) {
+                            accounts = new ArrayList<>();
+                            accountsByNumber.put(summary.getNumber(), accounts);
+                        }
+                        accounts.add(summary.getAccountID());
+                    }
+                    List<HistoryCall> historyCalls = new ArrayList<>();
+                    List<HistoryText> historyTexts = new ArrayList<>();
+                    for (Map.Entry<String, List<String>> entry : accountsByNumber.entrySet()) {
+                        getHistoryPage(Collections.singletonMap(entry.getKey(), entry.getValue()), Long.MAX_VALUE,
+                                Collections.<String>emptySet(), Collections.<Long>emptySet(), pageSize, historyCalls, historyTexts);
+                    }
 
                     ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.HISTORY_LOADED);
                     event.addEventInput(ServiceEvent.EventInput.HISTORY_CALLS, historyCalls);
@@ -153,84 +396,438 @@ public abstract class HistoryService extends Observable {
         });
     }
 
-    private List<HistoryCall> getAll() throws SQLException {
+    /**
+     * Loads the interactions of a conversation older than the ones already loaded and sends them with a
+     * HISTORY_PAGE_LOADED event. The interactions at the time of the oldest loaded one are read again,
+     * so the ones sharing its time are not skipped, and those already loaded are left out.
+     * If the page can't be read, the event has an ERROR input instead of the interactions.
+     *
+     * @param numbers       the peer numbers of the conversation
+     * @param before        the time of the oldest interaction already loaded
+     * @param loadedCallIds the ids of the calls already loaded started at the before time
+     * @param loadedTextIds the ids of the text messages already loaded sent at the before time
+     * @param pageSize      the maximum number of interactions to load
+     */
+    public void getHistoryPageAsync(final List<String> numbers, final long before, final Set<String> loadedCallIds,
+                                    final Set<Long> loadedTextIds, final int pageSize) {
+
+        mApplicationExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushPendingWrites();
+                    List<HistoryCall> historyCalls = new ArrayList<>();
+                    List<HistoryText> historyTexts = new ArrayList<>();
+                    getHistoryPage(numbers, before, loadedCallIds, loadedTextIds, pageSize, historyCalls, historyTexts);
+
+                    ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.HISTORY_PAGE_LOADED);
+                    event.addEventInput(ServiceEvent.EventInput.NUMBERS, new ArrayList<>(numbers));
+                    event.addEventInput(ServiceEvent.EventInput.HISTORY_CALLS, historyCalls);
+                    event.addEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, historyTexts);
+                    setChanged();
+                    notifyObservers(event);
+                } catch (SQLException e) {
+                    Log.e(TAG, "Can't load history page for " + numbers, e);
+                    // without rows, so the conversation can load the page again
+                    ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.HISTORY_PAGE_LOADED);
+                    event.addEventInput(ServiceEvent.EventInput.NUMBERS, new ArrayList<>(numbers));
+                    event.addEventInput(ServiceEvent.EventInput.ERROR, e.getMessage());
+                    setChanged();
+                    notifyObservers(event);
+                }
+            }
+        });
+    }
+
+    /**
+     * Appends the newest interactions of a conversation not loaded yet, calls and texts together
+     */
+    private void getHistoryPage(List<String> numbers, long before, Set<String> loadedCallIds, Set<Long> loadedTextIds,
+                                int pageSize, List<HistoryCall> historyCalls, List<HistoryText> historyTexts) throws SQLException {
+        Map<String, List<String>> accountsByNumber = new LinkedHashMap<>();
+        for (String number : numbers) {
+            accountsByNumber.put(number, getHistoryAccounts(number));
+        }
+        getHistoryPage(accountsByNumber, before, loadedCallIds, loadedTextIds, pageSize, historyCalls, historyTexts);
+    }
+
+    /**
+     * Appends the newest interactions of a conversation not loaded yet, calls and texts together
+     *
+     * @param accountsByNumber the peer numbers of the conversation and the accounts having history with each one
+     * @param before           the time of the oldest interaction already loaded, Long.MAX_VALUE if none
+     * @param loadedCallIds    the calls already loaded at the before time, left out
+     * @param loadedTextIds    the text messages already loaded at the before time, left out
+     */
+    private void getHistoryPage(Map<String, List<String>> accountsByNumber, long before, Set<String> loadedCallIds,
+                                Set<Long> loadedTextIds, int pageSize,
+                                List<HistoryCall> historyCalls, List<HistoryText> historyTexts) throws SQLException {
+        List<HistoryCall> calls = new ArrayList<>();
+        List<HistoryText> texts = new ArrayList<>();
+        int pages = 0;
+        for (Map.Entry<String, List<String>> entry : accountsByNumber.entrySet()) {
+            // one query per account, so each one is an index range scan already in time order
+            for (String accountId : entry.getValue()) {
+                // the loaded rows are read again at most once, each page still has pageSize new rows
+                for (HistoryCall call : getCalls(accountId, entry.getKey(), before, pageSize + loadedCallIds.size())) {
+                    if (call.call_start != before || !loadedCallIds.contains(String.valueOf(call.getCallId()))) {
+                        calls.add(call);
+                    }
+                }
+                for (HistoryText text : getTextMessages(accountId, entry.getKey(), before, pageSize + loadedTextIds.size())) {
+                    if (text.time != before || !loadedTextIds.contains(text.id)) {
+                        texts.add(text);
+                    }
+                }
+                pages++;
+            }
+        }
+        if (pages > 1) {
+            Collections.sort(calls, new Comparator<HistoryCall>() {
+                @Override
+                public int compare(HistoryCall lhs, HistoryCall rhs) {
+                    return Long.compare(rhs.call_start, lhs.call_start);
+                }
+            });
+            Collections.sort(texts, new Comparator<HistoryText>() {
+                @Override
+                public int compare(HistoryText lhs, HistoryText rhs) {
+                    return Long.compare(rhs.time, lhs.time);
+                }
+            });
+        }
+        // both lists are newest first, keep the newest pageSize of the merge
+        int callIndex = 0;
+        int textIndex = 0;
+        while (callIndex + textIndex < pageSize && (callIndex < calls.size() || textIndex < texts.size())) {
+            if (textIndex == texts.size()
+                    || (callIndex < calls.size() && calls.get(callIndex).call_start >= texts.get(textIndex).time)) {
+                historyCalls.add(calls.get(callIndex++));
+            } else {
+                historyTexts.add(texts.get(textIndex++));
+            }
+        }
+    }
+
+    /**
+     * @return the summaries of all the conversations in the history, newest first
+     */
+    protected List<ConversationSummary> getConversationSummaries() throws SQLException {
+        QueryBuilder<ConversationSummary, Integer> queryBuilder = getConversationSummaryDao().queryBuilder();
+        queryBuilder.orderBy(ConversationSummary.COLUMN_TIMESTAMP_NAME, false);
+        return getConversationSummaryDao().query(queryBuilder.prepare());
+    }
+
+    /**
+     * @return the accounts having calls or text messages with the given number
+     */
+    protected List<String> getHistoryAccounts(String number) throws SQLException {
+        Set<String> accounts = new LinkedHashSet<>();
+        QueryBuilder<HistoryCall, Integer> callQueryBuilder = getCallHistoryDao().queryBuilder();
+        callQueryBuilder.distinct().selectColumns(HistoryCall.COLUMN_ACCOUNT_ID_NAME)
+                .where().eq(HistoryCall.COLUMN_NUMBER_NAME, number);
+        for (HistoryCall call : getCallHistoryDao().query(callQueryBuilder.prepare())) {
+            accounts.add(call.getAccountID());
+        }
+        QueryBuilder<HistoryText, Long> textQueryBuilder = getTextHistoryDao().queryBuilder();
+        textQueryBuilder.distinct().selectColumns(HistoryText.COLUMN_ACCOUNT_ID_NAME)
+                .where().eq(HistoryText.COLUMN_NUMBER_NAME, number);
+        for (HistoryText text : getTextHistoryDao().query(textQueryBuilder.prepare())) {
+            accounts.add(text.getAccountID());
+        }
+        return new ArrayList<>(accounts);
+    }
+
+    /**
+     * @return the newest calls of the account with the given number started at or before the given time, newest first
+     */
+    protected List<HistoryCall> getCalls(String accountId, String number, long before, int count) throws SQLException {
+        return getCallHistoryDao().query(prepareCallsQuery(accountId, number, before, count));
+    }
+
+    PreparedQuery<HistoryCall> prepareCallsQuery(String accountId, String number, long before, int count) throws SQLException {
         QueryBuilder<HistoryCall, Integer> queryBuilder = getCallHistoryDao().queryBuilder();
-        queryBuilder.orderBy(HistoryCall.COLUMN_TIMESTAMP_START_NAME, true);
-        return getCallHistoryDao().query(queryBuilder.prepare());
+        queryBuilder.where().eq(HistoryCall.COLUMN_ACCOUNT_ID_NAME, accountId)
+                .and().eq(HistoryCall.COLUMN_NUMBER_NAME, number)
+                .and().le(HistoryCall.COLUMN_TIMESTAMP_START_NAME, before);
+        queryBuilder.orderBy(HistoryCall.COLUMN_TIMESTAMP_START_NAME, false).limit((long) count);
+        return queryBuilder.prepare();
     }
 
-    private List<HistoryText> getAllTextMessages() throws SQLException {
-        QueryBuilder<HistoryText, Long> queryBuilder = getTextHistoryDao().queryBuilder();
-        queryBuilder.orderBy(HistoryText.COLUMN_TIMESTAMP_NAME, true);
-        return getTextHistoryDao().query(queryBuilder.prepare());
+    /**
+     * @return the newest text messages of the account with the given number sent at or before the given time, newest first
+     */
+    protected List<HistoryText> getTextMessages(String accountId, String number, long before, int count) throws SQLException {
+        return getTextHistoryDao().query(prepareTextMessagesQuery(accountId, number, before, count));
     }
 
-    private HistoryText getTextMessage(long id) throws SQLException {
-        return getTextHistoryDao().queryForId(id);
+    PreparedQuery<HistoryText> prepareTextMessagesQuery(String accountId, String number, long before, int count) throws SQLException {
+        QueryBuilder<HistoryText, Long> queryBuilder = getTextHistoryDao().queryBuilder();
+        queryBuilder.where().eq(HistoryText.COLUMN_ACCOUNT_ID_NAME, accountId)
+                .and().eq(HistoryText.COLUMN_NUMBER_NAME, number)
+                .and().le(HistoryText.COLUMN_TIMESTAMP_NAME, before);
+        queryBuilder.orderBy(HistoryText.COLUMN_TIMESTAMP_NAME, false).limit((long) count);
+        return queryBuilder.prepare();
     }
 
     /**
-     * Removes all the text messages and call histories from the database.
+     * Searches the text messages containing all the words of the query, as whole words or prefixes,
+     * and sends them newest first with a HISTORY_SEARCH_RESULTS event. Each hit gives its conversation
+     * (account and number) and its time.
      *
-     * @param conversation The conversation containing the elements to delete.
+     * @param query        the words searched
+     * @param before       the time of the oldest hit already received for this query, Long.MAX_VALUE for the first page
+     * @param receivedIds  the ids of the hits already received at the before time, left out
+     * @param pageSize     the maximum number of hits
      */
-    public void clearHistoryForConversation(final Conversation conversation) {
-        if (conversation == null) {
-            Log.d(TAG, "clearHistoryForConversation: conversation is null");
-            return;
-        }
+    public void searchTextMessagesAsync(final String query, final long before, final Set<Long> receivedIds,
+                                        final int pageSize) {
 
         mApplicationExecutor.submit(new Runnable() {
             @Override
             public void run() {
                 try {
-                    Map<String, HistoryEntry> history = conversation.getRawHistory();
-                    for (Map.Entry<String, HistoryEntry> entry : history.entrySet()) {
-                        //~ Deleting messages
-                        ArrayList<Long> textMessagesIds = new ArrayList<>(entry.getValue().getTextMessages().size());
-                        for (TextMessage textMessage : entry.getValue().getTextMessages().values()) {
-                            textMessagesIds.add(textMessage.getId());
-                        }
-                        DeleteBuilder<HistoryText, Long> deleteTextHistoryBuilder = getTextHistoryDao()
-                                .deleteBuilder();
-                        deleteTextHistoryBuilder.where().in(HistoryText.COLUMN_ID_NAME, textMessagesIds);
-                        deleteTextHistoryBuilder.delete();
-                        //~ Deleting calls
-                        ArrayList<String> callIds = new ArrayList<>(entry.getValue().getCalls().size());
-                        for (HistoryCall historyCall : entry.getValue().getCalls().values()) {
-                            callIds.add(historyCall.getCallId().toString());
+                    ArrayList<HistoryText> hits = new ArrayList<>();
+                    String matchQuery = toMatchQuery(query);
+                    if (matchQuery != null) {
+                        flushPendingWrites();
+                        for (HistoryText hit : searchTextMessages(matchQuery, before, pageSize + receivedIds.size())) {
+                            if (hit.time != before || !receivedIds.contains(hit.id)) {
+                                hits.add(hit);
+                            }
                         }
-                        DeleteBuilder<HistoryCall, Integer> deleteCallsHistoryBuilder = getCallHistoryDao()
-                                .deleteBuilder();
-                        deleteCallsHistoryBuilder.where().in(HistoryCall.COLUMN_CALL_ID_NAME, callIds);
-                        deleteCallsHistoryBuilder.delete();
                     }
 
-                    // notify the observers
+                    ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.HISTORY_SEARCH_RESULTS);
+                    event.addEventInput(ServiceEvent.EventInput.QUERY, query);
+                    event.addEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, hits);
                     setChanged();
-                    ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.HISTORY_MODIFIED);
                     notifyObservers(event);
+                } catch (SQLException e) {
+                    Log.e(TAG, "Can't search text messages", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the full-text MATCH expression of the words of the query, each one as a prefix, null if there is no word
+     */
+    static String toMatchQuery(String query) {
+        StringBuilder matchQuery = new StringBuilder();
+        for (String word : query.split("\\s+")) {
+            // quoted, so the words are not read as operators
+            word = word.replace("\"", "");
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (matchQuery.length() > 0) {
+                matchQuery.append(' ');
+            }
+            matchQuery.append('"').append(word).append("*\"");
+        }
+        return matchQuery.length() == 0 ? null : matchQuery.toString();
+    }
+
+    /**
+     * @return the newest text messages matching the full-text query sent at or before the given time, newest first
+     */
+    protected List<HistoryText> searchTextMessages(String matchQuery, long before, int count) throws SQLException {
+        Dao<HistoryText, Long> dao = getTextHistoryDao();
+        GenericRawResults<HistoryText> results = dao.queryRaw(HistoryText.SEARCH_QUERY, dao.getRawRowMapper(),
+                matchQuery, Long.toString(before), Integer.toString(count));
+        return results.getResults();
+    }
+
+    /**
+     * Removes all the text messages and calls of a conversation from the database, in the background,
+     * see {@link #clearHistory()}.
+     *
+     * @param conversation The conversation containing the elements to delete.
+     * @return the job deleting the rows, null if there is no conversation
+     */
+    public HistoryClearJob clearHistoryForConversation(final Conversation conversation) {
+        if (conversation == null) {
+            Log.d(TAG, "clearHistoryForConversation: conversation is null");
+            return null;
+        }
+
+        // the conversation may only be listed from its summaries, its loaded rows are removed from it once deleted
+        final HistoryClearJob job = new HistoryClearJob();
+        final Map<String, Set<String>> accountsByNumber = new LinkedHashMap<>();
+        final ArrayList<HistoryCall> deletedCalls = new ArrayList<>();
+        final ArrayList<HistoryText> deletedTexts = new ArrayList<>();
+        for (Map.Entry<String, HistoryEntry> entry : conversation.getRawHistory().entrySet()) {
+            for (TextMessage textMessage : entry.getValue().getTextMessages().values()) {
+                if (textMessage.getTimestamp() <= job.getTime()) {
+                    deletedTexts.add(new HistoryText(textMessage));
+                }
+                addConversationKey(accountsByNumber, textMessage.getNumber(), entry.getKey());
+            }
+            for (HistoryCall historyCall : entry.getValue().getCalls().values()) {
+                if (historyCall.call_start <= job.getTime()) {
+                    deletedCalls.add(historyCall);
+                }
+                addConversationKey(accountsByNumber, historyCall.getNumber(), entry.getKey());
+            }
+        }
+        for (ConversationSummary summary : conversation.getSummaries()) {
+            addConversationKey(accountsByNumber, summary.getNumber(), summary.getAccountID());
+        }
+
+        mApplicationExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                boolean cleared = false;
+                try {
+                    // the queued writes of this conversation must not be committed after the deletion
+                    flushPendingWrites();
+                    clearConversations(job, accountsByNumber);
+                    cleared = !job.isCancelled();
                 } catch (SQLException e) {
                     Log.e(TAG, "Error while clearing history for conversation", e);
                 }
+                job.finish();
+                notifyClearProgress(job);
+                if (!cleared) {
+                    // some of the rows may remain, without rows the whole history has changed
+                    setChanged();
+                    notifyObservers(new ServiceEvent(ServiceEvent.EventType.HISTORY_MODIFIED));
+                } else {
+                    notifyHistoryModified(new ArrayList<>(accountsByNumber.keySet()), new ArrayList<HistoryCall>(),
+                            new ArrayList<HistoryText>(), new ArrayList<HistoryText>(),
+                            new LinkedHashMap<Long, TextMessage.Status>(), deletedCalls, deletedTexts);
+                }
             }
         });
+        return job;
+    }
+
+    /**
+     * Removes all the text messages and calls from the database, in the background. The rows are deleted
+     * by conversation, oldest first, by chunks of {@link #CLEAR_CHUNK_SIZE} rows each committed on its own,
+     * so the readers and writers of the history only wait for one chunk. The interactions after the time of
+     * the job, received while it runs, are kept. The progress is sent with HISTORY_CLEAR_PROGRESS events
+     * after each chunk, then a HISTORY_MODIFIED event once the job has ended.
+     *
+     * @return the job deleting the rows, to follow or cancel it
+     */
+    public HistoryClearJob clearHistory() {
+        final HistoryClearJob job = new HistoryClearJob();
+        mApplicationExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushPendingWrites();
+                    Map<String, Set<String>> accountsByNumber = new LinkedHashMap<>();
+                    for (ConversationSummary summary : getConversationSummaries()) {
+                        addConversationKey(accountsByNumber, summary.getNumber(), summary.getAccountID());
+                    }
+                    clearConversations(job, accountsByNumber);
+                } catch (SQLException e) {
+                    Log.e(TAG, "Error while clearing history tables", e);
+                }
+                job.finish();
+                notifyClearProgress(job);
 
+                // notify the observers, without rows the whole history has changed
+                setChanged();
+                notifyObservers(new ServiceEvent(ServiceEvent.EventType.HISTORY_MODIFIED));
+            }
+        });
+        return job;
     }
 
-    public void clearHistory() {
-        try {
-            TableUtils.clearTable(getConnectionSource(), HistoryCall.class);
-            TableUtils.clearTable(getConnectionSource(), HistoryText.class);
+    private static void addConversationKey(Map<String, Set<String>> accountsByNumber, String number, String accountId) {
+        Set<String> accounts = accountsByNumber.get(number);
+        if (accounts == null) {
+            accounts = new LinkedHashSet<>();
+            accountsByNumber.put(number, accounts);
+        }
+        accounts.add(accountId);
+    }
 
-            // notify the observers
-            setChanged();
-            notifyObservers();
-        } catch (SQLException e) {
-            Log.e(TAG, "Error while clearing history tables", e);
+    /**
+     * Deletes the rows of the given conversations up to the time of the job by chunks, until done or cancelled
+     *
+     * @param accountsByNumber the peer numbers of the conversations and the accounts having history with each one
+     */
+    private void clearConversations(HistoryClearJob job, Map<String, Set<String>> accountsByNumber) throws SQLException {
+        long totalRows = 0;
+        for (Map.Entry<String, Set<String>> entry : accountsByNumber.entrySet()) {
+            for (String accountId : entry.getValue()) {
+                totalRows += countConversationRows(accountId, entry.getKey(), job.getTime());
+            }
+        }
+        job.start(totalRows);
+        notifyClearProgress(job);
+
+        for (Map.Entry<String, Set<String>> entry : accountsByNumber.entrySet()) {
+            for (String accountId : entry.getValue()) {
+                // the texts then the calls, oldest first, so the summary of the conversation is only
+                // recomputed when its last interaction is deleted
+                while (!job.isCancelled()) {
+                    int deleted = deleteOldestTexts(accountId, entry.getKey(), job.getTime(), CLEAR_CHUNK_SIZE);
+                    if (deleted == 0) {
+                        break;
+                    }
+                    job.addClearedRows(deleted);
+                    notifyClearProgress(job);
+                }
+                while (!job.isCancelled()) {
+                    int deleted = deleteOldestCalls(accountId, entry.getKey(), job.getTime(), CLEAR_CHUNK_SIZE);
+                    if (deleted == 0) {
+                        break;
+                    }
+                    job.addClearedRows(deleted);
+                    notifyClearProgress(job);
+                }
+            }
         }
     }
 
+    private void notifyClearProgress(HistoryClearJob job) {
+        ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.HISTORY_CLEAR_PROGRESS);
+        event.addEventInput(ServiceEvent.EventInput.HISTORY_CLEAR_JOB, job);
+        setChanged();
+        notifyObservers(event);
+    }
+
+    /**
+     * @return the number of calls and text messages of the account with the given number, up to the given time
+     */
+    protected long countConversationRows(String accountId, String number, long before) throws SQLException {
+        QueryBuilder<HistoryCall, Integer> callQueryBuilder = getCallHistoryDao().queryBuilder();
+        callQueryBuilder.where().eq(HistoryCall.COLUMN_NUMBER_NAME, number)
+                .and().eq(HistoryCall.COLUMN_ACCOUNT_ID_NAME, accountId)
+                .and().le(HistoryCall.COLUMN_TIMESTAMP_START_NAME, before);
+        QueryBuilder<HistoryText, Long> textQueryBuilder = getTextHistoryDao().queryBuilder();
+        textQueryBuilder.where().eq(HistoryText.COLUMN_NUMBER_NAME, number)
+                .and().eq(HistoryText.COLUMN_ACCOUNT_ID_NAME, accountId)
+                .and().le(HistoryText.COLUMN_TIMESTAMP_NAME, before);
+        return callQueryBuilder.countOf() + textQueryBuilder.countOf();
+    }
+
+    /**
+     * Deletes the oldest text messages of the account with the given number sent up to the given time, in one statement
+     *
+     * @return the number of text messages deleted
+     */
+    protected int deleteOldestTexts(String accountId, String number, long before, int count) throws SQLException {
+        return getTextHistoryDao().updateRaw(HistoryText.DELETE_OLDEST_QUERY, number, accountId, Long.toString(before),
+                Integer.toString(count));
+    }
+
+    /**
+     * Deletes the oldest calls of the account with the given number started up to the given time, in one statement
+     *
+     * @return the number of calls deleted
+     */
+    protected int deleteOldestCalls(String accountId, String number, long before, int count) throws SQLException {
+        return getCallHistoryDao().updateRaw(HistoryCall.DELETE_OLDEST_QUERY, number, accountId, Long.toString(before),
+                Integer.toString(count));
+    }
+
     public void incomingMessage(TextMessage txt) {
         insertNewTextMessage(txt);
 
@@ -240,23 +837,12 @@ public abstract class HistoryService extends Observable {
         notifyObservers(event);
     }
 
+    /**
+     * Queues the new delivery status of a sent message. The row is updated by id with the next batch of history
+     * writes, after the insertion of the message, and the statuses of the batch are sent with its HISTORY_MODIFIED event.
+     */
     public void accountMessageStatusChanged(String accountId, long messageId, String to, int status) {
-        TextMessage msg;
-        try {
-            msg = new TextMessage(getTextMessage(messageId));
-            if (!msg.getAccount().equals(accountId)) {
-                throw new Exception("Wrong message account");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error while updating text message status", e);
-            return;
-        }
-        msg.setStatus(status);
-        updateTextMessage(new HistoryText(msg));
-        ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.ACCOUNT_MESSAGE_STATUS_CHANGED);
-        event.addEventInput(ServiceEvent.EventInput.MESSAGE, msg);
-        setChanged();
-        notifyObservers(event);
+        mWriteQueue.add(new TextStatusUpdate(accountId, messageId, to, TextMessage.Status.fromInt(status)));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.services;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.utils.Log;
+
+/**
+ * Write-behind queue grouping the history writes, so a burst of messages is committed in a few
+ * transactions instead of one transaction (and one fsync) per row.
+ * <p>
+ * The queued writes are committed together once the batch is full or after a short delay, whichever
+ * comes first, in the order they were queued. The readers call {@link #flush()} first to see their own writes.
+ */
+class HistoryWriteQueue {
+
+    private static final String TAG = HistoryWriteQueue.class.getName();
+
+    /**
+     * A queued write, applied within the batch transaction
+     */
+    interface Write {
+        void apply() throws SQLException;
+    }
+
+    /**
+     * Commits a batch of writes, in a single transaction
+     */
+    interface BatchWriter {
+        void write(List<Write> batch) throws SQLException;
+    }
+
+    private final BatchWriter mWriter;
+    private final int mMaxBatchSize;
+    private final long mDelay;
+    private final TimeUnit mUnit;
+    private final ScheduledExecutorService mScheduler;
+    // held while a batch is committed, keeps the batches in order and lets flush() wait for the one in progress
+    private final Object mFlushLock = new Object();
+
+    private List<Write> mPending = new ArrayList<>();
+    private boolean mScheduled = false;
+    private long mBatchCount = 0;
+    private long mWriteCount = 0;
+
+    HistoryWriteQueue(BatchWriter writer, int maxBatchSize, long delay, TimeUnit unit) {
+        mWriter = writer;
+        mMaxBatchSize = maxBatchSize;
+        mDelay = delay;
+        mUnit = unit;
+        mScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HistoryWriter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Queues a write, committed within the delay or as soon as the batch is full
+     */
+    void add(Write write) {
+        boolean full;
+        synchronized (this) {
+            mPending.add(write);
+            full = mPending.size() >= mMaxBatchSize;
+            if (!full && mScheduled) {
+                return;
+            }
+            mScheduled = true;
+        }
+        if (full) {
+            mScheduler.execute(mFlushTask);
+        } else {
+            mScheduler.schedule(mFlushTask, mDelay, mUnit);
+        }
+    }
+
+    /**
+     * Commits the queued writes on the calling thread, waiting for a batch already being committed
+     */
+    void flush() {
+        synchronized (mFlushLock) {
+            while (true) {
+                List<Write> batch;
+                synchronized (this) {
+                    mScheduled = false;
+                    if (mPending.isEmpty()) {
+                        return;
+                    }
+                    // a transaction never holds more than a batch, to keep the database lock short
+                    if (mPending.size() <= mMaxBatchSize) {
+                        batch = mPending;
+                        mPending = new ArrayList<>();
+                    } else {
+                        List<Write> head = mPending.subList(0, mMaxBatchSize);
+                        batch = new ArrayList<>(head);
+                        head.clear();
+                    }
+                }
+                try {
+                    mWriter.write(batch);
+                } catch (SQLException e) {
+                    Log.e(TAG, "Error while writing " + batch.size() + " history entries", e);
+                } catch (RuntimeException e) {
+                    // would otherwise be lost in the scheduled task
+                    Log.e(TAG, "Error while notifying " + batch.size() + " history entries", e);
+                }
+                synchronized (this) {
+                    mBatchCount++;
+                    mWriteCount += batch.size();
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits the queued writes on the writer thread, as soon as the batch being committed is done
+     */
+    void flushAsync() {
+        synchronized (this) {
+            if (mPending.isEmpty()) {
+                return;
+            }
+            mScheduled = true;
+        }
+        mScheduler.execute(mFlushTask);
+    }
+
+    synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * @return the number of batches committed
+     */
+    synchronized long getBatchCount() {
+        return mBatchCount;
+    }
+
+    /**
+     * @return the number of writes committed
+     */
+    synchronized long getWriteCount() {
+        return mWriteCount;
+    }
+}
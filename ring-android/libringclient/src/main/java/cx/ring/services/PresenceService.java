@@ -19,18 +19,15 @@
 
 package cx.ring.services;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import cx.ring.daemon.PresenceCallback;
-import cx.ring.daemon.Ringservice;
-import cx.ring.daemon.StringVect;
-import cx.ring.daemon.VectMap;
 import cx.ring.model.CallContact;
 import cx.ring.model.ServiceEvent;
 import cx.ring.utils.FutureUtils;
@@ -47,13 +44,16 @@ public class PresenceService extends Observable {
     @Inject
     DeviceRuntimeService mDeviceRuntimeService;
 
+    @Inject
+    DaemonBridge mDaemonBridge;
+
     private PresenceCallbackHandler mCallbackHandler;
 
     Map<String, Boolean> mPresenceMap;
 
     public PresenceService() {
         mCallbackHandler = new PresenceCallbackHandler();
-        mPresenceMap = new HashMap<>();
+        mPresenceMap = new ConcurrentHashMap<>();
     }
 
     public PresenceCallbackHandler getCallbackHandler() {
@@ -77,10 +77,11 @@ public class PresenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "publish",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
-                        Ringservice.publish(accountID, status, note);
+                        mDaemonBridge.publish(accountID, status, note);
                         return true;
                     }
                 }
@@ -92,10 +93,11 @@ public class PresenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "answerServerRequest",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
-                        Ringservice.answerServerRequest(uri, flag);
+                        mDaemonBridge.answerServerRequest(uri, flag);
                         return true;
                     }
                 }
@@ -107,48 +109,50 @@ public class PresenceService extends Observable {
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "subscribeBuddy",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
-                        Ringservice.subscribeBuddy(accountID, uri, flag);
+                        mDaemonBridge.subscribeBuddy(accountID, uri, flag);
                         return true;
                     }
                 }
         );
     }
 
-    public VectMap getSubscriptions(final String accountID) {
+    public List<Map<String, String>> getSubscriptions(final String accountID) {
         return FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 true,
-                new Callable<VectMap>() {
+                "getSubscriptions",
+                new Callable<List<Map<String, String>>>() {
                     @Override
-                    public VectMap call() throws Exception {
-                        return Ringservice.getSubscriptions(accountID);
+                    public List<Map<String, String>> call() throws Exception {
+                        return mDaemonBridge.getSubscriptions(accountID);
                     }
                 }
         );
     }
 
-    public void setSubscriptions(final String accountID, final StringVect uris) {
+    public void setSubscriptions(final String accountID, final List<String> uris) {
         FutureUtils.executeDaemonThreadCallable(
                 mExecutor,
                 mDeviceRuntimeService.provideDaemonThreadId(),
                 false,
+                "setSubscriptions",
                 new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
-                        Ringservice.setSubscriptions(accountID, uris);
+                        mDaemonBridge.setSubscriptions(accountID, uris);
                         return true;
                     }
                 }
         );
     }
 
-    class PresenceCallbackHandler extends PresenceCallback {
+    class PresenceCallbackHandler {
 
-        @Override
         public void newServerSubscriptionRequest(String remote) {
             Log.d(TAG, "newServerSubscriptionRequest: " + remote);
 
@@ -158,7 +162,6 @@ public class PresenceService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void serverError(String accountId, String error, String message) {
             Log.d(TAG, "serverError: " + accountId + ", " + error + ", " + message);
 
@@ -170,7 +173,6 @@ public class PresenceService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void newBuddyNotification(String accountId, String buddyUri, int status, String lineStatus) {
             Log.d(TAG, "newBuddyNotification: " + accountId + ", " + buddyUri + ", " + status + ", " + lineStatus);
 
@@ -185,7 +187,6 @@ public class PresenceService extends Observable {
             notifyObservers(event);
         }
 
-        @Override
         public void subscriptionStateChanged(String accountId, String buddyUri, int state) {
             Log.d(TAG, "subscriptionStateChanged: " + accountId + ", " + buddyUri + ", " + state);
 
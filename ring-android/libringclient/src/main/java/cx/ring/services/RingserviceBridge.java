@@ -0,0 +1,549 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import cx.ring.daemon.Blob;
+import cx.ring.daemon.Ringservice;
+import cx.ring.daemon.StringMap;
+import cx.ring.daemon.StringVect;
+import cx.ring.daemon.UintVect;
+import cx.ring.daemon.VectMap;
+import cx.ring.utils.NativeScope;
+import cx.ring.utils.SwigNativeConverter;
+
+/**
+ * {@link DaemonBridge} calling the native daemon through the SWIG generated {@link Ringservice}.
+ * The SWIG objects created or returned by the calls are deleted right away through a {@link NativeScope}.
+ */
+public class RingserviceBridge implements DaemonBridge {
+
+    @Override
+    public List<String> getAccountList() {
+        return toNative(Ringservice.getAccountList());
+    }
+
+    @Override
+    public Map<String, String> getAccountDetails(String accountId) {
+        return toNative(Ringservice.getAccountDetails(accountId));
+    }
+
+    @Override
+    public Map<String, String> getVolatileAccountDetails(String accountId) {
+        return toNative(Ringservice.getVolatileAccountDetails(accountId));
+    }
+
+    @Override
+    public Map<String, String> getAccountTemplate(String accountType) {
+        return toNative(Ringservice.getAccountTemplate(accountType));
+    }
+
+    @Override
+    public String addAccount(Map<String, String> details) {
+        NativeScope scope = new NativeScope();
+        try {
+            return Ringservice.addAccount(scope.add(StringMap.toSwig(details)));
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public void removeAccount(String accountId) {
+        Ringservice.removeAccount(accountId);
+    }
+
+    @Override
+    public void setAccountDetails(String accountId, Map<String, String> details) {
+        NativeScope scope = new NativeScope();
+        try {
+            Ringservice.setAccountDetails(accountId, scope.add(StringMap.toSwig(details)));
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public void setAccountActive(String accountId, boolean active) {
+        Ringservice.setAccountActive(accountId, active);
+    }
+
+    @Override
+    public void setAccountsOrder(String order) {
+        Ringservice.setAccountsOrder(order);
+    }
+
+    @Override
+    public void registerAllAccounts() {
+        Ringservice.registerAllAccounts();
+    }
+
+    @Override
+    public void connectivityChanged() {
+        Ringservice.connectivityChanged();
+    }
+
+    @Override
+    public List<Map<String, String>> getCredentials(String accountId) {
+        return toNative(Ringservice.getCredentials(accountId));
+    }
+
+    @Override
+    public void setCredentials(String accountId, List<Map<String, String>> credentials) {
+        NativeScope scope = new NativeScope();
+        try {
+            VectMap swigCredentials = scope.add(new VectMap());
+            swigCredentials.reserve(credentials.size());
+            for (Map<String, String> credential : credentials) {
+                swigCredentials.add(scope.add(StringMap.toSwig(credential)));
+            }
+            Ringservice.setCredentials(accountId, swigCredentials);
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public Map<String, String> getKnownRingDevices(String accountId) {
+        return toNative(Ringservice.getKnownRingDevices(accountId));
+    }
+
+    @Override
+    public boolean revokeDevice(String accountId, String password, String deviceId) {
+        return Ringservice.revokeDevice(accountId, password, deviceId);
+    }
+
+    @Override
+    public String exportOnRing(String accountId, String password) {
+        return Ringservice.exportOnRing(accountId, password);
+    }
+
+    @Override
+    public int exportAccounts(List<String> accountIds, String toDir, String password) {
+        NativeScope scope = new NativeScope();
+        try {
+            StringVect ids = scope.add(new StringVect());
+            for (String accountId : accountIds) {
+                ids.add(accountId);
+            }
+            return Ringservice.exportAccounts(ids, toDir, password);
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public int importAccounts(String archivePath, String password) {
+        return Ringservice.importAccounts(archivePath, password);
+    }
+
+    @Override
+    public List<Long> getCodecList() {
+        return toList(Ringservice.getCodecList());
+    }
+
+    @Override
+    public List<Long> getActiveCodecList(String accountId) {
+        return toList(Ringservice.getActiveCodecList(accountId));
+    }
+
+    @Override
+    public Map<String, String> getCodecDetails(String accountId, long codecId) {
+        return toNative(Ringservice.getCodecDetails(accountId, codecId));
+    }
+
+    @Override
+    public void setActiveCodecList(String accountId, List<Long> codecIds) {
+        NativeScope scope = new NativeScope();
+        try {
+            UintVect list = scope.add(new UintVect());
+            list.reserve(codecIds.size());
+            for (Long codecId : codecIds) {
+                list.add(codecId);
+            }
+            Ringservice.setActiveCodecList(accountId, list);
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public Map<String, String> validateCertificatePath(String accountId, String certificatePath, String privateKeyPath,
+                                                       String privateKeyPassword, String caList) {
+        return toNative(Ringservice.validateCertificatePath(accountId, certificatePath, privateKeyPath, privateKeyPassword, caList));
+    }
+
+    @Override
+    public Map<String, String> validateCertificate(String accountId, String certificate) {
+        return toNative(Ringservice.validateCertificate(accountId, certificate));
+    }
+
+    @Override
+    public Map<String, String> getCertificateDetails(String certificate) {
+        return toNative(Ringservice.getCertificateDetails(certificate));
+    }
+
+    @Override
+    public List<String> getSupportedTlsMethod() {
+        return toNative(Ringservice.getSupportedTlsMethod());
+    }
+
+    @Override
+    public boolean registerName(String accountId, String password, String name) {
+        return Ringservice.registerName(accountId, password, name);
+    }
+
+    @Override
+    public boolean lookupName(String accountId, String nameserver, String name) {
+        return Ringservice.lookupName(accountId, nameserver, name);
+    }
+
+    @Override
+    public boolean lookupAddress(String accountId, String nameserver, String address) {
+        return Ringservice.lookupAddress(accountId, nameserver, address);
+    }
+
+    @Override
+    public List<Map<String, String>> getContacts(String accountId) {
+        return toNative(Ringservice.getContacts(accountId));
+    }
+
+    @Override
+    public void addContact(String accountId, String uri) {
+        Ringservice.addContact(accountId, uri);
+    }
+
+    @Override
+    public void removeContact(String accountId, String uri, boolean ban) {
+        Ringservice.removeContact(accountId, uri, ban);
+    }
+
+    @Override
+    public List<Map<String, String>> getTrustRequests(String accountId) {
+        return toNative(Ringservice.getTrustRequests(accountId));
+    }
+
+    @Override
+    public boolean acceptTrustRequest(String accountId, String from) {
+        return Ringservice.acceptTrustRequest(accountId, from);
+    }
+
+    @Override
+    public boolean discardTrustRequest(String accountId, String from) {
+        return Ringservice.discardTrustRequest(accountId, from);
+    }
+
+    @Override
+    public void sendTrustRequest(String accountId, String to, String payload) {
+        NativeScope scope = new NativeScope();
+        try {
+            Ringservice.sendTrustRequest(accountId, to, scope.add(Blob.fromString(payload)));
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public void sendTextMessage(String callId, Map<String, String> messages, String from, boolean isMixed) {
+        NativeScope scope = new NativeScope();
+        try {
+            Ringservice.sendTextMessage(callId, scope.add(StringMap.toSwig(messages)), from, isMixed);
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public long sendAccountTextMessage(String accountId, String to, Map<String, String> messages) {
+        NativeScope scope = new NativeScope();
+        try {
+            return Ringservice.sendAccountTextMessage(accountId, to, scope.add(StringMap.toSwig(messages)));
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public String placeCall(String accountId, String to) {
+        return Ringservice.placeCall(accountId, to);
+    }
+
+    @Override
+    public boolean accept(String callId) {
+        return Ringservice.accept(callId);
+    }
+
+    @Override
+    public boolean refuse(String callId) {
+        return Ringservice.refuse(callId);
+    }
+
+    @Override
+    public boolean hangUp(String callId) {
+        return Ringservice.hangUp(callId);
+    }
+
+    @Override
+    public boolean hold(String callId) {
+        return Ringservice.hold(callId);
+    }
+
+    @Override
+    public boolean unhold(String callId) {
+        return Ringservice.unhold(callId);
+    }
+
+    @Override
+    public boolean transfer(String callId, String to) {
+        return Ringservice.transfer(callId, to);
+    }
+
+    @Override
+    public boolean attendedTransfer(String transferId, String targetId) {
+        return Ringservice.attendedTransfer(transferId, targetId);
+    }
+
+    @Override
+    public Map<String, String> getCallDetails(String callId) {
+        return toNative(Ringservice.getCallDetails(callId));
+    }
+
+    @Override
+    public List<String> getCallList() {
+        return toNative(Ringservice.getCallList());
+    }
+
+    @Override
+    public boolean muteLocalMedia(String callId, String mediaType, boolean mute) {
+        return Ringservice.muteLocalMedia(callId, mediaType, mute);
+    }
+
+    @Override
+    public void muteRingtone(boolean mute) {
+        Ringservice.muteRingtone(mute);
+    }
+
+    @Override
+    public void muteCapture(boolean mute) {
+        Ringservice.muteCapture(mute);
+    }
+
+    @Override
+    public boolean isCaptureMuted() {
+        return Ringservice.isCaptureMuted();
+    }
+
+    @Override
+    public void playDTMF(String key) {
+        Ringservice.playDTMF(key);
+    }
+
+    @Override
+    public void setAudioPlugin(String audioPlugin) {
+        Ringservice.setAudioPlugin(audioPlugin);
+    }
+
+    @Override
+    public String getCurrentAudioOutputPlugin() {
+        return Ringservice.getCurrentAudioOutputPlugin();
+    }
+
+    @Override
+    public String getRecordPath() {
+        return Ringservice.getRecordPath();
+    }
+
+    @Override
+    public void setRecordPath(String path) {
+        Ringservice.setRecordPath(path);
+    }
+
+    @Override
+    public boolean toggleRecording(String callId) {
+        return Ringservice.toggleRecording(callId);
+    }
+
+    @Override
+    public boolean startRecordedFilePlayback(String filepath) {
+        return Ringservice.startRecordedFilePlayback(filepath);
+    }
+
+    @Override
+    public void stopRecordedFilePlayback(String filepath) {
+        Ringservice.stopRecordedFilePlayback(filepath);
+    }
+
+    @Override
+    public void removeConference(String confId) {
+        Ringservice.removeConference(confId);
+    }
+
+    @Override
+    public boolean joinParticipant(String selCallId, String dragCallId) {
+        return Ringservice.joinParticipant(selCallId, dragCallId);
+    }
+
+    @Override
+    public boolean addParticipant(String callId, String confId) {
+        return Ringservice.addParticipant(callId, confId);
+    }
+
+    @Override
+    public boolean addMainParticipant(String confId) {
+        return Ringservice.addMainParticipant(confId);
+    }
+
+    @Override
+    public boolean detachParticipant(String callId) {
+        return Ringservice.detachParticipant(callId);
+    }
+
+    @Override
+    public boolean joinConference(String selConfId, String dragConfId) {
+        return Ringservice.joinConference(selConfId, dragConfId);
+    }
+
+    @Override
+    public boolean hangUpConference(String confId) {
+        return Ringservice.hangUpConference(confId);
+    }
+
+    @Override
+    public boolean holdConference(String confId) {
+        return Ringservice.holdConference(confId);
+    }
+
+    @Override
+    public boolean unholdConference(String confId) {
+        return Ringservice.unholdConference(confId);
+    }
+
+    @Override
+    public boolean isConferenceParticipant(String callId) {
+        return Ringservice.isConferenceParticipant(callId);
+    }
+
+    @Override
+    public List<String> getParticipantList(String confId) {
+        return toNative(Ringservice.getParticipantList(confId));
+    }
+
+    @Override
+    public String getConferenceId(String callId) {
+        return Ringservice.getConferenceId(callId);
+    }
+
+    @Override
+    public Map<String, String> getConferenceDetails(String confId) {
+        return toNative(Ringservice.getConferenceDetails(confId));
+    }
+
+    @Override
+    public void publish(String accountId, boolean status, String note) {
+        Ringservice.publish(accountId, status, note);
+    }
+
+    @Override
+    public void answerServerRequest(String uri, boolean flag) {
+        Ringservice.answerServerRequest(uri, flag);
+    }
+
+    @Override
+    public void subscribeBuddy(String accountId, String uri, boolean flag) {
+        Ringservice.subscribeBuddy(accountId, uri, flag);
+    }
+
+    @Override
+    public List<Map<String, String>> getSubscriptions(String accountId) {
+        return toNative(Ringservice.getSubscriptions(accountId));
+    }
+
+    @Override
+    public void setSubscriptions(String accountId, List<String> uris) {
+        NativeScope scope = new NativeScope();
+        try {
+            StringVect swigUris = scope.add(new StringVect());
+            for (String uri : uris) {
+                swigUris.add(uri);
+            }
+            Ringservice.setSubscriptions(accountId, swigUris);
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public void applySettings(String deviceId, Map<String, String> settings) {
+        NativeScope scope = new NativeScope();
+        try {
+            Ringservice.applySettings(deviceId, scope.add(StringMap.toSwig(settings)));
+        } finally {
+            scope.release();
+        }
+    }
+
+    @Override
+    public boolean switchInput(String callId, String resource) {
+        return Ringservice.switchInput(callId, resource);
+    }
+
+    private static List<Long> toList(UintVect vector) {
+        NativeScope scope = new NativeScope();
+        try {
+            scope.add(vector);
+            int size = (int) vector.size();
+            List<Long> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(vector.get(i));
+            }
+            return list;
+        } finally {
+            scope.release();
+        }
+    }
+
+    private static Map<String, String> toNative(StringMap map) {
+        NativeScope scope = new NativeScope();
+        try {
+            return scope.add(map).toNative();
+        } finally {
+            scope.release();
+        }
+    }
+
+    private static List<Map<String, String>> toNative(VectMap vector) {
+        NativeScope scope = new NativeScope();
+        try {
+            return scope.add(vector).toNative();
+        } finally {
+            scope.release();
+        }
+    }
+
+    private static List<String> toNative(StringVect vector) {
+        NativeScope scope = new NativeScope();
+        try {
+            return SwigNativeConverter.convertSwigToNative(scope.add(vector));
+        } finally {
+            scope.release();
+        }
+    }
+}
@@ -21,6 +21,7 @@ package cx.ring.smartlist;
 
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -38,6 +39,7 @@ import cx.ring.services.DeviceRuntimeService;
 import cx.ring.services.HistoryService;
 import cx.ring.services.PreferencesService;
 import cx.ring.services.PresenceService;
+import cx.ring.utils.CoalescingObserver;
 import cx.ring.utils.NameLookupInputHandler;
 import cx.ring.utils.Observable;
 import cx.ring.utils.Observer;
@@ -45,6 +47,8 @@ import cx.ring.utils.Observer;
 public class SmartListPresenter extends RootPresenter<SmartListView> implements Observer<ServiceEvent> {
 
     private static final String TAG = SmartListPresenter.class.getSimpleName();
+    // a refresh of the whole list per burst instead of one per event
+    private static final long REFRESH_WINDOW_MS = 50;
 
     private AccountService mAccountService;
 
@@ -68,6 +72,10 @@ public class SmartListPresenter extends RootPresenter<SmartListView> implements
 
     private CallContact mCallContact;
 
+    private final CoalescingObserver mCoalescingObserver = new CoalescingObserver(this, REFRESH_WINDOW_MS, TimeUnit.MILLISECONDS)
+            .coalesce(ServiceEvent.EventType.CONVERSATIONS_CHANGED, ServiceEvent.EventType.USERNAME_CHANGED)
+            .coalesce(ServiceEvent.EventType.NEW_BUDDY_NOTIFICATION, ServiceEvent.EventInput.BUDDY_URI);
+
     @Inject
     public SmartListPresenter(AccountService accountService, ContactService contactService,
                               HistoryService historyService, ConversationFacade conversationFacade,
@@ -91,16 +99,21 @@ public class SmartListPresenter extends RootPresenter<SmartListView> implements
     public void unbindView() {
         super.unbindView();
         mAccountService.removeObserver(this);
-        mConversationFacade.removeObserver(this);
-        mPresenceService.removeObserver(this);
+        mConversationFacade.removeObserver(mCoalescingObserver);
+        mPresenceService.removeObserver(mCoalescingObserver);
+        mCoalescingObserver.cancel();
     }
 
     @Override
     public void bindView(SmartListView view) {
         super.bindView(view);
-        mAccountService.addObserver(this);
-        mConversationFacade.addObserver(this);
-        mPresenceService.addObserver(this);
+        mAccountService.addObserver(this,
+                ServiceEvent.EventType.REGISTERED_NAME_FOUND,
+                ServiceEvent.EventType.REGISTRATION_STATE_CHANGED);
+        mConversationFacade.addObserver(mCoalescingObserver,
+                ServiceEvent.EventType.CONVERSATIONS_CHANGED,
+                ServiceEvent.EventType.USERNAME_CHANGED);
+        mPresenceService.addObserver(mCoalescingObserver, ServiceEvent.EventType.NEW_BUDDY_NOTIFICATION);
     }
 
     public void refresh() {
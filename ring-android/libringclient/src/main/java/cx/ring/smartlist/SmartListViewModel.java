@@ -24,6 +24,7 @@ import java.util.Date;
 
 import cx.ring.model.CallContact;
 import cx.ring.model.Conversation;
+import cx.ring.model.ConversationSummary;
 import cx.ring.model.HistoryCall;
 import cx.ring.model.HistoryEntry;
 import cx.ring.model.TextMessage;
@@ -63,15 +64,8 @@ public class SmartListViewModel {
                     && lastTextTimestamp > 0
                     && lastTextTimestamp > lastCallTimestamp) {
                 TextMessage msg = historyEntry.getTextMessages().lastEntry().getValue();
-                String msgString = msg.getMessage();
-                if (msgString != null && !msgString.isEmpty() && msgString.contains("\n")) {
-                    int lastIndexOfChar = msgString.lastIndexOf("\n");
-                    if (lastIndexOfChar + 1 < msgString.length()) {
-                        msgString = msgString.substring(msgString.lastIndexOf("\n") + 1);
-                    }
-                }
                 this.lastEntryType = msg.isIncoming() ? TYPE_INCOMING_MESSAGE : TYPE_OUTGOING_MESSAGE;
-                this.lastInteraction = msgString;
+                this.lastInteraction = getLastLine(msg.getMessage());
                 break;
             }
             if (lastCallTimestamp == lastInteraction
@@ -82,6 +76,31 @@ public class SmartListViewModel {
                 break;
             }
         }
+
+        // the history is not loaded yet, the conversation is drawn from its summary
+        ConversationSummary summary = conversation.getLastSummary();
+        if (conversation.getHistory().isEmpty() && summary != null && summary.getDate().getTime() == lastInteraction) {
+            if (summary.isCall()) {
+                this.lastEntryType = summary.isIncoming() ? TYPE_INCOMING_CALL : TYPE_OUTGOING_CALL;
+                this.lastInteraction = HistoryCall.getDurationString(summary.getDuration());
+            } else {
+                this.lastEntryType = summary.isIncoming() ? TYPE_INCOMING_MESSAGE : TYPE_OUTGOING_MESSAGE;
+                this.lastInteraction = getLastLine(summary.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the last line of a text message, shown as its preview
+     */
+    private static String getLastLine(String msgString) {
+        if (msgString != null && !msgString.isEmpty() && msgString.contains("\n")) {
+            int lastIndexOfChar = msgString.lastIndexOf("\n");
+            if (lastIndexOfChar + 1 < msgString.length()) {
+                msgString = msgString.substring(lastIndexOfChar + 1);
+            }
+        }
+        return msgString;
     }
 
     @Override
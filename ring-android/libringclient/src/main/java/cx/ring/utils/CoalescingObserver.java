@@ -0,0 +1,181 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.ServiceEvent;
+
+/**
+ * Wraps an observer so the bursts of some event types reach it once per window.
+ * <p>
+ * The first event of a coalesced type starts a window, the following events of the same type
+ * from the same observable are merged into it. At the end of the window the observer receives
+ * a copy of the last event with the {@link ServiceEvent.EventInput#IDS} input set to the ids
+ * of all the merged events, a HashSet of String. Other event types are delivered right away.
+ * <p>
+ * The observables only keep a weak reference to their observers: the owner must keep this object
+ * and register it instead of the wrapped observer. Coalesced events are delivered on the scheduler
+ * thread, {@link #cancel()} drops the pending ones.
+ */
+public class CoalescingObserver implements Observer<ServiceEvent> {
+
+    private static final String TAG = CoalescingObserver.class.getName();
+
+    private static ScheduledExecutorService sScheduler;
+
+    private final Observer<ServiceEvent> mObserver;
+    private final ScheduledExecutorService mScheduler;
+    private final long mWindow;
+    private final TimeUnit mUnit;
+    // coalesced types, with the input giving the event id or null
+    private final Map<ServiceEvent.EventType, ServiceEvent.EventInput> mCoalescedTypes = new EnumMap<>(ServiceEvent.EventType.class);
+    private final Map<Observable, Map<ServiceEvent.EventType, Pending>> mPending = new IdentityHashMap<>();
+
+    private static class Pending {
+        ServiceEvent mEvent;
+        final HashSet<String> mIds = new HashSet<>();
+        ScheduledFuture<?> mFlush;
+    }
+
+    public CoalescingObserver(Observer<ServiceEvent> observer, long window, TimeUnit unit) {
+        this(observer, window, unit, getSharedScheduler());
+    }
+
+    public CoalescingObserver(Observer<ServiceEvent> observer, long window, TimeUnit unit, ScheduledExecutorService scheduler) {
+        mObserver = observer;
+        mWindow = window;
+        mUnit = unit;
+        mScheduler = scheduler;
+    }
+
+    private static synchronized ScheduledExecutorService getSharedScheduler() {
+        if (sScheduler == null) {
+            sScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "EventCoalescer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sScheduler;
+    }
+
+    /**
+     * Coalesces the events of the given type
+     *
+     * @param idInput input holding the String id of the event reported in IDS, or null
+     */
+    public synchronized CoalescingObserver coalesce(ServiceEvent.EventType type, ServiceEvent.EventInput idInput) {
+        mCoalescedTypes.put(type, idInput);
+        return this;
+    }
+
+    public CoalescingObserver coalesce(ServiceEvent.EventType... types) {
+        for (ServiceEvent.EventType type : types) {
+            coalesce(type, null);
+        }
+        return this;
+    }
+
+    @Override
+    public void update(final Observable observable, ServiceEvent event) {
+        if (event == null) {
+            mObserver.update(observable, null);
+            return;
+        }
+        final ServiceEvent.EventType type = event.getEventType();
+        synchronized (this) {
+            if (mCoalescedTypes.containsKey(type)) {
+                Map<ServiceEvent.EventType, Pending> observablePending = mPending.get(observable);
+                if (observablePending == null) {
+                    observablePending = new EnumMap<>(ServiceEvent.EventType.class);
+                    mPending.put(observable, observablePending);
+                }
+                Pending pending = observablePending.get(type);
+                if (pending == null) {
+                    pending = new Pending();
+                    observablePending.put(type, pending);
+                    pending.mFlush = mScheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            flush(observable, type);
+                        }
+                    }, mWindow, mUnit);
+                }
+                pending.mEvent = event;
+                ServiceEvent.EventInput idInput = mCoalescedTypes.get(type);
+                if (idInput != null) {
+                    String id = event.getString(idInput);
+                    if (id != null) {
+                        pending.mIds.add(id);
+                    }
+                }
+                return;
+            }
+        }
+        mObserver.update(observable, event);
+    }
+
+    private void flush(Observable observable, ServiceEvent.EventType type) {
+        Pending pending;
+        synchronized (this) {
+            Map<ServiceEvent.EventType, Pending> observablePending = mPending.get(observable);
+            if (observablePending == null) {
+                return;
+            }
+            pending = observablePending.remove(type);
+            if (observablePending.isEmpty()) {
+                mPending.remove(observable);
+            }
+        }
+        if (pending == null) {
+            return;
+        }
+        // the last event may be delivered to other observers, its copy carries the ids
+        ServiceEvent event = new ServiceEvent(pending.mEvent);
+        event.addEventInput(ServiceEvent.EventInput.IDS, pending.mIds);
+        try {
+            mObserver.update(observable, event);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error delivering coalesced " + type, e);
+        }
+    }
+
+    /**
+     * Drops the events waiting for the end of their window
+     */
+    public synchronized void cancel() {
+        for (Map<ServiceEvent.EventType, Pending> observablePending : mPending.values()) {
+            for (Pending pending : observablePending.values()) {
+                pending.mFlush.cancel(false);
+            }
+        }
+        mPending.clear();
+    }
+}
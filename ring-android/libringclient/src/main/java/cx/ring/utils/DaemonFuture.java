@@ -0,0 +1,359 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of an asynchronous daemon operation.
+ * <p>
+ * Unlike a plain {@link Future}, observers register callbacks instead of blocking on get(),
+ * results can be transformed with {@link #then(Transformation)}, combined with {@link #allOf(List)}
+ * and bounded with {@link #withDeadline(long, TimeUnit, ScheduledExecutorService)}.
+ * Errors raised by the daemon call are delivered to {@link Callback#onFailure(Throwable)}.
+ */
+public class DaemonFuture<T> implements Future<T> {
+
+    private final static String TAG = DaemonFuture.class.getSimpleName();
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure(Throwable error);
+    }
+
+    public interface Transformation<T, R> {
+        R apply(T value) throws Exception;
+    }
+
+    private static final int PENDING = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private int mState = PENDING;
+    private T mResult;
+    private Throwable mError;
+    private List<Runnable> mListeners = new ArrayList<>();
+    private Future<?> mTask;
+
+    public DaemonFuture() {
+    }
+
+    public static <T> DaemonFuture<T> completed(T value) {
+        DaemonFuture<T> future = new DaemonFuture<>();
+        future.complete(value);
+        return future;
+    }
+
+    public static <T> DaemonFuture<T> failed(Throwable error) {
+        DaemonFuture<T> future = new DaemonFuture<>();
+        future.fail(error);
+        return future;
+    }
+
+    /**
+     * @param task the underlying task, cancelled along with this future
+     */
+    synchronized void setTask(Future<?> task) {
+        mTask = task;
+        if (mState == CANCELLED) {
+            task.cancel(false);
+        }
+    }
+
+    public boolean complete(T value) {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+            mResult = value;
+            mState = SUCCEEDED;
+            listeners = releaseListeners();
+        }
+        runListeners(listeners);
+        return true;
+    }
+
+    public boolean fail(Throwable error) {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+            mError = error;
+            mState = FAILED;
+            listeners = releaseListeners();
+        }
+        runListeners(listeners);
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<Runnable> listeners;
+        Future<?> task;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+            mError = new CancellationException();
+            mState = CANCELLED;
+            task = mTask;
+            listeners = releaseListeners();
+        }
+        if (task != null) {
+            task.cancel(mayInterruptIfRunning);
+        }
+        runListeners(listeners);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != PENDING;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (mState == PENDING) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (mState == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        switch (mState) {
+            case SUCCEEDED:
+                return mResult;
+            case CANCELLED:
+                throw (CancellationException) mError;
+            default:
+                throw new ExecutionException(mError);
+        }
+    }
+
+    /**
+     * Registers a callback invoked on the thread completing this future,
+     * or immediately on the calling thread if it is already done.
+     */
+    public DaemonFuture<T> addCallback(Callback<? super T> callback) {
+        return addCallback(callback, null);
+    }
+
+    /**
+     * Registers a callback invoked on the given executor once this future is done
+     *
+     * @param executor the executor to deliver the result on, inline if null
+     */
+    public DaemonFuture<T> addCallback(final Callback<? super T> callback, final Executor executor) {
+        final Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                int state;
+                T result;
+                Throwable error;
+                synchronized (DaemonFuture.this) {
+                    state = mState;
+                    result = mResult;
+                    error = mError;
+                }
+                if (state == SUCCEEDED) {
+                    callback.onSuccess(result);
+                } else {
+                    callback.onFailure(error);
+                }
+            }
+        };
+        Runnable listener = executor == null ? delivery : new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(delivery);
+                } catch (RejectedExecutionException e) {
+                    Log.e(TAG, "Unable to deliver the result", e);
+                }
+            }
+        };
+        synchronized (this) {
+            if (mState == PENDING) {
+                mListeners.add(listener);
+                return this;
+            }
+        }
+        listener.run();
+        return this;
+    }
+
+    /**
+     * @return a future holding the transformed result of this one, failures are propagated as-is
+     */
+    public <R> DaemonFuture<R> then(final Transformation<? super T, ? extends R> transformation) {
+        final DaemonFuture<R> chained = new DaemonFuture<>();
+        chained.addCallback(new Callback<R>() {
+            @Override
+            public void onSuccess(R result) {
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                if (chained.isCancelled()) {
+                    cancel(false);
+                }
+            }
+        });
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                try {
+                    chained.complete(transformation.apply(result));
+                } catch (Exception e) {
+                    chained.fail(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                if (error instanceof CancellationException) {
+                    chained.cancel(false);
+                } else {
+                    chained.fail(error);
+                }
+            }
+        });
+        return chained;
+    }
+
+    /**
+     * Fails this future with a {@link TimeoutException} and cancels the underlying task
+     * if it is not done before the deadline.
+     */
+    public DaemonFuture<T> withDeadline(long timeout, TimeUnit unit, ScheduledExecutorService scheduler) {
+        if (isDone()) {
+            return this;
+        }
+        final Future<?> timer = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Future<?> task;
+                synchronized (DaemonFuture.this) {
+                    task = mTask;
+                }
+                if (fail(new TimeoutException()) && task != null) {
+                    task.cancel(false);
+                }
+            }
+        }, timeout, unit);
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                timer.cancel(false);
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                timer.cancel(false);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @return a future holding the results of all the given futures, in the same order,
+     * or the first failure among them
+     */
+    public static <T> DaemonFuture<List<T>> allOf(final List<DaemonFuture<T>> futures) {
+        final DaemonFuture<List<T>> all = new DaemonFuture<>();
+        if (futures.isEmpty()) {
+            all.complete(Collections.<T>emptyList());
+            return all;
+        }
+        final List<T> results = new ArrayList<>(Collections.<T>nCopies(futures.size(), null));
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            final int index = i;
+            futures.get(i).addCallback(new Callback<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    synchronized (results) {
+                        results.set(index, result);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        synchronized (results) {
+                            all.complete(results);
+                        }
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable error) {
+                    all.fail(error);
+                }
+            });
+        }
+        return all;
+    }
+
+    private List<Runnable> releaseListeners() {
+        List<Runnable> listeners = mListeners;
+        mListeners = Collections.emptyList();
+        mTask = null;
+        notifyAll();
+        return listeners;
+    }
+
+    private void runListeners(List<Runnable> listeners) {
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                Log.e(TAG, "Error while running a callback", e);
+            }
+        }
+    }
+}
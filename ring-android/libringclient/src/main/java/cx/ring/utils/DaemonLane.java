@@ -0,0 +1,95 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Priority lanes of the daemon executor, a lane is only served when the lanes above are empty,
+ * unless its oldest task waited longer than the lane's starvation threshold.
+ * <p>
+ * Only the read-only operations can be overtaken: a task is never served ahead of an older task
+ * changing the daemon state, so that a call placed after a change of its account settings,
+ * or a profile sent before the hang up of its call, keep their order. Such a task is itself served
+ * ahead of the read-only operations queued before it in its lane.
+ */
+public enum DaemonLane {
+    /**
+     * call control and media, served first
+     */
+    CALL(Long.MAX_VALUE),
+    DEFAULT(200),
+    /**
+     * bulk work such as name lookups and profile sending
+     */
+    BACKGROUND(1000);
+
+    private static final ConcurrentHashMap<String, DaemonLane> sLanes = new ConcurrentHashMap<>();
+
+    static {
+        for (String operation : new String[]{"placeCall", "accept", "refuse", "hangUp", "hold", "unhold",
+                "muteCapture", "playDTMF", "transfer", "attendedTransfer", "switchInput", "obtainFrame",
+                "joinParticipant", "addParticipant", "addMainParticipant", "detachParticipant", "joinConference",
+                "hangUpConference", "holdConference", "unholdConference"}) {
+            sLanes.put(operation, CALL);
+        }
+        for (String operation : new String[]{"lookupAddress", "lookupName", "sendProfile", "getContacts",
+                "getTrustRequests", "registerName", "exportOnRing", "exportAccounts", "importAccounts"}) {
+            sLanes.put(operation, BACKGROUND);
+        }
+    }
+
+    private final long mStarvationThreshold;
+
+    DaemonLane(long starvationThreshold) {
+        mStarvationThreshold = starvationThreshold;
+    }
+
+    /**
+     * @return the time in milliseconds after which the oldest task of this lane is served before the lanes above
+     */
+    public long getStarvationThreshold() {
+        return mStarvationThreshold;
+    }
+
+    /**
+     * @param operation the Ringservice method name
+     * @return the lane of the operation, {@link #DEFAULT} if not configured
+     */
+    public static DaemonLane forOperation(String operation) {
+        DaemonLane lane = operation == null ? null : sLanes.get(operation);
+        return lane == null ? DEFAULT : lane;
+    }
+
+    /**
+     * @param operation the Ringservice method name
+     * @return true if the operation only reads the daemon state, unnamed operations are not
+     */
+    public static boolean isReadOnly(String operation) {
+        return operation != null && (operation.startsWith("get") || operation.startsWith("is")
+                || operation.startsWith("lookup") || operation.startsWith("validate"));
+    }
+
+    public static void setLane(String operation, DaemonLane lane) {
+        if (lane == null) {
+            sLanes.remove(operation);
+        } else {
+            sLanes.put(operation, lane);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+/**
+ * Outcome of a synchronous daemon operation, telling a timeout apart from an error or a null value
+ */
+public final class DaemonResult<T> {
+
+    public enum Status {
+        SUCCESS,
+        TIMEOUT,
+        ERROR
+    }
+
+    private final Status mStatus;
+    private final String mOperation;
+    private final T mValue;
+    private final Throwable mError;
+
+    private DaemonResult(Status status, String operation, T value, Throwable error) {
+        mStatus = status;
+        mOperation = operation;
+        mValue = value;
+        mError = error;
+    }
+
+    public static <T> DaemonResult<T> success(String operation, T value) {
+        return new DaemonResult<>(Status.SUCCESS, operation, value, null);
+    }
+
+    public static <T> DaemonResult<T> timeout(String operation) {
+        return new DaemonResult<>(Status.TIMEOUT, operation, null, null);
+    }
+
+    public static <T> DaemonResult<T> error(String operation, Throwable error) {
+        return new DaemonResult<>(Status.ERROR, operation, null, error);
+    }
+
+    public Status getStatus() {
+        return mStatus;
+    }
+
+    public String getOperation() {
+        return mOperation;
+    }
+
+    public boolean isSuccess() {
+        return mStatus == Status.SUCCESS;
+    }
+
+    public boolean isTimeout() {
+        return mStatus == Status.TIMEOUT;
+    }
+
+    /**
+     * @return the value returned by the daemon, null if the operation did not succeed
+     */
+    public T getValue() {
+        return mValue;
+    }
+
+    /**
+     * @return the value returned by the daemon, or the fallback if the operation did not succeed
+     */
+    public T getValueOr(T fallback) {
+        return mStatus == Status.SUCCESS ? mValue : fallback;
+    }
+
+    public Throwable getError() {
+        return mError;
+    }
+
+    @Override
+    public String toString() {
+        return mOperation + ": " + mStatus + (mError == null ? "" : " (" + mError + ")");
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deadlines applied to the synchronous daemon operations, and the number of times each operation timed out.
+ * The mutations are not bounded: giving up on them would report a failure for a change the daemon goes on applying.
+ */
+public class DaemonTimeouts {
+
+    public static final String UNNAMED_OPERATION = "unnamed";
+
+    // below the 5 seconds the system waits before reporting an unresponsive application
+    public static final long DEFAULT_TIMEOUT = 3000;
+
+    private static volatile long sDefaultTimeout = DEFAULT_TIMEOUT;
+    private static final ConcurrentHashMap<String, Long> sTimeouts = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicLong> sTimeoutCounts = new ConcurrentHashMap<>();
+
+    // the synchronous operations changing the daemon state, awaited until they complete
+    private static final Set<String> MUTATIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "addAccount",
+            "setAccountDetails",
+            "exportAccounts",
+            "importAccounts",
+            "placeCall",
+            "toggleRecording",
+            "sendAccountTextMessage")));
+
+    static {
+        // collects every account at once
+        sTimeouts.put("getAccountsSnapshot", 10000L);
+    }
+
+    private DaemonTimeouts() {
+    }
+
+    /**
+     * @return true if the operation changes the daemon state, its result is then awaited without deadline
+     */
+    public static boolean isMutation(String operation) {
+        return operation != null && MUTATIONS.contains(operation);
+    }
+
+    /**
+     * @return the deadline in milliseconds applied to the operation, unless it is a mutation
+     */
+    public static long getTimeout(String operation) {
+        Long timeout = operation == null ? null : sTimeouts.get(operation);
+        return timeout == null ? sDefaultTimeout : timeout;
+    }
+
+    /**
+     * @param operation the Ringservice method name
+     * @param timeout   the deadline in milliseconds, 0 or less to restore the default one
+     */
+    public static void setTimeout(String operation, long timeout) {
+        if (timeout <= 0) {
+            sTimeouts.remove(operation);
+        } else {
+            sTimeouts.put(operation, timeout);
+        }
+    }
+
+    public static long getDefaultTimeout() {
+        return sDefaultTimeout;
+    }
+
+    public static void setDefaultTimeout(long timeout) {
+        sDefaultTimeout = timeout > 0 ? timeout : DEFAULT_TIMEOUT;
+    }
+
+    static void onTimeout(String operation) {
+        String key = operation == null ? UNNAMED_OPERATION : operation;
+        AtomicLong count = sTimeoutCounts.get(key);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = sTimeoutCounts.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public static long getTimeoutCount(String operation) {
+        AtomicLong count = sTimeoutCounts.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return a snapshot of the number of timeouts, per Ringservice method
+     */
+    public static Map<String, Long> getTimeoutCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : sTimeoutCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public static void resetTimeoutCounts() {
+        sTimeoutCounts.clear();
+    }
+}
@@ -20,51 +20,141 @@
 package cx.ring.utils;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class FutureUtils {
 
     private final static String TAG = FutureUtils.class.getName();
 
+    /**
+     * @param operation the Ringservice method name, used to pick the deadline, count the timeouts
+     *                  and tag the {@link InstrumentedExecutor} statistics
+     * @return the result of the callable, or null if it failed or timed out when synchronous
+     */
     public static <T> T executeDaemonThreadCallable (ExecutorService executor,
                                                      long daemonThreadId,
                                                      boolean isSynchronous,
+                                                     String operation,
                                                      Callable<T> callable
                                                      ) {
         long currentThreadId = Thread.currentThread().getId();
         if (currentThreadId == daemonThreadId) {
             // we already are in the daemon thread
+            long start = System.nanoTime();
             try {
                 return callable.call();
             } catch (Exception e) {
                 return null;
+            } finally {
+                recordInline(executor, operation, start);
             }
         }
 
         // we are not in the Daemon Thread
         // the dedicated daemon executor is required
-        Future<T> result = executor.submit(callable);
+        Future<T> result = executor.submit(InstrumentedExecutor.named(operation, callable));
 
         if (isSynchronous) {
-            return getFutureResult(result);
+            return getFutureResult(result, operation);
         }
 
         return null;
     }
 
-    public static <T> T getFutureResult(Future<T> future) {
+    /**
+     * Executes the callable on the daemon thread without blocking the caller.
+     * Unlike {@link #executeDaemonThreadCallable}, errors are not swallowed but propagated to the returned future.
+     */
+    public static <T> DaemonFuture<T> executeDaemonThreadCallableAsync(ExecutorService executor,
+                                                                       long daemonThreadId,
+                                                                       String operation,
+                                                                       final Callable<T> callable) {
+        final DaemonFuture<T> result = new DaemonFuture<>();
+        long currentThreadId = Thread.currentThread().getId();
+        if (currentThreadId == daemonThreadId) {
+            // we already are in the daemon thread
+            long start = System.nanoTime();
+            complete(result, callable);
+            recordInline(executor, operation, start);
+            return result;
+        }
 
-        if (future == null) {
-            return null;
+        try {
+            result.setTask(executor.submit(InstrumentedExecutor.named(operation, new Runnable() {
+                @Override
+                public void run() {
+                    if (!result.isDone()) {
+                        complete(result, callable);
+                    }
+                }
+            })));
+        } catch (RejectedExecutionException e) {
+            result.fail(e);
+        }
+        return result;
+    }
+
+    private static void recordInline(ExecutorService executor, String operation, long start) {
+        if (executor instanceof InstrumentedExecutor) {
+            ((InstrumentedExecutor) executor).recordInline(operation, System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+    }
 
+    private static <T> void complete(DaemonFuture<T> result, Callable<T> callable) {
         try {
-            return future.get();
+            result.complete(callable.call());
+        } catch (Exception e) {
+            result.fail(e);
+        }
+    }
+
+    /**
+     * Waits for the result of the operation, no longer than its deadline unless it is a mutation
+     *
+     * @param operation the Ringservice method name, used to pick the deadline and count the timeouts
+     * @return the typed outcome of the operation
+     */
+    public static <T> DaemonResult<T> getDaemonResult(Future<T> future, String operation) {
+        long timeout = DaemonTimeouts.getTimeout(operation);
+        try {
+            if (DaemonTimeouts.isMutation(operation)) {
+                return DaemonResult.success(operation, future.get());
+            }
+            return DaemonResult.success(operation, future.get(timeout, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            // the operation is left running, it may still complete on the daemon thread
+            DaemonTimeouts.onTimeout(operation);
+            Log.w(TAG, "Daemon operation " + operation + " timed out after " + timeout + "ms");
+            return DaemonResult.timeout(operation);
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Error while executing " + operation, e.getCause());
+            return DaemonResult.error(operation, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DaemonResult.error(operation, e);
         } catch (Exception e) {
             Log.e(TAG, "Error while unwrapping future", e);
+            return DaemonResult.error(operation, e);
+        }
+    }
+
+    /**
+     * @return the result of the operation, or null if it failed or did not complete before its deadline
+     */
+    public static <T> T getFutureResult(Future<T> future, String operation) {
+        if (future == null) {
             return null;
         }
+        return getDaemonResult(future, operation).getValue();
+    }
+
+    public static <T> T getFutureResult(Future<T> future) {
+        return getFutureResult(future, null);
     }
 
 }
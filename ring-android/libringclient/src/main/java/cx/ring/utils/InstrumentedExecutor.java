@@ -0,0 +1,341 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single thread executor recording, for each named operation, the time spent waiting in the queue
+ * and the time spent running, along with the depth of the queue.
+ * <p>
+ * Operations are named by wrapping them with {@link #named(String, Callable)} or {@link #named(String, Runnable)},
+ * other tasks are accounted under {@link DaemonTimeouts#UNNAMED_OPERATION}.
+ * Tasks are served by priority lane, see {@link DaemonLane#forOperation(String)} and {@link PriorityLaneQueue}.
+ * The failures of the tasks run through {@link #execute(Runnable)} are logged, the submitted ones are left to their future.
+ */
+public class InstrumentedExecutor extends ThreadPoolExecutor {
+
+    private final static String TAG = InstrumentedExecutor.class.getSimpleName();
+
+    private final ConcurrentHashMap<String, OperationStatistics> mOperations = new ConcurrentHashMap<>();
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+    public InstrumentedExecutor() {
+        super(1, 1, 0L, TimeUnit.MILLISECONDS, new PriorityLaneQueue());
+    }
+
+    public static <T> Callable<T> named(String operation, Callable<T> callable) {
+        return new NamedCallable<>(operation, callable);
+    }
+
+    public static Runnable named(String operation, Runnable runnable) {
+        return new NamedRunnable(operation, runnable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        String operation = callable instanceof NamedCallable ? ((NamedCallable) callable).mOperation : null;
+        return new TimedTask<>(callable, operation);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        String operation = runnable instanceof NamedRunnable ? ((NamedRunnable) runnable).mOperation : null;
+        return new TimedTask<>(runnable, value, operation);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (!(command instanceof TimedTask)) {
+            // nobody holds the future of an executed task, its failure is logged once it has run
+            TimedTask<Object> task = (TimedTask<Object>) newTaskFor(command, null);
+            task.mLogFailure = true;
+            command = task;
+        }
+        super.execute(command);
+        int depth = getQueue().size();
+        int max = mMaxQueueDepth.get();
+        while (depth > max && !mMaxQueueDepth.compareAndSet(max, depth)) {
+            max = mMaxQueueDepth.get();
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof TimedTask) {
+            TimedTask task = (TimedTask) r;
+            task.mStarted = System.nanoTime();
+            getStatistics(task.mOperation).mWait.record(task.mStarted - task.mSubmitted, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        if (r instanceof TimedTask) {
+            TimedTask task = (TimedTask) r;
+            getStatistics(task.mOperation).mRun.record(System.nanoTime() - task.mStarted, TimeUnit.NANOSECONDS);
+            if (task.mLogFailure) {
+                logFailure(task);
+            }
+        }
+    }
+
+    private static void logFailure(TimedTask task) {
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            String name = task.mOperation == null ? DaemonTimeouts.UNNAMED_OPERATION : task.mOperation;
+            Log.e(TAG, "Error while executing " + name, e.getCause());
+        } catch (CancellationException e) {
+            // cancelled on purpose
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records an operation run directly on the executor thread, without going through the queue
+     */
+    public void recordInline(String operation, long duration, TimeUnit unit) {
+        getStatistics(operation).mRun.record(duration, unit);
+    }
+
+    /**
+     * @return the number of tasks currently waiting in the queue
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth.get();
+    }
+
+    public Snapshot getSnapshot() {
+        List<OperationSnapshot> operations = new ArrayList<>(mOperations.size());
+        for (OperationStatistics statistics : mOperations.values()) {
+            operations.add(new OperationSnapshot(statistics.mName, statistics.mWait.getSnapshot(), statistics.mRun.getSnapshot()));
+        }
+        Collections.sort(operations, new Comparator<OperationSnapshot>() {
+            @Override
+            public int compare(OperationSnapshot lhs, OperationSnapshot rhs) {
+                long lhsTotal = lhs.getWait().getTotal() + lhs.getRun().getTotal();
+                long rhsTotal = rhs.getWait().getTotal() + rhs.getRun().getTotal();
+                return lhsTotal < rhsTotal ? 1 : (lhsTotal == rhsTotal ? 0 : -1);
+            }
+        });
+        return new Snapshot(getQueueDepth(), getMaxQueueDepth(), ((PriorityLaneQueue) getQueue()).getLaneSnapshots(), operations);
+    }
+
+    public void resetStatistics() {
+        mOperations.clear();
+        mMaxQueueDepth.set(0);
+        ((PriorityLaneQueue) getQueue()).resetStatistics();
+    }
+
+    private OperationStatistics getStatistics(String operation) {
+        String name = operation == null ? DaemonTimeouts.UNNAMED_OPERATION : operation;
+        OperationStatistics statistics = mOperations.get(name);
+        if (statistics == null) {
+            OperationStatistics newStatistics = new OperationStatistics(name);
+            statistics = mOperations.putIfAbsent(name, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    private static class OperationStatistics {
+        private final String mName;
+        private final LatencyHistogram mWait = new LatencyHistogram();
+        private final LatencyHistogram mRun = new LatencyHistogram();
+
+        OperationStatistics(String name) {
+            mName = name;
+        }
+    }
+
+    private static class TimedTask<T> extends FutureTask<T> implements PriorityLaneQueue.LaneTask {
+        private final String mOperation;
+        private final DaemonLane mLane;
+        private final long mSubmitted = System.nanoTime();
+        private long mStarted;
+        private boolean mLogFailure = false;
+
+        TimedTask(Callable<T> callable, String operation) {
+            super(callable);
+            mOperation = operation;
+            mLane = DaemonLane.forOperation(operation);
+        }
+
+        TimedTask(Runnable runnable, T value, String operation) {
+            super(runnable, value);
+            mOperation = operation;
+            mLane = DaemonLane.forOperation(operation);
+        }
+
+        @Override
+        public DaemonLane getLane() {
+            return mLane;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return DaemonLane.isReadOnly(mOperation);
+        }
+    }
+
+    private static class NamedCallable<T> implements Callable<T> {
+        private final String mOperation;
+        private final Callable<T> mCallable;
+
+        NamedCallable(String operation, Callable<T> callable) {
+            mOperation = operation;
+            mCallable = callable;
+        }
+
+        @Override
+        public T call() throws Exception {
+            return mCallable.call();
+        }
+    }
+
+    private static class NamedRunnable implements Runnable {
+        private final String mOperation;
+        private final Runnable mRunnable;
+
+        NamedRunnable(String operation, Runnable runnable) {
+            mOperation = operation;
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            mRunnable.run();
+        }
+    }
+
+    public static class OperationSnapshot {
+        private final String mName;
+        private final LatencyHistogram.Snapshot mWait;
+        private final LatencyHistogram.Snapshot mRun;
+
+        OperationSnapshot(String name, LatencyHistogram.Snapshot wait, LatencyHistogram.Snapshot run) {
+            mName = name;
+            mWait = wait;
+            mRun = run;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return the time spent in the queue, operations run inline are not accounted
+         */
+        public LatencyHistogram.Snapshot getWait() {
+            return mWait;
+        }
+
+        public LatencyHistogram.Snapshot getRun() {
+            return mRun;
+        }
+
+        @Override
+        public String toString() {
+            return mName + " wait: " + mWait + ", run: " + mRun;
+        }
+    }
+
+    public static class Snapshot {
+        private final int mQueueDepth;
+        private final int mMaxQueueDepth;
+        private final List<PriorityLaneQueue.LaneSnapshot> mLanes;
+        private final List<OperationSnapshot> mOperations;
+
+        Snapshot(int queueDepth, int maxQueueDepth, List<PriorityLaneQueue.LaneSnapshot> lanes, List<OperationSnapshot> operations) {
+            mQueueDepth = queueDepth;
+            mMaxQueueDepth = maxQueueDepth;
+            mLanes = Collections.unmodifiableList(lanes);
+            mOperations = Collections.unmodifiableList(operations);
+        }
+
+        public int getQueueDepth() {
+            return mQueueDepth;
+        }
+
+        public int getMaxQueueDepth() {
+            return mMaxQueueDepth;
+        }
+
+        /**
+         * @return the lanes, by priority
+         */
+        public List<PriorityLaneQueue.LaneSnapshot> getLanes() {
+            return mLanes;
+        }
+
+        public PriorityLaneQueue.LaneSnapshot getLane(DaemonLane lane) {
+            return mLanes.get(lane.ordinal());
+        }
+
+        /**
+         * @return the operations, the most time consuming first
+         */
+        public List<OperationSnapshot> getOperations() {
+            return mOperations;
+        }
+
+        public OperationSnapshot getOperation(String name) {
+            for (OperationSnapshot operation : mOperations) {
+                if (operation.getName().equals(name)) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("queue depth: ").append(mQueueDepth).append(" (max ").append(mMaxQueueDepth).append(")");
+            for (PriorityLaneQueue.LaneSnapshot lane : mLanes) {
+                builder.append('\n').append(lane);
+            }
+            for (OperationSnapshot operation : mOperations) {
+                builder.append('\n').append(operation);
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on a pool of workers, tasks sharing the same key being run one at a time in submission order.
+ * <p>
+ * Each key is bound to a single thread worker, so unrelated keys run in parallel while a given key
+ * (e.g. an account and a peer) keeps the order of its tasks. For each named task, the time spent waiting
+ * for a worker and the time from submission to the end of the task are recorded.
+ */
+public class KeyedDispatcher {
+
+    private static final String TAG = KeyedDispatcher.class.getName();
+
+    private final ThreadPoolExecutor[] mWorkers;
+    private final ConcurrentHashMap<String, TaskStatistics> mTasks = new ConcurrentHashMap<>();
+    private final AtomicInteger mPending = new AtomicInteger();
+    private final AtomicInteger mMaxPending = new AtomicInteger();
+
+    public KeyedDispatcher(final String name, int workerCount) {
+        mWorkers = new ThreadPoolExecutor[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            final String threadName = name + "-" + i;
+            mWorkers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, threadName);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return a key made of the given parts, e.g. an account id and a peer uri
+     */
+    public static String key(String... parts) {
+        StringBuilder key = new StringBuilder();
+        for (String part : parts) {
+            if (key.length() > 0) {
+                key.append('/');
+            }
+            key.append(part);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Queues the task on the worker bound to the key and returns immediately
+     *
+     * @param key  tasks with the same key are run in order
+     * @param name the name the latencies are recorded under
+     */
+    public void dispatch(String key, String name, Runnable task) {
+        DispatchedTask dispatched = new DispatchedTask(getStatistics(name), task);
+        int pending = mPending.incrementAndGet();
+        int max = mMaxPending.get();
+        while (pending > max && !mMaxPending.compareAndSet(max, pending)) {
+            max = mMaxPending.get();
+        }
+        try {
+            mWorkers[indexOf(key)].execute(dispatched);
+        } catch (RejectedExecutionException e) {
+            mPending.decrementAndGet();
+            Log.w(TAG, "Dispatcher rejected " + name, e);
+        }
+    }
+
+    /**
+     * @return the number of tasks queued or running
+     */
+    public int getPending() {
+        return mPending.get();
+    }
+
+    public Snapshot getSnapshot() {
+        List<TaskSnapshot> tasks = new ArrayList<>(mTasks.size());
+        for (TaskStatistics statistics : mTasks.values()) {
+            tasks.add(new TaskSnapshot(statistics.mName, statistics.mWait.getSnapshot(), statistics.mHandled.getSnapshot()));
+        }
+        Collections.sort(tasks, new Comparator<TaskSnapshot>() {
+            @Override
+            public int compare(TaskSnapshot lhs, TaskSnapshot rhs) {
+                long lhsTotal = lhs.getHandled().getTotal();
+                long rhsTotal = rhs.getHandled().getTotal();
+                return lhsTotal < rhsTotal ? 1 : (lhsTotal == rhsTotal ? 0 : -1);
+            }
+        });
+        return new Snapshot(mPending.get(), mMaxPending.get(), tasks);
+    }
+
+    public void resetStatistics() {
+        mTasks.clear();
+        mMaxPending.set(0);
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor worker : mWorkers) {
+            worker.shutdown();
+        }
+    }
+
+    private int indexOf(String key) {
+        return key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % mWorkers.length;
+    }
+
+    private TaskStatistics getStatistics(String name) {
+        TaskStatistics statistics = mTasks.get(name);
+        if (statistics == null) {
+            TaskStatistics newStatistics = new TaskStatistics(name);
+            statistics = mTasks.putIfAbsent(name, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    private static class TaskStatistics {
+        private final String mName;
+        private final LatencyHistogram mWait = new LatencyHistogram();
+        private final LatencyHistogram mHandled = new LatencyHistogram();
+
+        TaskStatistics(String name) {
+            mName = name;
+        }
+    }
+
+    private class DispatchedTask implements Runnable {
+        private final TaskStatistics mStatistics;
+        private final Runnable mTask;
+        private final long mSubmitted = System.nanoTime();
+
+        DispatchedTask(TaskStatistics statistics, Runnable task) {
+            mStatistics = statistics;
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            mStatistics.mWait.record(System.nanoTime() - mSubmitted, TimeUnit.NANOSECONDS);
+            try {
+                mTask.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error while handling " + mStatistics.mName, e);
+            } finally {
+                mStatistics.mHandled.record(System.nanoTime() - mSubmitted, TimeUnit.NANOSECONDS);
+                mPending.decrementAndGet();
+            }
+        }
+    }
+
+    public static class TaskSnapshot {
+        private final String mName;
+        private final LatencyHistogram.Snapshot mWait;
+        private final LatencyHistogram.Snapshot mHandled;
+
+        TaskSnapshot(String name, LatencyHistogram.Snapshot wait, LatencyHistogram.Snapshot handled) {
+            mName = name;
+            mWait = wait;
+            mHandled = handled;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return the time between the dispatch and the start of the task
+         */
+        public LatencyHistogram.Snapshot getWait() {
+            return mWait;
+        }
+
+        /**
+         * @return the time between the dispatch and the end of the task
+         */
+        public LatencyHistogram.Snapshot getHandled() {
+            return mHandled;
+        }
+
+        @Override
+        public String toString() {
+            return mName + " wait: " + mWait + ", handled: " + mHandled;
+        }
+    }
+
+    public static class Snapshot {
+        private final int mPending;
+        private final int mMaxPending;
+        private final List<TaskSnapshot> mTasks;
+
+        Snapshot(int pending, int maxPending, List<TaskSnapshot> tasks) {
+            mPending = pending;
+            mMaxPending = maxPending;
+            mTasks = Collections.unmodifiableList(tasks);
+        }
+
+        public int getPending() {
+            return mPending;
+        }
+
+        public int getMaxPending() {
+            return mMaxPending;
+        }
+
+        /**
+         * @return the tasks, the most time consuming first
+         */
+        public List<TaskSnapshot> getTasks() {
+            return mTasks;
+        }
+
+        public TaskSnapshot getTask(String name) {
+            for (TaskSnapshot task : mTasks) {
+                if (task.getName().equals(name)) {
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("pending: ").append(mPending).append(" (max ").append(mMaxPending).append(")");
+            for (TaskSnapshot task : mTasks) {
+                builder.append('\n').append(task);
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cx.ring.daemon.Blob;
+import cx.ring.daemon.StringMap;
+import cx.ring.daemon.StringVect;
+import cx.ring.daemon.UintVect;
+import cx.ring.daemon.VectMap;
+
+/**
+ * Owns the SWIG objects created for a daemon call and deletes them when released,
+ * instead of leaving the native memory to the finalizers.
+ * <p>
+ * Usage:
+ * <pre>
+ * NativeScope scope = new NativeScope();
+ * try {
+ *     Ringservice.setAccountDetails(accountId, scope.add(StringMap.toSwig(details)));
+ * } finally {
+ *     scope.release();
+ * }
+ * </pre>
+ * A scope is meant to be used by a single thread.
+ * <p>
+ * The SWIG containers (StringMap, StringVect, VectMap, IntegerMap, Blob...) report their creation and deletion,
+ * see NATIVE_COUNTED in jni_interface.i, so that {@link #getLiveCount()} tells the native objects leaked
+ * to the finalizers apart from the ones released on time.
+ */
+public class NativeScope {
+
+    private static final String TAG = NativeScope.class.getName();
+
+    private static final AtomicInteger sLiveCount = new AtomicInteger();
+
+    private final ArrayList<Releasable> mObjects = new ArrayList<>(4);
+
+    /**
+     * Native object deleted when the scope is released
+     */
+    public interface Releasable {
+        void release();
+    }
+
+    /**
+     * @return the number of SWIG containers owning native memory not deleted yet, in a scope or not.
+     * The ones left to the finalizers are counted until they are collected.
+     */
+    public static int getLiveCount() {
+        return sLiveCount.get();
+    }
+
+    /**
+     * Called by the SWIG containers taking the ownership of a native object
+     */
+    public static void onNativeCreated() {
+        sLiveCount.incrementAndGet();
+    }
+
+    /**
+     * Called by the SWIG containers deleting their native object, explicitly or from their finalizer
+     */
+    public static void onNativeDeleted() {
+        sLiveCount.decrementAndGet();
+    }
+
+    public <T extends Releasable> T add(T object) {
+        mObjects.add(object);
+        return object;
+    }
+
+    public StringMap add(final StringMap map) {
+        add(new Releasable() {
+            @Override
+            public void release() {
+                map.delete();
+            }
+        });
+        return map;
+    }
+
+    public StringVect add(final StringVect vector) {
+        add(new Releasable() {
+            @Override
+            public void release() {
+                vector.delete();
+            }
+        });
+        return vector;
+    }
+
+    public VectMap add(final VectMap vector) {
+        add(new Releasable() {
+            @Override
+            public void release() {
+                vector.delete();
+            }
+        });
+        return vector;
+    }
+
+    public UintVect add(final UintVect vector) {
+        add(new Releasable() {
+            @Override
+            public void release() {
+                vector.delete();
+            }
+        });
+        return vector;
+    }
+
+    public Blob add(final Blob blob) {
+        add(new Releasable() {
+            @Override
+            public void release() {
+                blob.delete();
+            }
+        });
+        return blob;
+    }
+
+    /**
+     * Deletes the objects in the reverse order they were added. The scope can be reused afterwards.
+     */
+    public void release() {
+        for (int i = mObjects.size() - 1; i >= 0; i--) {
+            try {
+                mObjects.get(i).release();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error releasing native object", e);
+            }
+        }
+        mObjects.clear();
+    }
+}
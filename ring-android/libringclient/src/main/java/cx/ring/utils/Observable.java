@@ -2,28 +2,81 @@ package cx.ring.utils;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cx.ring.model.ServiceEvent;
 
 public class Observable {
 
-    private List<WeakReference<Observer>> mObservers;
-    private boolean mIsChanged;
+    private static final String TAG = Observable.class.getName();
 
-    public synchronized void addObserver(Observer observer) {
-        if (mObservers == null) {
-            mObservers = new ArrayList<>();
-        }
+    // copy on write lists, notifyObservers() iterates them without copying or locking
+    private List<Subscription> mObservers = Collections.emptyList();
+    private final Map<ServiceEvent.EventType, List<Subscription>> mTypedObservers =
+            new EnumMap<>(ServiceEvent.EventType.class);
+    // set by setChanged() and cleared by the next notifyObservers() of the same thread: the services notify
+    // from several workers at once, a notification must not clear the change another thread is notifying
+    private final ThreadLocal<Boolean> mChanged = new ThreadLocal<>();
+
+    /**
+     * Registers an observer notified of every change, on the notifying thread
+     */
+    public void addObserver(Observer observer) {
+        addObserver(observer, (Executor) null);
+    }
+
+    /**
+     * Registers an observer only notified of the {@link ServiceEvent} of the given types, on the notifying thread.
+     * Events of other types cost nothing to this observer.
+     */
+    public void addObserver(Observer observer, ServiceEvent.EventType... types) {
+        addObserver(observer, null, types);
+    }
 
-        mObservers.add(new WeakReference<>(observer));
+    /**
+     * Registers an observer notified on the given executor, in the order of the notifications.
+     * A slow observer then only delays its own events, see {@link #getBacklog(Observer)}.
+     * Registering an observer again replaces its previous registration, it is never notified twice of a change.
+     *
+     * @param executor the delivery executor, null to notify on the notifying thread
+     * @param types    the event types to observe, every change if none
+     */
+    public synchronized void addObserver(Observer observer, Executor executor, ServiceEvent.EventType... types) {
+        // the notifications already queued for the previous registration are still delivered
+        mObservers = withoutObserver(mObservers, observer, false);
+        for (Map.Entry<ServiceEvent.EventType, List<Subscription>> entry : mTypedObservers.entrySet()) {
+            entry.setValue(withoutObserver(entry.getValue(), observer, false));
+        }
+        Subscription subscription = new Subscription(observer, executor);
+        if (types.length == 0) {
+            mObservers = withSubscription(mObservers, subscription);
+            return;
+        }
+        for (ServiceEvent.EventType type : types) {
+            List<Subscription> observers = mTypedObservers.get(type);
+            if (observers == null) {
+                observers = Collections.emptyList();
+            }
+            mTypedObservers.put(type, withSubscription(observers, subscription));
+        }
     }
 
-    public synchronized void setChanged() {
-        mIsChanged = true;
+    /**
+     * Marks this observable as changed for the next {@link #notifyObservers(Object)} of the calling thread
+     */
+    public void setChanged() {
+        mChanged.set(Boolean.TRUE);
     }
 
-    public synchronized void clearChanged() {
-        mIsChanged = false;
+    public void clearChanged() {
+        mChanged.remove();
     }
 
     public void notifyObservers() {
@@ -32,20 +85,38 @@ public class Observable {
 
     public void notifyObservers(Object argument) {
 
-        if (!mIsChanged) {
+        if (!hasChanged()) {
             return;
         }
+        clearChanged();
 
-        List<WeakReference<Observer>> notifyObservers = new ArrayList<>(mObservers);
-        for (WeakReference<Observer> weakObserver : notifyObservers) {
-            final Observer realObserver = weakObserver.get();
-            if (realObserver != null) {
-                realObserver.update(this, argument);
+        List<Subscription> notifyObservers;
+        List<Subscription> typedObservers = null;
+        synchronized (this) {
+            notifyObservers = mObservers;
+            if (argument instanceof ServiceEvent) {
+                typedObservers = mTypedObservers.get(((ServiceEvent) argument).getEventType());
             }
+        }
 
+        notify(notifyObservers, argument);
+        if (typedObservers != null) {
+            notify(typedObservers, argument);
         }
+    }
 
-        clearChanged();
+    private void notify(List<Subscription> subscriptions, Object argument) {
+        for (int i = 0, n = subscriptions.size(); i < n; i++) {
+            Subscription subscription = subscriptions.get(i);
+            if (subscription.mExecutor == null) {
+                Observer observer = subscription.mObserver.get();
+                if (observer != null) {
+                    observer.update(this, argument);
+                }
+            } else {
+                subscription.post(this, argument);
+            }
+        }
     }
 
     public synchronized void removeObserver(Observer observerToRemove) {
@@ -54,22 +125,134 @@ public class Observable {
             return;
         }
 
-        Iterator<WeakReference<Observer>> observerIterator = mObservers.iterator();
-        while (observerIterator.hasNext()) {
-            WeakReference<Observer> weakObserver = observerIterator.next();
-            Observer observer = weakObserver.get();
-            if (observerToRemove == observer) {
-                observerIterator.remove();
-            }
+        mObservers = withoutObserver(mObservers, observerToRemove, true);
+        for (Map.Entry<ServiceEvent.EventType, List<Subscription>> entry : mTypedObservers.entrySet()) {
+            entry.setValue(withoutObserver(entry.getValue(), observerToRemove, true));
         }
     }
 
-    public synchronized boolean hasChanged() {
-        return mIsChanged;
+    /**
+     * @return true if setChanged() was called by the calling thread since its last notification
+     */
+    public boolean hasChanged() {
+        return Boolean.TRUE.equals(mChanged.get());
     }
 
+    /**
+     * @return the number of observers notified of every change
+     */
     public synchronized int countObservers() {
         return mObservers.size();
     }
 
+    /**
+     * @return the number of observers notified of the events of the given type, including the ones notified of every change
+     */
+    public synchronized int countObservers(ServiceEvent.EventType type) {
+        List<Subscription> observers = mTypedObservers.get(type);
+        return mObservers.size() + (observers == null ? 0 : observers.size());
+    }
+
+    /**
+     * @return the number of notifications queued for the given observer and not delivered yet
+     */
+    public synchronized int getBacklog(Observer observer) {
+        // a typed subscription appears in several lists, count it once
+        List<Subscription> counted = new ArrayList<>();
+        int backlog = countBacklog(mObservers, observer, counted);
+        for (List<Subscription> observers : mTypedObservers.values()) {
+            backlog += countBacklog(observers, observer, counted);
+        }
+        return backlog;
+    }
+
+    private static int countBacklog(List<Subscription> subscriptions, Observer observer, List<Subscription> counted) {
+        int backlog = 0;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.mObserver.get() == observer && !counted.contains(subscription)) {
+                counted.add(subscription);
+                backlog += subscription.mBacklog.get();
+            }
+        }
+        return backlog;
+    }
+
+    private static List<Subscription> withSubscription(List<Subscription> observers, Subscription subscription) {
+        List<Subscription> copy = new ArrayList<>(observers.size() + 1);
+        for (Subscription existing : observers) {
+            // also drops the collected observers
+            if (existing.mObserver.get() != null) {
+                copy.add(existing);
+            }
+        }
+        copy.add(subscription);
+        return copy;
+    }
+
+    /**
+     * @param dropQueued true to drop the notifications already queued for the observer
+     */
+    private static List<Subscription> withoutObserver(List<Subscription> observers, Observer observer, boolean dropQueued) {
+        List<Subscription> copy = new ArrayList<>(observers.size());
+        for (Subscription subscription : observers) {
+            Observer realObserver = subscription.mObserver.get();
+            if (realObserver != null && realObserver != observer) {
+                copy.add(subscription);
+            } else if (dropQueued || realObserver == null) {
+                subscription.mRemoved = true;
+            }
+        }
+        return copy.size() == observers.size() ? observers : copy;
+    }
+
+    /**
+     * An observer with its delivery executor and the queue keeping its notifications in order
+     */
+    private static class Subscription implements Runnable {
+        // marks a null argument in the queue
+        private static final Object NULL_ARGUMENT = new Object();
+
+        private final WeakReference<Observer> mObserver;
+        private final Executor mExecutor;
+        private final ConcurrentLinkedQueue<Object[]> mQueue;
+        private final AtomicInteger mBacklog = new AtomicInteger();
+        private volatile boolean mRemoved = false;
+
+        Subscription(Observer observer, Executor executor) {
+            mObserver = new WeakReference<>(observer);
+            mExecutor = executor;
+            mQueue = executor == null ? null : new ConcurrentLinkedQueue<Object[]>();
+        }
+
+        void post(Observable observable, Object argument) {
+            mQueue.add(new Object[]{observable, argument == null ? NULL_ARGUMENT : argument});
+            // only one drain runs at a time, so the notifications are delivered in order
+            if (mBacklog.getAndIncrement() == 0) {
+                try {
+                    mExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    Log.w(TAG, "Delivery executor rejected a notification", e);
+                    mQueue.clear();
+                    mBacklog.set(0);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                Object[] notification = mQueue.poll();
+                Observer observer = mObserver.get();
+                if (notification != null && observer != null && !mRemoved) {
+                    Object argument = notification[1] == NULL_ARGUMENT ? null : notification[1];
+                    try {
+                        observer.update((Observable) notification[0], argument);
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Error notifying " + observer, e);
+                    }
+                }
+            } while (mBacklog.decrementAndGet() > 0);
+        }
+    }
+
 }
@@ -2,6 +2,11 @@ package cx.ring.utils;
 
 public interface Observer<T> {
 
+    /**
+     * Called on the notifying thread, or on the executor given to addObserver().
+     * The event is not reused by the notifier once notified, the observer may keep it,
+     * but must not modify it as it is shared with the other observers.
+     */
     void update(Observable observable, T event);
 
 }
@@ -0,0 +1,459 @@
+/*
+ *  Copyright (C) 2017 Savoir-faire Linux Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package cx.ring.utils;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Unbounded blocking queue serving its tasks by {@link DaemonLane}, FIFO within a lane.
+ * <p>
+ * A lower lane is served ahead of the upper ones once its oldest task waited longer than the lane's
+ * starvation threshold, so a burst of call control or media work cannot hold background work forever.
+ * <p>
+ * The tasks changing the daemon state are barriers: while one is queued, no younger task is served
+ * before it. The oldest barrier is served ahead of the read-only tasks queued before it in its lane,
+ * so a call control task queued behind a barrier only waits for the barrier, not for the bulk reads of its lane.
+ */
+public class PriorityLaneQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /**
+     * Implemented by the tasks knowing their lane, the others go to {@link DaemonLane#DEFAULT}
+     */
+    interface LaneTask {
+        DaemonLane getLane();
+
+        /**
+         * @return true if the task may be overtaken by younger tasks of the upper lanes
+         */
+        boolean isReadOnly();
+    }
+
+    private static final DaemonLane[] LANES = DaemonLane.values();
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private final Lane[] mLanes = new Lane[LANES.length];
+    // the queued tasks changing the daemon state, oldest first
+    private final ArrayDeque<Node> mBarriers = new ArrayDeque<>();
+    private long mSequence = 0;
+    private int mCount = 0;
+
+    public PriorityLaneQueue() {
+        for (DaemonLane lane : LANES) {
+            mLanes[lane.ordinal()] = new Lane(lane);
+        }
+    }
+
+    private static DaemonLane laneOf(Runnable task) {
+        if (task instanceof LaneTask) {
+            DaemonLane lane = ((LaneTask) task).getLane();
+            if (lane != null) {
+                return lane;
+            }
+        }
+        return DaemonLane.DEFAULT;
+    }
+
+    private static boolean isBarrier(Runnable task) {
+        return !(task instanceof LaneTask) || !((LaneTask) task).isReadOnly();
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        mLock.lock();
+        try {
+            Lane lane = mLanes[laneOf(task).ordinal()];
+            Node node = new Node(task, lane, mSequence++, System.nanoTime());
+            lane.mNodes.addLast(node);
+            if (isBarrier(task)) {
+                mBarriers.addLast(node);
+            }
+            lane.mEnqueued++;
+            lane.mMaxDepth = Math.max(lane.mMaxDepth, lane.mNodes.size());
+            mCount++;
+            mNotEmpty.signal();
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) {
+        offer(task);
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public Runnable poll() {
+        mLock.lock();
+        try {
+            return mCount == 0 ? null : dequeue();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        mLock.lockInterruptibly();
+        try {
+            while (mCount == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = mNotEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            while (mCount == 0) {
+                mNotEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        mLock.lock();
+        try {
+            Node node = selectNode(System.nanoTime());
+            return node == null ? null : node.mTask;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return the oldest task changing the daemon state if it is older than the head of the selected lane,
+     * otherwise the head of the highest non-empty lane or of a lower one whose oldest task is starving.
+     * The tasks queued before the oldest barrier in its lane are read-only, it may overtake them. Lock must be held.
+     */
+    private Node selectNode(long now) {
+        Lane selected = selectLaneByPriority(now);
+        if (selected == null) {
+            return null;
+        }
+        Node head = selected.mNodes.peekFirst();
+        Node barrier = mBarriers.peekFirst();
+        if (barrier != null && barrier.mSequence < head.mSequence) {
+            return barrier;
+        }
+        return head;
+    }
+
+    private Lane selectLaneByPriority(long now) {
+        Lane selected = null;
+        long oldestStarving = 0;
+        for (Lane lane : mLanes) {
+            Node head = lane.mNodes.peekFirst();
+            if (head == null) {
+                continue;
+            }
+            if (selected == null) {
+                selected = lane;
+                continue;
+            }
+            long waited = now - head.mEnqueued;
+            if (waited > TimeUnit.MILLISECONDS.toNanos(lane.mLane.getStarvationThreshold()) && waited > oldestStarving) {
+                selected = lane;
+                oldestStarving = waited;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Lock must be held and the queue not empty
+     */
+    private Runnable dequeue() {
+        long now = System.nanoTime();
+        Node node = selectNode(now);
+        Lane lane = node.mLane;
+        if (lane.mNodes.peekFirst() == node) {
+            lane.mNodes.pollFirst();
+        } else {
+            lane.mNodes.remove(node);
+        }
+        if (mBarriers.peekFirst() == node) {
+            mBarriers.pollFirst();
+        }
+        mCount--;
+        lane.mDequeued++;
+        for (Lane upper : mLanes) {
+            if (upper == lane) {
+                break;
+            }
+            if (!upper.mNodes.isEmpty()) {
+                // served ahead of a higher lane to avoid its starvation
+                lane.mPromoted++;
+                break;
+            }
+        }
+        lane.mWait.record(now - node.mEnqueued, TimeUnit.NANOSECONDS);
+        return node.mTask;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        mLock.lock();
+        try {
+            for (Lane lane : mLanes) {
+                Iterator<Node> it = lane.mNodes.iterator();
+                while (it.hasNext()) {
+                    Node node = it.next();
+                    if (o.equals(node.mTask)) {
+                        it.remove();
+                        mBarriers.remove(node);
+                        mCount--;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        mLock.lock();
+        try {
+            return mCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        mLock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && mCount > 0) {
+                c.add(dequeue());
+                n++;
+            }
+            return n;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return an iterator over a copy of the queued tasks, by lane
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        final List<Runnable> tasks = new ArrayList<>();
+        mLock.lock();
+        try {
+            for (Lane lane : mLanes) {
+                for (Node node : lane.mNodes) {
+                    tasks.add(node.mTask);
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+        final Iterator<Runnable> it = tasks.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable mLast;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                mLast = it.next();
+                return mLast;
+            }
+
+            @Override
+            public void remove() {
+                if (mLast == null) {
+                    throw new IllegalStateException();
+                }
+                PriorityLaneQueue.this.remove(mLast);
+                mLast = null;
+            }
+        };
+    }
+
+    public List<LaneSnapshot> getLaneSnapshots() {
+        List<LaneSnapshot> snapshots = new ArrayList<>(mLanes.length);
+        mLock.lock();
+        try {
+            for (Lane lane : mLanes) {
+                snapshots.add(new LaneSnapshot(lane.mLane, lane.mNodes.size(), lane.mMaxDepth,
+                        lane.mEnqueued, lane.mDequeued, lane.mPromoted, lane.mWait.getSnapshot()));
+            }
+        } finally {
+            mLock.unlock();
+        }
+        return snapshots;
+    }
+
+    public void resetStatistics() {
+        mLock.lock();
+        try {
+            for (Lane lane : mLanes) {
+                lane.mMaxDepth = lane.mNodes.size();
+                lane.mEnqueued = 0;
+                lane.mDequeued = 0;
+                lane.mPromoted = 0;
+                lane.mWait.reset();
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private static class Node {
+        private final Runnable mTask;
+        private final Lane mLane;
+        private final long mSequence;
+        private final long mEnqueued;
+
+        Node(Runnable task, Lane lane, long sequence, long enqueued) {
+            mTask = task;
+            mLane = lane;
+            mSequence = sequence;
+            mEnqueued = enqueued;
+        }
+    }
+
+    private static class Lane {
+        private final DaemonLane mLane;
+        private final ArrayDeque<Node> mNodes = new ArrayDeque<>();
+        private final LatencyHistogram mWait = new LatencyHistogram();
+        private int mMaxDepth;
+        private long mEnqueued;
+        private long mDequeued;
+        private long mPromoted;
+
+        Lane(DaemonLane lane) {
+            mLane = lane;
+        }
+    }
+
+    public static class LaneSnapshot {
+        private final DaemonLane mLane;
+        private final int mDepth;
+        private final int mMaxDepth;
+        private final long mEnqueued;
+        private final long mDequeued;
+        private final long mPromoted;
+        private final LatencyHistogram.Snapshot mWait;
+
+        LaneSnapshot(DaemonLane lane, int depth, int maxDepth, long enqueued, long dequeued, long promoted,
+                     LatencyHistogram.Snapshot wait) {
+            mLane = lane;
+            mDepth = depth;
+            mMaxDepth = maxDepth;
+            mEnqueued = enqueued;
+            mDequeued = dequeued;
+            mPromoted = promoted;
+            mWait = wait;
+        }
+
+        public DaemonLane getLane() {
+            return mLane;
+        }
+
+        public int getDepth() {
+            return mDepth;
+        }
+
+        public int getMaxDepth() {
+            return mMaxDepth;
+        }
+
+        public long getEnqueued() {
+            return mEnqueued;
+        }
+
+        public long getDequeued() {
+            return mDequeued;
+        }
+
+        /**
+         * @return the number of tasks served ahead of a higher lane, because they were starving
+         * or were queued before a task changing the daemon state
+         */
+        public long getPromoted() {
+            return mPromoted;
+        }
+
+        public LatencyHistogram.Snapshot getWait() {
+            return mWait;
+        }
+
+        @Override
+        public String toString() {
+            return mLane + " depth: " + mDepth + " (max " + mMaxDepth + "), served: " + mDequeued + "/" + mEnqueued
+                    + ", promoted: " + mPromoted + ", wait: " + mWait;
+        }
+    }
+}
@@ -20,14 +20,16 @@
 
 package cx.ring.utils;
 
-import cx.ring.daemon.StringVect;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class ProfileChunk {
     public final static String TAG = ProfileChunk.class.getSimpleName();
 
     private long mNumberOfParts;
     private long mInsertedParts;
-    private StringVect mParts;
+    private List<String> mParts;
 
     /**
      * Constructor
@@ -38,7 +40,7 @@ public class ProfileChunk {
         Log.d(TAG, "Create ProfileChink of size " + numberOfParts);
         this.mInsertedParts = 0;
         this.mNumberOfParts = numberOfParts;
-        this.mParts = new StringVect(mNumberOfParts + 1);
+        this.mParts = new ArrayList<>(Collections.nCopies((int) mNumberOfParts + 1, ""));
     }
 
     /**
@@ -20,9 +20,11 @@
 
 package cx.ring.utils;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import cx.ring.daemon.Blob;
 import cx.ring.daemon.StringMap;
@@ -31,6 +33,8 @@ import cx.ring.daemon.VectMap;
 
 public class SwigNativeConverter {
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     public static VectMap convertFromNativeToSwig(List creds) {
         ArrayList<HashMap<String, String>> todecode = (ArrayList<HashMap<String, String>>) creds;
         VectMap toReturn = new VectMap();
@@ -42,11 +46,80 @@ public class SwigNativeConverter {
     }
 
     public static Blob convertFromNativeToSwig(byte[] data) {
-        Blob toReturn = new Blob();
-        toReturn.reserve(data.length);
-        for (int i = 0; i < data.length; i++)
-            toReturn.add(data[i]);
-        return toReturn;
+        return Blob.fromBytes(data);
+    }
+
+    /**
+     * Encodes the map as read by StringMap.deserialize(): the key then the value of each entry,
+     * both as a 4 bytes big endian length followed by the UTF-8 bytes.
+     * Entries with a null key or value are skipped.
+     */
+    public static byte[] encodeStringMap(Map<String, String> map) {
+        byte[][] strings = new byte[map.size() * 2][];
+        int count = 0;
+        int size = 0;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+            byte[] key = entry.getKey().getBytes(UTF8);
+            byte[] value = entry.getValue().getBytes(UTF8);
+            strings[count++] = key;
+            strings[count++] = value;
+            size += 8 + key.length + value.length;
+        }
+        byte[] out = new byte[size];
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            byte[] string = strings[i];
+            int length = string.length;
+            out[offset++] = (byte) (length >>> 24);
+            out[offset++] = (byte) (length >>> 16);
+            out[offset++] = (byte) (length >>> 8);
+            out[offset++] = (byte) length;
+            System.arraycopy(string, 0, out, offset, length);
+            offset += length;
+        }
+        return out;
+    }
+
+    /**
+     * Decodes a map written by StringMap.serialize(), see {@link #encodeStringMap(Map)}.
+     * A truncated last entry is ignored.
+     */
+    public static HashMap<String, String> decodeStringMap(byte[] data) {
+        HashMap<String, String> out = new HashMap<>();
+        int offset = 0;
+        while (true) {
+            int keyLength = readLength(data, offset);
+            if (keyLength < 0) {
+                break;
+            }
+            int keyOffset = offset + 4;
+            int valueLength = readLength(data, keyOffset + keyLength);
+            if (valueLength < 0) {
+                break;
+            }
+            int valueOffset = keyOffset + keyLength + 4;
+            out.put(new String(data, keyOffset, keyLength, UTF8), new String(data, valueOffset, valueLength, UTF8));
+            offset = valueOffset + valueLength;
+        }
+        return out;
+    }
+
+    /**
+     * @return the length of the string starting at offset, -1 if the data is too short to hold it
+     */
+    private static int readLength(byte[] data, int offset) {
+        if (offset < 0 || data.length - offset < 4) {
+            return -1;
+        }
+        int length = (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16
+                | (data[offset + 2] & 0xff) << 8 | (data[offset + 3] & 0xff);
+        if (length < 0 || data.length - offset - 4 < length) {
+            return -1;
+        }
+        return length;
     }
 
     private static String tryToGet(StringMap smap, String key) {
@@ -36,6 +36,39 @@
 
 %}
 
+/* length prefixed strings, used to convert whole maps in a single JNI call */
+%header %{
+#include <algorithm>
+
+namespace ring_jni {
+
+inline void putString(std::vector<uint8_t>& out, const std::string& s) {
+    const uint32_t len = s.size();
+    out.push_back(len >> 24);
+    out.push_back(len >> 16);
+    out.push_back(len >> 8);
+    out.push_back(len);
+    out.insert(out.end(), s.begin(), s.end());
+}
+
+inline bool getString(const char*& p, const char* end, std::string& s) {
+    if (end - p < 4)
+        return false;
+    const uint32_t len = (uint8_t)p[0] << 24 | (uint8_t)p[1] << 16 | (uint8_t)p[2] << 8 | (uint8_t)p[3];
+    p += 4;
+    if ((size_t)(end - p) < len)
+        return false;
+    s.assign(p, len);
+    p += len;
+    return true;
+}
+
+}
+%}
+
+/* byte arrays passed as a whole, pinned or copied once by the JVM */
+%apply (char *STRING, size_t LENGTH) { (char* data, size_t len) };
+
 /* void* shall be handled as byte arrays */
 %typemap(jni) void * "void *"
 %typemap(jtype) void * "byte[]"
@@ -56,33 +89,64 @@
 %apply int64_t { uint64_t };
 %apply uint64_t { time_t };
 
+/* the proxies owning native memory are counted from their creation to their deletion, see NativeScope.getLiveCount() */
+%define NATIVE_COUNTED(TYPE...)
+%typemap(javabody) TYPE %{
+  private transient long swigCPtr;
+  protected transient boolean swigCMemOwn;
+
+  protected $javaclassname(long cPtr, boolean cMemoryOwn) {
+    swigCMemOwn = cMemoryOwn;
+    swigCPtr = cPtr;
+    if (cMemoryOwn && cPtr != 0) {
+      cx.ring.utils.NativeScope.onNativeCreated();
+    }
+  }
+
+  protected static long getCPtr($javaclassname obj) {
+    return (obj == null) ? 0 : obj.swigCPtr;
+  }
+%}
+%typemap(javadestruct, methodname="delete", methodmodifiers="public synchronized") TYPE {
+    if (swigCPtr != 0) {
+      if (swigCMemOwn) {
+        swigCMemOwn = false;
+        $jnicall;
+        cx.ring.utils.NativeScope.onNativeDeleted();
+      }
+      swigCPtr = 0;
+    }
+  }
+%enddef
+
 namespace std {
 
+NATIVE_COUNTED(map<string, string>)
+NATIVE_COUNTED(vector<string>)
+NATIVE_COUNTED(vector< map<string,string> >)
+NATIVE_COUNTED(map<string,int>)
+NATIVE_COUNTED(vector<int32_t>)
+NATIVE_COUNTED(vector<uint32_t>)
+NATIVE_COUNTED(vector<uint8_t>)
+NATIVE_COUNTED(vector<float>)
+
 %typemap(javacode) map<string, string> %{
   public static $javaclassname toSwig(java.util.Map<String,String> in) {
     $javaclassname n = new $javaclassname();
-    for (java.util.Map.Entry<String, String> entry : in.entrySet()) {
-      if (entry.getValue() != null) {
-        n.set(entry.getKey(), entry.getValue());
-      }
-    }
+    n.deserialize(cx.ring.utils.SwigNativeConverter.encodeStringMap(in));
     return n;
   }
   public java.util.HashMap<String,String> toNative() {
-    java.util.HashMap<String,String> out = new java.util.HashMap<>((int)size());
-    StringVect keys = keys();
-    for (String s : keys) {
-        out.put(s, get(s));
+    Blob serialized = serialize();
+    try {
+      return cx.ring.utils.SwigNativeConverter.decodeStringMap(serialized.toBytes());
+    } finally {
+      serialized.delete();
     }
-    return out;
   }
+  /* keys and values are always read as UTF-8 bytes, kept for the existing callers */
   public java.util.HashMap<String,String> toNativeFromUtf8() {
-      java.util.HashMap<String,String> out = new java.util.HashMap<>((int)size());
-      StringVect keys = keys();
-      for (String s : keys) {
-        out.put(s, getRaw(s).toJavaString());
-      }
-      return out;
+    return toNative();
   }
 %}
 %extend map<string, string> {
@@ -101,6 +165,27 @@ namespace std {
         auto& v = $self->at(key);
         return {v.begin(), v.end()};
     }
+    std::vector<uint8_t> serialize() const {
+        size_t size = 0;
+        for (const auto& i : *$self) {
+            size += 8 + i.first.size() + i.second.size();
+        }
+        std::vector<uint8_t> out;
+        out.reserve(size);
+        for (const auto& i : *$self) {
+            ring_jni::putString(out, i.first);
+            ring_jni::putString(out, i.second);
+        }
+        return out;
+    }
+    void deserialize(char* data, size_t len) {
+        const char* p = data;
+        const char* end = data + len;
+        std::string key, value;
+        while (ring_jni::getString(p, end, key) && ring_jni::getString(p, end, value)) {
+            (*$self)[key] = value;
+        }
+    }
 }
 %template(StringMap) map<string, string>;
 
@@ -132,6 +217,26 @@ namespace std {
   }
 %}
 %template(VectMap) vector< map<string,string> >;
+%typemap(javacode) map<string, int> %{
+  public java.util.HashMap<String,Integer> toNative() {
+    java.util.HashMap<String,Integer> out = new java.util.HashMap<>((int)size());
+    StringVect keys = keys();
+    for (String s : keys) {
+        out.put(s, get(s));
+    }
+    return out;
+  }
+%}
+%extend map<string, int> {
+    std::vector<std::string> keys() const {
+        std::vector<std::string> k;
+        k.reserve($self->size());
+        for (const auto& i : *$self) {
+            k.push_back(i.first);
+        }
+        return k;
+    }
+}
 %template(IntegerMap) map<string,int>;
 %template(IntVect) vector<int32_t>;
 %template(UintVect) vector<uint32_t>;
@@ -144,24 +249,29 @@ namespace std {
     } catch (java.io.UnsupportedEncodingException e) {
       dat = in.getBytes();
     }
-    Blob n = new Blob(dat.length);
-    for (int i=0; i<dat.length; i++) {
-      n.set(i, dat[i]);
-    }
-    return n;
+    return fromBytes(dat);
   }
-  public String toJavaString() {
+  public byte[] toBytes() {
     byte[] dat = new byte[(int)size()];
-    for (int i=0; i<dat.length; i++) {
-        dat[i] = (byte)get(i);
-    }
+    copyTo(dat);
+    return dat;
+  }
+  public String toJavaString() {
     try {
-        return new String(dat, "utf-8");
+        return new String(toBytes(), "utf-8");
     } catch (java.io.UnsupportedEncodingException e) {
         return "";
     }
   }
 %}
+%extend vector<uint8_t> {
+    static std::vector<uint8_t> fromBytes(char* data, size_t len) {
+        return std::vector<uint8_t>(data, data + len);
+    }
+    void copyTo(char* data, size_t len) const {
+        std::copy_n($self->begin(), std::min(len, $self->size()), data);
+    }
+}
 %template(Blob) vector<uint8_t>;
 %template(FloatVect) vector<float>;
 }
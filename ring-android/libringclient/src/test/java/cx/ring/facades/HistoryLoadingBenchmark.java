@@ -0,0 +1,155 @@
+package cx.ring.facades;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.Conversation;
+import cx.ring.model.ServiceEvent;
+import cx.ring.services.HistoryFixture;
+import cx.ring.services.HistoryService;
+import cx.ring.services.InMemoryHistoryService;
+import cx.ring.services.ServiceGraph;
+import cx.ring.services.SilentLogService;
+import cx.ring.utils.Log;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the time from the history loading request to the first smart list over a generated
+ * history of 100k rows, drawn from the conversation summaries, then to the smart list with the whole history
+ * or only the newest interactions of each conversation.
+ */
+public class HistoryLoadingBenchmark {
+
+    private static final int CONVERSATIONS = 500;
+    private static final int ROWS_PER_CONVERSATION = 200;
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private ExecutorService mApplicationExecutor;
+    private ServiceGraph mServices;
+    private InMemoryHistoryService mHistoryService;
+    private ConversationFacade mConversationFacade;
+    // the facade only keeps weak references to its observers
+    private Observer<ServiceEvent> mObserver;
+    // times of the CONVERSATIONS_CHANGED events awaited, in ns
+    private final List<Long> mChangeTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+    @Before
+    public void setUp() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        mApplicationExecutor = Executors.newFixedThreadPool(5);
+        mHistoryService = new InMemoryHistoryService(mApplicationExecutor);
+        HistoryFixture.fill(mHistoryService, CONVERSATIONS, ROWS_PER_CONVERSATION);
+
+        mServices = new ServiceGraph(mApplicationExecutor, mHistoryService);
+        mServices.loadAccounts();
+        mConversationFacade = new ConversationFacade(mHistoryService, mServices.getCallService(),
+                mServices.getContactService(), mServices.getAccountService(), null);
+        mConversationFacade.mConferenceService = mServices.getConferenceService();
+        mConversationFacade.mDeviceRuntimeService = mServices.getDeviceRuntimeService();
+    }
+
+    @After
+    public void tearDown() {
+        mServices.shutdown();
+        mApplicationExecutor.shutdownNow();
+    }
+
+    private CountDownLatch awaitConversationsChanged() {
+        return awaitConversationsChanged(1);
+    }
+
+    private CountDownLatch awaitConversationsChanged(int count) {
+        final CountDownLatch changed = new CountDownLatch(count);
+        if (mObserver != null) {
+            mConversationFacade.removeObserver(mObserver);
+        }
+        mChangeTimes.clear();
+        mObserver = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                mChangeTimes.add(System.nanoTime());
+                changed.countDown();
+            }
+        };
+        mConversationFacade.addObserver(mObserver, ServiceEvent.EventType.CONVERSATIONS_CHANGED);
+        return changed;
+    }
+
+    /**
+     * @return the times to the smart list of the summaries and to the smart list of the loaded history, in ms
+     */
+    private double[] loadSmartList(int pageSize) throws InterruptedException {
+        // the conversations are listed from their summaries, then with their history
+        CountDownLatch changed = awaitConversationsChanged(2);
+        long start = System.nanoTime();
+        mHistoryService.getCallAndTextAsync(pageSize);
+        assertTrue(changed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(CONVERSATIONS, mConversationFacade.getConversationsList().size());
+        return new double[]{(mChangeTimes.get(0) - start) / 1e6, (mChangeTimes.get(1) - start) / 1e6};
+    }
+
+    private int countLoadedInteractions() {
+        int count = 0;
+        for (Conversation conversation : mConversationFacade.getConversations().values()) {
+            count += conversation.getAggregateHistory().size();
+        }
+        return count;
+    }
+
+    private void report(String name, int pageSize) throws InterruptedException {
+        // first run to warm up
+        loadSmartList(pageSize);
+        double bestSummaries = Double.MAX_VALUE;
+        double bestHistory = Double.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            double[] times = loadSmartList(pageSize);
+            bestSummaries = Math.min(bestSummaries, times[0]);
+            bestHistory = Math.min(bestHistory, times[1]);
+        }
+        System.out.println(String.format("%s: first smart list from the summaries in %.1f ms, "
+                + "with the history in %.1f ms, %d interactions loaded", name, bestSummaries, bestHistory,
+                countLoadedInteractions()));
+    }
+
+    @Test
+    public void testTimeToFirstSmartList() throws InterruptedException {
+        report("whole history (" + CONVERSATIONS * ROWS_PER_CONVERSATION + " rows)", Integer.MAX_VALUE);
+        report("newest " + HistoryService.HISTORY_PAGE_SIZE + " per conversation", HistoryService.HISTORY_PAGE_SIZE);
+        assertEquals(CONVERSATIONS * HistoryService.HISTORY_PAGE_SIZE, countLoadedInteractions());
+    }
+
+    @Test
+    public void testLoadOlderHistory() throws InterruptedException {
+        loadSmartList(HistoryService.HISTORY_PAGE_SIZE);
+        Conversation conversation = mConversationFacade.getConversationsList().get(0);
+        assertNotNull(conversation);
+        long oldest = conversation.getOldestInteractionTime();
+
+        List<Integer> sizes = new ArrayList<>();
+        while (!conversation.isHistoryComplete()) {
+            CountDownLatch changed = awaitConversationsChanged();
+            mConversationFacade.loadOlderHistory(conversation);
+            assertTrue(changed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            sizes.add(conversation.getAggregateHistory().size());
+        }
+
+        assertTrue(conversation.getOldestInteractionTime() < oldest);
+        assertEquals(ROWS_PER_CONVERSATION, conversation.getAggregateHistory().size());
+        // 50 loaded at startup, then 3 full pages and an empty one
+        assertEquals(ROWS_PER_CONVERSATION / HistoryService.HISTORY_PAGE_SIZE, sizes.size());
+    }
+}
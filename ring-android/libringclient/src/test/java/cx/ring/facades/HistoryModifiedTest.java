@@ -0,0 +1,186 @@
+package cx.ring.facades;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.Conversation;
+import cx.ring.model.HistoryText;
+import cx.ring.model.ServiceEvent;
+import cx.ring.model.TextMessage;
+import cx.ring.model.Uri;
+import cx.ring.services.InMemoryHistoryService;
+import cx.ring.services.ServiceGraph;
+import cx.ring.services.SilentLogService;
+import cx.ring.utils.Log;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the conversations are patched with the rows carried by the HISTORY_MODIFIED events,
+ * without reloading the history.
+ */
+public class HistoryModifiedTest {
+
+    private static final int CONVERSATIONS = 3;
+    private static final int MESSAGES_PER_CONVERSATION = 5;
+    private static final String PEER = "peer0@example.org";
+
+    private ExecutorService mApplicationExecutor;
+    private ServiceGraph mServices;
+    private InMemoryHistoryService mHistoryService;
+    private ConversationFacade mConversationFacade;
+    // the facade only keeps weak references to its observers
+    private Observer<ServiceEvent> mObserver;
+
+    @Before
+    public void setUp() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        mApplicationExecutor = Executors.newFixedThreadPool(2);
+        mHistoryService = new InMemoryHistoryService(mApplicationExecutor);
+        long time = System.currentTimeMillis() - 3600 * 1000L;
+        for (int row = 0; row < MESSAGES_PER_CONVERSATION; row++) {
+            for (int conversation = 0; conversation < CONVERSATIONS; conversation++) {
+                time += 1000;
+                TextMessage text = new TextMessage(true, "message " + row, new Uri("peer" + conversation + "@example.org"), null, "account");
+                text.setID(row * CONVERSATIONS + conversation + 1);
+                text.setTimestamp(time);
+                mHistoryService.add(new HistoryText(text));
+            }
+        }
+
+        mServices = new ServiceGraph(mApplicationExecutor, mHistoryService);
+        mServices.loadAccounts();
+        mConversationFacade = new ConversationFacade(mHistoryService, mServices.getCallService(),
+                mServices.getContactService(), mServices.getAccountService(), null);
+        mConversationFacade.mConferenceService = mServices.getConferenceService();
+        mConversationFacade.mDeviceRuntimeService = mServices.getDeviceRuntimeService();
+
+        // the conversations are listed from their summaries, then with their history
+        CountDownLatch loaded = awaitConversationsChanged(2);
+        mHistoryService.getCallAndTextAsync();
+        assertTrue(loaded.await(30, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        mServices.shutdown();
+        mApplicationExecutor.shutdownNow();
+    }
+
+    private CountDownLatch awaitConversationsChanged() {
+        return awaitConversationsChanged(1);
+    }
+
+    private CountDownLatch awaitConversationsChanged(int count) {
+        final CountDownLatch changed = new CountDownLatch(count);
+        if (mObserver != null) {
+            mConversationFacade.removeObserver(mObserver);
+        }
+        mObserver = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                changed.countDown();
+            }
+        };
+        mConversationFacade.addObserver(mObserver, ServiceEvent.EventType.CONVERSATIONS_CHANGED);
+        return changed;
+    }
+
+    private Conversation getConversation() {
+        for (Conversation conversation : mConversationFacade.getConversationsList()) {
+            if (conversation.getContact().getPhones().get(0).getNumber().getRawUriString().equals(PEER)) {
+                return conversation;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testInsertDoesNotReloadHistory() throws InterruptedException {
+        Conversation conversation = getConversation();
+        assertNotNull(conversation);
+        assertEquals(MESSAGES_PER_CONVERSATION, conversation.getAggregateHistory().size());
+        int queries = mHistoryService.getQueryCount();
+
+        CountDownLatch changed = awaitConversationsChanged();
+        TextMessage text = new TextMessage(true, "new message", new Uri(PEER), null, "account");
+        text.setID(1000);
+        mHistoryService.insertNewTextMessage(text);
+        assertTrue(changed.await(30, TimeUnit.SECONDS));
+
+        assertEquals(0, mHistoryService.getQueryCount() - queries);
+        assertEquals(MESSAGES_PER_CONVERSATION + 1, conversation.getAggregateHistory().size());
+        assertEquals(CONVERSATIONS, mConversationFacade.getConversationsList().size());
+    }
+
+    @Test
+    public void testUpdateDoesNotReloadHistory() throws InterruptedException {
+        Conversation conversation = getConversation();
+        assertNotNull(conversation);
+        TextMessage text = conversation.getTextMessages().iterator().next();
+        int queries = mHistoryService.getQueryCount();
+
+        CountDownLatch changed = awaitConversationsChanged();
+        TextMessage read = new TextMessage(new HistoryText(text));
+        read.setStatus(TextMessage.Status.READ);
+        mHistoryService.updateTextMessage(new HistoryText(read));
+        assertTrue(changed.await(30, TimeUnit.SECONDS));
+
+        assertEquals(0, mHistoryService.getQueryCount() - queries);
+        assertEquals(TextMessage.Status.READ, text.getStatus());
+        assertEquals(MESSAGES_PER_CONVERSATION, conversation.getAggregateHistory().size());
+    }
+
+    @Test
+    public void testStatusUpdatesAreAppliedById() throws InterruptedException {
+        Conversation conversation = getConversation();
+        assertNotNull(conversation);
+        int queries = mHistoryService.getQueryCount();
+
+        // a burst of receipts, SENT then READ for each message, committed and sent in a few batches
+        CountDownLatch changed = awaitConversationsChanged();
+        for (TextMessage text : conversation.getTextMessages()) {
+            mHistoryService.accountMessageStatusChanged("account", text.getId(), PEER, TextMessage.Status.SENT.toInt());
+            mHistoryService.accountMessageStatusChanged("account", text.getId(), PEER, TextMessage.Status.READ.toInt());
+        }
+        assertTrue(changed.await(30, TimeUnit.SECONDS));
+        mHistoryService.flushPendingWrites();
+
+        assertEquals(0, mHistoryService.getQueryCount() - queries);
+        for (TextMessage text : conversation.getTextMessages()) {
+            assertEquals(TextMessage.Status.READ, mHistoryService.getTextMessage(text.getId()).getStatus());
+        }
+        // the event of the last batch may still be on its way to the facade
+        long deadline = System.currentTimeMillis() + 30000;
+        for (TextMessage text : conversation.getTextMessages()) {
+            while (text.getStatus() != TextMessage.Status.READ) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Test
+    public void testStatusUpdateOfAnotherAccountIsIgnored() throws InterruptedException {
+        Conversation conversation = getConversation();
+        assertNotNull(conversation);
+        TextMessage text = conversation.getTextMessages().iterator().next();
+
+        CountDownLatch changed = awaitConversationsChanged();
+        mHistoryService.accountMessageStatusChanged("other", text.getId(), PEER, TextMessage.Status.READ.toInt());
+        mHistoryService.flushPendingWrites();
+        assertTrue(changed.await(30, TimeUnit.SECONDS));
+        assertEquals(TextMessage.Status.UNKNOWN, mHistoryService.getTextMessage(text.getId()).getStatus());
+        assertEquals(TextMessage.Status.UNKNOWN, text.getStatus());
+    }
+}
@@ -0,0 +1,108 @@
+package cx.ring.model;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the bytes allocated per NEW_BUDDY_NOTIFICATION event, as built by PresenceService,
+ * with the former HashMap based event and the compact event.
+ * Needs a JVM exposing the per thread allocated bytes, skipped otherwise.
+ */
+public class ServiceEventAllocationBenchmark {
+
+    private static final int EVENTS = 100000;
+
+    /**
+     * ServiceEvent as it was, a HashMap of boxed inputs
+     */
+    private static class HashMapEvent {
+        private final ServiceEvent.EventType mType;
+        private final Map<ServiceEvent.EventInput, Object> mInputs = new HashMap<>();
+
+        HashMapEvent(ServiceEvent.EventType type) {
+            mType = type;
+        }
+
+        void addEventInput(ServiceEvent.EventInput input, Object value) {
+            mInputs.put(input, value);
+        }
+
+        Object getEventInput(ServiceEvent.EventInput input) {
+            return mInputs.get(input);
+        }
+    }
+
+    private interface Workload {
+        int run(int i);
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    private static long bytesPerEvent(com.sun.management.ThreadMXBean bean, Workload workload) {
+        long threadId = Thread.currentThread().getId();
+        int sink = 0;
+        // warm up so the measure does not include class loading and compilation
+        for (int i = 0; i < EVENTS; i++) {
+            sink += workload.run(i);
+        }
+        long start = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < EVENTS; i++) {
+            sink += workload.run(i);
+        }
+        long bytes = bean.getThreadAllocatedBytes(threadId) - start;
+        assertTrue(sink != 0);
+        return bytes / EVENTS;
+    }
+
+    @Test
+    public void benchmarkAllocations() {
+        com.sun.management.ThreadMXBean bean = getThreadMXBean();
+        Assume.assumeTrue("allocated bytes not available", bean != null);
+
+        final String accountId = "a1b2c3d4e5f60708";
+        final String buddyUri = "0123456789abcdef0123456789abcdef01234567";
+        final String lineStatus = "online";
+
+        long hashMap = bytesPerEvent(bean, new Workload() {
+            @Override
+            public int run(int i) {
+                HashMapEvent event = new HashMapEvent(ServiceEvent.EventType.NEW_BUDDY_NOTIFICATION);
+                event.addEventInput(ServiceEvent.EventInput.ACCOUNT_ID, accountId);
+                event.addEventInput(ServiceEvent.EventInput.BUDDY_URI, buddyUri);
+                event.addEventInput(ServiceEvent.EventInput.STATE, 1000 + (i & 1));
+                event.addEventInput(ServiceEvent.EventInput.LINE_STATE, lineStatus);
+                return (Integer) event.getEventInput(ServiceEvent.EventInput.STATE);
+            }
+        });
+        long compact = bytesPerEvent(bean, new Workload() {
+            @Override
+            public int run(int i) {
+                ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.NEW_BUDDY_NOTIFICATION);
+                event.addEventInput(ServiceEvent.EventInput.ACCOUNT_ID, accountId);
+                event.addEventInput(ServiceEvent.EventInput.BUDDY_URI, buddyUri);
+                event.addEventInput(ServiceEvent.EventInput.STATE, 1000 + (i & 1));
+                event.addEventInput(ServiceEvent.EventInput.LINE_STATE, lineStatus);
+                return event.getInt(ServiceEvent.EventInput.STATE);
+            }
+        });
+        System.out.println("NEW_BUDDY_NOTIFICATION: HashMap " + hashMap + " bytes/event, compact " + compact
+                + " bytes/event");
+        assertTrue(compact < hashMap);
+    }
+}
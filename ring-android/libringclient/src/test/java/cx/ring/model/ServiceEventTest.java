@@ -0,0 +1,53 @@
+package cx.ring.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServiceEventTest {
+
+    @Test
+    public void testPrimitiveInputs() {
+        ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.CONFERENCE_CHANGED);
+        event.addEventInput(ServiceEvent.EventInput.STATE, 3);
+        event.addEventInput(ServiceEvent.EventInput.TIME, 1234567890123L);
+        event.addEventInput(ServiceEvent.EventInput.IS_MIXER, true);
+        event.addEventInput(ServiceEvent.EventInput.CONF_ID, "conf");
+        event.addEventInput(ServiceEvent.EventInput.STATE, 4);
+
+        assertEquals(4, event.getInt(ServiceEvent.EventInput.STATE));
+        assertEquals(Integer.valueOf(4), event.getEventInput(ServiceEvent.EventInput.STATE, Integer.class));
+        assertEquals(null, event.getEventInput(ServiceEvent.EventInput.STATE, String.class));
+        assertEquals(1234567890123L, event.getLong(ServiceEvent.EventInput.TIME, 0));
+        assertEquals(Long.valueOf(1234567890123L), event.getEventInput(ServiceEvent.EventInput.TIME, Long.class));
+        assertTrue(event.getBoolean(ServiceEvent.EventInput.IS_MIXER, false));
+        assertEquals(Boolean.TRUE, event.getEventInput(ServiceEvent.EventInput.IS_MIXER, Boolean.class, false));
+        assertEquals("conf", event.getString(ServiceEvent.EventInput.CONF_ID));
+        assertEquals(7, event.getLong(ServiceEvent.EventInput.WIDTH, 7));
+    }
+
+    @Test
+    public void testCopy() {
+        ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.CONFERENCE_CHANGED);
+        event.addEventInput(ServiceEvent.EventInput.STATE, 3);
+        event.addEventInput(ServiceEvent.EventInput.CONF_ID, "conf");
+
+        ServiceEvent copy = new ServiceEvent(event);
+        // beyond the initial capacity, the arrays of the copy grow
+        copy.addEventInput(ServiceEvent.EventInput.ID, "id");
+        copy.addEventInput(ServiceEvent.EventInput.ACCOUNT_ID, "account");
+        copy.addEventInput(ServiceEvent.EventInput.CALL_ID, "call");
+        copy.addEventInput(ServiceEvent.EventInput.TIME, 5L);
+        copy.addEventInput(ServiceEvent.EventInput.STATE, 4);
+
+        assertEquals(ServiceEvent.EventType.CONFERENCE_CHANGED, copy.getEventType());
+        assertEquals(4, copy.getInt(ServiceEvent.EventInput.STATE));
+        assertEquals(3, event.getInt(ServiceEvent.EventInput.STATE));
+        assertEquals("conf", event.getString(ServiceEvent.EventInput.CONF_ID));
+        assertEquals("call", copy.getString(ServiceEvent.EventInput.CALL_ID));
+        assertEquals(5, copy.getLong(ServiceEvent.EventInput.TIME, 0));
+        assertEquals(null, event.getString(ServiceEvent.EventInput.CALL_ID));
+        assertEquals(0, event.getLong(ServiceEvent.EventInput.TIME, 0));
+    }
+}
@@ -0,0 +1,160 @@
+package cx.ring.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import cx.ring.model.AccountConfig;
+import cx.ring.model.AccountsSnapshot;
+import cx.ring.model.ConfigKey;
+import cx.ring.utils.InstrumentedExecutor;
+import cx.ring.utils.Log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares loading the accounts through {@link AccountService#getAccountsSnapshot()}, in a single daemon
+ * thread hop, against one synchronous hop per daemon call, as refreshAccountsCacheFromDaemon used to,
+ * while the daemon thread keeps polling events. The daemon is the in-memory {@link FakeDaemonBridge}.
+ */
+public class AccountsSnapshotBenchmark {
+
+    private static final int ACCOUNTS = 10;
+    private static final int CONTACTS_PER_ACCOUNT = 50;
+    private static final int REQUESTS_PER_ACCOUNT = 5;
+    private static final int ROUNDS = 20;
+    private static final long DAEMON_CALL_MICROS = 20;
+    private static final long POLL_MICROS = 500;
+
+    private InstrumentedExecutor mExecutor;
+    private FakeDaemonBridge mDaemon;
+    private AccountService mAccountService;
+    private Thread mLoad;
+    private final AtomicBoolean mRunning = new AtomicBoolean(true);
+
+    @Before
+    public void setUp() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        mExecutor = new InstrumentedExecutor();
+        final long daemonThreadId = mExecutor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return Thread.currentThread().getId();
+            }
+        }).get();
+
+        mDaemon = new FakeDaemonBridge(mExecutor, DAEMON_CALL_MICROS, TimeUnit.MICROSECONDS);
+        mAccountService = new AccountService();
+        mAccountService.mExecutor = mExecutor;
+        mAccountService.mDeviceRuntimeService = new FakeDeviceRuntimeService(daemonThreadId);
+        mAccountService.mDaemonBridge = mDaemon;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            mDaemon.createAccount(AccountConfig.ACCOUNT_TYPE_RING, CONTACTS_PER_ACCOUNT, REQUESTS_PER_ACCOUNT);
+        }
+
+        // keeps a poll in the queue, as the daemon polling does under load
+        mLoad = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (mRunning.get()) {
+                    if (mExecutor.getQueueDepth() == 0) {
+                        mExecutor.submit(InstrumentedExecutor.named("pollEvents", new Runnable() {
+                            @Override
+                            public void run() {
+                                long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(POLL_MICROS);
+                                while (System.nanoTime() < end) {
+                                    Thread.yield();
+                                }
+                            }
+                        }));
+                    }
+                    Thread.yield();
+                }
+            }
+        });
+        mLoad.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mRunning.set(false);
+        mLoad.join();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the number of accounts loaded with one daemon thread hop per daemon call
+     */
+    private int loadPerCall() {
+        List<String> accountIds = mAccountService.getAccountList();
+        for (String accountId : accountIds) {
+            Map<String, String> details = mAccountService.getAccountDetails(accountId);
+            mAccountService.getCredentials(accountId);
+            mAccountService.getVolatileAccountDetails(accountId);
+            if (AccountConfig.ACCOUNT_TYPE_RING.equals(details.get(ConfigKey.ACCOUNT_TYPE.key()))) {
+                mAccountService.getKnownRingDevices(accountId);
+                mAccountService.getContacts(accountId);
+                mAccountService.getTrustRequests(accountId);
+            }
+        }
+        return accountIds.size();
+    }
+
+    private int loadSnapshot() {
+        AccountsSnapshot snapshot = mAccountService.getAccountsSnapshot();
+        assertNotNull(snapshot);
+        return snapshot.getAccounts().size();
+    }
+
+    /**
+     * The statistics of a task are recorded after its caller is released, waits for the next task
+     */
+    private void awaitStatistics() throws Exception {
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
+    private static String report(String name, long nanos) {
+        return name + ": " + TimeUnit.NANOSECONDS.toMicros(nanos / ROUNDS) + "µs per load of " + ACCOUNTS + " accounts";
+    }
+
+    @Test
+    public void benchmarkAccountsLoading() throws Exception {
+        // warm up
+        loadPerCall();
+        loadSnapshot();
+        awaitStatistics();
+        mExecutor.resetStatistics();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            assertEquals(ACCOUNTS, loadPerCall());
+        }
+        long perCall = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            assertEquals(ACCOUNTS, loadSnapshot());
+        }
+        long snapshot = System.nanoTime() - start;
+
+        awaitStatistics();
+        InstrumentedExecutor.Snapshot statistics = mExecutor.getSnapshot();
+        assertEquals(ROUNDS * ACCOUNTS, statistics.getOperation("getContacts").getRun().getCount());
+        assertEquals(ROUNDS, statistics.getOperation("getAccountsSnapshot").getRun().getCount());
+
+        System.out.println(report("One hop per daemon call", perCall));
+        System.out.println(report("Accounts snapshot", snapshot));
+        System.out.println(statistics);
+    }
+}
@@ -0,0 +1,74 @@
+package cx.ring.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.utils.Log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CallbackRecorderTest {
+
+    @Before
+    public void setUp() {
+        Log.injectLogService(new SilentLogService());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException, InterruptedException {
+        Map<String, String> messages = new HashMap<>();
+        messages.put("text/plain", "héllo 😀");
+        Map<String, Integer> stats = new HashMap<>();
+        stats.put("PACKET_LOSS", 3);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CallbackRecorder recorder = new CallbackRecorder(output);
+        recorder.record("accountsChanged");
+        Thread.sleep(2);
+        recorder.record("incomingAccountMessage", "account", "peer", messages);
+        recorder.record("accountMessageStatusChanged", "account", 1234567890123L, "peer", 2);
+        recorder.record("contactAdded", "account", "uri", true);
+        recorder.record("onRtcpReportReceived", "call", stats);
+        recorder.record("registrationStateChanged", "account", "REGISTERED", 0, null);
+        recorder.close();
+
+        List<CallbackRecorder.Record> records = CallbackRecorder.read(new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(6, records.size());
+        assertEquals("accountsChanged", records.get(0).getName());
+        assertEquals(0, records.get(0).getArgs().length);
+        assertTrue(records.get(1).getTime(TimeUnit.MILLISECONDS) >= 2);
+        assertEquals(messages, records.get(1).get(2));
+        assertEquals(1234567890123L, records.get(2).getLong(1));
+        assertEquals(2, records.get(2).getInt(3));
+        assertTrue(records.get(3).getBoolean(2));
+        assertEquals(stats, records.get(4).get(1));
+        assertNull(records.get(5).getString(3));
+    }
+
+    @Test
+    public void testTruncatedRecording() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CallbackRecorder recorder = new CallbackRecorder(output);
+        recorder.record("stunStatusFailure", "account1");
+        recorder.record("stunStatusFailure", "account2");
+        recorder.close();
+        byte[] data = output.toByteArray();
+
+        List<CallbackRecorder.Record> records = CallbackRecorder.read(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 3)));
+
+        assertEquals(1, records.size());
+        assertEquals("account1", records.get(0).getString(0));
+    }
+}
@@ -0,0 +1,191 @@
+package cx.ring.services;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.support.ConnectionSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cx.ring.model.Account;
+import cx.ring.model.AccountConfig;
+import cx.ring.model.ConversationSummary;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.model.TextMessage;
+import cx.ring.utils.InstrumentedExecutor;
+import cx.ring.utils.KeyedDispatcher;
+import cx.ring.utils.Log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records a reconnection, registrations then a message and presence flood, and replays it
+ * into the services at the recorded pace and as fast as possible.
+ */
+public class CallbackReplayBenchmark {
+
+    private static final int ACCOUNTS = 3;
+    private static final int CONTACTS_PER_ACCOUNT = 200;
+    private static final int PEERS = 20;
+    private static final int MESSAGES = 2000;
+    private static final long DAEMON_CALL_MICROS = 20;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private InstrumentedExecutor mExecutor;
+    private ExecutorService mApplicationExecutor;
+    private KeyedDispatcher mDispatcher;
+    private AccountService mAccountService;
+    private CallbackReplayHarness mHarness;
+    private final AtomicInteger mStoredMessages = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        mExecutor = new InstrumentedExecutor();
+        mApplicationExecutor = Executors.newFixedThreadPool(5);
+        mDispatcher = new KeyedDispatcher("Replay", 4);
+        final long daemonThreadId = mExecutor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return Thread.currentThread().getId();
+            }
+        }).get();
+        DeviceRuntimeService deviceRuntimeService = new FakeDeviceRuntimeService(daemonThreadId);
+
+        HistoryService historyService = new HistoryService() {
+            @Override
+            protected ConnectionSource getConnectionSource() {
+                return null;
+            }
+
+            @Override
+            protected Dao<HistoryCall, Integer> getCallHistoryDao() {
+                return null;
+            }
+
+            @Override
+            protected Dao<HistoryText, Long> getTextHistoryDao() {
+                return null;
+            }
+
+            @Override
+            protected Dao<ConversationSummary, Integer> getConversationSummaryDao() {
+                return null;
+            }
+
+            @Override
+            public void incomingMessage(TextMessage txt) {
+                mStoredMessages.incrementAndGet();
+            }
+        };
+
+        ContactService contactService = new FakeContactService();
+        contactService.mPreferencesService = new FakePreferencesService();
+        contactService.mDeviceRuntimeService = deviceRuntimeService;
+        contactService.mApplicationExecutor = mApplicationExecutor;
+
+        FakeDaemonBridge daemon = new FakeDaemonBridge(mExecutor, DAEMON_CALL_MICROS, TimeUnit.MICROSECONDS);
+
+        mAccountService = new AccountService();
+        mAccountService.mExecutor = mExecutor;
+        mAccountService.mApplicationExecutor = mApplicationExecutor;
+        mAccountService.mHistoryService = historyService;
+        mAccountService.mDeviceRuntimeService = deviceRuntimeService;
+        mAccountService.mDaemonBridge = daemon;
+
+        CallService callService = new CallService();
+        callService.mExecutor = mExecutor;
+        callService.mContactService = contactService;
+        callService.mHistoryService = historyService;
+        callService.mDeviceRuntimeService = deviceRuntimeService;
+        callService.mDaemonBridge = daemon;
+
+        ConferenceService conferenceService = new ConferenceService();
+        conferenceService.mExecutor = mExecutor;
+        conferenceService.mDeviceRuntimeService = deviceRuntimeService;
+        conferenceService.mDaemonBridge = daemon;
+
+        PresenceService presenceService = new PresenceService();
+        presenceService.mExecutor = mExecutor;
+        presenceService.mDeviceRuntimeService = deviceRuntimeService;
+        presenceService.mDaemonBridge = daemon;
+
+        daemon.setCallbackHandlers(mAccountService, callService, conferenceService, presenceService);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            daemon.createAccount(AccountConfig.ACCOUNT_TYPE_RING, CONTACTS_PER_ACCOUNT, 0);
+        }
+        mAccountService.loadAccountsFromDaemon(true);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (mAccountService.getAccounts().size() < ACCOUNTS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ACCOUNTS, mAccountService.getAccounts().size());
+
+        mHarness = new CallbackReplayHarness(mAccountService, callService, conferenceService, presenceService,
+                historyService, mDispatcher);
+    }
+
+    @After
+    public void tearDown() {
+        mDispatcher.shutdown();
+        mExecutor.shutdownNow();
+        mApplicationExecutor.shutdownNow();
+    }
+
+    private List<CallbackRecorder.Record> recordReconnection() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CallbackRecorder recorder = new CallbackRecorder(output);
+        List<String> accountIds = new ArrayList<>();
+        for (Account account : mAccountService.getAccounts()) {
+            accountIds.add(account.getAccountID());
+            recorder.record("registrationStateChanged", account.getAccountID(), "TRYING", 0, "");
+        }
+        Thread.sleep(20);
+        for (String accountId : accountIds) {
+            recorder.record("registrationStateChanged", accountId, "REGISTERED", 0, "");
+        }
+        for (int i = 0; i < MESSAGES; i++) {
+            Map<String, String> messages = new HashMap<>();
+            messages.put("text/plain", "message " + i);
+            String peer = String.format("%040x", i % PEERS);
+            recorder.record("incomingAccountMessage", accountIds.get(i % ACCOUNTS), peer, messages);
+            recorder.record("newBuddyNotification", accountIds.get(i % ACCOUNTS), peer, 1, "");
+            if (i % 100 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        recorder.close();
+        return CallbackRecorder.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    @Test
+    public void benchmarkReplay() throws Exception {
+        List<CallbackRecorder.Record> records = recordReconnection();
+
+        CallbackReplayHarness.Report recordedPace = mHarness.replay(records, 1, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(MESSAGES, mStoredMessages.get());
+        CallbackReplayHarness.Report fastest = mHarness.replay(records, 0, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(2 * MESSAGES, mStoredMessages.get());
+
+        assertEquals(0, fastest.getUnknown());
+        assertEquals(MESSAGES, fastest.getLatencies().getTask("incomingAccountMessage").getHandled().getCount());
+        assertTrue(fastest.getLatencies().getTask("newBuddyNotification") != null);
+
+        System.out.println("Recorded pace: " + recordedPace);
+        System.out.println("As fast as possible: " + fastest);
+    }
+}
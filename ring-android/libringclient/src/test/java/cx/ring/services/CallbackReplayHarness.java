@@ -0,0 +1,264 @@
+package cx.ring.services;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cx.ring.utils.KeyedDispatcher;
+import cx.ring.utils.LatencyHistogram;
+
+/**
+ * Feeds a {@link CallbackRecorder} recording into the services callback handlers, with the same dispatch keys
+ * as DaemonService, and reports the handling latency and the allocated bytes per callback.
+ */
+class CallbackReplayHarness {
+
+    private static final String ACCOUNTS_KEY = "accounts";
+
+    private final AccountService.ConfigurationCallbackHandler mAccountCallbackHandler;
+    private final CallService.CallbackHandler mCallCallbackHandler;
+    private final ConferenceService.ConferenceCallbackHandler mConferenceCallbackHandler;
+    private final PresenceService.PresenceCallbackHandler mPresenceCallbackHandler;
+    private final HistoryService mHistoryService;
+    private final KeyedDispatcher mDispatcher;
+    private final com.sun.management.ThreadMXBean mThreadBean;
+
+    private final ConcurrentHashMap<String, AtomicLong> mAllocatedBytes = new ConcurrentHashMap<>();
+    private final AtomicLong mUnknown = new AtomicLong();
+
+    CallbackReplayHarness(AccountService accountService, CallService callService, ConferenceService conferenceService,
+                          PresenceService presenceService, HistoryService historyService, KeyedDispatcher dispatcher) {
+        mAccountCallbackHandler = accountService.getCallbackHandler();
+        mCallCallbackHandler = callService.getCallbackHandler();
+        mConferenceCallbackHandler = conferenceService.getCallbackHandler();
+        mPresenceCallbackHandler = presenceService.getCallbackHandler();
+        mHistoryService = historyService;
+        mDispatcher = dispatcher;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            mThreadBean = (com.sun.management.ThreadMXBean) bean;
+        } else {
+            mThreadBean = null;
+        }
+    }
+
+    /**
+     * Replays the records and waits until they are all handled
+     *
+     * @param speed 1 to replay at the recorded pace, 10 ten times faster, 0 as fast as possible
+     * @return the statistics of this replay
+     */
+    Report replay(List<CallbackRecorder.Record> records, double speed, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        mDispatcher.resetStatistics();
+        mAllocatedBytes.clear();
+        mUnknown.set(0);
+        CountDownLatch done = new CountDownLatch(records.size());
+        long start = System.nanoTime();
+        for (CallbackRecorder.Record record : records) {
+            if (speed > 0) {
+                long due = start + (long) (record.getTime(TimeUnit.NANOSECONDS) / speed);
+                long delay = due - System.nanoTime();
+                if (delay > 0) {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+            }
+            dispatch(record, done);
+        }
+        if (!done.await(timeout, unit)) {
+            throw new IllegalStateException(done.getCount() + " callbacks not handled after " + timeout + " " + unit);
+        }
+        // the dispatcher records the statistics of a task right after it
+        while (mDispatcher.getPending() > 0) {
+            Thread.sleep(1);
+        }
+        return new Report(System.nanoTime() - start, records.size(), mUnknown.get(), mDispatcher.getSnapshot(),
+                mThreadBean == null ? null : new TreeMap<>(mAllocatedBytes));
+    }
+
+    private void dispatch(final CallbackRecorder.Record record, final CountDownLatch done) {
+        final Runnable handler = handler(record);
+        if (handler == null) {
+            mUnknown.incrementAndGet();
+            done.countDown();
+            return;
+        }
+        mDispatcher.dispatch(key(record), record.getName(), new Runnable() {
+            @Override
+            public void run() {
+                long threadId = Thread.currentThread().getId();
+                long allocated = mThreadBean == null ? 0 : mThreadBean.getThreadAllocatedBytes(threadId);
+                try {
+                    handler.run();
+                } finally {
+                    if (mThreadBean != null) {
+                        allocated = mThreadBean.getThreadAllocatedBytes(threadId) - allocated;
+                        AtomicLong total = mAllocatedBytes.get(record.getName());
+                        if (total == null) {
+                            mAllocatedBytes.putIfAbsent(record.getName(), new AtomicLong());
+                            total = mAllocatedBytes.get(record.getName());
+                        }
+                        total.addAndGet(allocated);
+                    }
+                    done.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Same keys as the DaemonService callbacks
+     */
+    private static String key(CallbackRecorder.Record record) {
+        switch (record.getName()) {
+            case "incomingAccountMessage":
+            case "newBuddyNotification":
+            case "subscriptionStateChanged":
+                return KeyedDispatcher.key(record.getString(0), record.getString(1));
+            case "accountMessageStatusChanged":
+                return KeyedDispatcher.key(record.getString(0), record.getString(2));
+            case "callStateChanged":
+            case "incomingMessage":
+            case "conferenceCreated":
+            case "conferenceRemoved":
+            case "conferenceChanged":
+            case "recordPlaybackFilepath":
+            case "onRtcpReportReceived":
+            case "newServerSubscriptionRequest":
+            case "serverError":
+                return record.getString(0);
+            case "incomingCall":
+                return record.getString(1);
+            default:
+                return ACCOUNTS_KEY;
+        }
+    }
+
+    private Runnable handler(final CallbackRecorder.Record r) {
+        switch (r.getName()) {
+            case "volumeChanged":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.volumeChanged(r.getString(0), r.getInt(1)); } };
+            case "accountsChanged":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.accountsChanged(); } };
+            case "stunStatusFailure":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.stunStatusFailure(r.getString(0)); } };
+            case "registrationStateChanged":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.registrationStateChanged(r.getString(0), r.getString(1), r.getInt(2), r.getString(3)); } };
+            case "incomingAccountMessage":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.incomingAccountMessage(r.getString(0), r.getString(1), r.<Map<String, String>>get(2)); } };
+            case "accountMessageStatusChanged":
+                return new Runnable() { @Override public void run() { mHistoryService.accountMessageStatusChanged(r.getString(0), r.getLong(1), r.getString(2), r.getInt(3)); } };
+            case "errorAlert":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.errorAlert(r.getInt(0)); } };
+            case "knownDevicesChanged":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.knownDevicesChanged(r.getString(0), r.<Map<String, String>>get(1)); } };
+            case "exportOnRingEnded":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.exportOnRingEnded(r.getString(0), r.getInt(1), r.getString(2)); } };
+            case "nameRegistrationEnded":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.nameRegistrationEnded(r.getString(0), r.getInt(1), r.getString(2)); } };
+            case "registeredNameFound":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.registeredNameFound(r.getString(0), r.getInt(1), r.getString(2), r.getString(3)); } };
+            case "migrationEnded":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.migrationEnded(r.getString(0), r.getString(1)); } };
+            case "deviceRevocationEnded":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.deviceRevocationEnded(r.getString(0), r.getString(1), r.getInt(2)); } };
+            case "incomingTrustRequest":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.incomingTrustRequest(r.getString(0), r.getString(1), r.getString(2), r.getLong(3)); } };
+            case "contactAdded":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.contactAdded(r.getString(0), r.getString(1), r.getBoolean(2)); } };
+            case "contactRemoved":
+                return new Runnable() { @Override public void run() { mAccountCallbackHandler.contactRemoved(r.getString(0), r.getString(1), r.getBoolean(2)); } };
+            case "callStateChanged":
+                return new Runnable() { @Override public void run() { mCallCallbackHandler.callStateChanged(r.getString(0), r.getString(1), r.getInt(2)); } };
+            case "incomingCall":
+                return new Runnable() { @Override public void run() { mCallCallbackHandler.incomingCall(r.getString(0), r.getString(1), r.getString(2)); } };
+            case "incomingMessage":
+                return new Runnable() { @Override public void run() { mCallCallbackHandler.incomingMessage(r.getString(0), r.getString(1), r.<Map<String, String>>get(2)); } };
+            case "conferenceCreated":
+                return new Runnable() { @Override public void run() { mConferenceCallbackHandler.conferenceCreated(r.getString(0)); } };
+            case "conferenceRemoved":
+                return new Runnable() { @Override public void run() { mConferenceCallbackHandler.conferenceRemoved(r.getString(0)); } };
+            case "conferenceChanged":
+                return new Runnable() { @Override public void run() { mConferenceCallbackHandler.conferenceChanged(r.getString(0), r.getString(1)); } };
+            case "recordPlaybackFilepath":
+                return new Runnable() { @Override public void run() { mCallCallbackHandler.recordPlaybackFilepath(r.getString(0), r.getString(1)); } };
+            case "onRtcpReportReceived":
+                return new Runnable() { @Override public void run() { mCallCallbackHandler.onRtcpReportReceived(r.getString(0), r.<Map<String, Integer>>get(1)); } };
+            case "newServerSubscriptionRequest":
+                return new Runnable() { @Override public void run() { mPresenceCallbackHandler.newServerSubscriptionRequest(r.getString(0)); } };
+            case "serverError":
+                return new Runnable() { @Override public void run() { mPresenceCallbackHandler.serverError(r.getString(0), r.getString(1), r.getString(2)); } };
+            case "newBuddyNotification":
+                return new Runnable() { @Override public void run() { mPresenceCallbackHandler.newBuddyNotification(r.getString(0), r.getString(1), r.getInt(2), r.getString(3)); } };
+            case "subscriptionStateChanged":
+                return new Runnable() { @Override public void run() { mPresenceCallbackHandler.subscriptionStateChanged(r.getString(0), r.getString(1), r.getInt(2)); } };
+            default:
+                return null;
+        }
+    }
+
+    static class Report {
+        private final long mDuration;
+        private final int mCount;
+        private final long mUnknown;
+        private final KeyedDispatcher.Snapshot mLatencies;
+        private final Map<String, AtomicLong> mAllocatedBytes;
+
+        Report(long duration, int count, long unknown, KeyedDispatcher.Snapshot latencies, Map<String, AtomicLong> allocatedBytes) {
+            mDuration = duration;
+            mCount = count;
+            mUnknown = unknown;
+            mLatencies = latencies;
+            mAllocatedBytes = allocatedBytes;
+        }
+
+        long getUnknown() {
+            return mUnknown;
+        }
+
+        KeyedDispatcher.Snapshot getLatencies() {
+            return mLatencies;
+        }
+
+        /**
+         * @return the mean bytes allocated by the handling of the callback, -1 if not available
+         */
+        long getAllocatedBytesPerCallback(String name) {
+            KeyedDispatcher.TaskSnapshot task = mLatencies.getTask(name);
+            if (mAllocatedBytes == null || task == null || task.getHandled().getCount() == 0) {
+                return -1;
+            }
+            AtomicLong bytes = mAllocatedBytes.get(name);
+            return bytes == null ? 0 : bytes.get() / task.getHandled().getCount();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(mCount).append(" callbacks replayed in ").append(TimeUnit.NANOSECONDS.toMillis(mDuration)).append("ms");
+            if (mUnknown > 0) {
+                builder.append(", ").append(mUnknown).append(" unknown");
+            }
+            for (KeyedDispatcher.TaskSnapshot task : mLatencies.getTasks()) {
+                LatencyHistogram.Snapshot handled = task.getHandled();
+                builder.append('\n').append(task.getName())
+                        .append(": n=").append(handled.getCount())
+                        .append(" p50=").append(handled.getPercentile(50)).append("µs")
+                        .append(" p99=").append(handled.getPercentile(99)).append("µs")
+                        .append(" max=").append(handled.getMax()).append("µs");
+                long bytes = getAllocatedBytesPerCallback(task.getName());
+                if (bytes >= 0) {
+                    builder.append(" alloc=").append(bytes).append("B/callback");
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
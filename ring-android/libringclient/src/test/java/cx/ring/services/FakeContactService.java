@@ -0,0 +1,18 @@
+package cx.ring.services;
+
+import java.util.Map;
+
+import cx.ring.model.CallContact;
+
+/**
+ * {@link ContactService} without system contacts
+ */
+class FakeContactService extends ContactService {
+    @Override protected Map<Long, CallContact> loadContactsFromSystem(boolean loadRingContacts, boolean loadSipContacts) { return null; }
+    @Override protected CallContact findContactByIdFromSystem(Long contactId, String contactKey) { return null; }
+    @Override protected CallContact findContactBySipNumberFromSystem(String number) { return null; }
+    @Override protected CallContact findContactByNumberFromSystem(String number) { return null; }
+    @Override public void loadContactData(CallContact callContact) {}
+    @Override public void saveVCardContactData(CallContact contact) {}
+    @Override public void loadVCardContactData(CallContact contact) {}
+}
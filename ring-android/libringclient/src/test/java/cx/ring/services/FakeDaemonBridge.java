@@ -0,0 +1,1144 @@
+package cx.ring.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cx.ring.model.AccountConfig;
+import cx.ring.model.ConfigKey;
+import cx.ring.model.SipCall;
+import cx.ring.utils.InstrumentedExecutor;
+
+/**
+ * In-memory daemon simulating accounts, contacts, trust requests, calls, conferences and presence.
+ * <p>
+ * Every call to the bridge costs the configured latency. The daemon signals are delivered to the
+ * services callback handlers on the callback executor, as the native daemon does from pollEvents()
+ * on the daemon thread. The simulate* methods inject the signals a remote peer would trigger.
+ */
+public class FakeDaemonBridge implements DaemonBridge {
+
+    private static final String MIME_TEXT_PLAIN = "text/plain";
+
+    private final Executor mCallbackExecutor;
+    private volatile long mLatencyNanos;
+    private final AtomicLong mCallCount = new AtomicLong();
+    private final AtomicLong mSignalCount = new AtomicLong();
+
+    private AccountService.ConfigurationCallbackHandler mAccountCallbackHandler;
+    private CallService.CallbackHandler mCallCallbackHandler;
+    private ConferenceService.ConferenceCallbackHandler mConferenceCallbackHandler;
+    private PresenceService.PresenceCallbackHandler mPresenceCallbackHandler;
+
+    // daemon state, guarded by this
+    private final Map<String, Map<String, String>> mAccounts = new LinkedHashMap<>();
+    private final Map<String, Map<String, String>> mVolatileDetails = new HashMap<>();
+    private final Map<String, Map<String, String>> mDevices = new HashMap<>();
+    private final Map<String, List<Map<String, String>>> mCredentials = new HashMap<>();
+    private final Map<String, List<Map<String, String>>> mContacts = new HashMap<>();
+    private final Map<String, List<Map<String, String>>> mTrustRequests = new HashMap<>();
+    private final Map<String, List<Map<String, String>>> mSubscriptions = new HashMap<>();
+    private final Map<String, Map<String, String>> mCalls = new LinkedHashMap<>();
+    private final Map<String, List<String>> mConferences = new HashMap<>();
+    private final Map<String, String> mNames = new HashMap<>();
+    private final List<Long> mActiveCodecs = new ArrayList<>();
+    private boolean mCaptureMuted;
+    private String mRecordPath = "";
+    private long mNextId = 1;
+
+    /**
+     * @param callbackExecutor the executor the daemon signals are delivered on, usually the daemon executor
+     * @param latency          the time spent in each daemon call
+     */
+    public FakeDaemonBridge(Executor callbackExecutor, long latency, TimeUnit unit) {
+        mCallbackExecutor = callbackExecutor;
+        mLatencyNanos = unit.toNanos(latency);
+        mActiveCodecs.add(0L);
+        mActiveCodecs.add(1L);
+    }
+
+    public void setCallbackHandlers(AccountService accountService,
+                                    CallService callService,
+                                    ConferenceService conferenceService,
+                                    PresenceService presenceService) {
+        mAccountCallbackHandler = accountService == null ? null : accountService.getCallbackHandler();
+        mCallCallbackHandler = callService == null ? null : callService.getCallbackHandler();
+        mConferenceCallbackHandler = conferenceService == null ? null : conferenceService.getCallbackHandler();
+        mPresenceCallbackHandler = presenceService == null ? null : presenceService.getCallbackHandler();
+    }
+
+    public void setLatency(long latency, TimeUnit unit) {
+        mLatencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * @return the number of daemon calls served
+     */
+    public long getCallCount() {
+        return mCallCount.get();
+    }
+
+    /**
+     * @return the number of daemon signals delivered
+     */
+    public long getSignalCount() {
+        return mSignalCount.get();
+    }
+
+    // Simulation
+
+    /**
+     * Creates an account as if it was already stored in the daemon, without any signal
+     *
+     * @return the account id
+     */
+    public String createAccount(String type, int contacts, int trustRequests) {
+        return createAccount(type, contacts, trustRequests, new HashMap<String, String>());
+    }
+
+    /**
+     * @param extraDetails details added to the default ones
+     */
+    public synchronized String createAccount(String type, int contacts, int trustRequests, Map<String, String> extraDetails) {
+        String accountId = nextId("account");
+        Map<String, String> details = new HashMap<>(extraDetails);
+        details.put(ConfigKey.ACCOUNT_TYPE.key(), type);
+        details.put(ConfigKey.ACCOUNT_ALIAS.key(), accountId);
+        details.put(ConfigKey.ACCOUNT_USERNAME.key(), AccountConfig.ACCOUNT_TYPE_RING.equals(type) ? ringId(accountId) : accountId);
+        details.put(ConfigKey.ACCOUNT_ENABLE.key(), "true");
+        details.put(ConfigKey.ACCOUNT_DEVICE_ID.key(), accountId + "-device");
+        storeAccount(accountId, details);
+        for (int i = 0; i < contacts; i++) {
+            mContacts.get(accountId).add(contact(ringId(accountId + "-contact-" + i), true));
+        }
+        for (int i = 0; i < trustRequests; i++) {
+            mTrustRequests.get(accountId).add(trustRequest(ringId(accountId + "-request-" + i), ""));
+        }
+        return accountId;
+    }
+
+    public void simulateIncomingCall(final String accountId, final String from) {
+        final String callId;
+        synchronized (this) {
+            callId = nextId("call");
+            mCalls.put(callId, callDetails(accountId, from, SipCall.Direction.INCOMING, "INCOMING"));
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mCallCallbackHandler != null) {
+                    mCallCallbackHandler.incomingCall(accountId, callId, from);
+                }
+            }
+        });
+        callStateChanged(callId, "RINGING");
+    }
+
+    /**
+     * Delivers text messages from a peer, as fast as the callback executor accepts them
+     */
+    public void simulateMessageFlood(final String accountId, final String from, int count) {
+        for (int i = 0; i < count; i++) {
+            final Map<String, String> messages = Collections.singletonMap(MIME_TEXT_PLAIN, "message " + i);
+            signal(new Runnable() {
+                @Override
+                public void run() {
+                    if (mAccountCallbackHandler != null) {
+                        mAccountCallbackHandler.incomingAccountMessage(accountId, from, messages);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Delivers rounds of presence notifications for the given buddies, alternating online and offline
+     */
+    public void simulatePresenceFlood(final String accountId, List<String> buddies, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            final int status = round % 2 == 0 ? 1 : 0;
+            for (final String buddy : buddies) {
+                signal(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mPresenceCallbackHandler != null) {
+                            mPresenceCallbackHandler.newBuddyNotification(accountId, buddy, status, "");
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    public void simulateIncomingTrustRequest(final String accountId, final String from, final String payload) {
+        final long received;
+        synchronized (this) {
+            Map<String, String> request = trustRequest(from, payload);
+            received = Long.parseLong(request.get("received"));
+            List<Map<String, String>> requests = mTrustRequests.get(accountId);
+            if (requests != null) {
+                requests.add(request);
+            }
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.incomingTrustRequest(accountId, from, payload, received);
+                }
+            }
+        });
+    }
+
+    public void simulateRemoteHangUp(String callId) {
+        synchronized (this) {
+            mCalls.remove(callId);
+        }
+        callStateChanged(callId, "OVER");
+    }
+
+    /**
+     * @return the ids of the calls currently known by the daemon
+     */
+    public synchronized List<String> getCallIds() {
+        return new ArrayList<>(mCalls.keySet());
+    }
+
+    // Accounts
+
+    @Override
+    public synchronized List<String> getAccountList() {
+        latency();
+        return new ArrayList<>(mAccounts.keySet());
+    }
+
+    @Override
+    public synchronized Map<String, String> getAccountDetails(String accountId) {
+        latency();
+        return copy(mAccounts.get(accountId));
+    }
+
+    @Override
+    public synchronized Map<String, String> getVolatileAccountDetails(String accountId) {
+        latency();
+        return copy(mVolatileDetails.get(accountId));
+    }
+
+    @Override
+    public Map<String, String> getAccountTemplate(String accountType) {
+        latency();
+        Map<String, String> template = new HashMap<>();
+        template.put(ConfigKey.ACCOUNT_TYPE.key(), accountType);
+        template.put(ConfigKey.ACCOUNT_ENABLE.key(), "true");
+        return template;
+    }
+
+    @Override
+    public String addAccount(Map<String, String> details) {
+        latency();
+        final String accountId;
+        synchronized (this) {
+            accountId = nextId("account");
+            storeAccount(accountId, new HashMap<>(details));
+        }
+        accountsChanged();
+        registrationStateChanged(accountId, AccountConfig.STATE_REGISTERED);
+        return accountId;
+    }
+
+    @Override
+    public void removeAccount(String accountId) {
+        latency();
+        synchronized (this) {
+            mAccounts.remove(accountId);
+            mVolatileDetails.remove(accountId);
+            mDevices.remove(accountId);
+            mCredentials.remove(accountId);
+            mContacts.remove(accountId);
+            mTrustRequests.remove(accountId);
+        }
+        accountsChanged();
+    }
+
+    @Override
+    public void setAccountDetails(String accountId, Map<String, String> details) {
+        latency();
+        synchronized (this) {
+            if (!mAccounts.containsKey(accountId)) {
+                return;
+            }
+            mAccounts.put(accountId, new HashMap<>(details));
+        }
+        accountsChanged();
+    }
+
+    @Override
+    public void setAccountActive(String accountId, boolean active) {
+        latency();
+        synchronized (this) {
+            Map<String, String> volatileDetails = mVolatileDetails.get(accountId);
+            if (volatileDetails == null) {
+                return;
+            }
+            volatileDetails.put(ConfigKey.ACCOUNT_REGISTRATION_STATUS.key(),
+                    active ? AccountConfig.STATE_REGISTERED : AccountConfig.STATE_UNREGISTERED);
+        }
+        registrationStateChanged(accountId, active ? AccountConfig.STATE_REGISTERED : AccountConfig.STATE_UNREGISTERED);
+    }
+
+    @Override
+    public synchronized void setAccountsOrder(String order) {
+        latency();
+        Map<String, Map<String, String>> ordered = new LinkedHashMap<>();
+        for (String accountId : order.split("/")) {
+            Map<String, String> details = mAccounts.remove(accountId);
+            if (details != null) {
+                ordered.put(accountId, details);
+            }
+        }
+        ordered.putAll(mAccounts);
+        mAccounts.clear();
+        mAccounts.putAll(ordered);
+    }
+
+    @Override
+    public void registerAllAccounts() {
+        latency();
+    }
+
+    @Override
+    public void connectivityChanged() {
+        latency();
+    }
+
+    @Override
+    public synchronized List<Map<String, String>> getCredentials(String accountId) {
+        latency();
+        return copyList(mCredentials.get(accountId));
+    }
+
+    @Override
+    public synchronized void setCredentials(String accountId, List<Map<String, String>> credentials) {
+        latency();
+        mCredentials.put(accountId, copyList(credentials));
+    }
+
+    @Override
+    public synchronized Map<String, String> getKnownRingDevices(String accountId) {
+        latency();
+        return copy(mDevices.get(accountId));
+    }
+
+    @Override
+    public boolean revokeDevice(final String accountId, String password, final String deviceId) {
+        latency();
+        synchronized (this) {
+            Map<String, String> devices = mDevices.get(accountId);
+            if (devices == null || devices.remove(deviceId) == null) {
+                return false;
+            }
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.deviceRevocationEnded(accountId, deviceId, 0);
+                }
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public String exportOnRing(final String accountId, String password) {
+        latency();
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.exportOnRingEnded(accountId, 0, "PIN-" + accountId);
+                }
+            }
+        });
+        return "";
+    }
+
+    @Override
+    public int exportAccounts(List<String> accountIds, String toDir, String password) {
+        latency();
+        return 0;
+    }
+
+    @Override
+    public int importAccounts(String archivePath, String password) {
+        latency();
+        return 0;
+    }
+
+    @Override
+    public List<Long> getCodecList() {
+        latency();
+        return new ArrayList<>(Collections.nCopies(1, 0L));
+    }
+
+    @Override
+    public synchronized List<Long> getActiveCodecList(String accountId) {
+        latency();
+        return new ArrayList<>(mActiveCodecs);
+    }
+
+    @Override
+    public Map<String, String> getCodecDetails(String accountId, long codecId) {
+        latency();
+        Map<String, String> details = new HashMap<>();
+        details.put("CodecInfo.name", "codec-" + codecId);
+        details.put("CodecInfo.type", "AUDIO");
+        return details;
+    }
+
+    @Override
+    public synchronized void setActiveCodecList(String accountId, List<Long> codecIds) {
+        latency();
+        mActiveCodecs.clear();
+        mActiveCodecs.addAll(codecIds);
+    }
+
+    @Override
+    public Map<String, String> validateCertificatePath(String accountId, String certificatePath, String privateKeyPath,
+                                                       String privateKeyPassword, String caList) {
+        latency();
+        return new HashMap<>();
+    }
+
+    @Override
+    public Map<String, String> validateCertificate(String accountId, String certificate) {
+        latency();
+        return new HashMap<>();
+    }
+
+    @Override
+    public Map<String, String> getCertificateDetails(String certificate) {
+        latency();
+        return new HashMap<>();
+    }
+
+    @Override
+    public List<String> getSupportedTlsMethod() {
+        latency();
+        return new ArrayList<>(Collections.singletonList("Default"));
+    }
+
+    // Names
+
+    @Override
+    public boolean registerName(final String accountId, String password, final String name) {
+        latency();
+        synchronized (this) {
+            Map<String, String> details = mAccounts.get(accountId);
+            if (details == null || mNames.containsKey(name)) {
+                return false;
+            }
+            mNames.put(name, details.get(ConfigKey.ACCOUNT_USERNAME.key()));
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.nameRegistrationEnded(accountId, 0, name);
+                }
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean lookupName(final String accountId, String nameserver, final String name) {
+        latency();
+        final String address;
+        synchronized (this) {
+            address = mNames.get(name);
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.registeredNameFound(accountId, address == null ? 2 : 0,
+                            address == null ? "" : address, name);
+                }
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean lookupAddress(final String accountId, String nameserver, final String address) {
+        latency();
+        String found = null;
+        synchronized (this) {
+            for (Map.Entry<String, String> entry : mNames.entrySet()) {
+                if (entry.getValue().equals(address)) {
+                    found = entry.getKey();
+                }
+            }
+        }
+        final String name = found;
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.registeredNameFound(accountId, name == null ? 2 : 0, address,
+                            name == null ? "" : name);
+                }
+            }
+        });
+        return true;
+    }
+
+    // Contacts and trust requests
+
+    @Override
+    public synchronized List<Map<String, String>> getContacts(String accountId) {
+        latency();
+        return copyList(mContacts.get(accountId));
+    }
+
+    @Override
+    public void addContact(final String accountId, final String uri) {
+        latency();
+        synchronized (this) {
+            List<Map<String, String>> contacts = mContacts.get(accountId);
+            if (contacts == null) {
+                return;
+            }
+            removeById(contacts, "id", uri);
+            contacts.add(contact(uri, false));
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.contactAdded(accountId, uri, false);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void removeContact(final String accountId, final String uri, final boolean ban) {
+        latency();
+        synchronized (this) {
+            List<Map<String, String>> contacts = mContacts.get(accountId);
+            if (contacts == null || !removeById(contacts, "id", uri)) {
+                return;
+            }
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.contactRemoved(accountId, uri, ban);
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized List<Map<String, String>> getTrustRequests(String accountId) {
+        latency();
+        return copyList(mTrustRequests.get(accountId));
+    }
+
+    @Override
+    public boolean acceptTrustRequest(final String accountId, final String from) {
+        latency();
+        synchronized (this) {
+            List<Map<String, String>> requests = mTrustRequests.get(accountId);
+            if (requests == null || !removeById(requests, "from", from)) {
+                return false;
+            }
+            mContacts.get(accountId).add(contact(from, true));
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.contactAdded(accountId, from, true);
+                }
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public synchronized boolean discardTrustRequest(String accountId, String from) {
+        latency();
+        List<Map<String, String>> requests = mTrustRequests.get(accountId);
+        return requests != null && removeById(requests, "from", from);
+    }
+
+    @Override
+    public void sendTrustRequest(String accountId, String to, String payload) {
+        latency();
+    }
+
+    // Messages
+
+    @Override
+    public void sendTextMessage(String callId, Map<String, String> messages, String from, boolean isMixed) {
+        latency();
+    }
+
+    @Override
+    public synchronized long sendAccountTextMessage(String accountId, String to, Map<String, String> messages) {
+        latency();
+        return mNextId++;
+    }
+
+    // Calls
+
+    @Override
+    public String placeCall(String accountId, String to) {
+        latency();
+        String callId;
+        synchronized (this) {
+            if (!mAccounts.containsKey(accountId)) {
+                return "";
+            }
+            callId = nextId("call");
+            mCalls.put(callId, callDetails(accountId, to, SipCall.Direction.OUTGOING, "CONNECTING"));
+        }
+        callStateChanged(callId, "CONNECTING");
+        callStateChanged(callId, "RINGING");
+        return callId;
+    }
+
+    @Override
+    public boolean accept(String callId) {
+        return changeCallState(callId, "CURRENT");
+    }
+
+    @Override
+    public boolean refuse(String callId) {
+        return hangUp(callId);
+    }
+
+    @Override
+    public boolean hangUp(String callId) {
+        latency();
+        synchronized (this) {
+            if (mCalls.remove(callId) == null) {
+                return false;
+            }
+        }
+        callStateChanged(callId, "OVER");
+        return true;
+    }
+
+    @Override
+    public boolean hold(String callId) {
+        return changeCallState(callId, "HOLD");
+    }
+
+    @Override
+    public boolean unhold(String callId) {
+        return changeCallState(callId, "CURRENT");
+    }
+
+    @Override
+    public boolean transfer(String callId, String to) {
+        return hangUp(callId);
+    }
+
+    @Override
+    public boolean attendedTransfer(String transferId, String targetId) {
+        return hangUp(transferId);
+    }
+
+    @Override
+    public synchronized Map<String, String> getCallDetails(String callId) {
+        latency();
+        return copy(mCalls.get(callId));
+    }
+
+    @Override
+    public synchronized List<String> getCallList() {
+        latency();
+        return new ArrayList<>(mCalls.keySet());
+    }
+
+    @Override
+    public synchronized boolean muteLocalMedia(String callId, String mediaType, boolean mute) {
+        latency();
+        Map<String, String> details = mCalls.get(callId);
+        if (details == null) {
+            return false;
+        }
+        details.put("MEDIA_TYPE_VIDEO".equals(mediaType) ? "VIDEO_MUTED" : "AUDIO_MUTED", Boolean.toString(mute));
+        return true;
+    }
+
+    @Override
+    public void muteRingtone(boolean mute) {
+        latency();
+    }
+
+    @Override
+    public synchronized void muteCapture(boolean mute) {
+        latency();
+        mCaptureMuted = mute;
+    }
+
+    @Override
+    public synchronized boolean isCaptureMuted() {
+        latency();
+        return mCaptureMuted;
+    }
+
+    @Override
+    public void playDTMF(String key) {
+        latency();
+    }
+
+    @Override
+    public void setAudioPlugin(String audioPlugin) {
+        latency();
+    }
+
+    @Override
+    public String getCurrentAudioOutputPlugin() {
+        latency();
+        return "default";
+    }
+
+    @Override
+    public synchronized String getRecordPath() {
+        latency();
+        return mRecordPath;
+    }
+
+    @Override
+    public synchronized void setRecordPath(String path) {
+        latency();
+        mRecordPath = path;
+    }
+
+    @Override
+    public boolean toggleRecording(String callId) {
+        latency();
+        return true;
+    }
+
+    @Override
+    public boolean startRecordedFilePlayback(String filepath) {
+        latency();
+        return true;
+    }
+
+    @Override
+    public void stopRecordedFilePlayback(String filepath) {
+        latency();
+    }
+
+    // Conferences
+
+    @Override
+    public void removeConference(String confId) {
+        latency();
+        synchronized (this) {
+            if (mConferences.remove(confId) == null) {
+                return;
+            }
+        }
+        conferenceSignal(confId, null, true);
+    }
+
+    @Override
+    public boolean joinParticipant(String selCallId, String dragCallId) {
+        latency();
+        String confId;
+        synchronized (this) {
+            if (!mCalls.containsKey(selCallId) || !mCalls.containsKey(dragCallId)) {
+                return false;
+            }
+            confId = nextId("conf");
+            mConferences.put(confId, new ArrayList<>(java.util.Arrays.asList(selCallId, dragCallId)));
+        }
+        conferenceSignal(confId, null, false);
+        return true;
+    }
+
+    @Override
+    public boolean addParticipant(String callId, String confId) {
+        latency();
+        synchronized (this) {
+            List<String> participants = mConferences.get(confId);
+            if (participants == null || !mCalls.containsKey(callId)) {
+                return false;
+            }
+            participants.add(callId);
+        }
+        conferenceSignal(confId, "ACTIVE_ATTACHED", false);
+        return true;
+    }
+
+    @Override
+    public boolean addMainParticipant(String confId) {
+        latency();
+        synchronized (this) {
+            if (!mConferences.containsKey(confId)) {
+                return false;
+            }
+        }
+        conferenceSignal(confId, "ACTIVE_ATTACHED", false);
+        return true;
+    }
+
+    @Override
+    public boolean detachParticipant(String callId) {
+        latency();
+        String confId;
+        synchronized (this) {
+            confId = findConference(callId);
+            if (confId == null) {
+                return false;
+            }
+            mConferences.get(confId).remove(callId);
+        }
+        conferenceSignal(confId, "ACTIVE_DETACHED", false);
+        return true;
+    }
+
+    @Override
+    public boolean joinConference(String selConfId, String dragConfId) {
+        latency();
+        synchronized (this) {
+            List<String> dragged = mConferences.remove(dragConfId);
+            List<String> selected = mConferences.get(selConfId);
+            if (dragged == null || selected == null) {
+                return false;
+            }
+            selected.addAll(dragged);
+        }
+        conferenceSignal(dragConfId, null, true);
+        conferenceSignal(selConfId, "ACTIVE_ATTACHED", false);
+        return true;
+    }
+
+    @Override
+    public boolean hangUpConference(String confId) {
+        latency();
+        List<String> participants;
+        synchronized (this) {
+            participants = mConferences.remove(confId);
+            if (participants == null) {
+                return false;
+            }
+            for (String callId : participants) {
+                mCalls.remove(callId);
+            }
+        }
+        for (String callId : participants) {
+            callStateChanged(callId, "OVER");
+        }
+        conferenceSignal(confId, null, true);
+        return true;
+    }
+
+    @Override
+    public boolean holdConference(String confId) {
+        latency();
+        synchronized (this) {
+            if (!mConferences.containsKey(confId)) {
+                return false;
+            }
+        }
+        conferenceSignal(confId, "HOLD", false);
+        return true;
+    }
+
+    @Override
+    public boolean unholdConference(String confId) {
+        latency();
+        synchronized (this) {
+            if (!mConferences.containsKey(confId)) {
+                return false;
+            }
+        }
+        conferenceSignal(confId, "ACTIVE_ATTACHED", false);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isConferenceParticipant(String callId) {
+        latency();
+        return findConference(callId) != null;
+    }
+
+    @Override
+    public synchronized List<String> getParticipantList(String confId) {
+        latency();
+        List<String> participants = mConferences.get(confId);
+        return participants == null ? new ArrayList<String>() : new ArrayList<>(participants);
+    }
+
+    @Override
+    public synchronized String getConferenceId(String callId) {
+        latency();
+        String confId = findConference(callId);
+        return confId == null ? "" : confId;
+    }
+
+    @Override
+    public synchronized Map<String, String> getConferenceDetails(String confId) {
+        latency();
+        Map<String, String> details = new HashMap<>();
+        if (mConferences.containsKey(confId)) {
+            details.put("CONF_STATE", "ACTIVE_ATTACHED");
+        }
+        return details;
+    }
+
+    // Presence
+
+    @Override
+    public void publish(String accountId, boolean status, String note) {
+        latency();
+    }
+
+    @Override
+    public void answerServerRequest(String uri, boolean flag) {
+        latency();
+    }
+
+    @Override
+    public void subscribeBuddy(final String accountId, final String uri, final boolean flag) {
+        latency();
+        synchronized (this) {
+            List<Map<String, String>> subscriptions = mSubscriptions.get(accountId);
+            if (subscriptions == null) {
+                subscriptions = new ArrayList<>();
+                mSubscriptions.put(accountId, subscriptions);
+            }
+            removeById(subscriptions, "Buddy", uri);
+            if (flag) {
+                Map<String, String> subscription = new HashMap<>();
+                subscription.put("Buddy", uri);
+                subscription.put("Status", "Offline");
+                subscriptions.add(subscription);
+            }
+        }
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mPresenceCallbackHandler != null) {
+                    mPresenceCallbackHandler.subscriptionStateChanged(accountId, uri, flag ? 1 : 0);
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized List<Map<String, String>> getSubscriptions(String accountId) {
+        latency();
+        return copyList(mSubscriptions.get(accountId));
+    }
+
+    @Override
+    public void setSubscriptions(String accountId, List<String> uris) {
+        for (String uri : uris) {
+            subscribeBuddy(accountId, uri, true);
+        }
+    }
+
+    // Video
+
+    @Override
+    public void applySettings(String deviceId, Map<String, String> settings) {
+        latency();
+    }
+
+    @Override
+    public boolean switchInput(String callId, String resource) {
+        latency();
+        return true;
+    }
+
+    // Helpers
+
+    private void latency() {
+        mCallCount.incrementAndGet();
+        long latency = mLatencyNanos;
+        if (latency <= 0) {
+            return;
+        }
+        long end = System.nanoTime() + latency;
+        while (System.nanoTime() < end) {
+            Thread.yield();
+        }
+    }
+
+    private void signal(final Runnable signal) {
+        mSignalCount.incrementAndGet();
+        mCallbackExecutor.execute(InstrumentedExecutor.named("pollEvents", signal));
+    }
+
+    private void accountsChanged() {
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.accountsChanged();
+                }
+            }
+        });
+    }
+
+    private void registrationStateChanged(final String accountId, final String state) {
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccountCallbackHandler != null) {
+                    mAccountCallbackHandler.registrationStateChanged(accountId, state, 0, "");
+                }
+            }
+        });
+    }
+
+    private boolean changeCallState(String callId, String state) {
+        latency();
+        synchronized (this) {
+            Map<String, String> details = mCalls.get(callId);
+            if (details == null) {
+                return false;
+            }
+            details.put("CALL_STATE", state);
+        }
+        callStateChanged(callId, state);
+        return true;
+    }
+
+    private void callStateChanged(final String callId, final String state) {
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mCallCallbackHandler != null) {
+                    mCallCallbackHandler.callStateChanged(callId, state, 0);
+                }
+            }
+        });
+    }
+
+    private void conferenceSignal(final String confId, final String state, final boolean removed) {
+        signal(new Runnable() {
+            @Override
+            public void run() {
+                if (mConferenceCallbackHandler == null) {
+                    return;
+                }
+                if (removed) {
+                    mConferenceCallbackHandler.conferenceRemoved(confId);
+                } else if (state == null) {
+                    mConferenceCallbackHandler.conferenceCreated(confId);
+                } else {
+                    mConferenceCallbackHandler.conferenceChanged(confId, state);
+                }
+            }
+        });
+    }
+
+    private String findConference(String callId) {
+        for (Map.Entry<String, List<String>> conference : mConferences.entrySet()) {
+            if (conference.getValue().contains(callId)) {
+                return conference.getKey();
+            }
+        }
+        return null;
+    }
+
+    private void storeAccount(String accountId, Map<String, String> details) {
+        mAccounts.put(accountId, details);
+        Map<String, String> volatileDetails = new HashMap<>();
+        volatileDetails.put(ConfigKey.ACCOUNT_REGISTRATION_STATUS.key(), AccountConfig.STATE_REGISTERED);
+        mVolatileDetails.put(accountId, volatileDetails);
+        Map<String, String> devices = new HashMap<>();
+        devices.put(accountId + "-device", "fake device");
+        mDevices.put(accountId, devices);
+        mCredentials.put(accountId, new ArrayList<Map<String, String>>());
+        mContacts.put(accountId, new ArrayList<Map<String, String>>());
+        mTrustRequests.put(accountId, new ArrayList<Map<String, String>>());
+    }
+
+    private Map<String, String> callDetails(String accountId, String peer, int direction, String state) {
+        Map<String, String> details = new HashMap<>();
+        details.put("ACCOUNTID", accountId);
+        details.put("PEER_NUMBER", peer);
+        details.put("CALL_TYPE", Integer.toString(direction));
+        details.put("CALL_STATE", state);
+        return details;
+    }
+
+    private static Map<String, String> contact(String uri, boolean confirmed) {
+        Map<String, String> contact = new HashMap<>();
+        contact.put("id", uri);
+        contact.put("added", Long.toString(System.currentTimeMillis() / 1000));
+        contact.put("confirmed", Boolean.toString(confirmed));
+        return contact;
+    }
+
+    private static Map<String, String> trustRequest(String from, String payload) {
+        Map<String, String> request = new HashMap<>();
+        request.put("from", from);
+        request.put("received", Long.toString(System.currentTimeMillis() / 1000));
+        request.put("payload", payload);
+        return request;
+    }
+
+    private static boolean removeById(List<Map<String, String>> entries, String key, String id) {
+        boolean removed = false;
+        for (Iterator<Map<String, String>> it = entries.iterator(); it.hasNext(); ) {
+            if (id.equals(it.next().get(key))) {
+                it.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return a 40 hexadecimal digits Ring id derived from the seed
+     */
+    private static String ringId(String seed) {
+        StringBuilder id = new StringBuilder(40);
+        int hash = seed.hashCode();
+        while (id.length() < 40) {
+            id.append(String.format("%08x", hash));
+            hash = hash * 31 + 17;
+        }
+        return id.substring(0, 40);
+    }
+
+    private String nextId(String prefix) {
+        return prefix + "-" + mNextId++;
+    }
+
+    private static Map<String, String> copy(Map<String, String> map) {
+        return map == null ? new HashMap<String, String>() : new HashMap<>(map);
+    }
+
+    private static List<Map<String, String>> copyList(List<Map<String, String>> list) {
+        List<Map<String, String>> copy = new ArrayList<>();
+        if (list != null) {
+            for (Map<String, String> map : list) {
+                copy.add(new HashMap<>(map));
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,45 @@
+package cx.ring.services;
+
+import java.io.File;
+
+import cx.ring.daemon.IntVect;
+import cx.ring.daemon.StringVect;
+
+/**
+ * {@link DeviceRuntimeService} for the JVM, the given thread plays the daemon thread
+ */
+class FakeDeviceRuntimeService extends DeviceRuntimeService {
+
+    private final long mDaemonThreadId;
+
+    FakeDeviceRuntimeService(long daemonThreadId) {
+        mDaemonThreadId = daemonThreadId;
+    }
+
+    @Override public void loadNativeLibrary() {}
+    @Override public void updateAudioState(boolean isRinging) {}
+    @Override public void closeAudioState() {}
+    @Override public File provideFilesDir() { return new File(System.getProperty("java.io.tmpdir")); }
+    @Override public boolean isConnectedMobile() { return false; }
+    @Override public boolean isConnectedEthernet() { return true; }
+    @Override public boolean isConnectedWifi() { return false; }
+    @Override public boolean isConnectedBluetooth() { return false; }
+    @Override public long provideDaemonThreadId() { return mDaemonThreadId; }
+    @Override public boolean hasVideoPermission() { return false; }
+    @Override public boolean hasAudioPermission() { return true; }
+    @Override public boolean hasContactPermission() { return false; }
+    @Override public boolean hasCallLogPermission() { return false; }
+    @Override public boolean hasPhotoPermission() { return false; }
+    @Override public boolean hasGalleryPermission() { return false; }
+    @Override public String getProfileName() { return "benchmark"; }
+    @Override public void startRinging() {}
+    @Override public boolean isSpeakerOn() { return false; }
+    @Override public void stopRinging() {}
+    @Override public void abandonAudioFocus() {}
+    @Override public void obtainAudioFocus(boolean requesSpeakerOn) {}
+    @Override public void switchAudioToCurrentMode() {}
+    @Override public void toggleSpeakerphone() {}
+    @Override public void getHardwareAudioFormat(IntVect ret) {}
+    @Override public void getAppDataPath(String name, StringVect ret) {}
+    @Override public void getDeviceName(StringVect ret) {}
+}
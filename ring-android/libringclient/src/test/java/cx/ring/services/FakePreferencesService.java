@@ -0,0 +1,17 @@
+package cx.ring.services;
+
+import java.util.Set;
+
+import cx.ring.model.Settings;
+
+/**
+ * {@link PreferencesService} keeping the default settings
+ */
+class FakePreferencesService extends PreferencesService {
+    @Override public void saveSettings(Settings settings) {}
+    @Override public Settings loadSettings() { return new Settings(); }
+    @Override public boolean hasNetworkConnected() { return true; }
+    @Override public void saveRequestPreferences(String accountId, String contactId) {}
+    @Override public Set<String> loadRequestsPreferences(String accountId) { return null; }
+    @Override public void removeRequestPreferences(String accountId, String contactId) {}
+}
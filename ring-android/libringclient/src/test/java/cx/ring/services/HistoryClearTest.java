@@ -0,0 +1,153 @@
+package cx.ring.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.HistoryText;
+import cx.ring.model.ServiceEvent;
+import cx.ring.model.TextMessage;
+import cx.ring.model.Uri;
+import cx.ring.utils.Log;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the history is cleared in the background by bounded chunks, with its progress, and can be cancelled
+ */
+public class HistoryClearTest {
+
+    private static final int CONVERSATIONS = 10;
+    private static final int ROWS_PER_CONVERSATION = 500;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private ExecutorService mApplicationExecutor;
+    private InMemoryHistoryService mHistoryService;
+    // the service only keeps weak references to its observers
+    private Observer<ServiceEvent> mObserver;
+    // the cleared rows of the job at each HISTORY_CLEAR_PROGRESS event
+    private final List<Long> mProgress = Collections.synchronizedList(new ArrayList<Long>());
+
+    @Before
+    public void setUp() throws SQLException {
+        Log.injectLogService(new SilentLogService());
+        mApplicationExecutor = Executors.newSingleThreadExecutor();
+        mHistoryService = new InMemoryHistoryService(mApplicationExecutor);
+        HistoryFixture.fill(mHistoryService, CONVERSATIONS, ROWS_PER_CONVERSATION);
+    }
+
+    @After
+    public void tearDown() {
+        mApplicationExecutor.shutdownNow();
+    }
+
+    /**
+     * @param cancelAfter the number of cleared rows from which the job is cancelled, 0 to let it complete
+     * @return a latch released by the HISTORY_MODIFIED event ending the job
+     */
+    private CountDownLatch awaitClearing(final long cancelAfter) {
+        final CountDownLatch modified = new CountDownLatch(1);
+        mProgress.clear();
+        mObserver = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                if (event.getEventType() == ServiceEvent.EventType.HISTORY_MODIFIED) {
+                    modified.countDown();
+                    return;
+                }
+                HistoryClearJob job = event.getEventInput(ServiceEvent.EventInput.HISTORY_CLEAR_JOB, HistoryClearJob.class);
+                mProgress.add(job.getClearedRows());
+                if (cancelAfter > 0 && job.getClearedRows() >= cancelAfter) {
+                    job.cancel();
+                }
+            }
+        };
+        mHistoryService.addObserver(mObserver, ServiceEvent.EventType.HISTORY_CLEAR_PROGRESS,
+                ServiceEvent.EventType.HISTORY_MODIFIED);
+        return modified;
+    }
+
+    @Test
+    public void testClearHistoryByChunks() throws InterruptedException {
+        CountDownLatch modified = awaitClearing(0);
+        HistoryClearJob job = mHistoryService.clearHistory();
+        assertTrue(modified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertTrue(job.isDone());
+        assertFalse(job.isCancelled());
+        assertEquals(CONVERSATIONS * ROWS_PER_CONVERSATION, job.getTotalRows());
+        assertEquals(job.getTotalRows(), job.getClearedRows());
+        assertTrue(mHistoryService.getConversationSummaries().isEmpty());
+        // one event when started, one per chunk then one when done
+        for (int i = 1; i < mProgress.size(); i++) {
+            long chunk = mProgress.get(i) - mProgress.get(i - 1);
+            assertTrue(chunk <= HistoryService.CLEAR_CHUNK_SIZE);
+        }
+        assertEquals(0, (long) mProgress.get(0));
+        assertEquals(job.getTotalRows(), (long) mProgress.get(mProgress.size() - 1));
+    }
+
+    @Test
+    public void testInteractionsAfterTheJobAreKept() throws InterruptedException {
+        final CountDownLatch modified = new CountDownLatch(1);
+        final String number = HistoryFixture.getNumber(0);
+        mObserver = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                if (event.getEventType() == ServiceEvent.EventType.HISTORY_MODIFIED) {
+                    modified.countDown();
+                    return;
+                }
+                HistoryClearJob job = event.getEventInput(ServiceEvent.EventInput.HISTORY_CLEAR_JOB, HistoryClearJob.class);
+                if (job.getClearedRows() == 0 && !job.isDone()) {
+                    // a message received once the job has started
+                    TextMessage text = new TextMessage(true, "new message", new Uri(number), null, HistoryFixture.ACCOUNT);
+                    text.setID(CONVERSATIONS * ROWS_PER_CONVERSATION + 1);
+                    text.setTimestamp(job.getTime() + 1);
+                    mHistoryService.add(new HistoryText(text));
+                }
+            }
+        };
+        mHistoryService.addObserver(mObserver, ServiceEvent.EventType.HISTORY_CLEAR_PROGRESS,
+                ServiceEvent.EventType.HISTORY_MODIFIED);
+        HistoryClearJob job = mHistoryService.clearHistory();
+        assertTrue(modified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertFalse(job.isCancelled());
+        assertEquals(CONVERSATIONS * ROWS_PER_CONVERSATION, job.getTotalRows());
+        assertEquals(job.getTotalRows(), job.getClearedRows());
+        assertEquals(1, mHistoryService.countConversationRows(HistoryFixture.ACCOUNT, number, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testCancelClearHistory() throws InterruptedException {
+        CountDownLatch modified = awaitClearing(HistoryService.CLEAR_CHUNK_SIZE);
+        HistoryClearJob job = mHistoryService.clearHistory();
+        assertTrue(modified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertTrue(job.isDone());
+        assertTrue(job.isCancelled());
+        // the job stops after the first chunk, the oldest rows of the first conversation
+        assertEquals(HistoryService.CLEAR_CHUNK_SIZE, job.getClearedRows());
+        assertEquals(CONVERSATIONS, mHistoryService.getConversationSummaries().size());
+        long rows = 0;
+        for (int conversation = 0; conversation < CONVERSATIONS; conversation++) {
+            rows += mHistoryService.countConversationRows(HistoryFixture.ACCOUNT, HistoryFixture.getNumber(conversation),
+                    Long.MAX_VALUE);
+        }
+        assertEquals(CONVERSATIONS * ROWS_PER_CONVERSATION - HistoryService.CLEAR_CHUNK_SIZE, rows);
+    }
+}
@@ -0,0 +1,87 @@
+package cx.ring.services;
+
+import java.sql.SQLException;
+
+import cx.ring.model.CallContact;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.model.SipCall;
+import cx.ring.model.TextMessage;
+import cx.ring.model.Uri;
+
+/**
+ * Generates a history of conversations of the account "account" with the numbers peerN@example.org.
+ * Each row gives one interaction to every conversation, one second apart, up to the current time.
+ * One row out of {@link #CALL_RATIO} is a call, the others are text messages, incoming on the even rows.
+ */
+public class HistoryFixture {
+
+    public static final String ACCOUNT = "account";
+    public static final int CALL_RATIO = 10;
+
+    /**
+     * Receives the generated interactions, by time
+     */
+    public interface Writer {
+        void write(HistoryCall call) throws SQLException;
+
+        void write(HistoryText text) throws SQLException;
+    }
+
+    public static String getNumber(int conversation) {
+        return "peer" + conversation + "@example.org";
+    }
+
+    public static boolean isCall(int row) {
+        return row % CALL_RATIO == 0;
+    }
+
+    /**
+     * @return the id of the text message of the given row of a conversation
+     */
+    public static long getTextId(int conversations, int row, int conversation) {
+        return row * (long) conversations + conversation + 1;
+    }
+
+    public static String getMessage(int row, int conversation) {
+        return "message " + row + " of " + getNumber(conversation);
+    }
+
+    public static void generate(int conversations, int rowsPerConversation, Writer writer) throws SQLException {
+        long time = System.currentTimeMillis() - conversations * rowsPerConversation * 1000L;
+        for (int row = 0; row < rowsPerConversation; row++) {
+            for (int conversation = 0; conversation < conversations; conversation++) {
+                String number = getNumber(conversation);
+                time += 1000;
+                if (isCall(row)) {
+                    SipCall call = new SipCall("call" + row + "-" + conversation, ACCOUNT, number, SipCall.Direction.INCOMING);
+                    call.setContact(CallContact.buildUnknown(number));
+                    call.setTimestampStart(time);
+                    call.setTimestampEnd(time + 500);
+                    writer.write(new HistoryCall(call));
+                } else {
+                    TextMessage text = new TextMessage(row % 2 == 0, getMessage(row, conversation), new Uri(number),
+                            null, ACCOUNT);
+                    text.setID(getTextId(conversations, row, conversation));
+                    text.setTimestamp(time);
+                    writer.write(new HistoryText(text));
+                }
+            }
+        }
+    }
+
+    public static void fill(final InMemoryHistoryService historyService, int conversations, int rowsPerConversation)
+            throws SQLException {
+        generate(conversations, rowsPerConversation, new Writer() {
+            @Override
+            public void write(HistoryCall call) {
+                historyService.add(call);
+            }
+
+            @Override
+            public void write(HistoryText text) {
+                historyService.add(text);
+            }
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package cx.ring.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HistoryMatchQueryTest {
+
+    @Test
+    public void testMatchQuery() {
+        assertEquals("\"hello*\" \"world*\"", HistoryService.toMatchQuery(" hello  world"));
+        // operators and quotes are searched as words
+        assertEquals("\"OR*\" \"NEAR*\" \"a*\"", HistoryService.toMatchQuery("OR NEAR \"a\""));
+        assertNull(HistoryService.toMatchQuery("  \" "));
+    }
+}
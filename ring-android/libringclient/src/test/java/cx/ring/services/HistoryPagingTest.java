@@ -0,0 +1,152 @@
+package cx.ring.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.CallContact;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.model.ServiceEvent;
+import cx.ring.model.SipCall;
+import cx.ring.model.TextMessage;
+import cx.ring.model.Uri;
+import cx.ring.utils.Log;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the history pages of a conversation load each interaction once, when several share the same time
+ */
+public class HistoryPagingTest {
+
+    private static final String PEER = "peer@example.org";
+    private static final int TIMES = 5;
+    // interactions sharing each time, more than a page
+    private static final int CALLS_PER_TIME = 2;
+    private static final int TEXTS_PER_TIME = 3;
+    private static final int PAGE_SIZE = 4;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private ExecutorService mApplicationExecutor;
+    private InMemoryHistoryService mHistoryService;
+    // the service only keeps weak references to its observers
+    private Observer<ServiceEvent> mObserver;
+    private volatile ServiceEvent mEvent;
+
+    @Before
+    public void setUp() {
+        Log.injectLogService(new SilentLogService());
+        mApplicationExecutor = Executors.newSingleThreadExecutor();
+        mHistoryService = new InMemoryHistoryService(mApplicationExecutor);
+        long id = 1;
+        for (int t = 1; t <= TIMES; t++) {
+            long time = t * 1000;
+            for (int i = 0; i < CALLS_PER_TIME; i++) {
+                SipCall call = new SipCall("call" + t + "-" + i, "account", PEER, SipCall.Direction.INCOMING);
+                call.setContact(CallContact.buildUnknown(PEER));
+                call.setTimestampStart(time);
+                call.setTimestampEnd(time + 500);
+                mHistoryService.add(new HistoryCall(call));
+            }
+            for (int i = 0; i < TEXTS_PER_TIME; i++) {
+                TextMessage text = new TextMessage(true, "message " + id, new Uri(PEER), null, "account");
+                text.setID(id++);
+                text.setTimestamp(time);
+                mHistoryService.add(new HistoryText(text));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mApplicationExecutor.shutdownNow();
+    }
+
+    private CountDownLatch awaitPage() {
+        final CountDownLatch loaded = new CountDownLatch(1);
+        mObserver = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                mEvent = event;
+                loaded.countDown();
+            }
+        };
+        mHistoryService.addObserver(mObserver, ServiceEvent.EventType.HISTORY_PAGE_LOADED);
+        return loaded;
+    }
+
+    @Test
+    public void testPagesDoNotSkipSameTimeInteractions() throws InterruptedException {
+        Set<String> callIds = new HashSet<>();
+        Set<Long> textIds = new HashSet<>();
+        long before = Long.MAX_VALUE;
+        Set<String> callIdsAtBefore = new HashSet<>();
+        Set<Long> textIdsAtBefore = new HashSet<>();
+        while (true) {
+            CountDownLatch loaded = awaitPage();
+            mHistoryService.getHistoryPageAsync(Collections.singletonList(PEER), before,
+                    new HashSet<>(callIdsAtBefore), new HashSet<>(textIdsAtBefore), PAGE_SIZE);
+            assertTrue(loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            List calls = mEvent.getEventInput(ServiceEvent.EventInput.HISTORY_CALLS, ArrayList.class);
+            List texts = mEvent.getEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, ArrayList.class);
+            if (calls.isEmpty() && texts.isEmpty()) {
+                break;
+            }
+            assertTrue(calls.size() + texts.size() <= PAGE_SIZE);
+            for (Object row : calls) {
+                HistoryCall call = (HistoryCall) row;
+                assertTrue(callIds.add(String.valueOf(call.getCallId())));
+                if (call.call_start < before) {
+                    before = call.call_start;
+                    callIdsAtBefore.clear();
+                    textIdsAtBefore.clear();
+                }
+                if (call.call_start == before) {
+                    callIdsAtBefore.add(String.valueOf(call.getCallId()));
+                }
+            }
+            for (Object row : texts) {
+                HistoryText text = (HistoryText) row;
+                assertTrue(textIds.add(text.id));
+                if (text.time < before) {
+                    before = text.time;
+                    callIdsAtBefore.clear();
+                    textIdsAtBefore.clear();
+                }
+                if (text.time == before) {
+                    textIdsAtBefore.add(text.id);
+                }
+            }
+        }
+        assertEquals(TIMES * CALLS_PER_TIME, callIds.size());
+        assertEquals(TIMES * TEXTS_PER_TIME, textIds.size());
+    }
+
+    @Test
+    public void testFailedPageReported() throws InterruptedException {
+        mHistoryService.failReads(true);
+        CountDownLatch loaded = awaitPage();
+        mHistoryService.getHistoryPageAsync(Collections.singletonList(PEER), Long.MAX_VALUE,
+                Collections.<String>emptySet(), Collections.<Long>emptySet(), PAGE_SIZE);
+        assertTrue(loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(PEER), mEvent.getEventInput(ServiceEvent.EventInput.NUMBERS, ArrayList.class));
+        assertNotNull(mEvent.getString(ServiceEvent.EventInput.ERROR));
+        assertNull(mEvent.getEventInput(ServiceEvent.EventInput.HISTORY_CALLS, ArrayList.class));
+    }
+}
@@ -0,0 +1,104 @@
+package cx.ring.services;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.utils.Log;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks on SQLite that the queries run by the history service on a conversation are backed by the conversation
+ * indexes, so they do not scan the tables or sort the rows as the history grows.
+ */
+public class HistoryQueryPlanTest {
+
+    private static final String ACCOUNT = "account";
+    private static final String PEER = "ring:peer";
+    private static final int PAGE_SIZE = 50;
+
+    private static ExecutorService sApplicationExecutor;
+    private static File sDatabase;
+    private static JdbcHistoryService sHistoryService;
+    private static Connection sConnection;
+
+    @BeforeClass
+    public static void setUp() throws SQLException, IOException {
+        Log.injectLogService(new SilentLogService());
+        sApplicationExecutor = Executors.newSingleThreadExecutor();
+        sDatabase = File.createTempFile("history", ".db");
+        sHistoryService = new JdbcHistoryService(sApplicationExecutor, sDatabase);
+        sConnection = DriverManager.getConnection("jdbc:sqlite:" + sDatabase.getPath());
+    }
+
+    @AfterClass
+    public static void tearDown() throws SQLException {
+        sConnection.close();
+        sHistoryService.close();
+        sApplicationExecutor.shutdownNow();
+        assertTrue(sDatabase.delete());
+    }
+
+    /**
+     * @return the steps of the query plan of the given statement, its parameters bound to the given arguments
+     */
+    private static List<String> queryPlan(String sql, Object... args) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        PreparedStatement statement = sConnection.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+        for (int i = 0; i < args.length; i++) {
+            statement.setObject(i + 1, args[i]);
+        }
+        ResultSet result = statement.executeQuery();
+        while (result.next()) {
+            plan.add(result.getString("detail"));
+        }
+        statement.close();
+        return plan;
+    }
+
+    /**
+     * Asserts the query plan reads the given index, without scanning a table or sorting
+     */
+    private static void assertUsesIndex(String index, String sql, Object... args) throws SQLException {
+        List<String> plan = queryPlan(sql, args);
+        boolean usesIndex = false;
+        for (String step : plan) {
+            assertFalse(sql + " -> " + plan, step.startsWith("SCAN"));
+            assertFalse(sql + " -> " + plan, step.contains("TEMP B-TREE"));
+            usesIndex |= step.contains("INDEX " + index);
+        }
+        assertTrue(sql + " -> " + plan, usesIndex);
+    }
+
+    @Test
+    public void testConversationPageUsesIndex() throws SQLException {
+        assertUsesIndex(HistoryCall.CONVERSATION_INDEX_NAME,
+                sHistoryService.prepareCallsQuery(ACCOUNT, PEER, Long.MAX_VALUE, PAGE_SIZE).getStatement());
+        assertUsesIndex(HistoryText.CONVERSATION_INDEX_NAME,
+                sHistoryService.prepareTextMessagesQuery(ACCOUNT, PEER, Long.MAX_VALUE, PAGE_SIZE).getStatement());
+    }
+
+    @Test
+    public void testTrimUsesIndex() throws SQLException {
+        assertUsesIndex(HistoryCall.CONVERSATION_INDEX_NAME, HistoryCall.DELETE_OLDEST_QUERY, PEER, ACCOUNT,
+                Long.MAX_VALUE, PAGE_SIZE);
+        assertUsesIndex(HistoryText.CONVERSATION_INDEX_NAME, HistoryText.DELETE_OLDEST_QUERY, PEER, ACCOUNT,
+                Long.MAX_VALUE, PAGE_SIZE);
+    }
+}
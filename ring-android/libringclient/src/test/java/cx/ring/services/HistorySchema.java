@@ -0,0 +1,79 @@
+package cx.ring.services;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates the history database on a JDBC connection as the DatabaseHelper of the application does,
+ * the tables of the version 8 then the migrations to the current version
+ */
+class HistorySchema {
+
+    /**
+     * The version of the database created by the DatabaseHelper of the application
+     */
+    static final int VERSION = HistoryMigrations.VERSION;
+
+    // the tables as created by ormlite and the migrations up to the version 8
+    private static final String[] SCHEMA_V8 = {
+            "CREATE TABLE `historycall` (`accountID` VARCHAR , `callID` VARCHAR , `call_end` BIGINT , " +
+                    "`TIMESTAMP_START` BIGINT , `contactID` BIGINT , `contactKey` VARCHAR , `direction` INTEGER , " +
+                    "`missed` SMALLINT , `number` VARCHAR , `recordPath` VARCHAR ) ;",
+            "CREATE INDEX `historycall_TIMESTAMP_START_idx` ON `historycall` ( `TIMESTAMP_START` );",
+            "CREATE TABLE `historytext` (`accountID` VARCHAR , `callID` VARCHAR , `contactID` BIGINT , " +
+                    "`contactKey` VARCHAR , `direction` INTEGER , `id` BIGINT , `message` VARCHAR , `number` VARCHAR , " +
+                    "`read` SMALLINT , `TIMESTAMP` BIGINT , `state` VARCHAR , PRIMARY KEY (`id`) );",
+            "CREATE INDEX `historytext_TIMESTAMP_idx` ON `historytext` ( `TIMESTAMP` );",
+            "CREATE INDEX `historytext_id_idx` ON `historytext` ( `id` );"
+    };
+
+    static void createVersion8(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        for (String sql : SCHEMA_V8) {
+            statement.execute(sql);
+        }
+        statement.close();
+    }
+
+    /**
+     * Runs the migrations from the given version to the current one
+     */
+    static void upgrade(Connection connection, int fromVersion) throws SQLException {
+        Statement statement = connection.createStatement();
+        while (fromVersion < VERSION) {
+            for (String sql : HistoryMigrations.getUpgradeStatements(fromVersion)) {
+                statement.execute(sql);
+            }
+            fromVersion++;
+        }
+        statement.close();
+    }
+
+    /**
+     * Creates or upgrades the database to the current version, the version is kept in the user_version
+     * of the database as SQLiteOpenHelper does
+     */
+    static void open(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet result = statement.executeQuery("PRAGMA user_version;");
+        int version = result.next() ? result.getInt(1) : 0;
+        result.close();
+        if (version < VERSION) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            if (version == 0) {
+                createVersion8(connection);
+                version = 8;
+            } else if (version < 8) {
+                throw new SQLException("Can't upgrade the history database from the version " + version);
+            }
+            upgrade(connection, version);
+            statement.execute("PRAGMA user_version = " + VERSION + ";");
+            connection.commit();
+            connection.setAutoCommit(autoCommit);
+        }
+        statement.close();
+    }
+}
@@ -0,0 +1,54 @@
+package cx.ring.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the time of a page of the full-text search of the text messages on SQLite,
+ * over the generated history of {@link HistorySearchTest}
+ */
+public class HistorySearchBenchmark {
+
+    private static final int QUERIES = 200;
+
+    private Connection mConnection;
+    private final List<String> mWords = new ArrayList<>();
+
+    @Before
+    public void setUp() throws SQLException {
+        mConnection = HistorySearchTest.createDatabase(mWords);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mConnection.close();
+    }
+
+    @Test
+    public void benchmarkSearch() throws SQLException {
+        Random random = new Random(7);
+        // warm up
+        for (int i = 0; i < 20; i++) {
+            HistorySearchTest.search(mConnection, mWords.get(random.nextInt(HistorySearchTest.WORDS)), Long.MAX_VALUE);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            String word = mWords.get(random.nextInt(HistorySearchTest.WORDS));
+            // half of the queries on a prefix, matching more messages
+            HistorySearchTest.search(mConnection, i % 2 == 0 ? word : word.substring(0, 3), Long.MAX_VALUE);
+        }
+        double ms = (System.nanoTime() - start) / 1e6 / QUERIES;
+        System.out.println(String.format("search over %d messages: %.2f ms per page of %d",
+                HistorySearchTest.MESSAGES, ms, HistorySearchTest.PAGE_SIZE));
+        assertTrue(ms < 50);
+    }
+}
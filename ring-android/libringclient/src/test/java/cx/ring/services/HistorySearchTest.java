@@ -0,0 +1,136 @@
+package cx.ring.services;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cx.ring.model.HistoryText;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the full-text search of the text messages on SQLite, over a generated history of 200k messages
+ */
+public class HistorySearchTest {
+
+    static final int MESSAGES = 200000;
+    static final int WORDS = 20000;
+    static final int PAGE_SIZE = 50;
+    private static final int CONVERSATIONS = 500;
+    // a word only written in the messages multiple of RARE_PERIOD
+    private static final String RARE_WORD = "kumquat";
+    private static final int RARE_PERIOD = 10000;
+
+    private static Connection sConnection;
+
+    @BeforeClass
+    public static void setUp() throws SQLException {
+        sConnection = createDatabase(new ArrayList<String>());
+    }
+
+    @AfterClass
+    public static void tearDown() throws SQLException {
+        sConnection.close();
+    }
+
+    /**
+     * @param words receives the random words of the messages
+     * @return an in-memory history database of MESSAGES text messages made of 8 random words
+     */
+    static Connection createDatabase(List<String> words) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        HistorySchema.createVersion8(connection);
+        HistorySchema.upgrade(connection, 8);
+
+        Random random = new Random(42);
+        for (int i = 0; i < WORDS; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int j = 3 + random.nextInt(6); j > 0; j--) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(word.toString());
+        }
+        connection.setAutoCommit(false);
+        PreparedStatement insert = connection.prepareStatement("INSERT INTO `historytext` "
+                + "(`id`, `TIMESTAMP`, `accountID`, `number`, `message`, `state`) VALUES (?, ?, 'account', ?, ?, 'SENT')");
+        for (int i = 0; i < MESSAGES; i++) {
+            StringBuilder message = new StringBuilder(i % RARE_PERIOD == 0 ? RARE_WORD : "");
+            for (int j = 0; j < 8; j++) {
+                message.append(' ').append(words.get(random.nextInt(WORDS)));
+            }
+            insert.setLong(1, i + 1);
+            insert.setLong(2, i * 1000L);
+            insert.setString(3, "peer" + (i % CONVERSATIONS) + "@example.org");
+            insert.setString(4, message.toString());
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        insert.close();
+        connection.commit();
+        connection.setAutoCommit(true);
+        return connection;
+    }
+
+    /**
+     * @return the times of the page of messages matching the query sent at or before the given time
+     */
+    static List<Long> search(Connection connection, String query, long before) throws SQLException {
+        List<Long> hits = new ArrayList<>();
+        PreparedStatement statement = connection.prepareStatement(HistoryText.SEARCH_QUERY);
+        statement.setString(1, HistoryService.toMatchQuery(query));
+        statement.setLong(2, before);
+        statement.setInt(3, PAGE_SIZE);
+        ResultSet result = statement.executeQuery();
+        while (result.next()) {
+            hits.add(result.getLong(HistoryText.COLUMN_TIMESTAMP_NAME));
+        }
+        statement.close();
+        return hits;
+    }
+
+    private static void execute(String sql) throws SQLException {
+        Statement statement = sConnection.createStatement();
+        statement.execute(sql);
+        statement.close();
+    }
+
+    @Test
+    public void testSearchPages() throws SQLException {
+        List<Long> hits = search(sConnection, RARE_WORD, Long.MAX_VALUE);
+        assertEquals(MESSAGES / RARE_PERIOD, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals((MESSAGES - RARE_PERIOD * (i + 1)) * 1000L, (long) hits.get(i));
+        }
+        // the prefix of the word, and the page before the fifth hit
+        List<Long> page = search(sConnection, RARE_WORD.substring(0, 5), hits.get(4));
+        assertEquals(hits.subList(5, hits.size()), page);
+    }
+
+    @Test
+    public void testIndexFollowsUpdatesAndDeletions() throws SQLException {
+        // a message of its own, the generated ones are shared by the tests
+        long id = MESSAGES + 1;
+        assertTrue(search(sConnection, "pomegranate", Long.MAX_VALUE).isEmpty());
+        execute("INSERT INTO `historytext` (`id`, `TIMESTAMP`, `accountID`, `number`, `message`, `state`) "
+                + "VALUES (" + id + ", 0, 'account', 'peer0@example.org', 'a quince', 'SENT')");
+        execute("UPDATE `historytext` SET `message` = 'a pomegranate' WHERE `id` = " + id);
+        assertEquals(1, search(sConnection, "pomegranate", Long.MAX_VALUE).size());
+        // status updates rewrite the whole row, the message is not indexed twice
+        execute("UPDATE `historytext` SET `state` = 'READ', `message` = 'a pomegranate' WHERE `id` = " + id);
+        assertEquals(1, search(sConnection, "pomegranate", Long.MAX_VALUE).size());
+        execute("DELETE FROM `historytext` WHERE `id` = " + id);
+        assertTrue(search(sConnection, "pomegranate", Long.MAX_VALUE).isEmpty());
+        assertTrue(search(sConnection, "quince", Long.MAX_VALUE).isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+package cx.ring.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.services.HistoryWriteQueueTest.Insert;
+import cx.ring.services.HistoryWriteQueueTest.RecordingWriter;
+import cx.ring.utils.Log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the insert rate of a burst of messages through the history write queue, against one
+ * transaction per message, with a writer simulating the cost of a database transaction.
+ */
+public class HistoryWriteQueueBenchmark {
+
+    private static final int BURST = 1000;
+
+    @Before
+    public void setUp() {
+        Log.injectLogService(new SilentLogService());
+    }
+
+    /**
+     * @return the burst insert rate in messages per second, each message written in its own transaction
+     */
+    private static double insertBurstDirect() throws SQLException {
+        RecordingWriter writer = new RecordingWriter();
+        long start = System.nanoTime();
+        for (int i = 0; i < BURST; i++) {
+            writer.write(Collections.<HistoryWriteQueue.Write>singletonList(new Insert(writer.mCommitted, i)));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(BURST, writer.mCommitted.size());
+        System.out.println(String.format("direct: %d messages in %d transactions, %.0f messages/s",
+                BURST, BURST, BURST / seconds));
+        return BURST / seconds;
+    }
+
+    /**
+     * @return the burst insert rate in messages per second, up to the commit of the last message
+     */
+    private static double insertBurstQueued() throws InterruptedException {
+        RecordingWriter writer = new RecordingWriter();
+        HistoryWriteQueue queue = new HistoryWriteQueue(writer, HistoryService.WRITE_BATCH_SIZE,
+                HistoryService.WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        for (int i = 0; i < BURST; i++) {
+            queue.add(new Insert(writer.mCommitted, i));
+        }
+        HistoryWriteQueueTest.awaitWrites(queue, BURST);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(BURST, writer.mCommitted.size());
+        System.out.println(String.format("queued: %d messages in %d transactions, %.0f messages/s",
+                BURST, queue.getBatchCount(), BURST / seconds));
+        return BURST / seconds;
+    }
+
+    @Test
+    public void benchmarkBurstInsertRate() throws Exception {
+        double direct = insertBurstDirect();
+        double queued = insertBurstQueued();
+        assertTrue(queued > direct * 5);
+    }
+}
@@ -0,0 +1,148 @@
+package cx.ring.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.HistoryText;
+import cx.ring.model.ServiceEvent;
+import cx.ring.model.TextMessage;
+import cx.ring.model.Uri;
+import cx.ring.utils.Log;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the ordering and read-your-writes guarantees of the history write queue,
+ * and that a failing write does not lose the other writes of its batch.
+ */
+public class HistoryWriteQueueTest {
+
+    // cost of a commit (journal sync) and of a row, close to what SQLite shows on flash storage
+    private static final long TRANSACTION_COST_NS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long ROW_COST_NS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    /**
+     * Records the committed writes, spinning for the cost of each transaction
+     */
+    static class RecordingWriter implements HistoryWriteQueue.BatchWriter {
+        final List<Integer> mCommitted = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> mBatchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public void write(List<HistoryWriteQueue.Write> batch) throws SQLException {
+            long end = System.nanoTime() + TRANSACTION_COST_NS + ROW_COST_NS * batch.size();
+            for (HistoryWriteQueue.Write write : batch) {
+                write.apply();
+            }
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+            mBatchSizes.add(batch.size());
+        }
+    }
+
+    static class Insert implements HistoryWriteQueue.Write {
+        private final List<Integer> mTable;
+        private final int mId;
+
+        Insert(List<Integer> table, int id) {
+            mTable = table;
+            mId = id;
+        }
+
+        @Override
+        public void apply() {
+            mTable.add(mId);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Log.injectLogService(new SilentLogService());
+    }
+
+    static void awaitWrites(HistoryWriteQueue queue, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (queue.getWriteCount() < count) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testWritesAreCommittedInOrder() throws InterruptedException {
+        RecordingWriter writer = new RecordingWriter();
+        HistoryWriteQueue queue = new HistoryWriteQueue(writer, 10, 5, TimeUnit.MILLISECONDS);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            queue.add(new Insert(writer.mCommitted, i));
+            expected.add(i);
+        }
+        awaitWrites(queue, 95);
+        assertEquals(expected, writer.mCommitted);
+        for (int size : writer.mBatchSizes) {
+            assertTrue(size <= 10);
+        }
+    }
+
+    @Test
+    public void testFlushGivesReadYourWrites() {
+        RecordingWriter writer = new RecordingWriter();
+        // the delay is long enough for the writes to be pending when flushed
+        HistoryWriteQueue queue = new HistoryWriteQueue(writer, 100, 10, TimeUnit.SECONDS);
+        queue.add(new Insert(writer.mCommitted, 1));
+        queue.add(new Insert(writer.mCommitted, 2));
+        assertEquals(2, queue.getPendingCount());
+        assertTrue(writer.mCommitted.isEmpty());
+
+        queue.flush();
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(2, writer.mCommitted.size());
+        assertEquals(1, queue.getBatchCount());
+    }
+
+    @Test
+    public void testFailedWriteDoesNotLoseBatch() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            InMemoryHistoryService historyService = new InMemoryHistoryService(executor);
+            final List<HistoryText> modified = new ArrayList<>();
+            Observer<ServiceEvent> observer = new Observer<ServiceEvent>() {
+                @Override
+                public void update(Observable observable, ServiceEvent event) {
+                    modified.addAll(event.getEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, ArrayList.class));
+                }
+            };
+            historyService.addObserver(observer, ServiceEvent.EventType.HISTORY_MODIFIED);
+            historyService.failTextInsert(3);
+            for (int id = 1; id <= 5; id++) {
+                TextMessage text = new TextMessage(true, "message " + id, new Uri("peer@example.org"), null, "account");
+                text.setID(id);
+                historyService.insertNewTextMessage(text);
+            }
+            historyService.flushPendingWrites();
+
+            // the batch failed as a whole, its other writes are committed one by one
+            for (int id = 1; id <= 5; id++) {
+                assertEquals(id != 3, historyService.getTextMessage(id) != null);
+            }
+            assertEquals(4, modified.size());
+            for (HistoryText text : modified) {
+                assertTrue(text.id != 3);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package cx.ring.services;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import cx.ring.model.ConversationSummary;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.model.TextMessage;
+
+/**
+ * {@link HistoryService} answering the history queries from memory, rows are per number and sorted by time,
+ * the conversation summaries are computed on each query.
+ * The rows are added with {@link #add(HistoryCall)} and {@link #add(HistoryText)} or the queued history writes,
+ * and deleted by conversation, oldest first, as the history is cleared.
+ */
+public class InMemoryHistoryService extends HistoryService {
+
+    private final Map<String, List<HistoryCall>> mCalls = new HashMap<>();
+    private final Map<String, List<HistoryText>> mTexts = new HashMap<>();
+    private final Map<Long, HistoryText> mTextsById = new HashMap<>();
+    private final List<String> mNumbers = new ArrayList<>();
+    private int mQueryCount = 0;
+    // the rows inserted by the transaction being run, removed if it fails
+    private List<Object> mTransactionInserts = null;
+    private long mFailingTextId = -1;
+    private boolean mFailingReads = false;
+
+    public InMemoryHistoryService(ExecutorService executor) {
+        mApplicationExecutor = executor;
+    }
+
+    @Override
+    protected ConnectionSource getConnectionSource() {
+        return null;
+    }
+
+    @Override
+    protected Dao<HistoryCall, Integer> getCallHistoryDao() {
+        return null;
+    }
+
+    @Override
+    protected Dao<HistoryText, Long> getTextHistoryDao() {
+        return null;
+    }
+
+    @Override
+    protected Dao<ConversationSummary, Integer> getConversationSummaryDao() {
+        return null;
+    }
+
+    /**
+     * Adds a call, calls must be added by start time for each number
+     */
+    public synchronized void add(HistoryCall call) {
+        List<HistoryCall> calls = mCalls.get(call.getNumber());
+        if (calls == null) {
+            calls = new ArrayList<>();
+            mCalls.put(call.getNumber(), calls);
+            addNumber(call.getNumber());
+        }
+        calls.add(call);
+    }
+
+    /**
+     * Adds a text message, texts must be added by time for each number
+     */
+    public synchronized void add(HistoryText text) {
+        List<HistoryText> texts = mTexts.get(text.getNumber());
+        if (texts == null) {
+            texts = new ArrayList<>();
+            mTexts.put(text.getNumber(), texts);
+            addNumber(text.getNumber());
+        }
+        texts.add(text);
+        mTextsById.put(text.id, text);
+    }
+
+    private void addNumber(String number) {
+        if (!mNumbers.contains(number)) {
+            mNumbers.add(number);
+        }
+    }
+
+    /**
+     * Makes the inserts of the text message with the given id fail, as a constraint violation would
+     */
+    public synchronized void failTextInsert(long id) {
+        mFailingTextId = id;
+    }
+
+    /**
+     * Makes the reads of the history accounts of a number fail, as a locked or corrupted database would
+     */
+    public synchronized void failReads(boolean failing) {
+        mFailingReads = failing;
+    }
+
+    /**
+     * Runs the writes, the rows they inserted are removed if they fail, the updates are kept
+     */
+    @Override
+    protected synchronized <T> T callInTransaction(Callable<T> writes) throws SQLException {
+        mTransactionInserts = new ArrayList<>();
+        try {
+            return writes.call();
+        } catch (SQLException e) {
+            rollbackInserts();
+            throw e;
+        } catch (Exception e) {
+            rollbackInserts();
+            throw new SQLException(e);
+        } finally {
+            mTransactionInserts = null;
+        }
+    }
+
+    private void rollbackInserts() {
+        for (int i = mTransactionInserts.size() - 1; i >= 0; i--) {
+            Object row = mTransactionInserts.get(i);
+            if (row instanceof HistoryCall) {
+                HistoryCall call = (HistoryCall) row;
+                List<HistoryCall> calls = mCalls.get(call.getNumber());
+                calls.remove(calls.lastIndexOf(call));
+            } else {
+                HistoryText text = (HistoryText) row;
+                List<HistoryText> texts = mTexts.get(text.getNumber());
+                texts.remove(texts.lastIndexOf(text));
+                mTextsById.remove(text.id);
+            }
+        }
+    }
+
+    @Override
+    protected synchronized void insertCall(HistoryCall call) {
+        add(call);
+        if (mTransactionInserts != null) {
+            mTransactionInserts.add(call);
+        }
+    }
+
+    @Override
+    protected synchronized void insertText(HistoryText txt) throws SQLException {
+        if (txt.id == mFailingTextId) {
+            throw new SQLException("UNIQUE constraint failed: historytext.id");
+        }
+        add(txt);
+        if (mTransactionInserts != null) {
+            mTransactionInserts.add(txt);
+        }
+    }
+
+    @Override
+    protected synchronized void updateText(HistoryText txt) {
+        List<HistoryText> texts = mTexts.get(txt.getNumber());
+        if (texts == null) {
+            return;
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            if (texts.get(i).id == txt.id) {
+                texts.set(i, txt);
+                mTextsById.put(txt.id, txt);
+            }
+        }
+    }
+
+    @Override
+    protected synchronized boolean updateTextStatus(String accountId, long messageId, TextMessage.Status status) {
+        HistoryText text = mTextsById.get(messageId);
+        if (text == null || !accountId.equals(text.getAccountID())) {
+            return false;
+        }
+        TextMessage message = new TextMessage(text);
+        message.setStatus(status);
+        updateText(new HistoryText(message));
+        return true;
+    }
+
+    /**
+     * @return the stored text message with the given id, null if none
+     */
+    public synchronized HistoryText getTextMessage(long id) {
+        return mTextsById.get(id);
+    }
+
+    /**
+     * @return the number of history queries answered
+     */
+    public synchronized int getQueryCount() {
+        return mQueryCount;
+    }
+
+    @Override
+    protected synchronized List<ConversationSummary> getConversationSummaries() {
+        mQueryCount++;
+        List<ConversationSummary> summaries = new ArrayList<>();
+        for (String number : mNumbers) {
+            Map<String, ConversationSummary> accountSummaries = new HashMap<>();
+            List<HistoryText> texts = mTexts.get(number);
+            if (texts != null) {
+                for (HistoryText text : texts) {
+                    ConversationSummary summary = getSummary(accountSummaries, text.getAccountID(), number,
+                            text.getContactID(), text.getContactKey());
+                    if (summary.getDate().getTime() <= text.time) {
+                        summary.setLastText(new TextMessage(text));
+                    }
+                    if (!text.isRead()) {
+                        summary.setUnreadCount(summary.getUnreadCount() + 1);
+                    }
+                }
+            }
+            List<HistoryCall> calls = mCalls.get(number);
+            if (calls != null) {
+                for (HistoryCall call : calls) {
+                    ConversationSummary summary = getSummary(accountSummaries, call.getAccountID(), number,
+                            call.getContactID(), call.getContactKey());
+                    if (summary.getDate().getTime() <= call.call_end) {
+                        summary.setLastCall(call);
+                    }
+                }
+            }
+            summaries.addAll(accountSummaries.values());
+        }
+        Collections.sort(summaries, new Comparator<ConversationSummary>() {
+            @Override
+            public int compare(ConversationSummary lhs, ConversationSummary rhs) {
+                return rhs.getDate().compareTo(lhs.getDate());
+            }
+        });
+        return summaries;
+    }
+
+    private static ConversationSummary getSummary(Map<String, ConversationSummary> accountSummaries, String accountId,
+                                                  String number, long contactId, String contactKey) {
+        ConversationSummary summary = accountSummaries.get(accountId);
+        if (summary == null) {
+            summary = new ConversationSummary(accountId, number, contactId, contactKey, -1);
+            accountSummaries.put(accountId, summary);
+        }
+        return summary;
+    }
+
+    @Override
+    protected synchronized List<String> getHistoryAccounts(String number) throws SQLException {
+        if (mFailingReads) {
+            throw new SQLException("database is locked");
+        }
+        mQueryCount++;
+        Set<String> accounts = new LinkedHashSet<>();
+        List<HistoryCall> calls = mCalls.get(number);
+        if (calls != null) {
+            for (HistoryCall call : calls) {
+                accounts.add(call.getAccountID());
+            }
+        }
+        List<HistoryText> texts = mTexts.get(number);
+        if (texts != null) {
+            for (HistoryText text : texts) {
+                accounts.add(text.getAccountID());
+            }
+        }
+        return new ArrayList<>(accounts);
+    }
+
+    @Override
+    protected synchronized long countConversationRows(String accountId, String number, long before) {
+        mQueryCount++;
+        long count = 0;
+        List<HistoryCall> calls = mCalls.get(number);
+        if (calls != null) {
+            for (HistoryCall call : calls) {
+                if (accountId.equals(call.getAccountID()) && call.call_start <= before) {
+                    count++;
+                }
+            }
+        }
+        List<HistoryText> texts = mTexts.get(number);
+        if (texts != null) {
+            for (HistoryText text : texts) {
+                if (accountId.equals(text.getAccountID()) && text.time <= before) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    protected synchronized int deleteOldestTexts(String accountId, String number, long before, int count) {
+        mQueryCount++;
+        List<HistoryText> texts = mTexts.get(number);
+        int deleted = 0;
+        if (texts == null) {
+            return deleted;
+        }
+        Iterator<HistoryText> it = texts.iterator();
+        while (it.hasNext() && deleted < count) {
+            HistoryText text = it.next();
+            if (accountId.equals(text.getAccountID()) && text.time <= before) {
+                it.remove();
+                mTextsById.remove(text.id);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    protected synchronized int deleteOldestCalls(String accountId, String number, long before, int count) {
+        mQueryCount++;
+        List<HistoryCall> calls = mCalls.get(number);
+        int deleted = 0;
+        if (calls == null) {
+            return deleted;
+        }
+        Iterator<HistoryCall> it = calls.iterator();
+        while (it.hasNext() && deleted < count) {
+            HistoryCall call = it.next();
+            if (accountId.equals(call.getAccountID()) && call.call_start <= before) {
+                it.remove();
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    protected synchronized List<HistoryCall> getCalls(String accountId, String number, long before, int count) {
+        mQueryCount++;
+        List<HistoryCall> calls = mCalls.get(number);
+        List<HistoryCall> page = new ArrayList<>();
+        if (calls == null) {
+            return page;
+        }
+        for (int i = calls.size() - 1; i >= 0 && page.size() < count; i--) {
+            if (calls.get(i).call_start <= before && accountId.equals(calls.get(i).getAccountID())) {
+                page.add(calls.get(i));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    protected synchronized List<HistoryText> getTextMessages(String accountId, String number, long before, int count) {
+        mQueryCount++;
+        List<HistoryText> texts = mTexts.get(number);
+        List<HistoryText> page = new ArrayList<>();
+        if (texts == null) {
+            return page;
+        }
+        for (int i = texts.size() - 1; i >= 0 && page.size() < count; i--) {
+            if (texts.get(i).time <= before && accountId.equals(texts.get(i).getAccountID())) {
+                page.add(texts.get(i));
+            }
+        }
+        return page;
+    }
+}
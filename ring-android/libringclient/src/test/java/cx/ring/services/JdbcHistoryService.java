@@ -0,0 +1,79 @@
+package cx.ring.services;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+
+import cx.ring.model.ConversationSummary;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.utils.Log;
+
+/**
+ * {@link HistoryService} on a SQLite database file through ormlite-jdbc, with the schema and the DAOs of the
+ * application, to run and profile the history queries, loading and search on the JVM with realistic data sizes.
+ * The database is created or upgraded as the DatabaseHelper of the application does, see {@link HistorySchema}.
+ */
+public class JdbcHistoryService extends HistoryService {
+
+    private static final String TAG = JdbcHistoryService.class.getSimpleName();
+
+    private final JdbcPooledConnectionSource mConnectionSource;
+    private final Dao<HistoryCall, Integer> mCallHistoryDao;
+    private final Dao<HistoryText, Long> mTextHistoryDao;
+    private final Dao<ConversationSummary, Integer> mConversationSummaryDao;
+
+    public JdbcHistoryService(ExecutorService executor, File database) throws SQLException {
+        mApplicationExecutor = executor;
+        String url = "jdbc:sqlite:" + database.getPath();
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            HistorySchema.open(connection);
+        } finally {
+            connection.close();
+        }
+        mConnectionSource = new JdbcPooledConnectionSource(url);
+        mCallHistoryDao = DaoManager.createDao(mConnectionSource, HistoryCall.class);
+        mTextHistoryDao = DaoManager.createDao(mConnectionSource, HistoryText.class);
+        mConversationSummaryDao = DaoManager.createDao(mConnectionSource, ConversationSummary.class);
+    }
+
+    @Override
+    protected ConnectionSource getConnectionSource() {
+        return mConnectionSource;
+    }
+
+    @Override
+    protected Dao<HistoryCall, Integer> getCallHistoryDao() {
+        return mCallHistoryDao;
+    }
+
+    @Override
+    protected Dao<HistoryText, Long> getTextHistoryDao() {
+        return mTextHistoryDao;
+    }
+
+    @Override
+    protected Dao<ConversationSummary, Integer> getConversationSummaryDao() {
+        return mConversationSummaryDao;
+    }
+
+    /**
+     * Commits the queued writes and closes the database connections
+     */
+    public void close() {
+        flushPendingWrites();
+        try {
+            mConnectionSource.close();
+        } catch (Exception e) {
+            Log.e(TAG, "Error while closing the history database", e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package cx.ring.services;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.ConversationSummary;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.model.ServiceEvent;
+import cx.ring.model.TextMessage;
+import cx.ring.utils.Log;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the history service on a SQLite database file over the generated history of
+ * {@link JdbcHistoryServiceTest}: loading of the newest interactions, paging of a conversation, search,
+ * conversation summaries, a burst of delivery status updates and the clearing of the history.
+ */
+public class JdbcHistoryServiceBenchmark {
+
+    private static final int CONVERSATIONS = JdbcHistoryServiceTest.CONVERSATIONS;
+    private static final int ROWS_PER_CONVERSATION = JdbcHistoryServiceTest.ROWS_PER_CONVERSATION;
+    private static final String PEER = JdbcHistoryServiceTest.PEER;
+    private static final long TIMEOUT_SECONDS = JdbcHistoryServiceTest.TIMEOUT_SECONDS;
+
+    private static File sHistory;
+
+    private ExecutorService mApplicationExecutor;
+    private File mDatabase;
+    private JdbcHistoryService mHistoryService;
+    // the service only keeps weak references to its observers
+    private Observer<ServiceEvent> mObserver;
+    private ServiceEvent mEvent;
+
+    @BeforeClass
+    public static void createHistory() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        long start = System.nanoTime();
+        sHistory = JdbcHistoryServiceTest.createDatabase();
+        System.out.println(String.format("%d rows written in %.1f s", CONVERSATIONS * ROWS_PER_CONVERSATION,
+                (System.nanoTime() - start) / 1e9));
+    }
+
+    @AfterClass
+    public static void deleteHistory() {
+        assertTrue(sHistory.delete());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        mApplicationExecutor = Executors.newFixedThreadPool(2);
+        mDatabase = JdbcHistoryServiceTest.copyDatabase(sHistory);
+        mHistoryService = new JdbcHistoryService(mApplicationExecutor, mDatabase);
+    }
+
+    @After
+    public void tearDown() {
+        mHistoryService.close();
+        mApplicationExecutor.shutdownNow();
+        assertTrue(mDatabase.delete());
+    }
+
+    private CountDownLatch awaitEvent(ServiceEvent.EventType type) {
+        final CountDownLatch received = new CountDownLatch(1);
+        if (mObserver != null) {
+            mHistoryService.removeObserver(mObserver);
+        }
+        mEvent = null;
+        mObserver = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                mEvent = event;
+                received.countDown();
+            }
+        };
+        mHistoryService.addObserver(mObserver, type);
+        return received;
+    }
+
+    private static List rows(ServiceEvent event, ServiceEvent.EventInput input) {
+        return event.getEventInput(input, ArrayList.class);
+    }
+
+    @Test
+    public void benchmarkLoadHistory() throws InterruptedException {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            CountDownLatch loaded = awaitEvent(ServiceEvent.EventType.HISTORY_LOADED);
+            long start = System.nanoTime();
+            mHistoryService.getCallAndTextAsync();
+            assertTrue(loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        System.out.println(String.format("newest %d interactions of %d conversations loaded in %.1f ms",
+                HistoryService.HISTORY_PAGE_SIZE, CONVERSATIONS, best));
+    }
+
+    @Test
+    public void benchmarkLoadHistoryPages() throws InterruptedException {
+        long before = Long.MAX_VALUE;
+        Set<String> callIdsAtBefore = new HashSet<>();
+        Set<Long> textIdsAtBefore = new HashSet<>();
+        int rows = 0;
+        int pages = 0;
+        long start = System.nanoTime();
+        while (true) {
+            CountDownLatch loaded = awaitEvent(ServiceEvent.EventType.HISTORY_PAGE_LOADED);
+            mHistoryService.getHistoryPageAsync(Collections.singletonList(PEER), before,
+                    new HashSet<>(callIdsAtBefore), new HashSet<>(textIdsAtBefore), HistoryService.HISTORY_PAGE_SIZE);
+            assertTrue(loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            List calls = rows(mEvent, ServiceEvent.EventInput.HISTORY_CALLS);
+            List texts = rows(mEvent, ServiceEvent.EventInput.HISTORY_TEXTS);
+            if (calls.isEmpty() && texts.isEmpty()) {
+                break;
+            }
+            for (Object row : calls) {
+                HistoryCall call = (HistoryCall) row;
+                if (call.call_start < before) {
+                    before = call.call_start;
+                    callIdsAtBefore.clear();
+                    textIdsAtBefore.clear();
+                }
+                if (call.call_start == before) {
+                    callIdsAtBefore.add(String.valueOf(call.getCallId()));
+                }
+            }
+            for (Object row : texts) {
+                HistoryText text = (HistoryText) row;
+                if (text.time < before) {
+                    before = text.time;
+                    callIdsAtBefore.clear();
+                    textIdsAtBefore.clear();
+                }
+                if (text.time == before) {
+                    textIdsAtBefore.add(text.id);
+                }
+            }
+            rows += calls.size() + texts.size();
+            pages++;
+        }
+        System.out.println(String.format("%d pages of a conversation loaded in %.1f ms",
+                pages, (System.nanoTime() - start) / 1e6));
+        assertEquals(ROWS_PER_CONVERSATION, rows);
+    }
+
+    @Test
+    public void benchmarkSearch() throws InterruptedException {
+        CountDownLatch found = awaitEvent(ServiceEvent.EventType.HISTORY_SEARCH_RESULTS);
+        long start = System.nanoTime();
+        mHistoryService.searchTextMessagesAsync(HistoryFixture.getNumber(42) + " message 11", Long.MAX_VALUE,
+                Collections.<Long>emptySet(), HistoryService.HISTORY_PAGE_SIZE);
+        assertTrue(found.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        System.out.println(String.format("search in %.1f ms", (System.nanoTime() - start) / 1e6));
+    }
+
+    @Test
+    public void benchmarkSummaries() throws Exception {
+        long start = System.nanoTime();
+        List<ConversationSummary> summaries = mHistoryService.getConversationSummaries();
+        System.out.println(String.format("%d conversation summaries read in %.1f ms",
+                summaries.size(), (System.nanoTime() - start) / 1e6));
+        assertEquals(CONVERSATIONS, summaries.size());
+    }
+
+    @Test
+    public void benchmarkStatusUpdates() throws Exception {
+        // the receipts of the messages of a conversation, SENT then READ for each one
+        int messages = 0;
+        long start = System.nanoTime();
+        for (int row = 0; row < ROWS_PER_CONVERSATION; row++) {
+            if (!HistoryFixture.isCall(row)) {
+                long id = HistoryFixture.getTextId(CONVERSATIONS, row, 0);
+                mHistoryService.accountMessageStatusChanged(HistoryFixture.ACCOUNT, id, PEER, TextMessage.Status.SENT.toInt());
+                mHistoryService.accountMessageStatusChanged(HistoryFixture.ACCOUNT, id, PEER, TextMessage.Status.READ.toInt());
+                messages++;
+            }
+        }
+        mHistoryService.flushPendingWrites();
+        System.out.println(String.format("%d status updates committed in %.1f ms",
+                2 * messages, (System.nanoTime() - start) / 1e6));
+    }
+
+    @Test
+    public void benchmarkClearHistory() throws Exception {
+        // the longest time between two progress events, the longest a reader may wait for the history
+        final long[] longestChunk = {0};
+        final long[] lastProgress = {0};
+        final CountDownLatch modified = new CountDownLatch(1);
+        mObserver = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                long now = System.nanoTime();
+                if (event.getEventType() == ServiceEvent.EventType.HISTORY_MODIFIED) {
+                    modified.countDown();
+                    return;
+                }
+                HistoryClearJob job = event.getEventInput(ServiceEvent.EventInput.HISTORY_CLEAR_JOB, HistoryClearJob.class);
+                if (job.getClearedRows() > 0) {
+                    longestChunk[0] = Math.max(longestChunk[0], now - lastProgress[0]);
+                }
+                lastProgress[0] = now;
+            }
+        };
+        mHistoryService.addObserver(mObserver, ServiceEvent.EventType.HISTORY_CLEAR_PROGRESS,
+                ServiceEvent.EventType.HISTORY_MODIFIED);
+        long start = System.nanoTime();
+        HistoryClearJob job = mHistoryService.clearHistory();
+        assertTrue(modified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        System.out.println(String.format("%d rows cleared in %.1f s, longest chunk of %d rows in %.1f ms",
+                job.getClearedRows(), (System.nanoTime() - start) / 1e9, HistoryService.CLEAR_CHUNK_SIZE,
+                longestChunk[0] / 1e6));
+        assertEquals(CONVERSATIONS * ROWS_PER_CONVERSATION, job.getClearedRows());
+    }
+}
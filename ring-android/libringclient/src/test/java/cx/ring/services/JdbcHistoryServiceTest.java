@@ -0,0 +1,274 @@
+package cx.ring.services;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.ConversationSummary;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.model.ServiceEvent;
+import cx.ring.model.TextMessage;
+import cx.ring.utils.Log;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the history service on a SQLite database file over a generated history of 100k rows:
+ * loading of the newest interactions, paging of a conversation, search, conversation summaries, a burst of
+ * delivery status updates and the clearing of the history. The history is generated once, each test works
+ * on its own copy of the database.
+ */
+public class JdbcHistoryServiceTest {
+
+    static final int CONVERSATIONS = 500;
+    static final int ROWS_PER_CONVERSATION = 200;
+    static final String PEER = HistoryFixture.getNumber(0);
+    static final long TIMEOUT_SECONDS = 120;
+
+    private static File sHistory;
+
+    private ExecutorService mApplicationExecutor;
+    private File mDatabase;
+    private JdbcHistoryService mHistoryService;
+    // the service only keeps weak references to its observers
+    private Observer<ServiceEvent> mObserver;
+    private ServiceEvent mEvent;
+
+    @BeforeClass
+    public static void createHistory() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        sHistory = createDatabase();
+    }
+
+    @AfterClass
+    public static void deleteHistory() {
+        assertTrue(sHistory.delete());
+    }
+
+    /**
+     * @return a new database file holding the generated history
+     */
+    static File createDatabase() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        File database = File.createTempFile("history", ".db");
+        final JdbcHistoryService historyService = new JdbcHistoryService(executor, database);
+        try {
+            historyService.callInTransaction(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    HistoryFixture.generate(CONVERSATIONS, ROWS_PER_CONVERSATION, new HistoryFixture.Writer() {
+                        @Override
+                        public void write(HistoryCall call) throws SQLException {
+                            historyService.insertCall(call);
+                        }
+
+                        @Override
+                        public void write(HistoryText text) throws SQLException {
+                            historyService.insertText(text);
+                        }
+                    });
+                    return null;
+                }
+            });
+        } finally {
+            historyService.close();
+            executor.shutdownNow();
+        }
+        return database;
+    }
+
+    /**
+     * @return a copy of the given database file
+     */
+    static File copyDatabase(File database) throws IOException {
+        File copy = File.createTempFile("history", ".db");
+        Files.copy(database.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        mApplicationExecutor = Executors.newFixedThreadPool(2);
+        mDatabase = copyDatabase(sHistory);
+        mHistoryService = new JdbcHistoryService(mApplicationExecutor, mDatabase);
+    }
+
+    @After
+    public void tearDown() {
+        mHistoryService.close();
+        mApplicationExecutor.shutdownNow();
+        assertTrue(mDatabase.delete());
+    }
+
+    private CountDownLatch awaitEvent(ServiceEvent.EventType type) {
+        final CountDownLatch received = new CountDownLatch(1);
+        if (mObserver != null) {
+            mHistoryService.removeObserver(mObserver);
+        }
+        mEvent = null;
+        mObserver = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                mEvent = event;
+                received.countDown();
+            }
+        };
+        mHistoryService.addObserver(mObserver, type);
+        return received;
+    }
+
+    private static int countRows(ServiceEvent event) {
+        return event.getEventInput(ServiceEvent.EventInput.HISTORY_CALLS, ArrayList.class).size()
+                + event.getEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, ArrayList.class).size();
+    }
+
+    @Test
+    public void testLoadHistory() throws InterruptedException {
+        CountDownLatch loaded = awaitEvent(ServiceEvent.EventType.HISTORY_LOADED);
+        mHistoryService.getCallAndTextAsync();
+        assertTrue(loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(CONVERSATIONS * HistoryService.HISTORY_PAGE_SIZE, countRows(mEvent));
+    }
+
+    @Test
+    public void testLoadHistoryPages() throws InterruptedException {
+        long before = Long.MAX_VALUE;
+        Set<String> callIdsAtBefore = new HashSet<>();
+        Set<Long> textIdsAtBefore = new HashSet<>();
+        int rows = 0;
+        while (true) {
+            CountDownLatch loaded = awaitEvent(ServiceEvent.EventType.HISTORY_PAGE_LOADED);
+            mHistoryService.getHistoryPageAsync(Collections.singletonList(PEER), before,
+                    new HashSet<>(callIdsAtBefore), new HashSet<>(textIdsAtBefore), HistoryService.HISTORY_PAGE_SIZE);
+            assertTrue(loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            int count = countRows(mEvent);
+            if (count == 0) {
+                break;
+            }
+            for (Object row : mEvent.getEventInput(ServiceEvent.EventInput.HISTORY_CALLS, ArrayList.class)) {
+                HistoryCall call = (HistoryCall) row;
+                if (call.call_start < before) {
+                    before = call.call_start;
+                    callIdsAtBefore.clear();
+                    textIdsAtBefore.clear();
+                }
+                if (call.call_start == before) {
+                    callIdsAtBefore.add(String.valueOf(call.getCallId()));
+                }
+            }
+            for (Object row : mEvent.getEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, ArrayList.class)) {
+                HistoryText text = (HistoryText) row;
+                if (text.time < before) {
+                    before = text.time;
+                    callIdsAtBefore.clear();
+                    textIdsAtBefore.clear();
+                }
+                if (text.time == before) {
+                    textIdsAtBefore.add(text.id);
+                }
+            }
+            rows += count;
+        }
+        assertEquals(ROWS_PER_CONVERSATION, rows);
+    }
+
+    @Test
+    public void testSearch() throws InterruptedException {
+        CountDownLatch found = awaitEvent(ServiceEvent.EventType.HISTORY_SEARCH_RESULTS);
+        mHistoryService.searchTextMessagesAsync(HistoryFixture.getNumber(42) + " message 11", Long.MAX_VALUE,
+                Collections.<Long>emptySet(), HistoryService.HISTORY_PAGE_SIZE);
+        assertTrue(found.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        List hits = mEvent.getEventInput(ServiceEvent.EventInput.HISTORY_TEXTS, ArrayList.class);
+        // the rows 11 and 110 to 119 of peer42, except the call of the row 110
+        assertEquals(10, hits.size());
+        for (Object hit : hits) {
+            assertEquals(HistoryFixture.getNumber(42), ((HistoryText) hit).getNumber());
+        }
+    }
+
+    @Test
+    public void testSummaries() throws Exception {
+        List<ConversationSummary> summaries = mHistoryService.getConversationSummaries();
+        assertEquals(CONVERSATIONS, summaries.size());
+        // the last row of each conversation is a text, the newest one is the last written
+        ConversationSummary newest = summaries.get(0);
+        assertEquals(HistoryFixture.getNumber(CONVERSATIONS - 1), newest.getNumber());
+        assertFalse(newest.isCall());
+        assertEquals(HistoryFixture.getMessage(ROWS_PER_CONVERSATION - 1, CONVERSATIONS - 1), newest.getMessage());
+        int texts = ROWS_PER_CONVERSATION - ROWS_PER_CONVERSATION / HistoryFixture.CALL_RATIO;
+        assertEquals(texts, newest.getUnreadCount());
+
+        // reading a message and deleting the last one of a conversation update its summary in the same transaction
+        HistoryText text = mHistoryService.getTextHistoryDao().queryForId(
+                HistoryFixture.getTextId(CONVERSATIONS, ROWS_PER_CONVERSATION - 1, 0));
+        TextMessage message = new TextMessage(text);
+        message.read();
+        mHistoryService.updateTextMessage(new HistoryText(message));
+        mHistoryService.flushPendingWrites();
+        mHistoryService.getTextHistoryDao().deleteById(text.id);
+        for (ConversationSummary summary : mHistoryService.getConversationSummaries()) {
+            if (summary.getNumber().equals(PEER)) {
+                assertEquals(texts - 1, summary.getUnreadCount());
+                assertEquals(HistoryFixture.getMessage(ROWS_PER_CONVERSATION - 2, 0), summary.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testClearHistory() throws Exception {
+        CountDownLatch modified = awaitEvent(ServiceEvent.EventType.HISTORY_MODIFIED);
+        HistoryClearJob job = mHistoryService.clearHistory();
+        assertTrue(modified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(CONVERSATIONS * ROWS_PER_CONVERSATION, job.getClearedRows());
+        assertEquals(0, mHistoryService.getTextHistoryDao().countOf());
+        assertEquals(0, mHistoryService.getCallHistoryDao().countOf());
+        assertTrue(mHistoryService.getConversationSummaries().isEmpty());
+    }
+
+    @Test
+    public void testStatusUpdates() throws Exception {
+        // the receipts of the messages of a conversation, SENT then READ for each one
+        int messages = 0;
+        for (int row = 0; row < ROWS_PER_CONVERSATION; row++) {
+            if (!HistoryFixture.isCall(row)) {
+                long id = HistoryFixture.getTextId(CONVERSATIONS, row, 0);
+                mHistoryService.accountMessageStatusChanged(HistoryFixture.ACCOUNT, id, PEER, TextMessage.Status.SENT.toInt());
+                mHistoryService.accountMessageStatusChanged(HistoryFixture.ACCOUNT, id, PEER, TextMessage.Status.READ.toInt());
+                messages++;
+            }
+        }
+        mHistoryService.flushPendingWrites();
+
+        List<HistoryText> read = mHistoryService.getTextHistoryDao().queryForEq(HistoryText.COLUMN_STATE_NAME,
+                TextMessage.Status.READ.toString());
+        assertEquals(messages, read.size());
+        for (HistoryText text : read) {
+            assertEquals(PEER, text.getNumber());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package cx.ring.services;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.AccountConfig;
+import cx.ring.model.ConfigKey;
+import cx.ring.model.ServiceEvent;
+import cx.ring.utils.InstrumentedExecutor;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+/**
+ * Wires the services around a {@link FakeDaemonBridge} with one SIP account accepting messages from anyone,
+ * for the tests outside of this package
+ */
+public class ServiceGraph {
+
+    private final InstrumentedExecutor mExecutor;
+    private final ExecutorService mApplicationExecutor;
+    private final FakeDaemonBridge mDaemon;
+    private final DeviceRuntimeService mDeviceRuntimeService;
+    private final AccountService mAccountService;
+    private final CallService mCallService;
+    private final ConferenceService mConferenceService;
+    private final ContactService mContactService;
+
+    /**
+     * @param applicationExecutor the "ApplicationExecutor" of the services, not shut down by {@link #shutdown()}
+     */
+    public ServiceGraph(ExecutorService applicationExecutor, HistoryService historyService) throws Exception {
+        mExecutor = new InstrumentedExecutor();
+        mApplicationExecutor = applicationExecutor;
+        final long daemonThreadId = mExecutor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return Thread.currentThread().getId();
+            }
+        }).get();
+        mDeviceRuntimeService = new FakeDeviceRuntimeService(daemonThreadId);
+        mDaemon = new FakeDaemonBridge(mExecutor, 0, TimeUnit.MICROSECONDS);
+
+        mContactService = new FakeContactService();
+        mContactService.mPreferencesService = new FakePreferencesService();
+        mContactService.mDeviceRuntimeService = mDeviceRuntimeService;
+        mContactService.mApplicationExecutor = mApplicationExecutor;
+
+        mAccountService = new AccountService();
+        mAccountService.mExecutor = mExecutor;
+        mAccountService.mApplicationExecutor = mApplicationExecutor;
+        mAccountService.mHistoryService = historyService;
+        mAccountService.mDeviceRuntimeService = mDeviceRuntimeService;
+        mAccountService.mDaemonBridge = mDaemon;
+
+        mCallService = new CallService();
+        mCallService.mExecutor = mExecutor;
+        mCallService.mContactService = mContactService;
+        mCallService.mHistoryService = historyService;
+        mCallService.mDeviceRuntimeService = mDeviceRuntimeService;
+        mCallService.mDaemonBridge = mDaemon;
+
+        mConferenceService = new ConferenceService();
+        mConferenceService.mExecutor = mExecutor;
+        mConferenceService.mDeviceRuntimeService = mDeviceRuntimeService;
+        mConferenceService.mDaemonBridge = mDaemon;
+
+        PresenceService presenceService = new PresenceService();
+        presenceService.mExecutor = mExecutor;
+        presenceService.mDeviceRuntimeService = mDeviceRuntimeService;
+        presenceService.mDaemonBridge = mDaemon;
+
+        mDaemon.setCallbackHandlers(mAccountService, mCallService, mConferenceService, presenceService);
+        Map<String, String> details = new HashMap<>();
+        details.put(ConfigKey.DHT_PUBLIC_IN.key(), "true");
+        mDaemon.createAccount(AccountConfig.ACCOUNT_TYPE_SIP, 0, 0, details);
+    }
+
+    /**
+     * Loads the account from the daemon and waits for it
+     */
+    public void loadAccounts() throws InterruptedException {
+        final CountDownLatch loaded = new CountDownLatch(1);
+        Observer<ServiceEvent> observer = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                loaded.countDown();
+            }
+        };
+        mAccountService.addObserver(observer, ServiceEvent.EventType.ACCOUNTS_CHANGED);
+        mAccountService.loadAccountsFromDaemon(true);
+        if (!loaded.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Accounts not loaded");
+        }
+        mAccountService.removeObserver(observer);
+    }
+
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    public ExecutorService getApplicationExecutor() {
+        return mApplicationExecutor;
+    }
+
+    public DeviceRuntimeService getDeviceRuntimeService() {
+        return mDeviceRuntimeService;
+    }
+
+    public AccountService getAccountService() {
+        return mAccountService;
+    }
+
+    public CallService getCallService() {
+        return mCallService;
+    }
+
+    public ConferenceService getConferenceService() {
+        return mConferenceService;
+    }
+
+    public ContactService getContactService() {
+        return mContactService;
+    }
+}
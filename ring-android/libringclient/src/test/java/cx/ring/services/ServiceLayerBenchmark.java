@@ -0,0 +1,241 @@
+package cx.ring.services;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.support.ConnectionSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cx.ring.model.AccountConfig;
+import cx.ring.model.CallContact;
+import cx.ring.model.ConversationSummary;
+import cx.ring.model.HistoryCall;
+import cx.ring.model.HistoryText;
+import cx.ring.model.ServiceEvent;
+import cx.ring.model.SipCall;
+import cx.ring.model.TextMessage;
+import cx.ring.utils.InstrumentedExecutor;
+import cx.ring.utils.Log;
+import cx.ring.utils.Observable;
+import cx.ring.utils.Observer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the account, call, presence and message paths of the services against the in-memory
+ * {@link FakeDaemonBridge}, with a fixed latency per daemon call, and reports the daemon executor statistics.
+ */
+public class ServiceLayerBenchmark {
+
+    private static final int ACCOUNTS = 10;
+    private static final int CONTACTS_PER_ACCOUNT = 50;
+    private static final int REQUESTS_PER_ACCOUNT = 5;
+    private static final int MESSAGES = 5000;
+    private static final int BUDDIES = 200;
+    private static final int PRESENCE_ROUNDS = 10;
+    private static final int CALLS = 50;
+    private static final long DAEMON_CALL_MICROS = 20;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private InstrumentedExecutor mExecutor;
+    private ExecutorService mApplicationExecutor;
+    private FakeDaemonBridge mDaemon;
+    private AccountService mAccountService;
+    private CallService mCallService;
+    private ConferenceService mConferenceService;
+    private PresenceService mPresenceService;
+    private final AtomicInteger mStoredMessages = new AtomicInteger();
+    // the services only keep weak references to their observers
+    private final List<Observer<ServiceEvent>> mObservers = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        Log.injectLogService(new SilentLogService());
+        mExecutor = new InstrumentedExecutor();
+        mApplicationExecutor = Executors.newFixedThreadPool(5);
+        final long daemonThreadId = mExecutor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return Thread.currentThread().getId();
+            }
+        }).get();
+        DeviceRuntimeService deviceRuntimeService = new FakeDeviceRuntimeService(daemonThreadId);
+
+        HistoryService historyService = new HistoryService() {
+            @Override
+            protected ConnectionSource getConnectionSource() {
+                return null;
+            }
+
+            @Override
+            protected Dao<HistoryCall, Integer> getCallHistoryDao() {
+                return null;
+            }
+
+            @Override
+            protected Dao<HistoryText, Long> getTextHistoryDao() {
+                return null;
+            }
+
+            @Override
+            protected Dao<ConversationSummary, Integer> getConversationSummaryDao() {
+                return null;
+            }
+
+            @Override
+            public void incomingMessage(TextMessage txt) {
+                mStoredMessages.incrementAndGet();
+            }
+        };
+
+        ContactService contactService = new FakeContactService();
+        contactService.mPreferencesService = new FakePreferencesService();
+        contactService.mDeviceRuntimeService = deviceRuntimeService;
+        contactService.mApplicationExecutor = mApplicationExecutor;
+
+        mDaemon = new FakeDaemonBridge(mExecutor, DAEMON_CALL_MICROS, TimeUnit.MICROSECONDS);
+
+        mAccountService = new AccountService();
+        mAccountService.mExecutor = mExecutor;
+        mAccountService.mApplicationExecutor = mApplicationExecutor;
+        mAccountService.mHistoryService = historyService;
+        mAccountService.mDeviceRuntimeService = deviceRuntimeService;
+        mAccountService.mDaemonBridge = mDaemon;
+
+        mCallService = new CallService();
+        mCallService.mExecutor = mExecutor;
+        mCallService.mContactService = contactService;
+        mCallService.mHistoryService = historyService;
+        mCallService.mDeviceRuntimeService = deviceRuntimeService;
+        mCallService.mDaemonBridge = mDaemon;
+
+        mConferenceService = new ConferenceService();
+        mConferenceService.mExecutor = mExecutor;
+        mConferenceService.mDeviceRuntimeService = deviceRuntimeService;
+        mConferenceService.mDaemonBridge = mDaemon;
+
+        mPresenceService = new PresenceService();
+        mPresenceService.mExecutor = mExecutor;
+        mPresenceService.mDeviceRuntimeService = deviceRuntimeService;
+        mPresenceService.mDaemonBridge = mDaemon;
+
+        mDaemon.setCallbackHandlers(mAccountService, mCallService, mConferenceService, mPresenceService);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            mDaemon.createAccount(AccountConfig.ACCOUNT_TYPE_RING, CONTACTS_PER_ACCOUNT, REQUESTS_PER_ACCOUNT);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mApplicationExecutor.shutdownNow();
+    }
+
+    private CountDownLatch countEvents(Observable service, final ServiceEvent.EventType type, int count) {
+        final CountDownLatch latch = new CountDownLatch(count);
+        Observer<ServiceEvent> observer = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable observable, ServiceEvent event) {
+                if (event != null && event.getEventType() == type) {
+                    latch.countDown();
+                }
+            }
+        };
+        mObservers.add(observer);
+        service.addObserver(observer);
+        return latch;
+    }
+
+    private long loadAccounts() throws InterruptedException {
+        CountDownLatch loaded = countEvents(mAccountService, ServiceEvent.EventType.ACCOUNTS_CHANGED, 1);
+        long start = System.nanoTime();
+        mAccountService.loadAccountsFromDaemon(true);
+        assertTrue(loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return System.nanoTime() - start;
+    }
+
+    private static String report(String name, long nanos, int count) {
+        return name + ": " + count + " in " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms, "
+                + (nanos == 0 ? 0 : count * TimeUnit.SECONDS.toNanos(1) / nanos) + "/s";
+    }
+
+    @Test
+    public void benchmarkAccountsLoading() throws InterruptedException {
+        long duration = loadAccounts();
+
+        assertEquals(ACCOUNTS, mAccountService.getAccounts().size());
+        assertEquals(CONTACTS_PER_ACCOUNT, mAccountService.getAccounts().get(0).getContacts().size());
+        InstrumentedExecutor.Snapshot snapshot = mExecutor.getSnapshot();
+        assertEquals(1, snapshot.getOperation("getAccountsSnapshot").getRun().getCount());
+
+        System.out.println(report("Accounts loaded", duration, ACCOUNTS));
+        System.out.println(mDaemon.getCallCount() + " daemon calls");
+        System.out.println(snapshot);
+    }
+
+    @Test
+    public void benchmarkEventFlood() throws InterruptedException {
+        loadAccounts();
+        mExecutor.resetStatistics();
+        String accountId = mAccountService.getAccounts().get(0).getAccountID();
+
+        List<String> buddies = new ArrayList<>(BUDDIES);
+        for (int i = 0; i < BUDDIES; i++) {
+            buddies.add(String.format("%040x", i));
+        }
+        CountDownLatch notified = countEvents(mPresenceService, ServiceEvent.EventType.NEW_BUDDY_NOTIFICATION,
+                BUDDIES * PRESENCE_ROUNDS);
+
+        long start = System.nanoTime();
+        mDaemon.simulateMessageFlood(accountId, buddies.get(0), MESSAGES);
+        mDaemon.simulatePresenceFlood(accountId, buddies, PRESENCE_ROUNDS);
+        assertTrue(notified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        long duration = System.nanoTime() - start;
+
+        // the flood is delivered in order, every message was handled before the last notification
+        assertEquals(MESSAGES, mStoredMessages.get());
+        assertEquals(PRESENCE_ROUNDS % 2 == 0, !mPresenceService.isBuddyOnline(CallContact.PREFIX_RING + buddies.get(0)));
+
+        System.out.println(report("Daemon signals handled", duration, MESSAGES + BUDDIES * PRESENCE_ROUNDS));
+        System.out.println(mExecutor.getSnapshot());
+    }
+
+    @Test
+    public void benchmarkCalls() throws InterruptedException {
+        loadAccounts();
+        mExecutor.resetStatistics();
+        String accountId = mAccountService.getAccounts().get(0).getAccountID();
+
+        // CONNECTING, RINGING, CURRENT, HOLD, CURRENT and OVER for each call
+        CountDownLatch over = countEvents(mCallService, ServiceEvent.EventType.CALL_STATE_CHANGED, CALLS * 6);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            SipCall call = mCallService.placeCall(accountId, String.format("ring:%040x", i), false);
+            assertNotNull(call);
+            mCallService.accept(call.getCallId());
+            mCallService.hold(call.getCallId());
+            mCallService.unhold(call.getCallId());
+            mCallService.hangUp(call.getCallId());
+        }
+        assertTrue(over.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        long duration = System.nanoTime() - start;
+
+        assertTrue(mDaemon.getCallIds().isEmpty());
+
+        System.out.println(report("Calls placed and hung up", duration, CALLS));
+        System.out.println(mExecutor.getSnapshot());
+    }
+}
@@ -0,0 +1,39 @@
+package cx.ring.services;
+
+/**
+ * Log service dropping every message, injected by the tests running the services on the JVM
+ */
+public class SilentLogService implements LogService {
+
+    @Override
+    public void e(String tag, String message) {
+    }
+
+    @Override
+    public void d(String tag, String message) {
+    }
+
+    @Override
+    public void w(String tag, String message) {
+    }
+
+    @Override
+    public void i(String tag, String message) {
+    }
+
+    @Override
+    public void e(String tag, String message, Throwable e) {
+    }
+
+    @Override
+    public void d(String tag, String message, Throwable e) {
+    }
+
+    @Override
+    public void w(String tag, String message, Throwable e) {
+    }
+
+    @Override
+    public void i(String tag, String message, Throwable e) {
+    }
+}
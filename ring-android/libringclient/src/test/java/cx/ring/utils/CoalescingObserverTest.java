@@ -0,0 +1,131 @@
+package cx.ring.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.ServiceEvent;
+import cx.ring.services.SilentLogService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingObserverTest {
+
+    private static final long WINDOW_MS = 50;
+
+    private ScheduledThreadPoolExecutor mScheduler;
+    private final List<ServiceEvent> mReceived = new ArrayList<>();
+    private final Observer<ServiceEvent> mObserver = new Observer<ServiceEvent>() {
+        @Override
+        public void update(Observable observable, ServiceEvent event) {
+            synchronized (mReceived) {
+                mReceived.add(event);
+                mReceived.notifyAll();
+            }
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Log.injectLogService(new SilentLogService());
+        mScheduler = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdownNow();
+    }
+
+    private void waitForEvents(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        synchronized (mReceived) {
+            while (mReceived.size() < count && System.currentTimeMillis() < deadline) {
+                mReceived.wait(100);
+            }
+        }
+    }
+
+    private static void notify(Observable observable, ServiceEvent event) {
+        observable.setChanged();
+        observable.notifyObservers(event);
+    }
+
+    @Test
+    public void testBurstDeliveredOnce() throws InterruptedException {
+        Observable observable = new Observable();
+        CoalescingObserver coalescer = new CoalescingObserver(mObserver, WINDOW_MS, TimeUnit.MILLISECONDS, mScheduler)
+                .coalesce(ServiceEvent.EventType.INCOMING_MESSAGE, ServiceEvent.EventInput.CALL_ID);
+        observable.addObserver(coalescer);
+
+        for (int i = 0; i < 500; i++) {
+            ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.INCOMING_MESSAGE);
+            event.addEventInput(ServiceEvent.EventInput.CALL_ID, "call" + i % 10);
+            notify(observable, event);
+        }
+        waitForEvents(1);
+        Thread.sleep(2 * WINDOW_MS);
+
+        // the loop may cross a window boundary on a slow machine
+        assertTrue(mReceived.size() >= 1 && mReceived.size() <= 3);
+        HashSet<String> ids = new HashSet<>();
+        for (ServiceEvent event : mReceived) {
+            assertEquals(ServiceEvent.EventType.INCOMING_MESSAGE, event.getEventType());
+            ids.addAll(event.getEventInput(ServiceEvent.EventInput.IDS, HashSet.class));
+        }
+        assertEquals(10, ids.size());
+        assertEquals("call9", mReceived.get(mReceived.size() - 1).getString(ServiceEvent.EventInput.CALL_ID));
+    }
+
+    @Test
+    public void testLastEventNotModified() throws InterruptedException {
+        Observable observable = new Observable();
+        CoalescingObserver coalescer = new CoalescingObserver(mObserver, WINDOW_MS, TimeUnit.MILLISECONDS, mScheduler)
+                .coalesce(ServiceEvent.EventType.INCOMING_MESSAGE, ServiceEvent.EventInput.CALL_ID);
+        observable.addObserver(coalescer);
+
+        ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.INCOMING_MESSAGE);
+        event.addEventInput(ServiceEvent.EventInput.CALL_ID, "call");
+        notify(observable, event);
+        waitForEvents(1);
+
+        assertEquals(1, mReceived.size());
+        assertNotSame(event, mReceived.get(0));
+        assertEquals("call", mReceived.get(0).getString(ServiceEvent.EventInput.CALL_ID));
+        assertNull(event.getEventInput(ServiceEvent.EventInput.IDS, HashSet.class));
+    }
+
+    @Test
+    public void testOtherTypesDeliveredRightAway() {
+        Observable observable = new Observable();
+        CoalescingObserver coalescer = new CoalescingObserver(mObserver, WINDOW_MS, TimeUnit.MILLISECONDS, mScheduler)
+                .coalesce(ServiceEvent.EventType.INCOMING_MESSAGE);
+        observable.addObserver(coalescer);
+
+        notify(observable, new ServiceEvent(ServiceEvent.EventType.REGISTERED_NAME_FOUND));
+
+        assertEquals(1, mReceived.size());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        Observable observable = new Observable();
+        CoalescingObserver coalescer = new CoalescingObserver(mObserver, WINDOW_MS, TimeUnit.MILLISECONDS, mScheduler)
+                .coalesce(ServiceEvent.EventType.INCOMING_MESSAGE);
+        observable.addObserver(coalescer);
+
+        notify(observable, new ServiceEvent(ServiceEvent.EventType.INCOMING_MESSAGE));
+        coalescer.cancel();
+        Thread.sleep(2 * WINDOW_MS);
+
+        assertEquals(0, mReceived.size());
+    }
+}
@@ -0,0 +1,65 @@
+package cx.ring.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cx.ring.services.SilentLogService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FutureUtilsTest {
+
+    private static final long DEADLINE = 50;
+    private static final long SLOW_OPERATION = 4 * DEADLINE;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        Log.injectLogService(new SilentLogService());
+        mExecutor = Executors.newSingleThreadExecutor();
+        DaemonTimeouts.setDefaultTimeout(DEADLINE);
+        DaemonTimeouts.resetTimeoutCounts();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        DaemonTimeouts.setDefaultTimeout(DaemonTimeouts.DEFAULT_TIMEOUT);
+    }
+
+    private DaemonFuture<String> slowOperation(String operation) {
+        return FutureUtils.executeDaemonThreadCallableAsync(mExecutor, -1, operation, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(SLOW_OPERATION);
+                return "done";
+            }
+        });
+    }
+
+    @Test
+    public void testGetterTimesOut() {
+        DaemonResult<String> result = FutureUtils.getDaemonResult(slowOperation("getAccountList"), "getAccountList");
+
+        assertTrue(result.isTimeout());
+        assertEquals(1, DaemonTimeouts.getTimeoutCount("getAccountList"));
+    }
+
+    @Test
+    public void testMutationIsAwaited() {
+        assertTrue(DaemonTimeouts.isMutation("placeCall"));
+
+        DaemonResult<String> result = FutureUtils.getDaemonResult(slowOperation("placeCall"), "placeCall");
+
+        assertTrue(result.isSuccess());
+        assertEquals("done", result.getValue());
+        assertEquals(0, DaemonTimeouts.getTimeoutCount("placeCall"));
+    }
+}
@@ -0,0 +1,169 @@
+package cx.ring.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import cx.ring.services.SilentLogService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InstrumentedExecutorTest {
+
+    private InstrumentedExecutor mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = new InstrumentedExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testQueueWaitAndRunTime() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mExecutor.submit(InstrumentedExecutor.named("blocking", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                started.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            }
+        }));
+        // the executor thread may take a while to start
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<?> queued = mExecutor.submit(InstrumentedExecutor.named("queued", new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+        assertEquals(1, mExecutor.getQueueDepth());
+
+        Thread.sleep(20);
+        release.countDown();
+        queued.get(5, TimeUnit.SECONDS);
+
+        InstrumentedExecutor.Snapshot snapshot = mExecutor.getSnapshot();
+        assertEquals(0, snapshot.getQueueDepth());
+        assertEquals(1, snapshot.getMaxQueueDepth());
+
+        InstrumentedExecutor.OperationSnapshot blocking = snapshot.getOperation("blocking");
+        assertNotNull(blocking);
+        assertEquals(1, blocking.getRun().getCount());
+        assertTrue(blocking.getRun().getMax() >= TimeUnit.MILLISECONDS.toMicros(20));
+
+        InstrumentedExecutor.OperationSnapshot waiting = snapshot.getOperation("queued");
+        assertNotNull(waiting);
+        assertEquals(1, waiting.getWait().getCount());
+        assertTrue(waiting.getWait().getMax() >= TimeUnit.MILLISECONDS.toMicros(20));
+    }
+
+    @Test
+    public void testUnnamedAndInlineOperations() throws Exception {
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get(5, TimeUnit.SECONDS);
+        mExecutor.recordInline("inline", 3, TimeUnit.MILLISECONDS);
+
+        InstrumentedExecutor.Snapshot snapshot = mExecutor.getSnapshot();
+        assertEquals(1, snapshot.getOperation(DaemonTimeouts.UNNAMED_OPERATION).getRun().getCount());
+        InstrumentedExecutor.OperationSnapshot inline = snapshot.getOperation("inline");
+        assertEquals(0, inline.getWait().getCount());
+        assertEquals(3000, inline.getRun().getMax());
+
+        mExecutor.resetStatistics();
+        assertNull(mExecutor.getSnapshot().getOperation("inline"));
+    }
+
+    private Runnable recordOrder(final String operation, final List<String> order) {
+        return InstrumentedExecutor.named(operation, new Runnable() {
+            @Override
+            public void run() {
+                order.add(operation);
+            }
+        });
+    }
+
+    @Test
+    public void testCallWaitsForAccountChange() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        mExecutor.execute(recordOrder("setAccountDetails", order));
+        mExecutor.execute(recordOrder("getCallDetails", order));
+        Future<?> placeCall = mExecutor.submit(recordOrder("placeCall", order));
+
+        release.countDown();
+        placeCall.get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("setAccountDetails", "placeCall"), order.subList(0, 2));
+    }
+
+    @Test
+    public void testExecutedFailureIsLogged() throws Exception {
+        final CountDownLatch logged = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Log.injectLogService(new SilentLogService() {
+            @Override
+            public void e(String tag, String message, Throwable e) {
+                error.set(e);
+                logged.countDown();
+            }
+        });
+        final IllegalStateException failure = new IllegalStateException();
+        mExecutor.execute(InstrumentedExecutor.named("failing", new Runnable() {
+            @Override
+            public void run() {
+                throw failure;
+            }
+        }));
+
+        assertTrue(logged.await(5, TimeUnit.SECONDS));
+        assertEquals(failure, error.get());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100, TimeUnit.MICROSECONDS);
+        }
+        histogram.record(50, TimeUnit.MILLISECONDS);
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(100, snapshot.getCount());
+        assertTrue(snapshot.getPercentile(50) >= 100 && snapshot.getPercentile(50) < 200);
+        assertEquals(50000, snapshot.getPercentile(100));
+        assertEquals(50000, snapshot.getMax());
+    }
+}
@@ -0,0 +1,155 @@
+package cx.ring.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.services.SilentLogService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedDispatcherTest {
+
+    private static final int KEYS = 16;
+    private static final int TASKS_PER_KEY = 500;
+
+    private KeyedDispatcher mDispatcher;
+
+    @Before
+    public void setUp() {
+        Log.injectLogService(new SilentLogService());
+        mDispatcher = new KeyedDispatcher("test", 4);
+    }
+
+    @After
+    public void tearDown() {
+        mDispatcher.shutdown();
+    }
+
+    @Test
+    public void testOrderPerKey() throws InterruptedException {
+        final Map<String, List<Integer>> handled = new HashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            handled.put("key" + k, Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final CountDownLatch done = new CountDownLatch(KEYS * TASKS_PER_KEY);
+        for (int i = 0; i < TASKS_PER_KEY; i++) {
+            for (int k = 0; k < KEYS; k++) {
+                final String key = "key" + k;
+                final int index = i;
+                mDispatcher.dispatch(key, "task", new Runnable() {
+                    @Override
+                    public void run() {
+                        handled.get(key).add(index);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        for (List<Integer> indexes : handled.values()) {
+            assertEquals(TASKS_PER_KEY, indexes.size());
+            for (int i = 0; i < TASKS_PER_KEY; i++) {
+                assertEquals(i, (int) indexes.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testBlockedKeyDoesNotBlockOthers() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+        String blocked = "blocked";
+        // a key bound to another worker
+        String free = "free";
+        for (int i = 0; ; i++) {
+            if ((free.hashCode() & Integer.MAX_VALUE) % 4 != (blocked.hashCode() & Integer.MAX_VALUE) % 4) {
+                break;
+            }
+            free = "free" + i;
+        }
+        mDispatcher.dispatch(blocked, "blocking", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        mDispatcher.dispatch(free, "other", new Runnable() {
+            @Override
+            public void run() {
+                other.countDown();
+            }
+        });
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void testLatencies() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(2);
+        mDispatcher.dispatch("key", "slow", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        });
+        mDispatcher.dispatch("key", "queued", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // the statistics are recorded right after the task
+        Thread.sleep(10);
+
+        KeyedDispatcher.Snapshot snapshot = mDispatcher.getSnapshot();
+        assertEquals(0, snapshot.getPending());
+        KeyedDispatcher.TaskSnapshot slow = snapshot.getTask("slow");
+        assertNotNull(slow);
+        assertEquals(1, slow.getHandled().getCount());
+        assertTrue(slow.getHandled().getMax() >= TimeUnit.MILLISECONDS.toMicros(20));
+        KeyedDispatcher.TaskSnapshot queued = snapshot.getTask("queued");
+        assertNotNull(queued);
+        // queued right after the slow task started
+        assertTrue(queued.getWait().getMax() >= TimeUnit.MILLISECONDS.toMicros(10));
+    }
+
+    @Test
+    public void testFailingTaskKeepsWorker() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        mDispatcher.dispatch("key", "failing", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("failure");
+            }
+        });
+        mDispatcher.dispatch("key", "next", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
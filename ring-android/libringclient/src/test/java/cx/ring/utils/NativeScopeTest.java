@@ -0,0 +1,63 @@
+package cx.ring.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cx.ring.services.SilentLogService;
+
+import static org.junit.Assert.assertEquals;
+
+public class NativeScopeTest {
+
+    @Before
+    public void setUp() {
+        Log.injectLogService(new SilentLogService());
+    }
+
+    private static NativeScope.Releasable object(final List<Integer> released, final int id) {
+        return new NativeScope.Releasable() {
+            @Override
+            public void release() {
+                released.add(id);
+            }
+        };
+    }
+
+    @Test
+    public void testReleaseInReverseOrder() {
+        List<Integer> released = new ArrayList<>();
+        NativeScope scope = new NativeScope();
+        for (int i = 0; i < 3; i++) {
+            scope.add(object(released, i));
+        }
+
+        scope.release();
+
+        assertEquals(Arrays.asList(2, 1, 0), released);
+
+        // released objects are not released twice
+        scope.release();
+        assertEquals(3, released.size());
+    }
+
+    @Test
+    public void testFailingReleaseDoesNotStopRelease() {
+        List<Integer> released = new ArrayList<>();
+        NativeScope scope = new NativeScope();
+        scope.add(object(released, 0));
+        scope.add(new NativeScope.Releasable() {
+            @Override
+            public void release() {
+                throw new IllegalStateException("failure");
+            }
+        });
+
+        scope.release();
+
+        assertEquals(Arrays.asList(0), released);
+    }
+}
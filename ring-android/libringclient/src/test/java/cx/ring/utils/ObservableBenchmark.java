@@ -0,0 +1,82 @@
+package cx.ring.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cx.ring.model.ServiceEvent;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Floods an observable with INCOMING_MESSAGE events while one observer per event type is registered,
+ * either for every event as the presenters used to, or only for its own event type.
+ */
+public class ObservableBenchmark {
+
+    private static final int EVENTS = 200000;
+    private static final int WARMUP_EVENTS = 50000;
+
+    private static class CountingObserver implements Observer<ServiceEvent> {
+        private final ServiceEvent.EventType mType;
+        int mHandled;
+
+        CountingObserver(ServiceEvent.EventType type) {
+            mType = type;
+        }
+
+        @Override
+        public void update(Observable observable, ServiceEvent event) {
+            // what the presenters switch statements do
+            if (event.getEventType() == mType) {
+                mHandled++;
+            }
+        }
+    }
+
+    private static long flood(Observable observable, int events) {
+        ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.INCOMING_MESSAGE);
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            observable.setChanged();
+            observable.notifyObservers(event);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long run(boolean typed, List<CountingObserver> observers) {
+        Observable observable = new Observable();
+        for (ServiceEvent.EventType type : ServiceEvent.EventType.values()) {
+            CountingObserver observer = new CountingObserver(type);
+            observers.add(observer);
+            if (typed) {
+                observable.addObserver(observer, type);
+            } else {
+                observable.addObserver(observer);
+            }
+        }
+        flood(observable, WARMUP_EVENTS);
+        return flood(observable, EVENTS);
+    }
+
+    @Test
+    public void benchmarkDispatch() {
+        List<CountingObserver> untypedObservers = new ArrayList<>();
+        long untyped = run(false, untypedObservers);
+        List<CountingObserver> typedObservers = new ArrayList<>();
+        long typed = run(true, typedObservers);
+
+        int types = ServiceEvent.EventType.values().length;
+        System.out.println(types + " observers, all events: " + EVENTS * 1000000000L / untyped + " events/s, "
+                + untyped / EVENTS + "ns/event");
+        System.out.println(types + " observers, typed: " + EVENTS * 1000000000L / typed + " events/s, "
+                + typed / EVENTS + "ns/event");
+
+        for (int i = 0; i < types; i++) {
+            assertEquals(untypedObservers.get(i).mHandled, typedObservers.get(i).mHandled);
+        }
+        assertEquals(EVENTS + WARMUP_EVENTS,
+                typedObservers.get(ServiceEvent.EventType.INCOMING_MESSAGE.ordinal()).mHandled);
+    }
+}
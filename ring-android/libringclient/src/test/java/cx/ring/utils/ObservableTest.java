@@ -0,0 +1,228 @@
+package cx.ring.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cx.ring.model.ServiceEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ObservableTest {
+
+    private static class RecordingObserver implements Observer<ServiceEvent> {
+        final List<ServiceEvent.EventType> mTypes = Collections.synchronizedList(new ArrayList<ServiceEvent.EventType>());
+
+        @Override
+        public void update(Observable observable, ServiceEvent event) {
+            mTypes.add(event.getEventType());
+        }
+    }
+
+    private static void notify(Observable observable, ServiceEvent.EventType type) {
+        observable.setChanged();
+        observable.notifyObservers(new ServiceEvent(type));
+    }
+
+    @Test
+    public void testTypedObserver() {
+        Observable observable = new Observable();
+        RecordingObserver all = new RecordingObserver();
+        RecordingObserver typed = new RecordingObserver();
+        observable.addObserver(all);
+        observable.addObserver(typed, ServiceEvent.EventType.INCOMING_MESSAGE, ServiceEvent.EventType.CALL_STATE_CHANGED);
+
+        notify(observable, ServiceEvent.EventType.INCOMING_MESSAGE);
+        notify(observable, ServiceEvent.EventType.ACCOUNTS_CHANGED);
+        notify(observable, ServiceEvent.EventType.CALL_STATE_CHANGED);
+
+        assertEquals(3, all.mTypes.size());
+        assertEquals(2, typed.mTypes.size());
+        assertEquals(ServiceEvent.EventType.INCOMING_MESSAGE, typed.mTypes.get(0));
+        assertEquals(ServiceEvent.EventType.CALL_STATE_CHANGED, typed.mTypes.get(1));
+        assertEquals(2, observable.countObservers(ServiceEvent.EventType.INCOMING_MESSAGE));
+        assertEquals(1, observable.countObservers(ServiceEvent.EventType.ACCOUNTS_CHANGED));
+    }
+
+    @Test
+    public void testSetChangedIsNotCounted() {
+        Observable observable = new Observable();
+        RecordingObserver all = new RecordingObserver();
+        observable.addObserver(all);
+
+        observable.setChanged();
+        observable.setChanged();
+        observable.notifyObservers(new ServiceEvent(ServiceEvent.EventType.INCOMING_MESSAGE));
+        assertFalse(observable.hasChanged());
+        // not notified without a new setChanged()
+        observable.notifyObservers(new ServiceEvent(ServiceEvent.EventType.INCOMING_MESSAGE));
+
+        assertEquals(1, all.mTypes.size());
+    }
+
+    @Test
+    public void testConcurrentNotifiersDoNotClearEachOther() throws InterruptedException {
+        final Observable observable = new Observable();
+        final RecordingObserver all = new RecordingObserver();
+        observable.addObserver(all);
+        final CountDownLatch changed = new CountDownLatch(1);
+        final CountDownLatch notified = new CountDownLatch(1);
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                observable.setChanged();
+                changed.countDown();
+                try {
+                    notified.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                observable.notifyObservers(new ServiceEvent(ServiceEvent.EventType.CALL_STATE_CHANGED));
+            }
+        });
+        other.start();
+        assertTrue(changed.await(5, TimeUnit.SECONDS));
+
+        // notifies in between the setChanged() and the notifyObservers() of the other thread
+        notify(observable, ServiceEvent.EventType.INCOMING_MESSAGE);
+        notified.countDown();
+        other.join(5000);
+
+        assertEquals(2, all.mTypes.size());
+    }
+
+    @Test
+    public void testObserverAddedTwiceIsNotifiedOnce() {
+        Observable observable = new Observable();
+        RecordingObserver observer = new RecordingObserver();
+        observable.addObserver(observer);
+        observable.addObserver(observer, ServiceEvent.EventType.INCOMING_MESSAGE);
+
+        notify(observable, ServiceEvent.EventType.INCOMING_MESSAGE);
+        // the typed registration replaced the untyped one
+        notify(observable, ServiceEvent.EventType.ACCOUNTS_CHANGED);
+
+        assertEquals(1, observer.mTypes.size());
+        assertEquals(0, observable.countObservers());
+        assertEquals(1, observable.countObservers(ServiceEvent.EventType.INCOMING_MESSAGE));
+    }
+
+    @Test
+    public void testRemoveTypedObserver() {
+        Observable observable = new Observable();
+        RecordingObserver typed = new RecordingObserver();
+        observable.addObserver(typed, ServiceEvent.EventType.INCOMING_MESSAGE);
+
+        observable.removeObserver(typed);
+        notify(observable, ServiceEvent.EventType.INCOMING_MESSAGE);
+
+        assertEquals(0, typed.mTypes.size());
+        assertEquals(0, observable.countObservers(ServiceEvent.EventType.INCOMING_MESSAGE));
+    }
+
+    @Test
+    public void testObserverAddedDuringNotification() {
+        final Observable observable = new Observable();
+        final RecordingObserver added = new RecordingObserver();
+        Observer<ServiceEvent> adding = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable o, ServiceEvent event) {
+                observable.addObserver(added, ServiceEvent.EventType.INCOMING_MESSAGE);
+            }
+        };
+        observable.addObserver(adding, ServiceEvent.EventType.INCOMING_MESSAGE);
+
+        notify(observable, ServiceEvent.EventType.INCOMING_MESSAGE);
+        assertEquals(0, added.mTypes.size());
+
+        observable.removeObserver(adding);
+        notify(observable, ServiceEvent.EventType.INCOMING_MESSAGE);
+        assertEquals(1, added.mTypes.size());
+    }
+
+    @Test
+    public void testExecutorKeepsOrder() throws InterruptedException {
+        Observable observable = new Observable();
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1);
+        Observer<ServiceEvent> observer = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable o, ServiceEvent event) {
+                received.add(event.getInt(ServiceEvent.EventInput.STATE));
+                if (received.size() == 1000) {
+                    done.countDown();
+                }
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            observable.addObserver(observer, pool, ServiceEvent.EventType.CALL_STATE_CHANGED);
+            for (int i = 0; i < 1000; i++) {
+                ServiceEvent event = new ServiceEvent(ServiceEvent.EventType.CALL_STATE_CHANGED);
+                event.addEventInput(ServiceEvent.EventInput.STATE, i);
+                observable.setChanged();
+                observable.notifyObservers(event);
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, (int) received.get(i));
+            }
+            // the backlog is decremented once the last update has returned
+            long deadline = System.currentTimeMillis() + 10000;
+            while (observable.getBacklog(observer) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, observable.getBacklog(observer));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSlowObserverDoesNotBlockOthers() throws InterruptedException {
+        Observable observable = new Observable();
+        final CountDownLatch release = new CountDownLatch(1);
+        Observer<ServiceEvent> slow = new Observer<ServiceEvent>() {
+            @Override
+            public void update(Observable o, ServiceEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        RecordingObserver inline = new RecordingObserver();
+        ExecutorService slowExecutor = Executors.newSingleThreadExecutor();
+        try {
+            observable.addObserver(slow, slowExecutor);
+            observable.addObserver(inline, ServiceEvent.EventType.INCOMING_MESSAGE);
+
+            for (int i = 0; i < 5; i++) {
+                notify(observable, ServiceEvent.EventType.INCOMING_MESSAGE);
+            }
+
+            // the notifying thread is not blocked, the slow observer accumulates a backlog
+            assertEquals(5, inline.mTypes.size());
+            assertEquals(5, observable.getBacklog(slow));
+            assertEquals(0, observable.getBacklog(inline));
+
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (observable.getBacklog(slow) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, observable.getBacklog(slow));
+        } finally {
+            slowExecutor.shutdownNow();
+        }
+    }
+}
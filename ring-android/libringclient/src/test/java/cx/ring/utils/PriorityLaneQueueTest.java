@@ -0,0 +1,150 @@
+package cx.ring.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PriorityLaneQueueTest {
+
+    private static class Task implements Runnable, PriorityLaneQueue.LaneTask {
+        private final DaemonLane mLane;
+        private final boolean mReadOnly;
+
+        Task(DaemonLane lane) {
+            this(lane, true);
+        }
+
+        Task(DaemonLane lane, boolean readOnly) {
+            mLane = lane;
+            mReadOnly = readOnly;
+        }
+
+        /**
+         * A task of the given daemon operation, classified as the daemon executor does
+         */
+        Task(String operation) {
+            this(DaemonLane.forOperation(operation), DaemonLane.isReadOnly(operation));
+        }
+
+        @Override
+        public DaemonLane getLane() {
+            return mLane;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return mReadOnly;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    @Test
+    public void testCallLaneServedFirst() {
+        PriorityLaneQueue queue = new PriorityLaneQueue();
+        Task lookup = new Task("lookupAddress");
+        Task poll = new Task("pollEvents");
+        Task accept = new Task("accept");
+        queue.offer(lookup);
+        queue.offer(poll);
+        queue.offer(accept);
+
+        assertEquals(3, queue.size());
+        // the poll changes the daemon state, the call waits for it but not for the older lookup
+        assertSame(poll, queue.poll());
+        assertSame(accept, queue.poll());
+        assertSame(lookup, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testCallLaneOvertakesReadsBeforeBarrier() {
+        PriorityLaneQueue queue = new PriorityLaneQueue();
+        int lookups = 500;
+        for (int i = 0; i < lookups; i++) {
+            queue.offer(new Task("lookupAddress"));
+        }
+        Task profile = new Task("sendProfile");
+        Task hangUp = new Task("hangUp");
+        queue.offer(profile);
+        queue.offer(hangUp);
+
+        // the hang up only waits for the profile sent before it
+        assertSame(profile, queue.poll());
+        assertSame(hangUp, queue.poll());
+        assertEquals(lookups, queue.size());
+    }
+
+    @Test
+    public void testCallLaneKeepsOrderAfterChanges() {
+        PriorityLaneQueue queue = new PriorityLaneQueue();
+        Task details = new Task(DaemonLane.DEFAULT);
+        Task codecs = new Task(DaemonLane.DEFAULT, false);
+        Task lookup = new Task(DaemonLane.BACKGROUND);
+        Task placeCall = new Task(DaemonLane.CALL, false);
+        Task accept = new Task(DaemonLane.CALL, false);
+        queue.offer(details);
+        queue.offer(codecs);
+        queue.offer(lookup);
+        queue.offer(placeCall);
+        queue.offer(accept);
+
+        // the call waits for the codec change queued before it, which overtakes the older read
+        assertSame(codecs, queue.poll());
+        // the call overtakes the reads
+        assertSame(placeCall, queue.poll());
+        assertSame(accept, queue.poll());
+        assertSame(details, queue.poll());
+        assertSame(lookup, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testChangesKeepOrderAcrossLanes() {
+        PriorityLaneQueue queue = new PriorityLaneQueue();
+        Task profile = new Task(DaemonLane.BACKGROUND, false);
+        Task hangUp = new Task(DaemonLane.CALL, false);
+        queue.offer(profile);
+        queue.offer(hangUp);
+
+        assertSame(profile, queue.peek());
+        assertSame(profile, queue.poll());
+        assertSame(hangUp, queue.poll());
+    }
+
+    @Test
+    public void testStarvingLaneIsPromoted() throws Exception {
+        PriorityLaneQueue queue = new PriorityLaneQueue();
+        Task lookup = new Task(DaemonLane.BACKGROUND);
+        queue.offer(lookup);
+        Thread.sleep(DaemonLane.BACKGROUND.getStarvationThreshold() + 50);
+        Task frame = new Task(DaemonLane.CALL);
+        queue.offer(frame);
+
+        assertSame(lookup, queue.poll(1, TimeUnit.SECONDS));
+        assertSame(frame, queue.poll(1, TimeUnit.SECONDS));
+
+        PriorityLaneQueue.LaneSnapshot background = queue.getLaneSnapshots().get(DaemonLane.BACKGROUND.ordinal());
+        assertEquals(1, background.getPromoted());
+        assertEquals(1, background.getDequeued());
+    }
+
+    @Test
+    public void testOperationLanes() {
+        assertEquals(DaemonLane.CALL, DaemonLane.forOperation("accept"));
+        assertEquals(DaemonLane.BACKGROUND, DaemonLane.forOperation("lookupAddress"));
+        assertEquals(DaemonLane.DEFAULT, DaemonLane.forOperation("pollEvents"));
+        assertEquals(DaemonLane.DEFAULT, DaemonLane.forOperation(null));
+        assertTrue(DaemonLane.isReadOnly("getAccountDetails"));
+        assertFalse(DaemonLane.isReadOnly("setAccountDetails"));
+        assertFalse(DaemonLane.isReadOnly(null));
+    }
+}
@@ -0,0 +1,150 @@
+package cx.ring.utils;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import cx.ring.daemon.Blob;
+import cx.ring.daemon.StringMap;
+import cx.ring.daemon.StringVect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the element by element conversions of Blob and StringMap, one JNI call per byte or entry,
+ * against the bulk conversions.
+ * Needs the native library, the benchmark is skipped when it can not be loaded.
+ */
+public class SwigConversionBenchmark {
+
+    private static final int[] BLOB_SIZES = {1024, 64 * 1024, 256 * 1024};
+    private static final int[] MAP_SIZES = {10, 100};
+    private static final int ITERATIONS = 20;
+
+    private final Random mRandom = new Random(42);
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("native library not available", isNativeAvailable());
+    }
+
+    private static boolean isNativeAvailable() {
+        try {
+            System.loadLibrary("ring");
+        } catch (UnsatisfiedLinkError e) {
+            // the SWIG classes may still be usable if already loaded
+        }
+        try {
+            new Blob().delete();
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    private static Blob perByteToSwig(byte[] data) {
+        Blob blob = new Blob();
+        blob.reserve(data.length);
+        for (byte b : data) {
+            blob.add(b);
+        }
+        return blob;
+    }
+
+    private static byte[] perByteToNative(Blob blob) {
+        byte[] data = new byte[(int) blob.size()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) blob.get(i);
+        }
+        return data;
+    }
+
+    private static StringMap perEntryToSwig(Map<String, String> map) {
+        StringMap swigMap = new StringMap();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            swigMap.set(entry.getKey(), entry.getValue());
+        }
+        return swigMap;
+    }
+
+    private static HashMap<String, String> perEntryToNative(StringMap swigMap) {
+        HashMap<String, String> map = new HashMap<>();
+        StringVect keys = swigMap.keys();
+        for (String key : keys) {
+            map.put(key, swigMap.get(key));
+        }
+        keys.delete();
+        return map;
+    }
+
+    private Map<String, String> randomMap(int entries) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            map.put("Account.key" + i, Long.toHexString(mRandom.nextLong()) + Long.toHexString(mRandom.nextLong()));
+        }
+        return map;
+    }
+
+    @Test
+    public void benchmarkBlob() {
+        for (int size : BLOB_SIZES) {
+            byte[] data = new byte[size];
+            mRandom.nextBytes(data);
+
+            long perByte = 0;
+            long bulk = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                Blob blob = perByteToSwig(data);
+                byte[] back = perByteToNative(blob);
+                perByte += System.nanoTime() - start;
+                blob.delete();
+                assertEquals(size, back.length);
+
+                start = System.nanoTime();
+                blob = Blob.fromBytes(data);
+                back = blob.toBytes();
+                bulk += System.nanoTime() - start;
+                blob.delete();
+                assertTrue(Arrays.equals(data, back));
+            }
+            long kilobytes = size / 1024 * ITERATIONS;
+            System.out.println("Blob " + size / 1024 + "KB round trip: per byte " + perByte / kilobytes
+                    + "ns/KB, bulk " + bulk / kilobytes + "ns/KB");
+        }
+    }
+
+    @Test
+    public void benchmarkStringMap() {
+        for (int size : MAP_SIZES) {
+            Map<String, String> map = randomMap(size);
+
+            long perEntry = 0;
+            long bulk = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                StringMap swigMap = perEntryToSwig(map);
+                Map<String, String> back = perEntryToNative(swigMap);
+                perEntry += System.nanoTime() - start;
+                swigMap.delete();
+                assertEquals(map, back);
+
+                start = System.nanoTime();
+                swigMap = StringMap.toSwig(map);
+                back = swigMap.toNative();
+                bulk += System.nanoTime() - start;
+                swigMap.delete();
+                assertEquals(map, back);
+            }
+            long entries = size * ITERATIONS;
+            System.out.println("StringMap " + size + " entries round trip: per entry " + perEntry / entries
+                    + "ns/entry, bulk " + bulk / entries + "ns/entry");
+        }
+    }
+}
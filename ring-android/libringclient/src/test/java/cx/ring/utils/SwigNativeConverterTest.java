@@ -0,0 +1,65 @@
+package cx.ring.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SwigNativeConverterTest {
+
+    @Test
+    public void testStringMapRoundTrip() {
+        Map<String, String> map = new HashMap<>();
+        map.put("Account.alias", "alias");
+        map.put("Account.username", "ring:0123456789abcdef0123456789abcdef01234567");
+        map.put("empty", "");
+        map.put("", "empty key");
+        map.put("text/plain", "héllo 😀 世界");
+
+        Map<String, String> decoded = SwigNativeConverter.decodeStringMap(SwigNativeConverter.encodeStringMap(map));
+
+        assertEquals(map, decoded);
+    }
+
+    @Test
+    public void testNullEntriesSkipped() {
+        Map<String, String> map = new HashMap<>();
+        map.put("key", null);
+        map.put(null, "value");
+        map.put("kept", "value");
+
+        Map<String, String> decoded = SwigNativeConverter.decodeStringMap(SwigNativeConverter.encodeStringMap(map));
+
+        assertEquals(1, decoded.size());
+        assertEquals("value", decoded.get("kept"));
+    }
+
+    @Test
+    public void testEncodedLayout() {
+        Map<String, String> map = new HashMap<>();
+        map.put("a", "bc");
+
+        byte[] encoded = SwigNativeConverter.encodeStringMap(map);
+
+        assertTrue(Arrays.equals(new byte[]{0, 0, 0, 1, 'a', 0, 0, 0, 2, 'b', 'c'}, encoded));
+    }
+
+    @Test
+    public void testTruncatedData() {
+        Map<String, String> map = new HashMap<>();
+        map.put("first", "value");
+        byte[] encoded = SwigNativeConverter.encodeStringMap(map);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length + 6);
+        // a second entry whose key length exceeds the data
+        truncated[encoded.length + 3] = 100;
+
+        Map<String, String> decoded = SwigNativeConverter.decodeStringMap(truncated);
+
+        assertEquals(map, decoded);
+        assertTrue(SwigNativeConverter.decodeStringMap(new byte[3]).isEmpty());
+    }
+}